@@ -0,0 +1,92 @@
+package com.ejemplo;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Locale;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Benchmarks JMH de serialización y lectura JSON
+ * Compara el escritor en streaming con un StringBuilder genérico sobre el
+ * mapa de la API y con String.format. Ejecutar con {@code -prof gc} para ver
+ * los bytes asignados por operación.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(2)
+@State(Scope.Thread)
+public class JsonBenchmark {
+
+    private final PoolBuffers pool = new PoolBuffers(4, 4096);
+    private final EscritorJson escritor = new EscritorJson();
+    private final LectorJson lector = new LectorJson();
+    private RespuestaUsuario usuario;
+    private RespuestaEstadisticas estadisticas;
+    private ByteBuffer cuerpoCreacion;
+
+    @Setup
+    public void preparar() {
+        UsuarioController.configurarLatenciaSimulada(false);
+        for (int i = 0; i < 1_000; i++) {
+            UsuarioController.crearUsuario("Usuario " + i, 50.0 + i % 60);
+        }
+        usuario = new RespuestaUsuario(200, "user_123456789", "María José", 72.35, System.currentTimeMillis());
+        estadisticas = UsuarioController.obtenerEstadisticasTipado();
+        byte[] cuerpo = "{\"nombre\":\"María José\",\"peso\":72.35}".getBytes(StandardCharsets.UTF_8);
+        cuerpoCreacion = ByteBuffer.allocateDirect(cuerpo.length);
+        cuerpoCreacion.put(cuerpo).flip();
+    }
+
+    @Benchmark
+    public int usuarioStreaming() {
+        ByteBuffer buffer = pool.tomar();
+        usuario.escribirJson(escritor.iniciar(buffer));
+        int bytes = buffer.position();
+        pool.devolver(buffer);
+        return bytes;
+    }
+
+    @Benchmark
+    public byte[] usuarioStringBuilder() {
+        return Json.aJson(usuario.aMapa()).getBytes(StandardCharsets.UTF_8);
+    }
+
+    @Benchmark
+    public byte[] usuarioStringFormat() {
+        return String.format(Locale.ROOT,
+            "{\"id\":\"%s\",\"usuario\":{\"nombre\":\"%s\",\"peso\":%s},\"status\":%d,\"timestamp\":%d}",
+            usuario.getId(), usuario.getNombre(), usuario.getPeso(), usuario.getStatus(),
+            usuario.getTimestamp()).getBytes(StandardCharsets.UTF_8);
+    }
+
+    @Benchmark
+    public int estadisticasStreaming() {
+        ByteBuffer buffer = pool.tomar();
+        estadisticas.escribirJson(escritor.iniciar(buffer));
+        int bytes = buffer.position();
+        pool.devolver(buffer);
+        return bytes;
+    }
+
+    @Benchmark
+    public byte[] estadisticasStringBuilder() {
+        return Json.aJson(estadisticas.aMapa()).getBytes(StandardCharsets.UTF_8);
+    }
+
+    @Benchmark
+    public SolicitudCreacion leerCreacion() {
+        return lector.iniciar(cuerpoCreacion.duplicate()).leerCreacion();
+    }
+}
@@ -0,0 +1,50 @@
+package com.ejemplo;
+
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Benchmarks JMH de la clase Usuario
+ */
+@BenchmarkMode({Mode.Throughput, Mode.AverageTime})
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(2)
+@State(Scope.Thread)
+public class UsuarioBenchmark {
+
+    private Usuario usuario;
+    private double nuevoPeso;
+
+    @Setup
+    public void preparar() {
+        usuario = new Usuario("Juan Pérez", 70.5);
+        nuevoPeso = 75.0;
+    }
+
+    @Benchmark
+    public Usuario construir() {
+        return new Usuario("Juan Pérez", nuevoPeso);
+    }
+
+    @Benchmark
+    public double actualizarPeso() {
+        usuario.actualizarPeso(nuevoPeso);
+        return usuario.getPeso();
+    }
+
+    @Benchmark
+    public double calcularPesoActualizado() {
+        return Usuario.calcularPesoActualizado(usuario.getPeso(), nuevoPeso);
+    }
+}
@@ -0,0 +1,152 @@
+package com.ejemplo;
+
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Benchmarks JMH de los caminos calientes de UsuarioController
+ * Se ejecutan con la latencia simulada desactivada para medir solo el código.
+ * Los ids consultados siguen una secuencia pseudoaleatoria fija, de modo que
+ * dos corridas con los mismos parámetros recorren los mismos usuarios.
+ */
+@BenchmarkMode({Mode.Throughput, Mode.AverageTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 2, jvmArgsAppend = {"-Dhealthtrack.latencia=false", "-Xms2g", "-Xmx2g"})
+public class UsuarioControllerBenchmark {
+
+    /**
+     * Población precargada en el repositorio del controlador
+     */
+    @State(Scope.Benchmark)
+    public static class Poblacion {
+
+        @Param({"mapa", "columnar"})
+        public String repositorio;
+
+        @Param({"100000"})
+        public int usuarios;
+
+        @Param({"true", "false"})
+        public boolean cache;
+
+        RepositorioUsuarios destino;
+        String[] ids;
+        long[] numeros;
+
+        @Setup(Level.Trial)
+        public void preparar() {
+            UsuarioController.configurarLatenciaSimulada(false);
+            destino = "columnar".equals(repositorio)
+                ? new RepositorioColumnar() : new RepositorioMapa();
+            ids = new String[usuarios];
+            numeros = new long[usuarios];
+            for (int i = 0; i < usuarios; i++) {
+                numeros[i] = i + 1;
+                ids[i] = "user_" + numeros[i];
+                destino.insertar(numeros[i], "Usuario " + (i % 1_000), 50.0 + i % 60);
+            }
+            UsuarioController.configurarRepositorio(destino);
+            UsuarioController.configurarCache(cache ? new CacheUsuarios(10_000) : null);
+        }
+
+        /**
+         * Las actualizaciones alimentan el historial; se vacía entre iteraciones
+         */
+        @Setup(Level.Iteration)
+        public void limpiarHistorial() {
+            UsuarioController.historial().limpiar();
+        }
+    }
+
+    /**
+     * Cursor por hilo sobre la población (xorshift con semilla fija)
+     */
+    @State(Scope.Thread)
+    public static class Cursor {
+        private long estado = 0x9E3779B97F4A7C15L;
+        final LecturaUsuario lectura = new LecturaUsuario();
+        final StringBuilder nombre = new StringBuilder();
+
+        int siguiente(int limite) {
+            estado ^= estado << 13;
+            estado ^= estado >>> 7;
+            estado ^= estado << 17;
+            return (int) ((estado >>> 1) % limite);
+        }
+    }
+
+    /**
+     * Repositorio vacío por iteración para medir altas sin crecer sin límite
+     */
+    @State(Scope.Benchmark)
+    public static class Altas {
+
+        @Setup(Level.Iteration)
+        public void preparar() {
+            UsuarioController.configurarLatenciaSimulada(false);
+            UsuarioController.configurarRepositorio(new RepositorioColumnar());
+            UsuarioController.configurarCache(new CacheUsuarios(10_000));
+            UsuarioController.historial().limpiar();
+        }
+    }
+
+    @Benchmark
+    public long parsearId(Poblacion poblacion, Cursor cursor) {
+        return UsuarioController.parsearId(poblacion.ids[cursor.siguiente(poblacion.usuarios)]);
+    }
+
+    @Benchmark
+    public double leerRepositorio(Poblacion poblacion, Cursor cursor) {
+        cursor.nombre.setLength(0);
+        return poblacion.destino.leer(poblacion.numeros[cursor.siguiente(poblacion.usuarios)], cursor.nombre);
+    }
+
+    @Benchmark
+    public Map<String, Object> obtenerUsuario(Poblacion poblacion, Cursor cursor) {
+        return UsuarioController.obtenerUsuario(poblacion.ids[cursor.siguiente(poblacion.usuarios)]);
+    }
+
+    @Benchmark
+    public RespuestaUsuario obtenerUsuarioTipado(Poblacion poblacion, Cursor cursor) {
+        return UsuarioController.obtenerUsuarioTipado(poblacion.ids[cursor.siguiente(poblacion.usuarios)]);
+    }
+
+    @Benchmark
+    public int obtenerUsuarioContenedor(Poblacion poblacion, Cursor cursor) {
+        return UsuarioController.obtenerUsuario(poblacion.ids[cursor.siguiente(poblacion.usuarios)], cursor.lectura);
+    }
+
+    @Benchmark
+    public Map<String, Object> construirRespuesta(Poblacion poblacion, Cursor cursor) {
+        return UsuarioController.procesarConsulta(poblacion.numeros[cursor.siguiente(poblacion.usuarios)]).aMapa();
+    }
+
+    @Benchmark
+    public Map<String, Object> actualizarPeso(Poblacion poblacion, Cursor cursor) {
+        return UsuarioController.actualizarPeso(poblacion.ids[cursor.siguiente(poblacion.usuarios)], 70.0);
+    }
+
+    @Benchmark
+    public Map<String, Object> obtenerEstadisticas(Poblacion poblacion) {
+        return UsuarioController.obtenerEstadisticas();
+    }
+
+    @Benchmark
+    public Map<String, Object> crearUsuario(Altas altas) {
+        return UsuarioController.crearUsuario("Nuevo", 72.5);
+    }
+}
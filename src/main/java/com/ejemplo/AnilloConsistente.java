@@ -0,0 +1,133 @@
+package com.ejemplo;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+/**
+ * Anillo de hash consistente con nodos virtuales
+ * Cada partición ocupa {@code virtuales} puntos pseudoaleatorios del anillo de
+ * 64 bits y una clave pertenece a la partición del primer punto igual o
+ * posterior a su hash. Agregar una partición solo le traslada las claves que
+ * caen justo antes de sus puntos (en promedio 1/N del total); el resto
+ * conserva su dueño. Con más puntos por partición el reparto es más parejo.
+ *
+ * Es inmutable: agregar una partición devuelve un anillo nuevo, y enrutar es
+ * una búsqueda binaria sobre un arreglo ordenado, sin cerrojos ni objetos.
+ */
+public final class AnilloConsistente {
+
+    private static final long FNV_BASE = 0xcbf29ce484222325L;
+    private static final long FNV_PRIMO = 0x100000001b3L;
+
+    private final String[] nodos;
+    private final int virtuales;
+    private final long[] puntos;
+    private final int[] duenos; // índice en nodos del dueño de cada punto
+
+    /**
+     * Anillo vacío
+     * @param virtuales Puntos por partición (al menos 1)
+     */
+    public AnilloConsistente(int virtuales) {
+        this(new String[0], virtuales);
+    }
+
+    private AnilloConsistente(String[] nodos, int virtuales) {
+        if (virtuales < 1) {
+            throw new IllegalArgumentException("virtuales debe ser al menos 1");
+        }
+        this.nodos = nodos;
+        this.virtuales = virtuales;
+        int total = nodos.length * virtuales;
+        long[] crudos = new long[total];
+        for (int n = 0; n < nodos.length; n++) {
+            long base = hashNombre(nodos[n]);
+            for (int v = 0; v < virtuales; v++) {
+                crudos[n * virtuales + v] = mezclar(base + v * 0x9E3779B97F4A7C15L);
+            }
+        }
+        // Ordena por punto y desempata por nodo, para que el anillo no dependa del orden de alta
+        Integer[] orden = new Integer[total];
+        for (int i = 0; i < total; i++) {
+            orden[i] = i;
+        }
+        Arrays.sort(orden, (a, b) -> crudos[a] != crudos[b]
+            ? Long.compare(crudos[a], crudos[b]) : nodos[a / virtuales].compareTo(nodos[b / virtuales]));
+        this.puntos = new long[total];
+        this.duenos = new int[total];
+        for (int i = 0; i < total; i++) {
+            puntos[i] = crudos[orden[i]];
+            duenos[i] = orden[i] / virtuales;
+        }
+    }
+
+    /**
+     * Anillo con una partición más; las existentes conservan su índice
+     * @param nombre Nombre de la nueva partición (determina sus puntos)
+     * @return anillo nuevo
+     */
+    public AnilloConsistente conNodo(String nombre) {
+        if (Arrays.asList(nodos).contains(nombre)) {
+            throw new IllegalArgumentException("Partición duplicada: " + nombre);
+        }
+        String[] nuevos = Arrays.copyOf(nodos, nodos.length + 1);
+        nuevos[nodos.length] = nombre;
+        return new AnilloConsistente(nuevos, virtuales);
+    }
+
+    /**
+     * Partición dueña de una clave
+     * @param clave Identificador a enrutar
+     * @return índice de la partición o -1 si el anillo está vacío
+     */
+    public int duenoDe(long clave) {
+        if (puntos.length == 0) {
+            return -1;
+        }
+        int i = Arrays.binarySearch(puntos, mezclar(clave));
+        if (i < 0) {
+            i = -i - 1;
+        }
+        return duenos[i == puntos.length ? 0 : i];
+    }
+
+    /**
+     * Nombre de una partición
+     * @param indice Índice devuelto por {@link #duenoDe}
+     */
+    public String nodo(int indice) {
+        return nodos[indice];
+    }
+
+    public int cantidadNodos() {
+        return nodos.length;
+    }
+
+    public int getVirtuales() {
+        return virtuales;
+    }
+
+    /**
+     * Finalizador de MurmurHash3: reparte ids consecutivos por todo el anillo
+     */
+    static long mezclar(long x) {
+        x ^= x >>> 33;
+        x *= 0xff51afd7ed558ccdL;
+        x ^= x >>> 33;
+        x *= 0xc4ceb9fe1a85ec53L;
+        x ^= x >>> 33;
+        return x;
+    }
+
+    /**
+     * FNV-1a de 64 bits sobre los bytes UTF-8 del nombre
+     */
+    private static long hashNombre(String nombre) {
+        long h = FNV_BASE;
+        for (byte b : nombre.getBytes(StandardCharsets.UTF_8)) {
+            h ^= b & 0xff;
+            h *= FNV_PRIMO;
+        }
+        return h;
+    }
+}
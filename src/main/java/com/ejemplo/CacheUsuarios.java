@@ -0,0 +1,347 @@
+package com.ejemplo;
+
+import java.util.Arrays;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Caché de lectura acotada delante de las consultas de usuarios
+ * Se divide en segmentos LRU independientes para que las consultas de ids
+ * distintos no compitan por el mismo cerrojo. Cada segmento guarda las claves
+ * como long primitivos en arreglos de tamaño fijo, así que un acierto no
+ * reserva memoria (ni siquiera la clave Long de un mapa).
+ * Las cargas y los refrescos leen el repositorio dentro del cerrojo del
+ * segmento, por lo que una carga nunca puede dejar un valor más viejo que el
+ * de una actualización ya refrescada.
+ */
+public class CacheUsuarios {
+
+    private final Segmento[] segmentos;
+    private final LongAdder aciertos = new LongAdder();
+    private final LongAdder fallos = new LongAdder();
+    private final LongAdder desalojos = new LongAdder();
+
+    /**
+     * Constructor con 64 segmentos
+     * @param capacidad Cantidad máxima de usuarios en caché
+     */
+    public CacheUsuarios(int capacidad) {
+        this(capacidad, 64);
+    }
+
+    /**
+     * Constructor de la caché
+     * @param capacidad Cantidad máxima de usuarios en caché
+     * @param cantidadSegmentos Cantidad de segmentos (se redondea a potencia de 2)
+     */
+    public CacheUsuarios(int capacidad, int cantidadSegmentos) {
+        if (capacidad <= 0) {
+            throw new IllegalArgumentException("Capacidad debe ser mayor a 0");
+        }
+        int n = Integer.highestOneBit(Math.max(1, Math.min(cantidadSegmentos, capacidad)));
+        segmentos = new Segmento[n];
+        int porSegmento = (capacidad + n - 1) / n;
+        for (int i = 0; i < n; i++) {
+            segmentos[i] = new Segmento(porSegmento);
+        }
+    }
+
+    /**
+     * Busca un usuario en caché y cuenta el acierto o fallo
+     * @param id Identificador numérico del usuario
+     * @return entrada en caché o null
+     */
+    public Entrada obtener(long id) {
+        Segmento segmento = segmento(id);
+        Entrada entrada;
+        synchronized (segmento) {
+            entrada = segmento.get(id);
+        }
+        (entrada == null ? fallos : aciertos).increment();
+        return entrada;
+    }
+
+    /**
+     * Carga un usuario desde el repositorio si no está en caché
+     * @param id Identificador numérico del usuario
+     * @param repositorio Origen de los datos
+     * @return entrada cargada o null si el usuario no existe
+     */
+    public Entrada cargar(long id, RepositorioUsuarios repositorio) {
+        Segmento segmento = segmento(id);
+        synchronized (segmento) {
+            Entrada entrada = segmento.get(id);
+            if (entrada == null) {
+                entrada = leer(id, repositorio);
+                if (entrada != null) {
+                    segmento.put(id, entrada);
+                }
+            }
+            return entrada;
+        }
+    }
+
+    /**
+     * Reemplaza la entrada de un usuario con el valor actual del repositorio,
+     * solo si ya estaba en caché
+     * @param id Identificador numérico del usuario
+     * @param repositorio Origen de los datos
+     */
+    public void refrescar(long id, RepositorioUsuarios repositorio) {
+        Segmento segmento = segmento(id);
+        synchronized (segmento) {
+            if (segmento.containsKey(id)) {
+                Entrada entrada = leer(id, repositorio);
+                if (entrada == null) {
+                    segmento.remove(id);
+                } else {
+                    segmento.put(id, entrada);
+                }
+            }
+        }
+    }
+
+    /**
+     * Elimina un usuario de la caché
+     * @param id Identificador numérico del usuario
+     */
+    public void invalidar(long id) {
+        Segmento segmento = segmento(id);
+        synchronized (segmento) {
+            segmento.remove(id);
+        }
+    }
+
+    /**
+     * Vacía la caché (p. ej. al reemplazar o restaurar el repositorio)
+     */
+    public void limpiar() {
+        for (Segmento segmento : segmentos) {
+            synchronized (segmento) {
+                segmento.clear();
+            }
+        }
+    }
+
+    public long getAciertos() {
+        return aciertos.sum();
+    }
+
+    public long getFallos() {
+        return fallos.sum();
+    }
+
+    public long getDesalojos() {
+        return desalojos.sum();
+    }
+
+    /**
+     * Cantidad de usuarios en caché
+     * @return entradas actuales
+     */
+    public int tamano() {
+        int total = 0;
+        for (Segmento segmento : segmentos) {
+            synchronized (segmento) {
+                total += segmento.size();
+            }
+        }
+        return total;
+    }
+
+    private Segmento segmento(long id) {
+        long h = id * 0x9E3779B97F4A7C15L;
+        return segmentos[(int) (h >>> 32) & (segmentos.length - 1)];
+    }
+
+    private static Entrada leer(long id, RepositorioUsuarios repositorio) {
+        StringBuilder nombre = new StringBuilder();
+        double peso = repositorio.leer(id, nombre);
+        return Double.isNaN(peso) ? null : new Entrada(nombre.toString(), peso);
+    }
+
+    /**
+     * Segmento LRU de tamaño fijo con desalojo del acceso más antiguo
+     * Las entradas ocupan casillas de arreglos paralelos enlazadas en una lista
+     * doble por orden de acceso; una tabla abierta con sondeo lineal lleva del
+     * id a su casilla. Solo se usa bajo el monitor del propio segmento.
+     */
+    private final class Segmento {
+        private final long[] ids;
+        private final Entrada[] entradas;
+        private final int[] anterior;
+        private final int[] siguiente;
+        private final int[] tabla; // casilla + 1, 0 = libre
+        private int masReciente = -1;
+        private int menosReciente = -1;
+        private int libres = -1; // casillas liberadas, encadenadas por "siguiente"
+        private int usadas;
+        private int ocupadas;
+
+        Segmento(int capacidad) {
+            ids = new long[capacidad];
+            entradas = new Entrada[capacidad];
+            anterior = new int[capacidad];
+            siguiente = new int[capacidad];
+            // Potencia de 2 con al menos el doble de lugares que casillas
+            tabla = new int[Integer.highestOneBit(capacidad * 2 - 1) << 1];
+        }
+
+        Entrada get(long id) {
+            int lugar = buscar(id);
+            if (lugar < 0) {
+                return null;
+            }
+            int casilla = tabla[lugar] - 1;
+            desenlazar(casilla);
+            enlazarAlFrente(casilla);
+            return entradas[casilla];
+        }
+
+        boolean containsKey(long id) {
+            return buscar(id) >= 0;
+        }
+
+        void put(long id, Entrada entrada) {
+            int lugar = buscar(id);
+            if (lugar >= 0) {
+                int casilla = tabla[lugar] - 1;
+                entradas[casilla] = entrada;
+                desenlazar(casilla);
+                enlazarAlFrente(casilla);
+                return;
+            }
+            if (ocupadas == ids.length) {
+                remove(ids[menosReciente]);
+                desalojos.increment();
+            }
+            int casilla;
+            if (libres >= 0) {
+                casilla = libres;
+                libres = siguiente[casilla];
+            } else {
+                casilla = usadas++;
+            }
+            ids[casilla] = id;
+            entradas[casilla] = entrada;
+            enlazarAlFrente(casilla);
+            int mascara = tabla.length - 1;
+            int i = mezclar(id) & mascara;
+            while (tabla[i] != 0) {
+                i = (i + 1) & mascara;
+            }
+            tabla[i] = casilla + 1;
+            ocupadas++;
+        }
+
+        void remove(long id) {
+            int lugar = buscar(id);
+            if (lugar < 0) {
+                return;
+            }
+            int casilla = tabla[lugar] - 1;
+            quitarDeTabla(lugar);
+            desenlazar(casilla);
+            entradas[casilla] = null;
+            siguiente[casilla] = libres;
+            libres = casilla;
+            ocupadas--;
+        }
+
+        void clear() {
+            Arrays.fill(tabla, 0);
+            Arrays.fill(entradas, null);
+            masReciente = -1;
+            menosReciente = -1;
+            libres = -1;
+            usadas = 0;
+            ocupadas = 0;
+        }
+
+        int size() {
+            return ocupadas;
+        }
+
+        /**
+         * @return lugar de la tabla que apunta al id, o -1 si no está
+         */
+        private int buscar(long id) {
+            int mascara = tabla.length - 1;
+            for (int i = mezclar(id) & mascara; tabla[i] != 0; i = (i + 1) & mascara) {
+                if (ids[tabla[i] - 1] == id) {
+                    return i;
+                }
+            }
+            return -1;
+        }
+
+        /**
+         * Vacía un lugar desplazando hacia atrás el resto de su racha de sondeo
+         */
+        private void quitarDeTabla(int i) {
+            int mascara = tabla.length - 1;
+            tabla[i] = 0;
+            for (int j = (i + 1) & mascara; tabla[j] != 0; j = (j + 1) & mascara) {
+                int ideal = mezclar(ids[tabla[j] - 1]) & mascara;
+                // La casilla puede quedarse si su lugar ideal está en (i, j] de forma cíclica
+                boolean quedarse = i <= j ? i < ideal && ideal <= j : i < ideal || ideal <= j;
+                if (!quedarse) {
+                    tabla[i] = tabla[j];
+                    tabla[j] = 0;
+                    i = j;
+                }
+            }
+        }
+
+        private void desenlazar(int casilla) {
+            int previa = anterior[casilla];
+            int proxima = siguiente[casilla];
+            if (previa >= 0) {
+                siguiente[previa] = proxima;
+            } else {
+                masReciente = proxima;
+            }
+            if (proxima >= 0) {
+                anterior[proxima] = previa;
+            } else {
+                menosReciente = previa;
+            }
+        }
+
+        private void enlazarAlFrente(int casilla) {
+            anterior[casilla] = -1;
+            siguiente[casilla] = masReciente;
+            if (masReciente >= 0) {
+                anterior[masReciente] = casilla;
+            } else {
+                menosReciente = casilla;
+            }
+            masReciente = casilla;
+        }
+    }
+
+    private static int mezclar(long id) {
+        long h = id * 0x9E3779B97F4A7C15L;
+        return (int) (h ^ (h >>> 32));
+    }
+
+    /**
+     * Datos de un usuario en caché
+     */
+    public static final class Entrada {
+        private final String nombre;
+        private final double peso;
+
+        Entrada(String nombre, double peso) {
+            this.nombre = nombre;
+            this.peso = peso;
+        }
+
+        public String getNombre() {
+            return nombre;
+        }
+
+        public double getPeso() {
+            return peso;
+        }
+    }
+}
@@ -0,0 +1,273 @@
+package com.ejemplo;
+
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Control de admisión de un endpoint del controlador
+ * Combina un límite de solicitudes en curso (rechazo 503) con un límite de
+ * tasa de cubeta de fichas (rechazo 429). Los rechazos son inmediatos y traen
+ * una sugerencia de cuándo reintentar, en lugar de esperar turno con un hilo
+ * dormido.
+ *
+ * La cubeta se implementa como GCRA: un único AtomicLong guarda el instante
+ * teórico de la próxima llegada, así que admitir es una CAS sin cerrojos.
+ *
+ * Con límite adaptativo, la concurrencia permitida sigue la latencia observada
+ * (AIMD): crece de a una solicitud por ventana mientras la latencia se mantiene
+ * cerca de la mínima reciente y se recorta un 10 % cuando supera
+ * {@value #TOLERANCIA_LATENCIA} veces esa mínima, como mucho una vez por latencia
+ * típica para no desplomarse ante una sola ráfaga lenta. La mínima reciente es
+ * la de las últimas {@value #VENTANAS_MINIMA} ventanas de
+ * {@value #MUESTRAS_POR_VENTANA} muestras: sigue los cambios de carga de trabajo
+ * sin que una sobrecarga breve la suba. Límite, media y mínimas se actualizan con
+ * CAS, sin escrituras perdidas entre hilos.
+ */
+public final class ControlAdmision {
+
+    static final String SATURADO = "Servicio saturado, reintente más tarde";
+    static final String LIMITE_TASA = "Límite de solicitudes excedido";
+    static final double TOLERANCIA_LATENCIA = 2.0;
+    private static final double FACTOR_RECORTE = 0.9;
+    private static final int MUESTRAS_POR_VENTANA = 1_000;
+    private static final int VENTANAS_MINIMA = 8;
+    private static final long NANOS_POR_MS = 1_000_000;
+
+    private final int limiteMinimo;
+    private final int limiteMaximo;
+    private final boolean adaptativo;
+    private final long intervaloNs;
+    private final long toleranciaRafagaNs;
+
+    private final AtomicInteger enCurso = new AtomicInteger();
+    private final AtomicLong proximaLlegadaNs = new AtomicLong(Long.MIN_VALUE);
+    private final AtomicLong admitidas = new AtomicLong();
+    private final AtomicLong rechazadasConcurrencia = new AtomicLong();
+    private final AtomicLong rechazadasTasa = new AtomicLong();
+    // Bits del double con la concurrencia permitida (fraccionaria para el crecimiento aditivo)
+    private final AtomicLong limite = new AtomicLong();
+    private final AtomicLong latenciaMediaNs = new AtomicLong();
+    private final AtomicLong ultimoRecorteNs = new AtomicLong();
+    private final AtomicLong muestras = new AtomicLong();
+    // Mínima de cada ventana reciente, en un anillo, y la ventana a la que corresponde cada ranura
+    private final AtomicLongArray minimasPorVentana = new AtomicLongArray(VENTANAS_MINIMA);
+    private final AtomicLongArray ventanaDeRanura = new AtomicLongArray(VENTANAS_MINIMA);
+
+    /**
+     * Constructor con límite de concurrencia fijo
+     * @param maximoEnCurso Solicitudes en curso permitidas (0 sin límite)
+     * @param solicitudesPorSegundo Tasa sostenida permitida (0 sin límite)
+     * @param rafaga Solicitudes que pueden llegar juntas por encima de la tasa
+     */
+    public ControlAdmision(int maximoEnCurso, double solicitudesPorSegundo, int rafaga) {
+        this(maximoEnCurso, maximoEnCurso, solicitudesPorSegundo, rafaga, false);
+    }
+
+    private ControlAdmision(int limiteInicial, int limiteMaximo, double solicitudesPorSegundo, int rafaga,
+            boolean adaptativo) {
+        if (limiteInicial < 0 || limiteMaximo < limiteInicial || solicitudesPorSegundo < 0 || rafaga < 1) {
+            throw new IllegalArgumentException("Límites de admisión inválidos");
+        }
+        this.limiteMaximo = limiteMaximo == 0 ? Integer.MAX_VALUE : limiteMaximo;
+        this.limiteMinimo = adaptativo ? Math.min(limiteInicial, Math.max(1, limiteInicial / 4)) : this.limiteMaximo;
+        this.limite.set(Double.doubleToRawLongBits(limiteInicial == 0 ? Integer.MAX_VALUE : limiteInicial));
+        this.adaptativo = adaptativo;
+        this.intervaloNs = solicitudesPorSegundo == 0 ? 0 : (long) (1e9 / solicitudesPorSegundo);
+        this.toleranciaRafagaNs = intervaloNs * (rafaga - 1);
+        this.ultimoRecorteNs.set(System.nanoTime());
+        for (int i = 0; i < VENTANAS_MINIMA; i++) {
+            minimasPorVentana.set(i, Long.MAX_VALUE);
+            ventanaDeRanura.set(i, -1);
+        }
+    }
+
+    /**
+     * Control con límite de concurrencia adaptativo y sin límite de tasa
+     * @param limiteInicial Concurrencia permitida al empezar (el mínimo es un cuarto)
+     * @param limiteMaximo Concurrencia que el límite nunca supera
+     * @return control de admisión
+     */
+    public static ControlAdmision adaptativo(int limiteInicial, int limiteMaximo) {
+        if (limiteInicial < 1) {
+            throw new IllegalArgumentException("Límites de admisión inválidos");
+        }
+        return new ControlAdmision(limiteInicial, limiteMaximo, 0, 1, true);
+    }
+
+    /**
+     * Intenta admitir una solicitud
+     * Si se admite, el llamador debe invocar {@link #liberar(long)} al terminar.
+     * @return {@link Decision#ADMITIDA} o el rechazo con su sugerencia de reintento
+     */
+    public Decision admitir() {
+        int actual;
+        do {
+            actual = enCurso.get();
+            if (actual >= getLimite()) {
+                rechazadasConcurrencia.incrementAndGet();
+                // Se libera un lugar, en promedio, cada latencia media / concurrencia
+                long esperaNs = latenciaMediaNs.get() / Math.max(1, actual);
+                return new Decision(503, SATURADO, Math.max(1, esperaNs / NANOS_POR_MS));
+            }
+        } while (!enCurso.compareAndSet(actual, actual + 1));
+
+        if (intervaloNs > 0) {
+            long esperaNs = consumirFicha(System.nanoTime());
+            if (esperaNs > 0) {
+                enCurso.decrementAndGet();
+                rechazadasTasa.incrementAndGet();
+                return new Decision(429, LIMITE_TASA, Math.max(1, (esperaNs + NANOS_POR_MS - 1) / NANOS_POR_MS));
+            }
+        }
+        admitidas.incrementAndGet();
+        return Decision.ADMITIDA;
+    }
+
+    /**
+     * Termina una solicitud admitida
+     * @param latenciaNs Duración de la solicitud (alimenta el límite adaptativo y la sugerencia de reintento)
+     */
+    public void liberar(long latenciaNs) {
+        enCurso.decrementAndGet();
+        long media;
+        long nueva;
+        do {
+            media = latenciaMediaNs.get();
+            nueva = media == 0 ? latenciaNs : media + (latenciaNs - media) / 16;
+        } while (!latenciaMediaNs.compareAndSet(media, nueva));
+        if (adaptativo) {
+            ajustarLimite(latenciaNs, nueva);
+        }
+    }
+
+    /**
+     * GCRA: la llegada se admite si el instante teórico no se adelanta más que la ráfaga
+     * @return 0 si se consumió una ficha, o nanosegundos hasta la próxima disponible
+     */
+    private long consumirFicha(long ahora) {
+        while (true) {
+            long teorico = proximaLlegadaNs.get();
+            long base = teorico == Long.MIN_VALUE || teorico - ahora < 0 ? ahora : teorico;
+            long adelanto = base - ahora;
+            if (adelanto > toleranciaRafagaNs) {
+                return adelanto - toleranciaRafagaNs;
+            }
+            if (proximaLlegadaNs.compareAndSet(teorico, base + intervaloNs)) {
+                return 0;
+            }
+        }
+    }
+
+    private void ajustarLimite(long latenciaNs, long mediaNs) {
+        long minima = registrarMinima(latenciaNs);
+        if (latenciaNs <= minima * TOLERANCIA_LATENCIA) {
+            long actual;
+            long nuevo;
+            do {
+                actual = limite.get();
+                double valor = Double.longBitsToDouble(actual);
+                nuevo = Double.doubleToRawLongBits(Math.min(limiteMaximo, valor + 1.0 / valor));
+            } while (!limite.compareAndSet(actual, nuevo));
+            return;
+        }
+        // Un solo hilo gana cada recorte: el que consigue mover el instante del último
+        long ahora = System.nanoTime();
+        long anterior = ultimoRecorteNs.get();
+        if (ahora - anterior >= mediaNs && ultimoRecorteNs.compareAndSet(anterior, ahora)) {
+            long actual;
+            long nuevo;
+            do {
+                actual = limite.get();
+                nuevo = Double.doubleToRawLongBits(
+                    Math.max(limiteMinimo, Double.longBitsToDouble(actual) * FACTOR_RECORTE));
+            } while (!limite.compareAndSet(actual, nuevo));
+        }
+    }
+
+    /**
+     * Anota la muestra en la mínima de su ventana
+     * @return mínima de las últimas {@value #VENTANAS_MINIMA} ventanas, incluida la actual
+     */
+    private long registrarMinima(long latenciaNs) {
+        long ventana = muestras.getAndIncrement() / MUESTRAS_POR_VENTANA;
+        int ranura = (int) (ventana % VENTANAS_MINIMA);
+        long vista = ventanaDeRanura.get(ranura);
+        if (vista < ventana && ventanaDeRanura.compareAndSet(ranura, vista, ventana)) {
+            // La ranura pasa a la ventana nueva: su mínima anterior ya salió del anillo
+            minimasPorVentana.set(ranura, latenciaNs);
+        } else {
+            minimasPorVentana.accumulateAndGet(ranura, latenciaNs, Math::min);
+        }
+        long minima = Long.MAX_VALUE;
+        for (int i = 0; i < VENTANAS_MINIMA; i++) {
+            if (ventana - ventanaDeRanura.get(i) < VENTANAS_MINIMA) {
+                minima = Math.min(minima, minimasPorVentana.get(i));
+            }
+        }
+        return minima;
+    }
+
+    /**
+     * Concurrencia permitida en este momento
+     * @return límite vigente (Integer.MAX_VALUE si no hay límite)
+     */
+    public int getLimite() {
+        return (int) Double.longBitsToDouble(limite.get());
+    }
+
+    public int getEnCurso() {
+        return enCurso.get();
+    }
+
+    public long getAdmitidas() {
+        return admitidas.get();
+    }
+
+    public long getRechazadasConcurrencia() {
+        return rechazadasConcurrencia.get();
+    }
+
+    public long getRechazadasTasa() {
+        return rechazadasTasa.get();
+    }
+
+    /**
+     * Resultado de {@link #admitir()}
+     */
+    public static final class Decision {
+        static final Decision ADMITIDA = new Decision(0, null, 0);
+
+        private final int status;
+        private final String motivo;
+        private final long reintentarEnMs;
+
+        private Decision(int status, String motivo, long reintentarEnMs) {
+            this.status = status;
+            this.motivo = motivo;
+            this.reintentarEnMs = reintentarEnMs;
+        }
+
+        public boolean esAdmitida() {
+            return this == ADMITIDA;
+        }
+
+        /**
+         * @return 429 (tasa) o 503 (concurrencia) en los rechazos, 0 si fue admitida
+         */
+        public int getStatus() {
+            return status;
+        }
+
+        public String getMotivo() {
+            return motivo;
+        }
+
+        /**
+         * @return milisegundos sugeridos antes de reintentar, 0 si fue admitida
+         */
+        public long getReintentarEnMs() {
+            return reintentarEnMs;
+        }
+    }
+}
@@ -0,0 +1,194 @@
+package com.ejemplo;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+/**
+ * Diccionario de nombres deduplicados almacenados como UTF-8 en bloques contiguos
+ * Cada nombre distinto se guarda una sola vez y se referencia con un entero.
+ * Las escrituras deben estar sincronizadas externamente; las lecturas de
+ * referencias ya publicadas pueden hacerse sin bloqueo.
+ */
+class DiccionarioNombres {
+
+    private static final int BITS_ARENA = 20;
+    private static final int TAMANO_ARENA = 1 << BITS_ARENA;
+    private static final int BITS_BLOQUE = 14;
+    private static final int TAMANO_BLOQUE = 1 << BITS_BLOQUE;
+    private static final int MAXIMO_BYTES = 0xFFFF;
+
+    private final boolean fueraDelHeap;
+
+    private volatile ByteBuffer[] arenas = new ByteBuffer[0];
+    private volatile long[][] posiciones = new long[0][];
+    private int cantidad;
+    private long bytesUsados;
+
+    // Tabla de deduplicación: referencia + 1 (0 = libre) y hash del nombre
+    private int[] tabla = new int[1024];
+    private int[] hashes = new int[1024];
+
+    /**
+     * Constructor del diccionario
+     * @param fueraDelHeap true para reservar las arenas con ByteBuffer directo
+     */
+    DiccionarioNombres(boolean fueraDelHeap) {
+        this.fueraDelHeap = fueraDelHeap;
+    }
+
+    /**
+     * Registra un nombre y devuelve su referencia, reutilizando la existente
+     * @param nombre Nombre a registrar
+     * @return referencia del nombre en el diccionario
+     */
+    int registrar(String nombre) {
+        byte[] bytes = nombre.getBytes(StandardCharsets.UTF_8);
+        if (bytes.length > MAXIMO_BYTES) {
+            throw new IllegalArgumentException("Nombre demasiado largo: " + bytes.length + " bytes");
+        }
+        int hash = Arrays.hashCode(bytes);
+        int mascara = tabla.length - 1;
+        int i = mezclar(hash) & mascara;
+        while (tabla[i] != 0) {
+            int ref = tabla[i] - 1;
+            if (hashes[i] == hash && mismosBytes(ref, bytes)) {
+                return ref;
+            }
+            i = (i + 1) & mascara;
+        }
+        int ref = agregar(bytes);
+        tabla[i] = ref + 1;
+        hashes[i] = hash;
+        if (cantidad * 2 > tabla.length) {
+            redimensionarTabla();
+        }
+        return ref;
+    }
+
+    /**
+     * Obtiene el nombre asociado a una referencia
+     * @param ref Referencia devuelta por {@link #registrar(String)}
+     * @return nombre decodificado
+     */
+    String obtener(int ref) {
+        long posicion = posiciones[ref >>> BITS_BLOQUE][ref & (TAMANO_BLOQUE - 1)];
+        ByteBuffer arena = arenas[(int) (posicion >>> BITS_ARENA)];
+        int offset = (int) (posicion & (TAMANO_ARENA - 1));
+        int longitud = arena.getShort(offset) & 0xFFFF;
+        byte[] bytes = new byte[longitud];
+        for (int j = 0; j < longitud; j++) {
+            bytes[j] = arena.get(offset + 2 + j);
+        }
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Decodifica un nombre directamente en un buffer de caracteres, sin crear un String
+     * @param ref Referencia devuelta por {@link #registrar(String)}
+     * @param destino Buffer al que se agrega el nombre
+     */
+    void copiar(int ref, StringBuilder destino) {
+        long posicion = posiciones[ref >>> BITS_BLOQUE][ref & (TAMANO_BLOQUE - 1)];
+        ByteBuffer arena = arenas[(int) (posicion >>> BITS_ARENA)];
+        int offset = (int) (posicion & (TAMANO_ARENA - 1)) + 2;
+        int fin = offset + (arena.getShort(offset - 2) & 0xFFFF);
+        // Los bytes vienen de String.getBytes(UTF_8), por lo que son UTF-8 bien formado
+        while (offset < fin) {
+            int b = arena.get(offset++);
+            if (b >= 0) {
+                destino.append((char) b);
+            } else if ((b & 0xE0) == 0xC0) {
+                destino.append((char) (((b & 0x1F) << 6) | (arena.get(offset++) & 0x3F)));
+            } else if ((b & 0xF0) == 0xE0) {
+                destino.append((char) (((b & 0x0F) << 12) | ((arena.get(offset++) & 0x3F) << 6)
+                    | (arena.get(offset++) & 0x3F)));
+            } else {
+                int codigo = ((b & 0x07) << 18) | ((arena.get(offset++) & 0x3F) << 12)
+                    | ((arena.get(offset++) & 0x3F) << 6) | (arena.get(offset++) & 0x3F);
+                destino.append(Character.highSurrogate(codigo)).append(Character.lowSurrogate(codigo));
+            }
+        }
+    }
+
+    /**
+     * Cantidad de nombres distintos registrados
+     * @return nombres distintos
+     */
+    int cantidad() {
+        return cantidad;
+    }
+
+    /**
+     * Bytes ocupados por los nombres, incluyendo el prefijo de longitud
+     * @return bytes usados en las arenas
+     */
+    long bytesUsados() {
+        return bytesUsados;
+    }
+
+    private int agregar(byte[] bytes) {
+        int requerido = bytes.length + 2;
+        ByteBuffer[] actuales = arenas;
+        ByteBuffer arena = actuales.length == 0 ? null : actuales[actuales.length - 1];
+        if (arena == null || arena.remaining() < requerido) {
+            arena = fueraDelHeap ? ByteBuffer.allocateDirect(TAMANO_ARENA) : ByteBuffer.allocate(TAMANO_ARENA);
+            actuales = Arrays.copyOf(actuales, actuales.length + 1);
+            actuales[actuales.length - 1] = arena;
+        }
+        long posicion = ((long) (actuales.length - 1) << BITS_ARENA) | arena.position();
+        arena.putShort((short) bytes.length);
+        arena.put(bytes);
+        arenas = actuales;
+
+        int ref = cantidad;
+        long[][] bloques = posiciones;
+        if ((ref >>> BITS_BLOQUE) == bloques.length) {
+            bloques = Arrays.copyOf(bloques, bloques.length + 1);
+            bloques[bloques.length - 1] = new long[TAMANO_BLOQUE];
+        }
+        bloques[ref >>> BITS_BLOQUE][ref & (TAMANO_BLOQUE - 1)] = posicion;
+        posiciones = bloques;
+        cantidad++;
+        bytesUsados += requerido;
+        return ref;
+    }
+
+    private boolean mismosBytes(int ref, byte[] bytes) {
+        long posicion = posiciones[ref >>> BITS_BLOQUE][ref & (TAMANO_BLOQUE - 1)];
+        ByteBuffer arena = arenas[(int) (posicion >>> BITS_ARENA)];
+        int offset = (int) (posicion & (TAMANO_ARENA - 1));
+        if ((arena.getShort(offset) & 0xFFFF) != bytes.length) {
+            return false;
+        }
+        for (int j = 0; j < bytes.length; j++) {
+            if (arena.get(offset + 2 + j) != bytes[j]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private void redimensionarTabla() {
+        int[] nuevaTabla = new int[tabla.length * 2];
+        int[] nuevosHashes = new int[tabla.length * 2];
+        int mascara = nuevaTabla.length - 1;
+        for (int j = 0; j < tabla.length; j++) {
+            if (tabla[j] != 0) {
+                int i = mezclar(hashes[j]) & mascara;
+                while (nuevaTabla[i] != 0) {
+                    i = (i + 1) & mascara;
+                }
+                nuevaTabla[i] = tabla[j];
+                nuevosHashes[i] = hashes[j];
+            }
+        }
+        tabla = nuevaTabla;
+        hashes = nuevosHashes;
+    }
+
+    private static int mezclar(int hash) {
+        int h = hash * 0x9E3779B9;
+        return h ^ (h >>> 16);
+    }
+}
@@ -0,0 +1,57 @@
+package com.ejemplo;
+
+import java.util.Random;
+
+/**
+ * Distribución de Zipf sobre los rangos 0..n-1 (el rango 0 es el más frecuente)
+ * Precalcula la función de distribución acumulada y muestrea con búsqueda
+ * binaria, por lo que cada muestra cuesta O(log n) sin asignar memoria.
+ */
+public class DistribucionZipf {
+
+    private final double[] acumulada;
+
+    /**
+     * Constructor de la distribución
+     * @param n Cantidad de elementos
+     * @param exponente Exponente s (0.99 es típico para accesos a caché)
+     */
+    public DistribucionZipf(int n, double exponente) {
+        if (n <= 0) {
+            throw new IllegalArgumentException("La distribución necesita al menos un elemento");
+        }
+        acumulada = new double[n];
+        double suma = 0;
+        for (int i = 0; i < n; i++) {
+            suma += 1.0 / Math.pow(i + 1, exponente);
+            acumulada[i] = suma;
+        }
+        for (int i = 0; i < n; i++) {
+            acumulada[i] /= suma;
+        }
+    }
+
+    /**
+     * Extrae un rango según la distribución
+     * @param aleatorio Fuente de aleatoriedad (p. ej. ThreadLocalRandom.current())
+     * @return rango entre 0 y n-1
+     */
+    public int siguiente(Random aleatorio) {
+        double u = aleatorio.nextDouble();
+        int bajo = 0;
+        int alto = acumulada.length - 1;
+        while (bajo < alto) {
+            int medio = (bajo + alto) >>> 1;
+            if (acumulada[medio] < u) {
+                bajo = medio + 1;
+            } else {
+                alto = medio;
+            }
+        }
+        return bajo;
+    }
+
+    public int tamano() {
+        return acumulada.length;
+    }
+}
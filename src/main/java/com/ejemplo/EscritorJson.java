@@ -0,0 +1,288 @@
+package com.ejemplo;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Escritor JSON en streaming sobre un ByteBuffer (normalmente directo)
+ * Codifica cadenas a UTF-8 carácter a carácter y escribe los números dígito a
+ * dígito, sin pasar por String ni StringBuilder. Las comas entre campos y
+ * elementos se insertan solas según el anidamiento.
+ *
+ * Los double se escriben con la representación decimal más corta de hasta
+ * {@value #DECIMALES_MAXIMOS} decimales que vuelve a leerse como el mismo
+ * valor; si no existe (p. ej. 1/3) se recurre a Double.toString, que sí reserva
+ * memoria. {@link #valor(double, int)} redondea de forma explícita.
+ *
+ * No es seguro entre hilos; se usa uno por solicitud o por hilo.
+ */
+public final class EscritorJson {
+
+    private static final int DECIMALES_MAXIMOS = 9;
+    private static final long[] POTENCIAS_10 = {
+        1L, 10L, 100L, 1_000L, 10_000L, 100_000L, 1_000_000L, 10_000_000L, 100_000_000L, 1_000_000_000L
+    };
+    private static final double LIMITE_EXACTO = 0x1p53;
+    private static final byte[] NULL = {'n', 'u', 'l', 'l'};
+    private static final byte[] TRUE = {'t', 'r', 'u', 'e'};
+    private static final byte[] FALSE = {'f', 'a', 'l', 's', 'e'};
+    private static final byte[] HEX = {'0', '1', '2', '3', '4', '5', '6', '7', '8', '9', 'a', 'b', 'c', 'd', 'e', 'f'};
+    private static final int PROFUNDIDAD_MAXIMA = 32;
+
+    private final byte[] digitos = new byte[20];
+    // Por nivel de anidamiento: true si ya se escribió algún elemento
+    private final boolean[] conElementos = new boolean[PROFUNDIDAD_MAXIMA];
+    private ByteBuffer destino;
+    private int profundidad;
+    private boolean despuesDeCampo;
+
+    /**
+     * Prepara el escritor para un documento nuevo
+     * @param buffer Buffer de destino; se escribe desde su posición actual
+     * @return este escritor
+     */
+    public EscritorJson iniciar(ByteBuffer buffer) {
+        this.destino = buffer;
+        this.profundidad = 0;
+        this.despuesDeCampo = false;
+        return this;
+    }
+
+    public EscritorJson inicioObjeto() {
+        separar();
+        destino.put((byte) '{');
+        abrirNivel();
+        return this;
+    }
+
+    public EscritorJson finObjeto() {
+        profundidad--;
+        destino.put((byte) '}');
+        return this;
+    }
+
+    public EscritorJson inicioArreglo() {
+        separar();
+        destino.put((byte) '[');
+        abrirNivel();
+        return this;
+    }
+
+    public EscritorJson finArreglo() {
+        profundidad--;
+        destino.put((byte) ']');
+        return this;
+    }
+
+    /**
+     * Escribe el nombre de un campo del objeto actual
+     * @param nombre Nombre ASCII sin caracteres a escapar (las claves son constantes)
+     */
+    public EscritorJson campo(String nombre) {
+        separar();
+        destino.put((byte) '"');
+        for (int i = 0; i < nombre.length(); i++) {
+            destino.put((byte) nombre.charAt(i));
+        }
+        destino.put((byte) '"').put((byte) ':');
+        despuesDeCampo = true;
+        return this;
+    }
+
+    public EscritorJson valor(CharSequence texto) {
+        separar();
+        if (texto == null) {
+            destino.put(NULL);
+            return this;
+        }
+        destino.put((byte) '"');
+        int longitud = texto.length();
+        for (int i = 0; i < longitud; i++) {
+            char c = texto.charAt(i);
+            if (c < 0x80) {
+                escribirAscii(c);
+            } else if (c < 0x800) {
+                destino.put((byte) (0xC0 | (c >> 6))).put((byte) (0x80 | (c & 0x3F)));
+            } else if (Character.isHighSurrogate(c) && i + 1 < longitud && Character.isLowSurrogate(texto.charAt(i + 1))) {
+                int punto = Character.toCodePoint(c, texto.charAt(++i));
+                destino.put((byte) (0xF0 | (punto >> 18)))
+                    .put((byte) (0x80 | ((punto >> 12) & 0x3F)))
+                    .put((byte) (0x80 | ((punto >> 6) & 0x3F)))
+                    .put((byte) (0x80 | (punto & 0x3F)));
+            } else if (Character.isSurrogate(c)) {
+                escribirEscape(c); // sustituto suelto: válido en JSON solo como \\uXXXX
+            } else {
+                destino.put((byte) (0xE0 | (c >> 12)))
+                    .put((byte) (0x80 | ((c >> 6) & 0x3F)))
+                    .put((byte) (0x80 | (c & 0x3F)));
+            }
+        }
+        destino.put((byte) '"');
+        return this;
+    }
+
+    public EscritorJson valor(long numero) {
+        separar();
+        escribirEntero(numero);
+        return this;
+    }
+
+    public EscritorJson valor(boolean logico) {
+        separar();
+        destino.put(logico ? TRUE : FALSE);
+        return this;
+    }
+
+    /**
+     * Escribe un double con la representación decimal más corta que lo conserva
+     * @param numero Valor; NaN e infinitos se escriben como null
+     */
+    public EscritorJson valor(double numero) {
+        separar();
+        if (Double.isNaN(numero) || Double.isInfinite(numero)) {
+            destino.put(NULL);
+            return this;
+        }
+        for (int decimales = 0; decimales <= DECIMALES_MAXIMOS; decimales++) {
+            double escalado = numero * POTENCIAS_10[decimales];
+            if (Math.abs(escalado) >= LIMITE_EXACTO) {
+                break;
+            }
+            double entero = Math.rint(escalado);
+            if (entero / POTENCIAS_10[decimales] == numero) {
+                escribirDecimal((long) entero, decimales);
+                return this;
+            }
+        }
+        String texto = Double.toString(numero);
+        for (int i = 0; i < texto.length(); i++) {
+            destino.put((byte) texto.charAt(i));
+        }
+        return this;
+    }
+
+    /**
+     * Escribe un double redondeado a una cantidad fija de decimales
+     * @param numero Valor; NaN e infinitos se escriben como null
+     * @param decimales Decimales a conservar (0 a {@value #DECIMALES_MAXIMOS})
+     */
+    public EscritorJson valor(double numero, int decimales) {
+        double escalado = numero * POTENCIAS_10[decimales];
+        if (Double.isNaN(numero) || Double.isInfinite(numero) || Math.abs(escalado) >= LIMITE_EXACTO) {
+            return valor(numero);
+        }
+        separar();
+        long redondeado = Math.round(escalado);
+        while (decimales > 0 && redondeado % 10 == 0) {
+            redondeado /= 10;
+            decimales--;
+        }
+        escribirDecimal(redondeado, decimales);
+        return this;
+    }
+
+    public EscritorJson valorNulo() {
+        separar();
+        destino.put(NULL);
+        return this;
+    }
+
+    /**
+     * @return bytes escritos en el buffer de destino desde su inicio
+     */
+    public int posicion() {
+        return destino.position();
+    }
+
+    private void abrirNivel() {
+        conElementos[profundidad++] = false;
+    }
+
+    private void separar() {
+        if (despuesDeCampo) {
+            despuesDeCampo = false;
+            return;
+        }
+        if (profundidad > 0) {
+            if (conElementos[profundidad - 1]) {
+                destino.put((byte) ',');
+            }
+            conElementos[profundidad - 1] = true;
+        }
+    }
+
+    private void escribirAscii(char c) {
+        switch (c) {
+            case '"':
+                destino.put((byte) '\\').put((byte) '"');
+                break;
+            case '\\':
+                destino.put((byte) '\\').put((byte) '\\');
+                break;
+            case '\n':
+                destino.put((byte) '\\').put((byte) 'n');
+                break;
+            case '\r':
+                destino.put((byte) '\\').put((byte) 'r');
+                break;
+            case '\t':
+                destino.put((byte) '\\').put((byte) 't');
+                break;
+            default:
+                if (c < 0x20) {
+                    escribirEscape(c);
+                } else {
+                    destino.put((byte) c);
+                }
+        }
+    }
+
+    private void escribirEscape(char c) {
+        destino.put((byte) '\\').put((byte) 'u')
+            .put(HEX[(c >> 12) & 0xF]).put(HEX[(c >> 8) & 0xF])
+            .put(HEX[(c >> 4) & 0xF]).put(HEX[c & 0xF]);
+    }
+
+    /**
+     * Escribe {@code escalado / 10^decimales} con {@code decimales} cifras
+     * decimales, y al menos una (70 se escribe 70.0, como Double.toString)
+     */
+    private void escribirDecimal(long escalado, int decimales) {
+        if (decimales == 0) {
+            escribirEntero(escalado);
+            destino.put((byte) '.').put((byte) '0');
+            return;
+        }
+        if (escalado < 0) {
+            destino.put((byte) '-');
+            escalado = -escalado;
+        }
+        long potencia = POTENCIAS_10[decimales];
+        escribirEntero(escalado / potencia);
+        destino.put((byte) '.');
+        long fraccion = escalado % potencia;
+        for (long divisor = potencia / 10; divisor > 0; divisor /= 10) {
+            destino.put((byte) ('0' + fraccion / divisor % 10));
+        }
+    }
+
+    private void escribirEntero(long numero) {
+        if (numero == Long.MIN_VALUE) {
+            // -numero desborda; no aparece en las respuestas, pero se admite
+            String texto = Long.toString(numero);
+            for (int i = 0; i < texto.length(); i++) {
+                destino.put((byte) texto.charAt(i));
+            }
+            return;
+        }
+        if (numero < 0) {
+            destino.put((byte) '-');
+            numero = -numero;
+        }
+        int i = digitos.length;
+        do {
+            digitos[--i] = (byte) ('0' + numero % 10);
+            numero /= 10;
+        } while (numero > 0);
+        destino.put(digitos, i, digitos.length - i);
+    }
+}
@@ -0,0 +1,348 @@
+package com.ejemplo;
+
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Agregados de peso de la población mantenidos de forma incremental
+ * Cada alta suma el peso y cada actualización resta el anterior y suma el
+ * nuevo, de modo que consultar cuesta O(1) respecto a la cantidad de usuarios.
+ * Los acumuladores son LongAdder para soportar muchas actualizaciones
+ * concurrentes sin un contador compartido.
+ *
+ * Las sumas se llevan en unidades enteras de 10 g para que restar un peso
+ * deshaga exactamente lo sumado (con double el error se acumularía). Los pesos
+ * se limitan a ±{@value #LIMITE_KG} kg para que la suma de cuadrados no desborde.
+ * Mínimo, máximo y percentiles son aproximados: salen de un histograma de
+ * cubetas fijas de {@value #ANCHO_CUBETA_KG} kg entre 0 y {@value #LIMITE_KG} kg.
+ * Los pesos fuera de ese rango, que son raros, se cuentan uno a uno para que
+ * el mínimo y el máximo sigan siendo exactos cuando se quitan o cambian.
+ * Como todo son sumas y conteos por cubeta, los agregados de varias
+ * particiones se combinan sin pérdida (ver {@link #combinar}).
+ */
+public class EstadisticasPoblacion {
+
+    static final double ANCHO_CUBETA_KG = 0.5;
+    static final double LIMITE_KG = 1000.0;
+    private static final double UNIDADES_POR_KG = 100.0;
+    private static final int CUBETAS = (int) (LIMITE_KG / ANCHO_CUBETA_KG);
+
+    private final LongAdder cantidad = new LongAdder();
+    private final LongAdder suma = new LongAdder();
+    private final LongAdder sumaCuadrados = new LongAdder();
+    // [0] = menores que 0 kg, [1..CUBETAS] = rango normal, [CUBETAS + 1] = mayores que el límite
+    private final LongAdder[] cubetas = new LongAdder[CUBETAS + 2];
+    // Peso fuera de rango -> cantidad de usuarios con ese peso (las entradas en 0 se eliminan)
+    private final ConcurrentSkipListMap<Double, Long> fueraDeRango = new ConcurrentSkipListMap<>();
+
+    public EstadisticasPoblacion() {
+        for (int i = 0; i < cubetas.length; i++) {
+            cubetas[i] = new LongAdder();
+        }
+    }
+
+    /**
+     * Registra un usuario nuevo
+     * @param peso Peso inicial del usuario
+     */
+    public void agregar(double peso) {
+        acumular(peso, 1);
+    }
+
+    /**
+     * Retira un usuario de los agregados
+     * @param peso Peso que tenía el usuario
+     */
+    public void quitar(double peso) {
+        acumular(peso, -1);
+    }
+
+    /**
+     * Registra el cambio de peso de un usuario existente
+     * @param pesoAnterior Peso antes del cambio
+     * @param pesoNuevo Peso después del cambio
+     */
+    public void cambiar(double pesoAnterior, double pesoNuevo) {
+        if (Double.isNaN(pesoAnterior) || Double.isNaN(pesoNuevo)) {
+            return;
+        }
+        acumular(pesoAnterior, -1);
+        acumular(pesoNuevo, 1);
+    }
+
+    /**
+     * Reconstruye los agregados recorriendo un repositorio completo
+     * Se usa al reemplazar o restaurar el repositorio, no en el camino de consulta.
+     * @param repositorio Repositorio a recorrer
+     */
+    public void recalcular(RepositorioUsuarios repositorio) {
+        reiniciar();
+        repositorio.recorrer((id, nombre, peso) -> agregar(peso));
+    }
+
+    /**
+     * Vacía todos los agregados
+     */
+    public void reiniciar() {
+        cantidad.reset();
+        suma.reset();
+        sumaCuadrados.reset();
+        for (LongAdder cubeta : cubetas) {
+            cubeta.reset();
+        }
+        fueraDeRango.clear();
+    }
+
+    /**
+     * Calcula un resumen de la población en tiempo constante
+     * Con actualizaciones concurrentes el resumen puede mezclar estados
+     * cercanos en el tiempo, pero nunca recorre los usuarios.
+     * @return resumen inmutable
+     */
+    public Resumen resumir() {
+        return combinar(Collections.singletonList(this));
+    }
+
+    /**
+     * Resume la unión de varias poblaciones disjuntas (p. ej. una por partición)
+     * El resultado es el mismo que si todos los usuarios estuvieran en una sola.
+     * @param partes Agregados de cada parte
+     * @return resumen inmutable
+     */
+    public static Resumen combinar(Collection<EstadisticasPoblacion> partes) {
+        long total = 0;
+        long sumaTotal = 0;
+        long sumaCuadradosTotal = 0;
+        long[] conteos = new long[CUBETAS + 2];
+        double minimo = Double.POSITIVE_INFINITY;
+        double maximo = Double.NEGATIVE_INFINITY;
+        for (EstadisticasPoblacion parte : partes) {
+            total += parte.cantidad.sum();
+            sumaTotal += parte.suma.sum();
+            sumaCuadradosTotal += parte.sumaCuadrados.sum();
+            for (int i = 0; i < conteos.length; i++) {
+                conteos[i] += parte.cubetas[i].sum();
+            }
+            minimo = Math.min(minimo, primeroPresente(parte.fueraDeRango, Double.POSITIVE_INFINITY));
+            maximo = Math.max(maximo, primeroPresente(parte.fueraDeRango.descendingMap(), Double.NEGATIVE_INFINITY));
+        }
+        long enCubetas = 0;
+        for (int i = 0; i < conteos.length; i++) {
+            conteos[i] = Math.max(0, conteos[i]);
+            enCubetas += conteos[i];
+        }
+        if (total <= 0 || enCubetas == 0) {
+            return new Resumen(0, Double.NaN, Double.NaN, Double.NaN, Double.NaN,
+                Double.NaN, Double.NaN, Double.NaN);
+        }
+        double media = sumaTotal / UNIDADES_POR_KG / total;
+        double mediaCuadrados = sumaCuadradosTotal / (UNIDADES_POR_KG * UNIDADES_POR_KG) / total;
+        double varianza = Math.max(0.0, mediaCuadrados - media * media);
+        return new Resumen(total, media, varianza,
+            limiteInferior(conteos, minimo), limiteSuperior(conteos, maximo),
+            percentil(conteos, enCubetas, 0.50, minimo, maximo),
+            percentil(conteos, enCubetas, 0.90, minimo, maximo),
+            percentil(conteos, enCubetas, 0.99, minimo, maximo));
+    }
+
+    private void acumular(double peso, int signo) {
+        if (Double.isNaN(peso)) {
+            return;
+        }
+        long unidades = Math.round(Math.max(-LIMITE_KG, Math.min(LIMITE_KG, peso)) * UNIDADES_POR_KG);
+        cantidad.add(signo);
+        suma.add(signo * unidades);
+        sumaCuadrados.add(signo * unidades * unidades);
+        int cubeta = cubeta(peso);
+        cubetas[cubeta].add(signo);
+        if (cubeta == 0 || cubeta == CUBETAS + 1) {
+            fueraDeRango.merge(peso, (long) signo, (actual, delta) -> actual + delta == 0 ? null : actual + delta);
+        }
+    }
+
+    /**
+     * Primer peso con usuarios en el orden del mapa
+     * Un quitar concurrente puede adelantarse a su agregar y dejar un conteo
+     * negativo por un instante; esas entradas no cuentan.
+     */
+    private static double primeroPresente(NavigableMap<Double, Long> pesos, double siNoHay) {
+        for (Map.Entry<Double, Long> entrada : pesos.entrySet()) {
+            if (entrada.getValue() > 0) {
+                return entrada.getKey();
+            }
+        }
+        return siNoHay;
+    }
+
+    private static int cubeta(double peso) {
+        if (peso < 0) {
+            return 0;
+        }
+        if (peso >= LIMITE_KG) {
+            return CUBETAS + 1;
+        }
+        return 1 + (int) (peso / ANCHO_CUBETA_KG);
+    }
+
+    private static double limiteInferior(long[] conteos, double minimoFueraDeRango) {
+        if (conteos[0] > 0) {
+            return minimoFueraDeRango;
+        }
+        for (int i = 1; i <= CUBETAS; i++) {
+            if (conteos[i] > 0) {
+                return (i - 1) * ANCHO_CUBETA_KG;
+            }
+        }
+        return LIMITE_KG;
+    }
+
+    private static double limiteSuperior(long[] conteos, double maximoFueraDeRango) {
+        if (conteos[CUBETAS + 1] > 0) {
+            return maximoFueraDeRango;
+        }
+        for (int i = CUBETAS; i >= 1; i--) {
+            if (conteos[i] > 0) {
+                return i * ANCHO_CUBETA_KG;
+            }
+        }
+        return 0.0;
+    }
+
+    /**
+     * Percentil interpolado linealmente dentro de la cubeta que lo contiene
+     */
+    private static double percentil(long[] conteos, long total, double fraccion,
+            double minimoFueraDeRango, double maximoFueraDeRango) {
+        double objetivo = fraccion * total;
+        long acumulado = 0;
+        for (int i = 0; i < conteos.length; i++) {
+            if (conteos[i] == 0) {
+                continue;
+            }
+            if (acumulado + conteos[i] >= objetivo) {
+                if (i == 0) {
+                    return minimoFueraDeRango;
+                }
+                if (i == CUBETAS + 1) {
+                    return maximoFueraDeRango;
+                }
+                double dentro = (objetivo - acumulado) / conteos[i];
+                return (i - 1 + dentro) * ANCHO_CUBETA_KG;
+            }
+            acumulado += conteos[i];
+        }
+        return limiteSuperior(conteos, maximoFueraDeRango);
+    }
+
+    /**
+     * Resumen inmutable de la población
+     */
+    public static final class Resumen {
+        private final long cantidad;
+        private final double media;
+        private final double varianza;
+        private final double minimo;
+        private final double maximo;
+        private final double p50;
+        private final double p90;
+        private final double p99;
+
+        Resumen(long cantidad, double media, double varianza, double minimo, double maximo,
+                double p50, double p90, double p99) {
+            this.cantidad = cantidad;
+            this.media = media;
+            this.varianza = varianza;
+            this.minimo = minimo;
+            this.maximo = maximo;
+            this.p50 = p50;
+            this.p90 = p90;
+            this.p99 = p99;
+        }
+
+        public long getCantidad() {
+            return cantidad;
+        }
+
+        public double getMedia() {
+            return media;
+        }
+
+        public double getVarianza() {
+            return varianza;
+        }
+
+        public double getDesviacion() {
+            return Math.sqrt(varianza);
+        }
+
+        /**
+         * Mínimo aproximado (límite inferior de la primera cubeta con usuarios)
+         * @return peso mínimo aproximado o NaN sin usuarios
+         */
+        public double getMinimo() {
+            return minimo;
+        }
+
+        /**
+         * Máximo aproximado (límite superior de la última cubeta con usuarios)
+         * @return peso máximo aproximado o NaN sin usuarios
+         */
+        public double getMaximo() {
+            return maximo;
+        }
+
+        public double getP50() {
+            return p50;
+        }
+
+        public double getP90() {
+            return p90;
+        }
+
+        public double getP99() {
+            return p99;
+        }
+
+        /**
+         * Forma de mapa para la API
+         * @return mapa inmutable con los agregados
+         */
+        public Map<String, Object> aMapa() {
+            return Map.of(
+                "cantidad", cantidad,
+                "media", media,
+                "desviacion", getDesviacion(),
+                "minimo", minimo,
+                "maximo", maximo,
+                "p50", p50,
+                "p90", p90,
+                "p99", p99
+            );
+        }
+
+        /**
+         * Escribe el resumen como objeto JSON
+         * Los pesos van redondeados a 3 decimales: las sumas se llevan en
+         * unidades de 10 g y los percentiles salen de cubetas de
+         * {@value EstadisticasPoblacion#ANCHO_CUBETA_KG} kg, así que más cifras
+         * no aportan información.
+         * @param json Escritor posicionado donde va el valor
+         */
+        public void escribirJson(EscritorJson json) {
+            json.inicioObjeto()
+                .campo("cantidad").valor(cantidad)
+                .campo("media").valor(media, 3)
+                .campo("desviacion").valor(getDesviacion(), 3)
+                .campo("minimo").valor(minimo, 3)
+                .campo("maximo").valor(maximo, 3)
+                .campo("p50").valor(p50, 3)
+                .campo("p90").valor(p90, 3)
+                .campo("p99").valor(p99, 3)
+                .finObjeto();
+        }
+    }
+}
@@ -0,0 +1,239 @@
+package com.ejemplo;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.WritableByteChannel;
+import java.util.Locale;
+
+/**
+ * Exportación en streaming de usuarios a CSV o NDJSON
+ * Recorre el repositorio con {@link RepositorioUsuarios#recorrer} y escribe
+ * cada fila en un ByteBuffer directo que se vuelca al canal al llenarse, así
+ * que la memoria usada no depende de la cantidad de usuarios. Los números se
+ * escriben con {@link EscritorJson}, sin pasar por String.
+ *
+ * Cada fila es coherente: el filtro y la salida usan el mismo peso leído una
+ * sola vez, aunque haya actualizaciones concurrentes. El archivo no es una
+ * foto de un único instante: como en {@link InstantaneaUsuarios}, un usuario
+ * actualizado durante el recorrido puede salir con el peso anterior o el nuevo.
+ *
+ * CSV: cabecera {@code id,nombre,peso}; el nombre va entre comillas si contiene
+ * comas, comillas o saltos de línea. NDJSON: {"id":...,"nombre":...,"peso":...}
+ * por línea.
+ *
+ * No es seguro entre hilos; se usa una instancia por exportación o por hilo.
+ */
+public final class ExportadorUsuarios {
+
+    static final int TAMANO_BUFFER = 64 * 1024;
+    private static final byte[] CABECERA_CSV = {'i', 'd', ',', 'n', 'o', 'm', 'b', 'r', 'e', ',', 'p', 'e', 's', 'o', '\n'};
+    private static final byte[] PREFIJO_ID = {'u', 's', 'e', 'r', '_'};
+    // Peor caso por carácter: 3 bytes UTF-8 (o 6 de un escape \\uXXXX en JSON)
+    private static final int BYTES_POR_CARACTER = 6;
+    private static final int BYTES_FIJOS_FILA = 96;
+
+    private final ImportadorUsuarios.Formato formato;
+    private final EscritorJson escritor = new EscritorJson();
+    private ByteBuffer buffer = ByteBuffer.allocateDirect(TAMANO_BUFFER);
+
+    /**
+     * Constructor del exportador
+     * @param formato Formato de salida (el mismo enum que la importación)
+     */
+    public ExportadorUsuarios(ImportadorUsuarios.Formato formato) {
+        this.formato = formato;
+    }
+
+    /**
+     * Exporta los usuarios que cumplen el filtro
+     * @param repositorio Repositorio a recorrer
+     * @param filtro Filtro de filas ({@link Filtro#todos()} para no filtrar)
+     * @param canal Destino; no se cierra
+     * @return cantidad de usuarios escritos
+     * @throws IOException si el canal falla
+     */
+    public long exportar(RepositorioUsuarios repositorio, Filtro filtro, WritableByteChannel canal)
+            throws IOException {
+        buffer.clear();
+        if (formato == ImportadorUsuarios.Formato.CSV) {
+            buffer.put(CABECERA_CSV);
+        }
+        long[] escritos = new long[1];
+        // El primer fallo del canal corta el recorrido: seguir filtrando y
+        // formateando el resto del repositorio no tiene destino
+        try {
+            repositorio.recorrer((id, nombre, peso) -> {
+                if (!filtro.acepta(nombre, peso)) {
+                    return;
+                }
+                try {
+                    asegurar(canal, BYTES_FIJOS_FILA + nombre.length() * BYTES_POR_CARACTER);
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+                if (formato == ImportadorUsuarios.Formato.CSV) {
+                    escribirCsv(id, nombre, peso);
+                } else {
+                    escribirNdjson(id, nombre, peso);
+                }
+                escritos[0]++;
+            });
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+        vaciar(canal);
+        return escritos[0];
+    }
+
+    private void escribirCsv(long id, String nombre, double peso) {
+        escritor.iniciar(buffer);
+        buffer.put(PREFIJO_ID);
+        escritor.valor(id);
+        buffer.put((byte) ',');
+        boolean comillas = requiereComillas(nombre);
+        if (comillas) {
+            buffer.put((byte) '"');
+        }
+        for (int i = 0; i < nombre.length(); i++) {
+            char c = nombre.charAt(i);
+            if (c == '"') {
+                buffer.put((byte) '"');
+            }
+            if (c < 0x80) {
+                buffer.put((byte) c);
+            } else if (Character.isHighSurrogate(c) && i + 1 < nombre.length()
+                    && Character.isLowSurrogate(nombre.charAt(i + 1))) {
+                int punto = Character.toCodePoint(c, nombre.charAt(++i));
+                buffer.put((byte) (0xF0 | (punto >> 18)))
+                    .put((byte) (0x80 | ((punto >> 12) & 0x3F)))
+                    .put((byte) (0x80 | ((punto >> 6) & 0x3F)))
+                    .put((byte) (0x80 | (punto & 0x3F)));
+            } else if (c < 0x800) {
+                buffer.put((byte) (0xC0 | (c >> 6))).put((byte) (0x80 | (c & 0x3F)));
+            } else if (Character.isSurrogate(c)) {
+                buffer.put((byte) '?'); // sustituto suelto: no tiene codificación UTF-8
+            } else {
+                buffer.put((byte) (0xE0 | (c >> 12)))
+                    .put((byte) (0x80 | ((c >> 6) & 0x3F)))
+                    .put((byte) (0x80 | (c & 0x3F)));
+            }
+        }
+        if (comillas) {
+            buffer.put((byte) '"');
+        }
+        buffer.put((byte) ',');
+        escritor.valor(peso);
+        buffer.put((byte) '\n');
+    }
+
+    private void escribirNdjson(long id, String nombre, double peso) {
+        escritor.iniciar(buffer).inicioObjeto();
+        escritor.campo("id");
+        buffer.put((byte) '"').put(PREFIJO_ID);
+        escritor.valor(id);
+        buffer.put((byte) '"');
+        escritor.campo("nombre").valor(nombre)
+            .campo("peso").valor(peso)
+            .finObjeto();
+        buffer.put((byte) '\n');
+    }
+
+    private static boolean requiereComillas(String nombre) {
+        for (int i = 0; i < nombre.length(); i++) {
+            char c = nombre.charAt(i);
+            if (c == ',' || c == '"' || c == '\n' || c == '\r') {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Vuelca el buffer si no quedan {@code bytes} libres; una fila más grande
+     * que el buffer (un nombre enorme) lo reemplaza por uno a su medida
+     */
+    private void asegurar(WritableByteChannel canal, int bytes) throws IOException {
+        if (buffer.remaining() >= bytes) {
+            return;
+        }
+        vaciar(canal);
+        if (buffer.capacity() < bytes) {
+            buffer = ByteBuffer.allocateDirect(bytes);
+        }
+    }
+
+    private void vaciar(WritableByteChannel canal) throws IOException {
+        buffer.flip();
+        while (buffer.hasRemaining()) {
+            canal.write(buffer);
+        }
+        buffer.clear();
+    }
+
+    /**
+     * Filtro inmutable por rango de peso (inclusivo) y texto contenido en el nombre
+     */
+    public static final class Filtro {
+        private static final Filtro TODOS = new Filtro(Double.NEGATIVE_INFINITY, Double.POSITIVE_INFINITY, null);
+
+        private final double pesoMinimo;
+        private final double pesoMaximo;
+        private final String nombre;
+
+        private Filtro(double pesoMinimo, double pesoMaximo, String nombre) {
+            this.pesoMinimo = pesoMinimo;
+            this.pesoMaximo = pesoMaximo;
+            this.nombre = nombre;
+        }
+
+        /**
+         * @return filtro que acepta a todos los usuarios
+         */
+        public static Filtro todos() {
+            return TODOS;
+        }
+
+        /**
+         * @param minimo Peso mínimo (NaN o -infinito para no acotar)
+         * @param maximo Peso máximo (NaN o +infinito para no acotar)
+         * @return copia del filtro con el rango de peso dado
+         */
+        public Filtro conPeso(double minimo, double maximo) {
+            return new Filtro(Double.isNaN(minimo) ? Double.NEGATIVE_INFINITY : minimo,
+                Double.isNaN(maximo) ? Double.POSITIVE_INFINITY : maximo, nombre);
+        }
+
+        /**
+         * @param texto Texto que debe contener el nombre, sin distinguir mayúsculas (null o vacío para no filtrar)
+         * @return copia del filtro con el texto dado
+         */
+        public Filtro conNombre(String texto) {
+            return new Filtro(pesoMinimo, pesoMaximo,
+                texto == null || texto.isEmpty() ? null : texto.toLowerCase(Locale.ROOT));
+        }
+
+        /**
+         * @return true si la fila debe exportarse
+         */
+        boolean acepta(String nombreUsuario, double peso) {
+            if (!(peso >= pesoMinimo && peso <= pesoMaximo)) {
+                return false;
+            }
+            return nombre == null || contiene(nombreUsuario, nombre);
+        }
+
+        /**
+         * Búsqueda sin distinguir mayúsculas que no crea cadenas intermedias
+         */
+        private static boolean contiene(String texto, String buscado) {
+            int ultimo = texto.length() - buscado.length();
+            for (int i = 0; i <= ultimo; i++) {
+                if (texto.regionMatches(true, i, buscado, 0, buscado.length())) {
+                    return true;
+                }
+            }
+            return false;
+        }
+    }
+}
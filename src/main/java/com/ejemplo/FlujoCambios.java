@@ -0,0 +1,516 @@
+package com.ejemplo;
+
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.LockSupport;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Flujo de cambios en proceso (captura de cambios) sobre un anillo preasignado
+ * Al estilo Disruptor: los eventos se crean una vez al construir el flujo y
+ * se reutilizan, así que publicar no asigna memoria. Un productor reclama la
+ * siguiente secuencia con un CAS sobre el cursor, solo si su posición ya está
+ * libre, rellena el evento y lo marca disponible escribiendo su número de
+ * vuelta; no hay cerrojos en el camino de publicación, y entre reclamar y
+ * marcar no se espera nada.
+ *
+ * Cada consumidor tiene su hilo y su propia secuencia, y recibe todos los
+ * eventos en orden, independientemente de los demás. Procesa por lotes: toma
+ * todo lo publicado desde su última posición y avanza su secuencia una vez
+ * por lote. El anillo está lleno cuando el consumidor más lento va una vuelta
+ * entera por detrás; qué hace entonces el productor lo fija
+ * {@link PoliticaLleno}, y por omisión descarta el evento sin esperar, así
+ * que publicar nunca bloquea a quien lo llama.
+ *
+ * Los cambios de un mismo usuario se publican sin serializarse, así que dos
+ * cambios concurrentes pueden llegar en cualquier orden; cada evento lleva la
+ * versión que dejó el cambio para que el consumidor descarte los atrasados.
+ *
+ * Los consumidores se agregan antes de {@link #iniciar()}; lo publicado
+ * antes de iniciar o después de {@link #close()} se descarta y se cuenta en
+ * {@link #getDescartados()}. Al cerrar, cada consumidor entrega todo lo
+ * reclamado hasta ese momento antes de terminar; una publicación que se
+ * cruce con el cierre puede quedar sin entregar y la cuenta
+ * {@link #getPendientes()}.
+ */
+public final class FlujoCambios implements AutoCloseable {
+
+    /**
+     * Tipo de cambio publicado
+     */
+    public enum Tipo {
+        ALTA, PESO
+    }
+
+    /**
+     * Cómo esperan los consumidores cuando no hay eventos nuevos
+     * OCUPADA da la menor latencia a costa de un núcleo por consumidor;
+     * BLOQUEANTE no consume CPU pero el productor paga un aviso cuando hay
+     * consumidores dormidos.
+     */
+    public enum EstrategiaEspera {
+        /** Giro continuo con {@link Thread#onSpinWait()} */
+        OCUPADA,
+        /** Giro breve y luego {@link Thread#yield()} */
+        CEDER,
+        /** Giro, cesión y luego pausas de {@value FlujoCambios#PAUSA_NS} ns */
+        DORMIR,
+        /** Espera en una condición que el productor señala */
+        BLOQUEANTE
+    }
+
+    /**
+     * Qué hace un productor cuando el anillo está lleno
+     */
+    public enum PoliticaLleno {
+        /** Descarta el evento y lo cuenta; publicar no espera nunca */
+        DESCARTAR,
+        /**
+         * Espera a que el consumidor más lento libere lugar; solo debe usarse
+         * si ningún productor publica con un cerrojo tomado
+         */
+        ESPERAR
+    }
+
+    /**
+     * Receptor de eventos de un consumidor
+     */
+    @FunctionalInterface
+    public interface Consumidor {
+        /**
+         * @param evento Evento del anillo: se reutiliza, no debe guardarse
+         * @param secuencia Posición del evento en el flujo (desde 0)
+         * @param finDeLote true en el último evento disponible del lote
+         */
+        void alCambio(Evento evento, long secuencia, boolean finDeLote) throws Exception;
+    }
+
+    /**
+     * Cambio publicado; los campos se sobrescriben en cada vuelta del anillo
+     */
+    public static final class Evento {
+        Tipo tipo;
+        long id;
+        double pesoAnterior;
+        double pesoNuevo;
+        long version;
+        long timestampNs;
+
+        public Tipo getTipo() {
+            return tipo;
+        }
+
+        public long getId() {
+            return id;
+        }
+
+        /**
+         * @return peso antes del cambio o NaN en las altas
+         */
+        public double getPesoAnterior() {
+            return pesoAnterior;
+        }
+
+        public double getPesoNuevo() {
+            return pesoNuevo;
+        }
+
+        /**
+         * @return versión del usuario tras el cambio (0 en las altas)
+         */
+        public long getVersion() {
+            return version;
+        }
+
+        /**
+         * Momento de la publicación según {@link System#nanoTime()}
+         */
+        public long getTimestampNs() {
+            return timestampNs;
+        }
+    }
+
+    static final long PAUSA_NS = 100_000;
+    private static final int GIROS = 100;
+    private static final VarHandle DISPONIBLE = MethodHandles.arrayElementVarHandle(int[].class);
+
+    private final Evento[] eventos;
+    private final int[] disponibles; // vuelta publicada en cada posición, -1 = ninguna
+    private final int mascara;
+    private final int bitsIndice;
+    private final EstrategiaEspera estrategia;
+    private final PoliticaLleno politica;
+    private final Secuencia cursor = new Secuencia(-1); // última secuencia reclamada
+    private volatile long minimoCacheado = -1;
+    private volatile Secuencia[] secuenciasConsumidores = new Secuencia[0];
+    private final List<Procesador> procesadores = new ArrayList<>();
+    private final ReentrantLock cerrojo = new ReentrantLock();
+    private final Condition hayEventos = cerrojo.newCondition();
+    private final AtomicBoolean hayEsperando = new AtomicBoolean();
+    private final LongAdder errores = new LongAdder();
+    private final LongAdder descartados = new LongAdder();
+    private volatile boolean iniciado;
+    private volatile boolean detenido;
+
+    /**
+     * Constructor del flujo que descarta los eventos cuando el anillo está lleno
+     * @param capacidad Eventos del anillo (potencia de dos)
+     * @param estrategia Espera de los consumidores
+     */
+    public FlujoCambios(int capacidad, EstrategiaEspera estrategia) {
+        this(capacidad, estrategia, PoliticaLleno.DESCARTAR);
+    }
+
+    /**
+     * Constructor del flujo
+     * @param capacidad Eventos del anillo (potencia de dos)
+     * @param estrategia Espera de los consumidores
+     * @param politica Qué hace un productor cuando el anillo está lleno
+     */
+    public FlujoCambios(int capacidad, EstrategiaEspera estrategia, PoliticaLleno politica) {
+        if (capacidad < 1 || Integer.bitCount(capacidad) != 1) {
+            throw new IllegalArgumentException("La capacidad debe ser potencia de dos");
+        }
+        this.eventos = new Evento[capacidad];
+        for (int i = 0; i < capacidad; i++) {
+            eventos[i] = new Evento();
+        }
+        this.disponibles = new int[capacidad];
+        Arrays.fill(disponibles, -1);
+        this.mascara = capacidad - 1;
+        this.bitsIndice = Integer.numberOfTrailingZeros(capacidad);
+        this.estrategia = estrategia;
+        this.politica = politica;
+    }
+
+    /**
+     * Registra un consumidor independiente; recibe los eventos publicados desde el inicio
+     * @param nombre Nombre de su hilo
+     * @param consumidor Receptor de los eventos
+     */
+    public synchronized void agregarConsumidor(String nombre, Consumidor consumidor) {
+        if (iniciado) {
+            throw new IllegalStateException("Los consumidores se agregan antes de iniciar");
+        }
+        Procesador procesador = new Procesador(nombre, consumidor);
+        procesadores.add(procesador);
+        Secuencia[] secuencias = Arrays.copyOf(secuenciasConsumidores, secuenciasConsumidores.length + 1);
+        secuencias[secuencias.length - 1] = procesador.secuencia;
+        secuenciasConsumidores = secuencias;
+    }
+
+    /**
+     * Arranca los hilos de los consumidores
+     */
+    public synchronized void iniciar() {
+        if (iniciado) {
+            return;
+        }
+        iniciado = true;
+        for (Procesador procesador : procesadores) {
+            procesador.hilo.start();
+        }
+    }
+
+    /**
+     * Publica un cambio; con el anillo lleno lo descarta o espera según la política
+     * @param tipo Tipo de cambio
+     * @param id Identificador numérico del usuario
+     * @param pesoAnterior Peso antes del cambio (NaN en las altas)
+     * @param pesoNuevo Peso después del cambio
+     * @param version Versión del usuario tras el cambio (0 en las altas)
+     * @return true si el evento entró al anillo; false si se descartó porque el
+     *         flujo no se inició, ya se cerró o el anillo estaba lleno
+     */
+    public boolean publicar(Tipo tipo, long id, double pesoAnterior, double pesoNuevo, long version) {
+        long secuencia = reclamar();
+        if (secuencia < 0) {
+            descartados.increment();
+            return false;
+        }
+        int indice = (int) secuencia & mascara;
+        Evento evento = eventos[indice];
+        evento.tipo = tipo;
+        evento.id = id;
+        evento.pesoAnterior = pesoAnterior;
+        evento.pesoNuevo = pesoNuevo;
+        evento.version = version;
+        evento.timestampNs = System.nanoTime();
+        // Escritura volátil: además de publicar los campos, ordena con la lectura de hayEsperando
+        DISPONIBLE.setVolatile(disponibles, indice, (int) (secuencia >>> bitsIndice));
+        if (hayEsperando.get() && hayEsperando.getAndSet(false)) {
+            despertar();
+        }
+        return true;
+    }
+
+    /**
+     * Reclama la siguiente secuencia si su posición del anillo está libre
+     * @return secuencia reclamada, o -1 si el evento debe descartarse
+     */
+    private long reclamar() {
+        while (true) {
+            if (!iniciado || detenido) {
+                return -1;
+            }
+            long actual = cursor.obtener();
+            long siguiente = actual + 1;
+            long envoltura = siguiente - eventos.length;
+            if (envoltura > minimoCacheado) {
+                long minimo = minimoConsumidores();
+                minimoCacheado = minimo;
+                if (envoltura > minimo) {
+                    if (politica == PoliticaLleno.DESCARTAR) {
+                        return -1;
+                    }
+                    LockSupport.parkNanos(1);
+                    continue;
+                }
+            }
+            if (cursor.comparar(actual, siguiente)) {
+                return siguiente;
+            }
+        }
+    }
+
+    /**
+     * Eventos que entraron al anillo desde el inicio
+     */
+    public long getPublicados() {
+        return cursor.obtener() + 1;
+    }
+
+    /**
+     * Eventos publicados que el consumidor más lento aún no procesó
+     */
+    public long getPendientes() {
+        long minimo = minimoConsumidores();
+        return minimo == Long.MAX_VALUE ? 0 : Math.max(0, cursor.obtener() - minimo);
+    }
+
+    /**
+     * Eventos descartados por publicarse antes de iniciar, después de cerrar o
+     * con el anillo lleno
+     */
+    public long getDescartados() {
+        return descartados.sum();
+    }
+
+    /**
+     * Excepciones lanzadas por los consumidores (el evento se da por procesado)
+     */
+    public long getErrores() {
+        return errores.sum();
+    }
+
+    public int getCapacidad() {
+        return eventos.length;
+    }
+
+    public EstrategiaEspera getEstrategia() {
+        return estrategia;
+    }
+
+    public PoliticaLleno getPoliticaLleno() {
+        return politica;
+    }
+
+    /**
+     * Deja que cada consumidor termine lo ya reclamado y detiene sus hilos
+     */
+    @Override
+    public void close() {
+        detenido = true;
+        despertar();
+        boolean interrumpido = false;
+        for (Procesador procesador : procesadores) {
+            if (!procesador.hilo.isAlive()) {
+                continue;
+            }
+            try {
+                procesador.hilo.join();
+            } catch (InterruptedException e) {
+                interrumpido = true;
+            }
+        }
+        if (interrumpido) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private long minimoConsumidores() {
+        long minimo = Long.MAX_VALUE;
+        for (Secuencia secuencia : secuenciasConsumidores) {
+            minimo = Math.min(minimo, secuencia.obtener());
+        }
+        return minimo;
+    }
+
+    private boolean publicado(long secuencia) {
+        return (int) DISPONIBLE.getVolatile(disponibles, (int) secuencia & mascara) == (int) (secuencia >>> bitsIndice);
+    }
+
+    /**
+     * Mayor secuencia publicada sin huecos desde {@code desde}
+     */
+    private long ultimaContigua(long desde, long hasta) {
+        for (long secuencia = desde; secuencia <= hasta; secuencia++) {
+            if (!publicado(secuencia)) {
+                return secuencia - 1;
+            }
+        }
+        return hasta;
+    }
+
+    /**
+     * Espera según la estrategia hasta que {@code secuencia} esté publicada
+     * @return última secuencia contigua disponible, o {@code secuencia - 1} si
+     *         el flujo se detuvo y nadie la reclamó
+     */
+    private long esperar(long secuencia) {
+        int intentos = 0;
+        while (!publicado(secuencia)) {
+            if (detenido) {
+                if (secuencia > cursor.obtener()) {
+                    return secuencia - 1;
+                }
+                // Reclamada y a punto de marcarse: reclamar no deja esperas en medio
+                Thread.yield();
+                continue;
+            }
+            switch (estrategia) {
+                case OCUPADA:
+                    Thread.onSpinWait();
+                    break;
+                case CEDER:
+                    if (++intentos < GIROS) {
+                        Thread.onSpinWait();
+                    } else {
+                        Thread.yield();
+                    }
+                    break;
+                case DORMIR:
+                    if (++intentos < GIROS) {
+                        Thread.onSpinWait();
+                    } else if (intentos < 2 * GIROS) {
+                        Thread.yield();
+                    } else {
+                        LockSupport.parkNanos(PAUSA_NS);
+                    }
+                    break;
+                default:
+                    esperarSenal(secuencia);
+                    break;
+            }
+        }
+        return ultimaContigua(secuencia, cursor.obtener());
+    }
+
+    private void esperarSenal(long secuencia) {
+        cerrojo.lock();
+        try {
+            hayEsperando.set(true);
+            // Se vuelve a mirar tras anunciarse: el productor publica antes de leer hayEsperando
+            while (!publicado(secuencia) && !detenido) {
+                hayEventos.awaitUninterruptibly();
+                hayEsperando.set(true);
+            }
+        } finally {
+            cerrojo.unlock();
+        }
+    }
+
+    private void despertar() {
+        cerrojo.lock();
+        try {
+            hayEventos.signalAll();
+        } finally {
+            cerrojo.unlock();
+        }
+    }
+
+    /**
+     * Hilo de un consumidor con su secuencia (último evento procesado)
+     */
+    private final class Procesador implements Runnable {
+        final Secuencia secuencia = new Secuencia(-1);
+        final Consumidor consumidor;
+        final Thread hilo;
+
+        Procesador(String nombre, Consumidor consumidor) {
+            this.consumidor = consumidor;
+            this.hilo = new Thread(this, nombre);
+            hilo.setDaemon(true);
+        }
+
+        @Override
+        public void run() {
+            long siguiente = secuencia.obtener() + 1;
+            while (true) {
+                long disponible = esperar(siguiente);
+                if (disponible < siguiente) {
+                    return;
+                }
+                for (long actual = siguiente; actual <= disponible; actual++) {
+                    try {
+                        consumidor.alCambio(eventos[(int) actual & mascara], actual, actual == disponible);
+                    } catch (Exception e) {
+                        errores.increment();
+                    }
+                }
+                secuencia.fijar(disponible);
+                siguiente = disponible + 1;
+            }
+        }
+    }
+
+    /**
+     * Contador de secuencia rodeado de relleno para que el cursor y las
+     * secuencias de los consumidores no compartan línea de caché
+     */
+    @SuppressWarnings("unused")
+    private static class RellenoIzquierdo {
+        protected long p1, p2, p3, p4, p5, p6, p7;
+    }
+
+    private static class ValorSecuencia extends RellenoIzquierdo {
+        protected volatile long valor;
+    }
+
+    @SuppressWarnings("unused")
+    private static final class Secuencia extends ValorSecuencia {
+        private static final VarHandle VALOR;
+
+        static {
+            try {
+                VALOR = MethodHandles.lookup().findVarHandle(ValorSecuencia.class, "valor", long.class);
+            } catch (ReflectiveOperationException e) {
+                throw new ExceptionInInitializerError(e);
+            }
+        }
+
+        protected long p9, p10, p11, p12, p13, p14, p15;
+
+        Secuencia(long inicial) {
+            valor = inicial;
+        }
+
+        long obtener() {
+            return valor;
+        }
+
+        void fijar(long nuevo) {
+            VALOR.setRelease(this, nuevo);
+        }
+
+        boolean comparar(long esperado, long nuevo) {
+            return VALOR.compareAndSet(this, esperado, nuevo);
+        }
+    }
+}
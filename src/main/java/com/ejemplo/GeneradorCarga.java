@@ -0,0 +1,475 @@
+package com.ejemplo;
+
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Generador de carga de lazo abierto a tasa de llegada constante
+ * La solicitud i tiene un inicio previsto fijo, {@code t0 + i / tasa}, que no
+ * depende de cuánto tardaron las anteriores. La latencia se mide desde ese
+ * inicio previsto: si el sistema se frena, las solicitudes que debieron salir
+ * mientras tanto cuentan el tiempo que esperaron, en lugar de no enviarse
+ * (la "omisión coordinada" de un generador de lazo cerrado). También se mide
+ * el tiempo de servicio, desde el inicio real, para ver la diferencia.
+ *
+ * Como en wrk2, las solicitudes se reparten por turnos entre hilos que
+ * duermen hasta el inicio previsto de la suya; un hilo atrasado envía sus
+ * solicitudes siguientes en cuanto puede, y el atraso queda en la medición.
+ * Los hilos limitan las solicitudes en vuelo: deben alcanzar para
+ * tasa × latencia media.
+ *
+ * Las consultas y actualizaciones eligen usuario con una distribución de
+ * Zipf sobre los usuarios creados antes de medir (exponente 0 = uniforme).
+ */
+public final class GeneradorCarga {
+
+    /**
+     * Tipo de solicitud de la mezcla
+     */
+    public enum TipoSolicitud {
+        CREAR, ACTUALIZAR, CONSULTAR
+    }
+
+    /**
+     * Sistema bajo prueba
+     */
+    public interface Objetivo {
+        Respuesta crear(String nombre, double peso);
+
+        Respuesta actualizar(String id, double peso);
+
+        Respuesta consultar(String id);
+    }
+
+    /**
+     * {@link UsuarioController} con sus respuestas tipadas
+     */
+    public static final Objetivo CONTROLADOR = new Objetivo() {
+        @Override
+        public Respuesta crear(String nombre, double peso) {
+            return UsuarioController.crearUsuarioTipado(nombre, peso);
+        }
+
+        @Override
+        public Respuesta actualizar(String id, double peso) {
+            return UsuarioController.actualizarPesoTipado(id, peso);
+        }
+
+        @Override
+        public Respuesta consultar(String id) {
+            return UsuarioController.obtenerUsuarioTipado(id);
+        }
+    };
+
+    /** Percentiles del resumen por tipo de solicitud */
+    private static final double[] PERCENTILES = {50, 90, 99, 99.9, 99.99, 100};
+
+    private GeneradorCarga() {
+    }
+
+    /**
+     * Crea los usuarios iniciales y lanza la carga
+     * @param configuracion Tasa, duración, mezcla y distribución de claves
+     * @param objetivo Sistema bajo prueba (p. ej. {@link #CONTROLADOR})
+     * @return latencias por tipo de solicitud
+     */
+    public static Informe ejecutar(Configuracion configuracion, Objetivo objetivo) throws InterruptedException {
+        ExecutorService hilos = Executors.newFixedThreadPool(configuracion.hilos, tarea -> {
+            Thread hilo = new Thread(tarea, "generador-carga");
+            hilo.setDaemon(true);
+            return hilo;
+        });
+        try {
+            String[] ids = crearUsuarios(configuracion, objetivo, hilos);
+            return medir(configuracion, objetivo, hilos, ids);
+        } finally {
+            hilos.shutdownNow();
+        }
+    }
+
+    /**
+     * Usuarios sobre los que caen consultas y actualizaciones, creados en paralelo y sin medir
+     */
+    private static String[] crearUsuarios(Configuracion configuracion, Objetivo objetivo, ExecutorService hilos)
+            throws InterruptedException {
+        AtomicReferenceArray<String> creados = new AtomicReferenceArray<>(configuracion.usuarios);
+        List<Future<?>> tareas = new ArrayList<>(configuracion.hilos);
+        for (int h = 0; h < configuracion.hilos; h++) {
+            final int primero = h;
+            tareas.add(hilos.submit(() -> {
+                for (int i = primero; i < configuracion.usuarios; i += configuracion.hilos) {
+                    Respuesta respuesta = objetivo.crear("Carga " + i, 60.0 + i % 40);
+                    if (respuesta instanceof RespuestaUsuario) {
+                        creados.set(i, ((RespuestaUsuario) respuesta).getId());
+                    }
+                }
+            }));
+        }
+        esperar(tareas);
+        List<String> ids = new ArrayList<>(configuracion.usuarios);
+        for (int i = 0; i < configuracion.usuarios; i++) {
+            if (creados.get(i) != null) {
+                ids.add(creados.get(i));
+            }
+        }
+        if (ids.isEmpty() && configuracion.mezcla[TipoSolicitud.CREAR.ordinal()] < configuracion.totalMezcla) {
+            throw new IllegalStateException("No se pudo crear ningún usuario inicial");
+        }
+        return ids.toArray(new String[0]);
+    }
+
+    private static Informe medir(Configuracion configuracion, Objetivo objetivo, ExecutorService hilos,
+            String[] ids) throws InterruptedException {
+        long total = (long) (configuracion.tasaPorSegundo * configuracion.duracionMs / 1000.0);
+        double intervaloNs = 1e9 / configuracion.tasaPorSegundo;
+        DistribucionZipf claves = ids.length == 0 ? null : new DistribucionZipf(ids.length, configuracion.exponenteZipf);
+        Map<TipoSolicitud, Medicion> mediciones = new EnumMap<>(TipoSolicitud.class);
+        for (TipoSolicitud tipo : TipoSolicitud.values()) {
+            mediciones.put(tipo, new Medicion());
+        }
+        HistogramaLatencias todas = new HistogramaLatencias();
+
+        long inicio = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(10);
+        List<Future<?>> tareas = new ArrayList<>(configuracion.hilos);
+        for (int h = 0; h < configuracion.hilos; h++) {
+            final int primero = h;
+            tareas.add(hilos.submit(() -> {
+                Random aleatorio = new Random(configuracion.semilla + primero);
+                for (long i = primero; i < total; i += configuracion.hilos) {
+                    long previsto = inicio + (long) (i * intervaloNs);
+                    long espera;
+                    while ((espera = previsto - System.nanoTime()) > 0) {
+                        LockSupport.parkNanos(espera);
+                    }
+                    TipoSolicitud tipo = configuracion.elegir(aleatorio.nextInt(configuracion.totalMezcla));
+                    long comienzo = System.nanoTime();
+                    boolean error;
+                    try {
+                        error = enviar(objetivo, tipo, ids, claves, aleatorio).getStatus() >= 400;
+                    } catch (RuntimeException e) {
+                        error = true;
+                    }
+                    long fin = System.nanoTime();
+                    mediciones.get(tipo).registrar(fin - previsto, fin - comienzo, error);
+                    todas.registrar(fin - previsto);
+                }
+            }));
+        }
+        esperar(tareas);
+        long duracionNs = System.nanoTime() - inicio;
+
+        Map<TipoSolicitud, Resultado> resultados = new EnumMap<>(TipoSolicitud.class);
+        for (Map.Entry<TipoSolicitud, Medicion> entrada : mediciones.entrySet()) {
+            resultados.put(entrada.getKey(), entrada.getValue().resultado());
+        }
+        return new Informe(configuracion, total, duracionNs, resultados, todas.instantanea());
+    }
+
+    private static Respuesta enviar(Objetivo objetivo, TipoSolicitud tipo, String[] ids, DistribucionZipf claves,
+            Random aleatorio) {
+        double peso = 50.0 + aleatorio.nextInt(500) / 10.0;
+        if (tipo == TipoSolicitud.CREAR || claves == null) {
+            return objetivo.crear("Carga", peso);
+        }
+        String id = ids[claves.siguiente(aleatorio)];
+        return tipo == TipoSolicitud.ACTUALIZAR ? objetivo.actualizar(id, peso) : objetivo.consultar(id);
+    }
+
+    private static void esperar(List<Future<?>> tareas) throws InterruptedException {
+        for (Future<?> tarea : tareas) {
+            try {
+                tarea.get();
+            } catch (ExecutionException e) {
+                throw new IllegalStateException("Falló un hilo del generador de carga", e.getCause());
+            }
+        }
+    }
+
+    /**
+     * Tabla de percentiles al estilo de HdrHistogram: filas cada vez más densas
+     * hacia la cola (la mitad de la distancia restante al 100 % en cada paso,
+     * con dos filas por mitad)
+     * @param latencias Histograma a describir
+     * @return texto con valor (ms), percentil, cantidad acumulada y 1/(1-percentil)
+     */
+    public static String tablaPercentiles(HistogramaLatencias.Instantanea latencias) {
+        StringBuilder tabla = new StringBuilder();
+        tabla.append(String.format(Locale.ROOT, "%12s %14s %10s %14s%n",
+            "Valor (ms)", "Percentil", "Cantidad", "1/(1-Percentil)"));
+        long cantidad = latencias.getCantidad();
+        if (cantidad == 0) {
+            return tabla.toString();
+        }
+        for (int paso = 0; ; paso++) {
+            double restante = Math.pow(0.5, paso / 2.0);
+            double fraccion = 1.0 - restante;
+            if (restante * cantidad < 1) {
+                break;
+            }
+            tabla.append(String.format(Locale.ROOT, "%12.3f %14.12f %10d %14.2f%n",
+                latencias.percentil(fraccion * 100) / 1e6, fraccion,
+                (long) Math.ceil(fraccion * cantidad), 1.0 / restante));
+        }
+        tabla.append(String.format(Locale.ROOT, "%12.3f %14.12f %10d %14s%n",
+            latencias.getMaximoNs() / 1e6, 1.0, cantidad, "inf"));
+        tabla.append(String.format(Locale.ROOT, "#[Media = %.3f ms, Máximo = %.3f ms, Total = %d]%n",
+            latencias.getMediaNs() / 1e6, latencias.getMaximoNs() / 1e6, cantidad));
+        return tabla.toString();
+    }
+
+    /**
+     * Parámetros de una corrida; cada {@code con...} devuelve una copia modificada
+     */
+    public static final class Configuracion {
+        private final double tasaPorSegundo;
+        private final long duracionMs;
+        private final int[] mezcla;
+        private final int totalMezcla;
+        private final int usuarios;
+        private final double exponenteZipf;
+        private final int hilos;
+        private final long semilla;
+
+        private Configuracion(double tasaPorSegundo, long duracionMs, int[] mezcla, int usuarios,
+                double exponenteZipf, int hilos, long semilla) {
+            if (!(tasaPorSegundo > 0) || duracionMs <= 0) {
+                throw new IllegalArgumentException("La tasa y la duración deben ser positivas");
+            }
+            int suma = 0;
+            for (int peso : mezcla) {
+                if (peso < 0) {
+                    throw new IllegalArgumentException("Los pesos de la mezcla no pueden ser negativos");
+                }
+                suma += peso;
+            }
+            if (suma == 0 || usuarios < 0 || hilos < 1 || exponenteZipf < 0) {
+                throw new IllegalArgumentException("Mezcla, usuarios, hilos o exponente inválidos");
+            }
+            this.tasaPorSegundo = tasaPorSegundo;
+            this.duracionMs = duracionMs;
+            this.mezcla = mezcla;
+            this.totalMezcla = suma;
+            this.usuarios = usuarios;
+            this.exponenteZipf = exponenteZipf;
+            this.hilos = hilos;
+            this.semilla = semilla;
+        }
+
+        /**
+         * Carga constante con la mezcla por defecto (10 % altas, 30 % actualizaciones,
+         * 60 % consultas) sobre 1000 usuarios con Zipf 0.99 y 64 hilos
+         * @param tasaPorSegundo Solicitudes por segundo
+         * @param duracionMs Duración de la medición
+         */
+        public static Configuracion constante(double tasaPorSegundo, long duracionMs) {
+            return new Configuracion(tasaPorSegundo, duracionMs, new int[] {10, 30, 60}, 1000, 0.99, 64, 42);
+        }
+
+        /**
+         * @param crear Peso relativo de las altas
+         * @param actualizar Peso relativo de las actualizaciones
+         * @param consultar Peso relativo de las consultas
+         */
+        public Configuracion conMezcla(int crear, int actualizar, int consultar) {
+            return new Configuracion(tasaPorSegundo, duracionMs, new int[] {crear, actualizar, consultar},
+                usuarios, exponenteZipf, hilos, semilla);
+        }
+
+        /**
+         * @param cantidad Usuarios creados antes de medir
+         * @param exponente Exponente de Zipf para elegirlos (0 = uniforme)
+         */
+        public Configuracion conUsuarios(int cantidad, double exponente) {
+            return new Configuracion(tasaPorSegundo, duracionMs, mezcla, cantidad, exponente, hilos, semilla);
+        }
+
+        /**
+         * @param cantidad Hilos que envían (máximo de solicitudes en vuelo)
+         */
+        public Configuracion conHilos(int cantidad) {
+            return new Configuracion(tasaPorSegundo, duracionMs, mezcla, usuarios, exponenteZipf, cantidad, semilla);
+        }
+
+        public Configuracion conSemilla(long nuevaSemilla) {
+            return new Configuracion(tasaPorSegundo, duracionMs, mezcla, usuarios, exponenteZipf, hilos,
+                nuevaSemilla);
+        }
+
+        public double getTasaPorSegundo() {
+            return tasaPorSegundo;
+        }
+
+        public long getDuracionMs() {
+            return duracionMs;
+        }
+
+        TipoSolicitud elegir(int sorteo) {
+            int acumulado = 0;
+            for (TipoSolicitud tipo : TipoSolicitud.values()) {
+                acumulado += mezcla[tipo.ordinal()];
+                if (sorteo < acumulado) {
+                    return tipo;
+                }
+            }
+            return TipoSolicitud.CONSULTAR;
+        }
+
+        @Override
+        public String toString() {
+            return String.format(Locale.ROOT, "%.0f sol/s durante %d ms, mezcla %d:%d:%d (crear:actualizar:consultar),"
+                + " %d usuarios con Zipf %.2f, %d hilos", tasaPorSegundo, duracionMs, mezcla[0], mezcla[1], mezcla[2],
+                usuarios, exponenteZipf, hilos);
+        }
+    }
+
+    /**
+     * Histogramas de un tipo de solicitud durante la corrida
+     */
+    private static final class Medicion {
+        final HistogramaLatencias respuesta = new HistogramaLatencias();
+        final HistogramaLatencias servicio = new HistogramaLatencias();
+        final LongAdder errores = new LongAdder();
+
+        void registrar(long respuestaNs, long servicioNs, boolean error) {
+            respuesta.registrar(respuestaNs);
+            servicio.registrar(servicioNs);
+            if (error) {
+                errores.increment();
+            }
+        }
+
+        Resultado resultado() {
+            return new Resultado(respuesta.instantanea(), servicio.instantanea(), errores.sum());
+        }
+    }
+
+    /**
+     * Latencias de un tipo de solicitud
+     */
+    public static final class Resultado {
+        private final HistogramaLatencias.Instantanea respuesta;
+        private final HistogramaLatencias.Instantanea servicio;
+        private final long errores;
+
+        Resultado(HistogramaLatencias.Instantanea respuesta, HistogramaLatencias.Instantanea servicio, long errores) {
+            this.respuesta = respuesta;
+            this.servicio = servicio;
+            this.errores = errores;
+        }
+
+        /**
+         * Latencia desde el inicio previsto (la que ve un cliente con llegadas constantes)
+         */
+        public HistogramaLatencias.Instantanea getRespuesta() {
+            return respuesta;
+        }
+
+        /**
+         * Latencia desde el inicio real (la que mide un generador de lazo cerrado)
+         */
+        public HistogramaLatencias.Instantanea getServicio() {
+            return servicio;
+        }
+
+        public long getCantidad() {
+            return respuesta.getCantidad();
+        }
+
+        /**
+         * Respuestas con status 400 o mayor y excepciones
+         */
+        public long getErrores() {
+            return errores;
+        }
+    }
+
+    /**
+     * Resultado de una corrida
+     */
+    public static final class Informe {
+        private final Configuracion configuracion;
+        private final long programadas;
+        private final long duracionNs;
+        private final Map<TipoSolicitud, Resultado> resultados;
+        private final HistogramaLatencias.Instantanea respuesta;
+
+        Informe(Configuracion configuracion, long programadas, long duracionNs,
+                Map<TipoSolicitud, Resultado> resultados, HistogramaLatencias.Instantanea respuesta) {
+            this.configuracion = configuracion;
+            this.programadas = programadas;
+            this.duracionNs = duracionNs;
+            this.resultados = resultados;
+            this.respuesta = respuesta;
+        }
+
+        /**
+         * Solicitudes enviadas (tasa × duración, sin importar la velocidad del sistema)
+         */
+        public long getProgramadas() {
+            return programadas;
+        }
+
+        /**
+         * Solicitudes completadas por segundo, desde el primer inicio previsto hasta la última respuesta
+         */
+        public double getTasaLograda() {
+            return programadas / (duracionNs / 1e9);
+        }
+
+        public Resultado getResultado(TipoSolicitud tipo) {
+            return resultados.get(tipo);
+        }
+
+        /**
+         * Latencia desde el inicio previsto de todas las solicitudes
+         */
+        public HistogramaLatencias.Instantanea getRespuesta() {
+            return respuesta;
+        }
+
+        /**
+         * Resumen por tipo de solicitud y tabla de percentiles de las respuestas de todos los tipos
+         */
+        public String aTexto() {
+            StringBuilder texto = new StringBuilder();
+            texto.append("🎯 ").append(configuracion).append('\n');
+            texto.append(String.format(Locale.ROOT, "🚀 Tasa objetivo: %.0f sol/s, lograda: %.0f sol/s%n",
+                configuracion.getTasaPorSegundo(), getTasaLograda()));
+            for (TipoSolicitud tipo : TipoSolicitud.values()) {
+                Resultado resultado = resultados.get(tipo);
+                if (resultado.getCantidad() == 0) {
+                    continue;
+                }
+                texto.append(String.format(Locale.ROOT, "📈 %-10s %7d sol, %d errores%n", tipo,
+                    resultado.getCantidad(), resultado.getErrores()));
+                texto.append("   respuesta (ms):").append(percentiles(resultado.getRespuesta())).append('\n');
+                texto.append("   servicio  (ms):").append(percentiles(resultado.getServicio())).append('\n');
+            }
+            texto.append("📊 Distribución de respuesta (todas las solicitudes):\n");
+            texto.append(tablaPercentiles(respuesta));
+            return texto.toString();
+        }
+
+        private static String percentiles(HistogramaLatencias.Instantanea latencias) {
+            StringBuilder texto = new StringBuilder();
+            for (double percentil : PERCENTILES) {
+                String etiqueta = percentil == 100 ? "max" : percentil == Math.rint(percentil)
+                    ? String.valueOf((int) percentil) : String.valueOf(percentil);
+                texto.append(String.format(Locale.ROOT, " p%s=%.2f", etiqueta, latencias.percentil(percentil) / 1e6));
+            }
+            return texto.toString();
+        }
+    }
+}
@@ -0,0 +1,102 @@
+package com.ejemplo;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Generador de identificadores de usuario sin contador compartido en el camino rápido
+ * Cada hilo reserva un bloque de secuencias y lo consume localmente; el contador
+ * global solo se toca una vez por bloque. El identificador lleva en los bits altos
+ * el número de nodo, de modo que varias instancias pueden generar ids sin coordinarse.
+ *
+ * Formato: [0][nodo: 16 bits][secuencia: 47 bits]
+ */
+public class GeneradorIds {
+
+    public static final int BITS_NODO = 16;
+    public static final int BITS_SECUENCIA = 47;
+    public static final int NODO_MAXIMO = (1 << BITS_NODO) - 1;
+    private static final long MASCARA_SECUENCIA = (1L << BITS_SECUENCIA) - 1;
+
+    private final long prefijo;
+    private final int tamanoBloque;
+    private final AtomicLong siguienteBloque = new AtomicLong();
+    private final ThreadLocal<Bloque> bloqueLocal = ThreadLocal.withInitial(Bloque::new);
+
+    /**
+     * Constructor con bloques de 1024 ids por hilo
+     * @param nodo Número de nodo (0..65535)
+     */
+    public GeneradorIds(int nodo) {
+        this(nodo, 1024);
+    }
+
+    /**
+     * Constructor del generador
+     * @param nodo Número de nodo (0..65535)
+     * @param tamanoBloque Cantidad de ids que reserva cada hilo de una vez
+     */
+    public GeneradorIds(int nodo, int tamanoBloque) {
+        if (nodo < 0 || nodo > NODO_MAXIMO) {
+            throw new IllegalArgumentException("Nodo fuera de rango: " + nodo);
+        }
+        if (tamanoBloque <= 0) {
+            throw new IllegalArgumentException("Tamaño de bloque debe ser mayor a 0");
+        }
+        this.prefijo = (long) nodo << BITS_SECUENCIA;
+        this.tamanoBloque = tamanoBloque;
+    }
+
+    /**
+     * Entrega el siguiente identificador libre para el hilo actual
+     * @return identificador único dentro del nodo y entre nodos
+     */
+    public long siguiente() {
+        Bloque bloque = bloqueLocal.get();
+        if (bloque.siguiente == bloque.limite) {
+            // Las secuencias empiezan en 1 para que el id 0 nunca se entregue
+            long inicio = siguienteBloque.getAndIncrement() * tamanoBloque + 1;
+            if (inicio + tamanoBloque - 1 > MASCARA_SECUENCIA) {
+                throw new IllegalStateException("Secuencias agotadas para el nodo " + nodo(prefijo));
+            }
+            bloque.siguiente = inicio;
+            bloque.limite = inicio + tamanoBloque;
+        }
+        return prefijo | bloque.siguiente++;
+    }
+
+    /**
+     * Garantiza que los próximos bloques no repitan un id ya entregado
+     * (por ejemplo, tras recuperar usuarios desde disco)
+     * @param id Identificador existente; se ignora si pertenece a otro nodo
+     */
+    public void reservarHasta(long id) {
+        if ((id & ~MASCARA_SECUENCIA) != prefijo) {
+            return;
+        }
+        long bloque = (secuencia(id) + tamanoBloque - 1) / tamanoBloque;
+        siguienteBloque.accumulateAndGet(bloque, Math::max);
+    }
+
+    /**
+     * Extrae el número de nodo de un identificador
+     * @param id Identificador generado
+     * @return número de nodo
+     */
+    public static int nodo(long id) {
+        return (int) (id >>> BITS_SECUENCIA);
+    }
+
+    /**
+     * Extrae la secuencia local de un identificador
+     * @param id Identificador generado
+     * @return secuencia dentro del nodo
+     */
+    public static long secuencia(long id) {
+        return id & MASCARA_SECUENCIA;
+    }
+
+    private static final class Bloque {
+        long siguiente;
+        long limite;
+    }
+}
@@ -0,0 +1,154 @@
+package com.ejemplo;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Histograma de latencias de rango dinámico alto, sin cerrojos
+ * Sigue el esquema de HdrHistogram: los valores menores que 128 ns tienen
+ * cubeta propia y por encima cada potencia de dos se divide en 64 cubetas,
+ * por lo que el error relativo de cualquier percentil es menor al 1,6 %.
+ * Cubre de 1 ns a unas 2,4 horas; los valores mayores caen en la última cubeta.
+ *
+ * Registrar cuesta un incremento atómico en la cubeta, una suma en un
+ * LongAdder y, solo cuando cambian, un CAS sobre mínimo y máximo.
+ */
+public class HistogramaLatencias {
+
+    private static final int BITS_SUBCUBETA = 6;
+    private static final int MITAD_SUBCUBETAS = 1 << BITS_SUBCUBETA;
+    private static final int LINEALES = MITAD_SUBCUBETAS * 2;
+    private static final int EXPONENTE_MAXIMO = 36;
+    static final long VALOR_MAXIMO = ((long) LINEALES << EXPONENTE_MAXIMO) - 1;
+    static final int CUBETAS = indice(VALOR_MAXIMO) + 1;
+
+    private final AtomicLongArray cubetas = new AtomicLongArray(CUBETAS);
+    private final LongAdder sumaNs = new LongAdder();
+    private final AtomicLong minimo = new AtomicLong(Long.MAX_VALUE);
+    private final AtomicLong maximo = new AtomicLong(0);
+
+    /**
+     * Registra una latencia
+     * @param nanos Duración en nanosegundos (los negativos cuentan como 0)
+     */
+    public void registrar(long nanos) {
+        long valor = Math.min(Math.max(nanos, 0), VALOR_MAXIMO);
+        cubetas.getAndIncrement(indice(valor));
+        sumaNs.add(valor);
+        long actual;
+        while (valor < (actual = minimo.get()) && !minimo.compareAndSet(actual, valor)) {
+            // reintentar
+        }
+        while (valor > (actual = maximo.get()) && !maximo.compareAndSet(actual, valor)) {
+            // reintentar
+        }
+    }
+
+    /**
+     * Copia el estado actual del histograma
+     * Con registros concurrentes la copia no es atómica, pero cada cubeta es exacta.
+     * @return instantánea inmutable
+     */
+    public Instantanea instantanea() {
+        long[] copia = new long[CUBETAS];
+        long cantidad = 0;
+        for (int i = 0; i < CUBETAS; i++) {
+            copia[i] = cubetas.get(i);
+            cantidad += copia[i];
+        }
+        return new Instantanea(copia, cantidad, sumaNs.sum(),
+            cantidad == 0 ? 0 : minimo.get(), maximo.get());
+    }
+
+    /**
+     * Vacía el histograma
+     */
+    public void reiniciar() {
+        for (int i = 0; i < CUBETAS; i++) {
+            cubetas.set(i, 0);
+        }
+        sumaNs.reset();
+        minimo.set(Long.MAX_VALUE);
+        maximo.set(0);
+    }
+
+    static int indice(long valor) {
+        if (valor < LINEALES) {
+            return (int) valor;
+        }
+        int exponente = 63 - Long.numberOfLeadingZeros(valor) - BITS_SUBCUBETA;
+        return MITAD_SUBCUBETAS * exponente + (int) (valor >>> exponente);
+    }
+
+    /**
+     * @return mayor valor que cae en la cubeta
+     */
+    static long valorSuperior(int indice) {
+        if (indice < LINEALES) {
+            return indice;
+        }
+        int exponente = indice / MITAD_SUBCUBETAS - 1;
+        long mantisa = indice % MITAD_SUBCUBETAS + MITAD_SUBCUBETAS;
+        return ((mantisa + 1) << exponente) - 1;
+    }
+
+    /**
+     * Estado de un histograma en un momento dado
+     */
+    public static final class Instantanea {
+        private final long[] cubetas;
+        private final long cantidad;
+        private final long sumaNs;
+        private final long minimoNs;
+        private final long maximoNs;
+
+        private Instantanea(long[] cubetas, long cantidad, long sumaNs, long minimoNs, long maximoNs) {
+            this.cubetas = cubetas;
+            this.cantidad = cantidad;
+            this.sumaNs = sumaNs;
+            this.minimoNs = minimoNs;
+            this.maximoNs = maximoNs;
+        }
+
+        public long getCantidad() {
+            return cantidad;
+        }
+
+        public long getSumaNs() {
+            return sumaNs;
+        }
+
+        public long getMinimoNs() {
+            return minimoNs;
+        }
+
+        public long getMaximoNs() {
+            return maximoNs;
+        }
+
+        public double getMediaNs() {
+            return cantidad == 0 ? 0.0 : (double) sumaNs / cantidad;
+        }
+
+        /**
+         * Percentil aproximado (cota superior de la cubeta, sin superar el máximo)
+         * @param percentil Valor entre 0 y 100, p. ej. 99.9
+         * @return latencia en nanosegundos, 0 si no hay registros
+         */
+        public long percentil(double percentil) {
+            if (cantidad == 0) {
+                return 0;
+            }
+            long objetivo = Math.max(1, (long) Math.ceil(cantidad * Math.min(percentil, 100.0) / 100.0));
+            long acumulado = 0;
+            for (int i = 0; i < cubetas.length; i++) {
+                acumulado += cubetas[i];
+                if (acumulado >= objetivo) {
+                    return Math.min(valorSuperior(i), maximoNs);
+                }
+            }
+            return maximoNs;
+        }
+    }
+}
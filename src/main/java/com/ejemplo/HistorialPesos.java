@@ -0,0 +1,85 @@
+package com.ejemplo;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Historial de lecturas de peso por usuario
+ * Mantiene una {@link SeriePesos} comprimida por identificador numérico.
+ */
+public class HistorialPesos {
+
+    private final Map<Long, SeriePesos> series = new ConcurrentHashMap<>();
+
+    /**
+     * Registra una lectura de peso para un usuario
+     * @param id Identificador numérico del usuario
+     * @param timestampMs Momento de la lectura (epoch ms)
+     * @param peso Peso registrado
+     */
+    public void registrar(long id, long timestampMs, double peso) {
+        series.computeIfAbsent(id, clave -> new SeriePesos()).agregar(timestampMs, peso);
+    }
+
+    /**
+     * Registra una lectura con la hora actual
+     * @param id Identificador numérico del usuario
+     * @param peso Peso registrado
+     */
+    public void registrarAhora(long id, double peso) {
+        registrarOrdenado(id, System.currentTimeMillis(), peso);
+    }
+
+    /**
+     * Registra una lectura ajustando su timestamp si es anterior a la última
+     * @param id Identificador numérico del usuario
+     * @param timestampMs Momento de la lectura (epoch ms)
+     * @param peso Peso registrado
+     */
+    public void registrarOrdenado(long id, long timestampMs, double peso) {
+        series.computeIfAbsent(id, clave -> new SeriePesos()).agregarOrdenado(timestampMs, peso);
+    }
+
+    /**
+     * Obtiene la serie de un usuario
+     * @param id Identificador numérico del usuario
+     * @return serie del usuario o null si no tiene lecturas
+     */
+    public SeriePesos serie(long id) {
+        return series.get(id);
+    }
+
+    /**
+     * Recorre las series de todos los usuarios (p. ej. para guardarlas en una instantánea)
+     * @param consumidor Receptor de cada serie con el id de su usuario
+     */
+    public void recorrer(ConsumidorSerie consumidor) {
+        series.forEach(consumidor::aceptar);
+    }
+
+    /**
+     * Bytes comprimidos ocupados por todas las series
+     * @return total de bytes de datos
+     */
+    public long bytesComprimidos() {
+        long total = 0;
+        for (SeriePesos serie : series.values()) {
+            total += serie.bytesComprimidos();
+        }
+        return total;
+    }
+
+    /**
+     * Elimina todas las series
+     */
+    public void limpiar() {
+        series.clear();
+    }
+
+    /**
+     * Receptor de series durante un recorrido del historial
+     */
+    public interface ConsumidorSerie {
+        void aceptar(long id, SeriePesos serie);
+    }
+}
@@ -0,0 +1,606 @@
+package com.ejemplo;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+
+/**
+ * Importación masiva de usuarios desde CSV o NDJSON
+ * El archivo se corta en tramos de unos {@value #TAMANO_TRAMO} bytes, siempre
+ * después de un salto de línea. Cada tramo se mapea en memoria y se analiza y
+ * valida en un ForkJoinPool; las filas válidas se entregan por lotes de hasta
+ * {@value #LOTE_MAXIMO} a un {@link Cargador}, con los nombres ya deduplicados.
+ * Cada tramo cuenta sus propias líneas y al final los números de línea de las
+ * filas rechazadas se desplazan con las líneas de los tramos anteriores.
+ *
+ * CSV: {@code nombre,peso} por línea, con cabecera opcional; el nombre puede ir
+ * entre comillas si contiene comas ("" escapa una comilla), pero no puede
+ * contener saltos de línea. NDJSON: un objeto {"nombre": ..., "peso": ...} por
+ * línea. Las líneas en blanco se ignoran.
+ */
+public final class ImportadorUsuarios {
+
+    static final int TAMANO_TRAMO = 8 * 1024 * 1024;
+    static final int LOTE_MAXIMO = 1 << 16;
+    static final int MAXIMO_LINEA = 0xFFFF;
+    static final int MAXIMO_RECHAZOS = 1000;
+    private static final String CABECERA_CSV = "nombre,peso";
+
+    /**
+     * Formato del archivo de entrada
+     */
+    public enum Formato {
+        CSV, NDJSON;
+
+        /**
+         * Deduce el formato de la extensión: .ndjson y .jsonl son NDJSON; el resto, CSV
+         */
+        public static Formato deArchivo(Path archivo) {
+            String nombre = archivo.getFileName().toString().toLowerCase(Locale.ROOT);
+            return nombre.endsWith(".ndjson") || nombre.endsWith(".jsonl") ? NDJSON : CSV;
+        }
+    }
+
+    /**
+     * Destino de las filas válidas
+     * Se llama desde varios hilos a la vez; el lote solo es válido durante la llamada.
+     * Si lanza una excepción, la importación se interrumpe con ella.
+     */
+    @FunctionalInterface
+    public interface Cargador {
+        void cargar(Lote lote) throws IOException;
+    }
+
+    private final Formato formato;
+    private final int tamanoTramo;
+    private final int paralelismo;
+
+    /**
+     * Constructor con tramos de {@value #TAMANO_TRAMO} bytes y un hilo por procesador
+     * @param formato Formato del archivo
+     */
+    public ImportadorUsuarios(Formato formato) {
+        this(formato, TAMANO_TRAMO, Runtime.getRuntime().availableProcessors());
+    }
+
+    /**
+     * Constructor del importador
+     * @param formato Formato del archivo
+     * @param tamanoTramo Bytes aproximados de cada tramo analizado por una tarea
+     * @param paralelismo Hilos del ForkJoinPool de la importación
+     */
+    public ImportadorUsuarios(Formato formato, int tamanoTramo, int paralelismo) {
+        if (tamanoTramo <= 0 || paralelismo <= 0) {
+            throw new IllegalArgumentException("Tamaño de tramo y paralelismo deben ser mayores a 0");
+        }
+        this.formato = formato;
+        this.tamanoTramo = tamanoTramo;
+        this.paralelismo = paralelismo;
+    }
+
+    /**
+     * Importa un archivo completo
+     * @param archivo Ruta del archivo CSV o NDJSON (UTF-8)
+     * @param cargador Recibe los lotes de filas válidas
+     * @param progreso Recibe el avance tras cada lote, puede ser null
+     * @return totales y las primeras {@value #MAXIMO_RECHAZOS} filas rechazadas
+     * @throws IOException si el archivo no puede leerse o el cargador falla
+     */
+    public Resultado importar(Path archivo, Cargador cargador, Consumer<Progreso> progreso) throws IOException {
+        long inicio = System.nanoTime();
+        try (FileChannel canal = FileChannel.open(archivo, StandardOpenOption.READ)) {
+            long tamano = canal.size();
+            long[] limites = dividir(canal, tamano);
+            Tramo[] tramos = new Tramo[limites.length - 1];
+            Avance avance = new Avance(tamano, progreso);
+            if (tramos.length > 0) {
+                ForkJoinPool pool = new ForkJoinPool(paralelismo);
+                try {
+                    pool.invoke(new TareaTramos(canal, limites, tramos, 0, tramos.length, cargador, avance));
+                } catch (UncheckedIOException e) {
+                    throw e.getCause();
+                } finally {
+                    pool.shutdown();
+                }
+            }
+
+            long lineas = 0;
+            long importados = 0;
+            long rechazados = 0;
+            List<Rechazo> rechazos = new ArrayList<>();
+            for (Tramo tramo : tramos) {
+                for (Rechazo rechazo : tramo.rechazos) {
+                    if (rechazos.size() < MAXIMO_RECHAZOS) {
+                        rechazos.add(new Rechazo(lineas + rechazo.linea, rechazo.motivo));
+                    }
+                }
+                lineas += tramo.lineas;
+                importados += tramo.importados;
+                rechazados += tramo.rechazados;
+            }
+            return new Resultado(importados, rechazados, lineas, tamano, System.nanoTime() - inicio, rechazos);
+        }
+    }
+
+    /**
+     * Calcula los límites de los tramos: cada corte queda justo después de un '\n'
+     * @return posiciones [0, c1, c2, ..., tamaño]
+     */
+    private long[] dividir(FileChannel canal, long tamano) throws IOException {
+        List<Long> limites = new ArrayList<>();
+        limites.add(0L);
+        ByteBuffer lectura = ByteBuffer.allocate(4096);
+        long corte = tamanoTramo;
+        while (corte < tamano) {
+            long siguiente = siguienteLinea(canal, corte - 1, tamano, lectura);
+            if (siguiente >= tamano) {
+                break;
+            }
+            limites.add(siguiente);
+            corte = siguiente + tamanoTramo;
+        }
+        if (tamano > 0) {
+            limites.add(tamano);
+        }
+        long[] resultado = new long[limites.size()];
+        for (int i = 0; i < resultado.length; i++) {
+            resultado[i] = limites.get(i);
+        }
+        return resultado;
+    }
+
+    /**
+     * Posición siguiente al primer '\n' desde {@code desde}, o el tamaño si no hay más
+     */
+    private static long siguienteLinea(FileChannel canal, long desde, long tamano, ByteBuffer lectura)
+            throws IOException {
+        long posicion = desde;
+        while (posicion < tamano) {
+            lectura.clear();
+            int leidos = canal.read(lectura, posicion);
+            if (leidos <= 0) {
+                break;
+            }
+            for (int i = 0; i < leidos; i++) {
+                if (lectura.get(i) == '\n') {
+                    return posicion + i + 1;
+                }
+            }
+            posicion += leidos;
+        }
+        return tamano;
+    }
+
+    /**
+     * Divide el rango de tramos en mitades hasta llegar a un tramo por tarea
+     */
+    @SuppressWarnings("serial")
+    private final class TareaTramos extends RecursiveAction {
+        private final FileChannel canal;
+        private final long[] limites;
+        private final Tramo[] tramos;
+        private final int desde;
+        private final int hasta;
+        private final Cargador cargador;
+        private final Avance avance;
+
+        TareaTramos(FileChannel canal, long[] limites, Tramo[] tramos, int desde, int hasta,
+                Cargador cargador, Avance avance) {
+            this.canal = canal;
+            this.limites = limites;
+            this.tramos = tramos;
+            this.desde = desde;
+            this.hasta = hasta;
+            this.cargador = cargador;
+            this.avance = avance;
+        }
+
+        @Override
+        protected void compute() {
+            if (hasta - desde == 1) {
+                try {
+                    tramos[desde] = new Tramo(desde == 0, cargador, avance).analizar(canal, limites[desde],
+                        limites[desde + 1]);
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+                return;
+            }
+            int medio = (desde + hasta) >>> 1;
+            invokeAll(new TareaTramos(canal, limites, tramos, desde, medio, cargador, avance),
+                new TareaTramos(canal, limites, tramos, medio, hasta, cargador, avance));
+        }
+    }
+
+    /**
+     * Análisis de un tramo: una instancia por tarea, sin estado compartido salvo el avance
+     */
+    private final class Tramo {
+        private final boolean primero;
+        private final Cargador cargador;
+        private final Avance avance;
+        private final LectorJson lector = new LectorJson();
+        private final byte[] bytesNombre = new byte[MAXIMO_LINEA];
+        private final Lote lote = new Lote();
+        private final Map<String, Integer> referencias = new HashMap<>();
+        private final List<Rechazo> rechazos = new ArrayList<>();
+        private long lineas;
+        private long importados;
+        private long rechazados;
+        private long rechazadosNotificados;
+        private String nombre;
+        private double peso;
+
+        Tramo(boolean primero, Cargador cargador, Avance avance) {
+            this.primero = primero;
+            this.cargador = cargador;
+            this.avance = avance;
+        }
+
+        Tramo analizar(FileChannel canal, long inicio, long fin) throws IOException {
+            if (fin - inicio > Integer.MAX_VALUE) {
+                throw new IOException("Línea de más de 2 GB cerca del byte " + inicio);
+            }
+            MappedByteBuffer buffer = canal.map(FileChannel.MapMode.READ_ONLY, inicio, fin - inicio);
+            ByteBuffer vista = buffer.duplicate();
+            int limite = buffer.limit();
+            int posicion = 0;
+            if (primero && limite >= 3 && (buffer.get(0) & 0xFF) == 0xEF && (buffer.get(1) & 0xFF) == 0xBB
+                    && (buffer.get(2) & 0xFF) == 0xBF) {
+                posicion = 3; // BOM de UTF-8 (p. ej. CSV exportado desde una planilla)
+            }
+            int notificado = 0;
+            while (posicion < limite) {
+                int finLinea = posicion;
+                while (finLinea < limite && buffer.get(finLinea) != '\n') {
+                    finLinea++;
+                }
+                int finContenido = finLinea > posicion && buffer.get(finLinea - 1) == '\r' ? finLinea - 1 : finLinea;
+                lineas++;
+                procesarLinea(buffer, vista, posicion, finContenido);
+                posicion = finLinea + 1;
+                if (lote.cantidad == LOTE_MAXIMO) {
+                    entregar(Math.min(posicion, limite) - notificado);
+                    notificado = Math.min(posicion, limite);
+                }
+            }
+            entregar(limite - notificado);
+            return this;
+        }
+
+        private void procesarLinea(ByteBuffer buffer, ByteBuffer vista, int inicio, int fin) {
+            if (enBlanco(buffer, inicio, fin)) {
+                return;
+            }
+            if (fin - inicio > MAXIMO_LINEA) {
+                rechazar("Línea de más de " + MAXIMO_LINEA + " bytes");
+                return;
+            }
+            String error = formato == Formato.CSV ? leerCsv(buffer, vista, inicio, fin) : leerNdjson(vista, inicio, fin);
+            if (error == null) {
+                error = validar(nombre, peso);
+            }
+            if (error != null) {
+                if (formato == Formato.CSV && primero && lineas == 1 && esCabecera(buffer, inicio, fin)) {
+                    return;
+                }
+                rechazar(error);
+                return;
+            }
+            Integer referencia = referencias.get(nombre);
+            if (referencia == null) {
+                referencia = referencias.size();
+                referencias.put(nombre, referencia);
+                lote.nombres[referencia] = nombre;
+            }
+            lote.refs[lote.cantidad] = referencia;
+            lote.pesos[lote.cantidad] = peso;
+            lote.cantidad++;
+        }
+
+        private String leerCsv(ByteBuffer buffer, ByteBuffer vista, int inicio, int fin) {
+            int posicion = inicio;
+            int largo = 0;
+            if (buffer.get(posicion) == '"') {
+                posicion++;
+                while (true) {
+                    if (posicion >= fin) {
+                        return "Comillas sin cerrar en el nombre";
+                    }
+                    byte c = buffer.get(posicion++);
+                    if (c == '"') {
+                        if (posicion < fin && buffer.get(posicion) == '"') {
+                            bytesNombre[largo++] = '"';
+                            posicion++;
+                        } else {
+                            break;
+                        }
+                    } else {
+                        bytesNombre[largo++] = c;
+                    }
+                }
+                if (posicion < fin && buffer.get(posicion) != ',') {
+                    return "Se esperaba ',' después del nombre";
+                }
+            } else {
+                while (posicion < fin && buffer.get(posicion) != ',') {
+                    bytesNombre[largo++] = buffer.get(posicion++);
+                }
+            }
+            if (posicion >= fin) {
+                return "Falta la columna peso";
+            }
+            nombre = new String(bytesNombre, 0, largo, StandardCharsets.UTF_8);
+
+            vista.limit(fin).position(posicion + 1);
+            try {
+                peso = lector.iniciar(vista).leerNumero();
+            } catch (IllegalArgumentException e) {
+                return "Peso inválido";
+            }
+            while (vista.hasRemaining()) {
+                byte c = vista.get();
+                if (c != ' ' && c != '\t') {
+                    return "Peso inválido";
+                }
+            }
+            return null;
+        }
+
+        private String leerNdjson(ByteBuffer vista, int inicio, int fin) {
+            vista.limit(fin).position(inicio);
+            try {
+                SolicitudCreacion solicitud = lector.iniciar(vista).leerCreacion();
+                nombre = solicitud.getNombre();
+                peso = solicitud.getPeso();
+                return null;
+            } catch (IllegalArgumentException e) {
+                // El mensaje trae la posición dentro del tramo; se informa la columna de la línea
+                String mensaje = e.getMessage();
+                return "JSON inválido en la columna " + (vista.position() - inicio + 1)
+                    + mensaje.substring(Math.max(mensaje.indexOf(':'), 0));
+            }
+        }
+
+        private void rechazar(String motivo) {
+            rechazados++;
+            if (rechazos.size() < MAXIMO_RECHAZOS) {
+                rechazos.add(new Rechazo(lineas, motivo));
+            }
+        }
+
+        private void entregar(long bytes) throws IOException {
+            int cantidad = lote.cantidad;
+            if (cantidad > 0) {
+                lote.cantidadNombres = referencias.size();
+                cargador.cargar(lote);
+                importados += cantidad;
+                lote.cantidad = 0;
+                referencias.clear();
+            }
+            avance.sumar(bytes, cantidad, rechazados - rechazadosNotificados);
+            rechazadosNotificados = rechazados;
+        }
+    }
+
+    /**
+     * Valida una fila con las mismas reglas que el alta individual
+     * @return motivo del rechazo o null si la fila es válida
+     */
+    static String validar(String nombre, double peso) {
+        String error = UsuarioController.validarCreacion(nombre, peso);
+        if (error != null) {
+            return error;
+        }
+        if (Double.isNaN(peso)) {
+            return "Peso requerido";
+        }
+        return Double.isInfinite(peso) ? "Peso inválido" : null;
+    }
+
+    private static boolean enBlanco(ByteBuffer buffer, int inicio, int fin) {
+        for (int i = inicio; i < fin; i++) {
+            byte c = buffer.get(i);
+            if (c != ' ' && c != '\t') {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static boolean esCabecera(ByteBuffer buffer, int inicio, int fin) {
+        byte[] bytes = new byte[fin - inicio];
+        for (int i = inicio; i < fin; i++) {
+            bytes[i - inicio] = buffer.get(i);
+        }
+        String linea = new String(bytes, StandardCharsets.UTF_8).replace(" ", "").replace("\"", "");
+        return linea.equalsIgnoreCase(CABECERA_CSV);
+    }
+
+    /**
+     * Acumula el avance de todas las tareas y lo notifica en orden
+     */
+    private static final class Avance {
+        private final long bytesTotales;
+        private final Consumer<Progreso> destino;
+        private final AtomicLong bytes = new AtomicLong();
+        private final AtomicLong importados = new AtomicLong();
+        private final AtomicLong rechazados = new AtomicLong();
+
+        Avance(long bytesTotales, Consumer<Progreso> destino) {
+            this.bytesTotales = bytesTotales;
+            this.destino = destino;
+        }
+
+        void sumar(long bytesLeidos, long filasImportadas, long filasRechazadas) {
+            bytes.addAndGet(bytesLeidos);
+            importados.addAndGet(filasImportadas);
+            rechazados.addAndGet(filasRechazadas);
+            if (destino != null) {
+                synchronized (this) {
+                    destino.accept(new Progreso(bytes.get(), bytesTotales, importados.get(), rechazados.get()));
+                }
+            }
+        }
+    }
+
+    /**
+     * Filas válidas de un tramo listas para cargar
+     * Los nombres vienen deduplicados: {@link #getNombre(int)} resuelve la referencia.
+     */
+    public static final class Lote {
+        final String[] nombres = new String[LOTE_MAXIMO];
+        final int[] refs = new int[LOTE_MAXIMO];
+        final double[] pesos = new double[LOTE_MAXIMO];
+        int cantidad;
+        int cantidadNombres;
+
+        public int getCantidad() {
+            return cantidad;
+        }
+
+        public String getNombre(int indice) {
+            return nombres[refs[indice]];
+        }
+
+        public double getPeso(int indice) {
+            return pesos[indice];
+        }
+    }
+
+    /**
+     * Fila rechazada con su número de línea (desde 1)
+     */
+    public static final class Rechazo {
+        private final long linea;
+        private final String motivo;
+
+        Rechazo(long linea, String motivo) {
+            this.linea = linea;
+            this.motivo = motivo;
+        }
+
+        public long getLinea() {
+            return linea;
+        }
+
+        public String getMotivo() {
+            return motivo;
+        }
+
+        @Override
+        public String toString() {
+            return "línea " + linea + ": " + motivo;
+        }
+    }
+
+    /**
+     * Avance de una importación en curso
+     */
+    public static final class Progreso {
+        private final long bytesLeidos;
+        private final long bytesTotales;
+        private final long importados;
+        private final long rechazados;
+
+        Progreso(long bytesLeidos, long bytesTotales, long importados, long rechazados) {
+            this.bytesLeidos = bytesLeidos;
+            this.bytesTotales = bytesTotales;
+            this.importados = importados;
+            this.rechazados = rechazados;
+        }
+
+        public long getBytesLeidos() {
+            return bytesLeidos;
+        }
+
+        public long getBytesTotales() {
+            return bytesTotales;
+        }
+
+        public long getImportados() {
+            return importados;
+        }
+
+        public long getRechazados() {
+            return rechazados;
+        }
+
+        /**
+         * @return fracción del archivo ya analizada (0 a 1)
+         */
+        public double getFraccion() {
+            return bytesTotales == 0 ? 1.0 : (double) bytesLeidos / bytesTotales;
+        }
+    }
+
+    /**
+     * Resultado de una importación terminada
+     */
+    public static final class Resultado {
+        private final long importados;
+        private final long rechazados;
+        private final long lineas;
+        private final long bytes;
+        private final long duracionNs;
+        private final List<Rechazo> rechazos;
+
+        Resultado(long importados, long rechazados, long lineas, long bytes, long duracionNs, List<Rechazo> rechazos) {
+            this.importados = importados;
+            this.rechazados = rechazados;
+            this.lineas = lineas;
+            this.bytes = bytes;
+            this.duracionNs = duracionNs;
+            this.rechazos = Collections.unmodifiableList(rechazos);
+        }
+
+        public long getImportados() {
+            return importados;
+        }
+
+        public long getRechazados() {
+            return rechazados;
+        }
+
+        public long getLineas() {
+            return lineas;
+        }
+
+        public long getBytes() {
+            return bytes;
+        }
+
+        public long getDuracionMs() {
+            return duracionNs / 1_000_000;
+        }
+
+        /**
+         * @return filas importadas por segundo
+         */
+        public double getFilasPorSegundo() {
+            return duracionNs == 0 ? 0 : importados * 1e9 / duracionNs;
+        }
+
+        /**
+         * @return primeras {@value ImportadorUsuarios#MAXIMO_RECHAZOS} filas rechazadas, en orden de línea
+         */
+        public List<Rechazo> getRechazos() {
+            return rechazos;
+        }
+    }
+}
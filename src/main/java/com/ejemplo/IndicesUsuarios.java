@@ -0,0 +1,496 @@
+package com.ejemplo;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.Collections;
+import java.util.List;
+import java.util.Locale;
+import java.util.NavigableSet;
+import java.util.PriorityQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListSet;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Índices secundarios de usuarios: por peso y por prefijo de nombre
+ * Cada índice guarda, por valor distinto, los ids ordenados en un
+ * ConcurrentSkipListSet, y los valores distintos en otro. Así las búsquedas
+ * por rango recorren solo las coincidencias, en orden (valor, id) y sin
+ * cerrojos, mientras las altas y actualizaciones escriben en paralelo; y un
+ * alta con un valor ya conocido (nombres repetidos, pesos redondos) solo
+ * busca en un hash y agrega el id, sin comparar cadenas en una lista ordenada.
+ *
+ * Una actualización agrega el id bajo el peso nuevo antes de quitarlo del
+ * anterior, de modo que una búsqueda concurrente nunca pierde al usuario; el
+ * duplicado momentáneo se descarta al confirmar el peso contra el repositorio.
+ * Las actualizaciones de un mismo usuario no necesitan serializarse: cada una
+ * relee el peso vigente tras tocar el índice y corrige sus entradas (ver
+ * {@link #cambiarPeso}).
+ *
+ * Las páginas se piden con un cursor opaco que codifica la última clave
+ * devuelta: continuar cuesta O(log n) sin importar cuántas páginas se leyeron.
+ */
+public final class IndicesUsuarios {
+
+    static final int LIMITE_MAXIMO = 1_000;
+    static final String CURSOR_INVALIDO = "Cursor inválido";
+    private static final Base64.Encoder CODIFICADOR = Base64.getUrlEncoder().withoutPadding();
+    private static final Base64.Decoder DECODIFICADOR = Base64.getUrlDecoder();
+    private static final char MARCA_PESO = 'p';
+    private static final char MARCA_NOMBRE = 'n';
+
+    private final IndiceOrdenado<Double> porPeso = new IndiceOrdenado<>(true);
+    // Los nombres no cambian: sus conjuntos de ids nunca se descartan
+    private final IndiceOrdenado<String> porNombre = new IndiceOrdenado<>(false);
+    private final LongAdder indexados = new LongAdder();
+
+    /**
+     * Indexa un usuario recién creado
+     */
+    public void agregar(long id, String nombre, double peso) {
+        agregarNormalizado(id, normalizar(nombre), peso);
+    }
+
+    /**
+     * Indexa un usuario cuyo nombre ya pasó por {@link #normalizar(String)}
+     * (las importaciones normalizan cada nombre distinto una sola vez)
+     */
+    void agregarNormalizado(long id, String normalizado, double peso) {
+        porPeso.agregar(peso, id);
+        porNombre.agregar(normalizado, id);
+        indexados.increment();
+    }
+
+    /**
+     * Mueve un usuario en el índice de peso, sin cerrojos
+     * Dos cambios concurrentes del mismo usuario pueden cruzar sus pasos (el
+     * segundo quita el peso que el primero aún no agregó), así que después de
+     * cada modificación se relee el peso vigente y se corrige la entrada. Quien
+     * modifica una entrada la verifica después, de modo que al terminar los
+     * cambios en curso el usuario queda indexado solo bajo su peso vigente.
+     * @param pesoAnterior Peso con el que estaba indexado
+     * @param pesoNuevo Peso ya guardado en el repositorio
+     * @param repositorio Fuente del peso vigente
+     */
+    public void cambiarPeso(long id, double pesoAnterior, double pesoNuevo, RepositorioUsuarios repositorio) {
+        if (Double.compare(pesoAnterior, pesoNuevo) == 0) {
+            return;
+        }
+        porPeso.agregar(pesoNuevo, id);
+        porPeso.quitar(pesoAnterior, id);
+        verificarPeso(id, pesoNuevo, repositorio);
+        verificarPeso(id, pesoAnterior, repositorio);
+    }
+
+    /**
+     * Deja la entrada (peso, id) presente si y solo si es el peso vigente,
+     * releyendo tras cada corrección por si otro cambio se cruzó
+     */
+    private void verificarPeso(long id, double peso, RepositorioUsuarios repositorio) {
+        boolean corregido;
+        do {
+            corregido = Double.compare(repositorio.obtenerPeso(id), peso) == 0
+                ? porPeso.agregar(peso, id)
+                : porPeso.quitar(peso, id);
+        } while (corregido);
+    }
+
+    /**
+     * Vuelve a construir los índices desde un repositorio (al reemplazarlo o restaurarlo)
+     * Debe llamarse sin solicitudes en curso, como {@link EstadisticasPoblacion#recalcular}.
+     */
+    public void reconstruir(RepositorioUsuarios repositorio) {
+        porPeso.limpiar();
+        porNombre.limpiar();
+        indexados.reset();
+        repositorio.recorrer(this::agregar);
+    }
+
+    /**
+     * Cantidad de usuarios indexados
+     */
+    public long tamano() {
+        return indexados.sum();
+    }
+
+    /**
+     * Usuarios con peso en [minimo, maximo], ordenados por peso y luego por id
+     * @param cursor Cursor de la página anterior o null para la primera
+     * @param limite Máximo de usuarios en la página
+     * @param repositorio Fuente del nombre y del peso vigente
+     * @throws IllegalArgumentException si el cursor no es de una búsqueda por peso
+     */
+    public Pagina buscarPorPeso(double minimo, double maximo, String cursor, int limite,
+            RepositorioUsuarios repositorio) {
+        ClavePeso desde = new ClavePeso(minimo, Long.MIN_VALUE);
+        if (cursor != null) {
+            // Un cursor por debajo del rango (p. ej. de otra búsqueda) no adelanta el mínimo
+            ClavePeso siguiente = ClavePeso.decodificar(cursor);
+            if (siguiente.compareTo(desde) > 0) {
+                desde = siguiente;
+            }
+        }
+        List<Coincidencia> usuarios = new ArrayList<>(Math.min(limite, 64));
+        if (desde.peso > maximo) {
+            return new Pagina(usuarios, null);
+        }
+        StringBuilder nombre = new StringBuilder();
+        ClavePeso ultima = null;
+        for (double peso : porPeso.clavesDesde(desde.peso).headSet(maximo, true)) {
+            for (long id : porPeso.ids(peso, Double.compare(peso, desde.peso) == 0 ? desde.id : Long.MIN_VALUE)) {
+                if (usuarios.size() == limite) {
+                    return new Pagina(usuarios, ultima.codificar());
+                }
+                nombre.setLength(0);
+                // Id de una actualización en curso: el vigente aparece bajo su peso
+                if (Double.compare(repositorio.leer(id, nombre), peso) == 0) {
+                    usuarios.add(new Coincidencia(id, nombre.toString(), peso));
+                    ultima = new ClavePeso(peso, id);
+                }
+            }
+        }
+        return new Pagina(usuarios, null);
+    }
+
+    /**
+     * Usuarios cuyo nombre empieza con el prefijo (sin distinguir mayúsculas),
+     * ordenados por nombre y luego por id
+     * @param cursor Cursor de la página anterior o null para la primera
+     * @throws IllegalArgumentException si el cursor no es de una búsqueda por nombre
+     */
+    public Pagina buscarPorNombre(String prefijo, String cursor, int limite, RepositorioUsuarios repositorio) {
+        String normalizado = normalizar(prefijo);
+        ClaveNombre desde = new ClaveNombre(normalizado, Long.MIN_VALUE);
+        if (cursor != null) {
+            ClaveNombre siguiente = ClaveNombre.decodificar(cursor);
+            if (siguiente.compareTo(desde) > 0) {
+                desde = siguiente;
+            }
+        }
+        List<Coincidencia> usuarios = new ArrayList<>(Math.min(limite, 64));
+        StringBuilder nombre = new StringBuilder();
+        ClaveNombre ultima = null;
+        for (String clave : porNombre.clavesDesde(desde.nombre)) {
+            if (!clave.startsWith(normalizado)) {
+                break;
+            }
+            for (long id : porNombre.ids(clave, clave.equals(desde.nombre) ? desde.id : Long.MIN_VALUE)) {
+                if (usuarios.size() == limite) {
+                    return new Pagina(usuarios, ultima.codificar());
+                }
+                nombre.setLength(0);
+                double peso = repositorio.leer(id, nombre);
+                if (!Double.isNaN(peso)) {
+                    usuarios.add(new Coincidencia(id, nombre.toString(), peso));
+                    ultima = new ClaveNombre(clave, id);
+                }
+            }
+        }
+        return new Pagina(usuarios, null);
+    }
+
+    /**
+     * Búsqueda por peso recorriendo todo el repositorio, con la misma paginación
+     * Es el camino sin índices: O(n log limite) por página.
+     */
+    public static Pagina escanearPorPeso(double minimo, double maximo, String cursor, int limite,
+            RepositorioUsuarios repositorio) {
+        ClavePeso desde = cursor == null ? null : ClavePeso.decodificar(cursor);
+        // Montículo de máximos con las menores limite + 1 claves vistas
+        PriorityQueue<ClavePeso> mejores = new PriorityQueue<>(limite + 1, Collections.reverseOrder());
+        repositorio.recorrer((id, nombre, peso) -> {
+            if (peso < minimo || peso > maximo) {
+                return;
+            }
+            ClavePeso clave = new ClavePeso(peso, id);
+            if (desde != null && clave.compareTo(desde) <= 0) {
+                return;
+            }
+            if (mejores.size() <= limite) {
+                mejores.add(clave);
+            } else if (clave.compareTo(mejores.peek()) < 0) {
+                mejores.poll();
+                mejores.add(clave);
+            }
+        });
+        return paginar(mejores, limite, repositorio);
+    }
+
+    /**
+     * Búsqueda por prefijo de nombre recorriendo todo el repositorio
+     */
+    public static Pagina escanearPorNombre(String prefijo, String cursor, int limite,
+            RepositorioUsuarios repositorio) {
+        String normalizado = normalizar(prefijo);
+        ClaveNombre desde = cursor == null ? null : ClaveNombre.decodificar(cursor);
+        PriorityQueue<ClaveNombre> mejores = new PriorityQueue<>(limite + 1, Collections.reverseOrder());
+        repositorio.recorrer((id, nombre, peso) -> {
+            if (!nombre.regionMatches(true, 0, normalizado, 0, normalizado.length())) {
+                return;
+            }
+            ClaveNombre clave = new ClaveNombre(normalizar(nombre), id);
+            if (!clave.nombre.startsWith(normalizado) || desde != null && clave.compareTo(desde) <= 0) {
+                return;
+            }
+            if (mejores.size() <= limite) {
+                mejores.add(clave);
+            } else if (clave.compareTo(mejores.peek()) < 0) {
+                mejores.poll();
+                mejores.add(clave);
+            }
+        });
+        return paginar(mejores, limite, repositorio);
+    }
+
+    private static <C extends Clave<C>> Pagina paginar(PriorityQueue<C> mejores, int limite,
+            RepositorioUsuarios repositorio) {
+        boolean hayMas = mejores.size() > limite;
+        if (hayMas) {
+            mejores.poll();
+        }
+        List<C> claves = new ArrayList<>(mejores);
+        Collections.sort(claves);
+        List<Coincidencia> usuarios = new ArrayList<>(claves.size());
+        StringBuilder nombre = new StringBuilder();
+        for (C clave : claves) {
+            nombre.setLength(0);
+            double peso = repositorio.leer(clave.id(), nombre);
+            usuarios.add(new Coincidencia(clave.id(), nombre.toString(), peso));
+        }
+        return new Pagina(usuarios, hayMas ? claves.get(claves.size() - 1).codificar() : null);
+    }
+
+    /**
+     * Forma de comparación de nombres: minúsculas independientes del idioma
+     */
+    static String normalizar(String texto) {
+        return texto.toLowerCase(Locale.ROOT);
+    }
+
+    /**
+     * Índice de ids por valor: hash de valor a ids ordenados más el conjunto
+     * ordenado de valores distintos
+     * El conjunto de ids de un valor se crea y se descarta dentro de compute, así
+     * que los valores distintos siguen exactamente a los conjuntos no vacíos. Un
+     * índice que no descarta valores (nombres, que no cambian) no admite quitar:
+     * sus conjuntos son permanentes y agregar a un valor conocido evita el cerrojo
+     * de compute.
+     */
+    private static final class IndiceOrdenado<K extends Comparable<K>> {
+        private final ConcurrentHashMap<K, ConcurrentSkipListSet<Long>> idsPorValor = new ConcurrentHashMap<>();
+        private final ConcurrentSkipListSet<K> valores = new ConcurrentSkipListSet<>();
+        private final boolean descartaVacios;
+
+        IndiceOrdenado(boolean descartaVacios) {
+            this.descartaVacios = descartaVacios;
+        }
+
+        /**
+         * @return true si el id no estaba bajo ese valor
+         */
+        boolean agregar(K valor, long id) {
+            if (!descartaVacios) {
+                ConcurrentSkipListSet<Long> existentes = idsPorValor.get(valor);
+                if (existentes != null) {
+                    return existentes.add(id);
+                }
+            }
+            boolean[] agregado = new boolean[1];
+            idsPorValor.compute(valor, (clave, ids) -> {
+                if (ids == null) {
+                    ids = new ConcurrentSkipListSet<>();
+                    valores.add(clave);
+                }
+                agregado[0] = ids.add(id);
+                return ids;
+            });
+            return agregado[0];
+        }
+
+        /**
+         * @return true si el id estaba bajo ese valor
+         */
+        boolean quitar(K valor, long id) {
+            if (!descartaVacios) {
+                // Descartar un conjunto que agregar usa sin cerrojo perdería ids
+                throw new UnsupportedOperationException("El índice no descarta valores");
+            }
+            boolean[] quitado = new boolean[1];
+            idsPorValor.computeIfPresent(valor, (clave, ids) -> {
+                quitado[0] = ids.remove(id);
+                if (ids.isEmpty()) {
+                    valores.remove(clave);
+                    return null;
+                }
+                return ids;
+            });
+            return quitado[0];
+        }
+
+        void limpiar() {
+            idsPorValor.clear();
+            valores.clear();
+        }
+
+        /**
+         * Valores distintos mayores o iguales a {@code desde}, en orden
+         */
+        NavigableSet<K> clavesDesde(K desde) {
+            return valores.tailSet(desde, true);
+        }
+
+        /**
+         * Ids de un valor mayores que {@code despuesDe}, en orden
+         * @return ids o un conjunto vacío si el valor se quitó mientras tanto
+         */
+        NavigableSet<Long> ids(K valor, long despuesDe) {
+            ConcurrentSkipListSet<Long> ids = idsPorValor.get(valor);
+            return ids == null ? Collections.emptyNavigableSet() : ids.tailSet(despuesDe, false);
+        }
+    }
+
+    private interface Clave<C> extends Comparable<C> {
+        long id();
+
+        String codificar();
+    }
+
+    /**
+     * Clave del índice de peso: ordena por peso y desempata por id
+     */
+    private static final class ClavePeso implements Clave<ClavePeso> {
+        final double peso;
+        final long id;
+
+        ClavePeso(double peso, long id) {
+            this.peso = peso;
+            this.id = id;
+        }
+
+        @Override
+        public long id() {
+            return id;
+        }
+
+        @Override
+        public int compareTo(ClavePeso otra) {
+            int porPeso = Double.compare(peso, otra.peso);
+            return porPeso != 0 ? porPeso : Long.compare(id, otra.id);
+        }
+
+        @Override
+        public String codificar() {
+            ByteBuffer bytes = ByteBuffer.allocate(16).putDouble(peso).putLong(id);
+            return MARCA_PESO + CODIFICADOR.encodeToString(bytes.array());
+        }
+
+        static ClavePeso decodificar(String cursor) {
+            ByteBuffer bytes = ByteBuffer.wrap(decodificarCursor(cursor, MARCA_PESO));
+            if (bytes.remaining() != 16) {
+                throw new IllegalArgumentException(CURSOR_INVALIDO);
+            }
+            return new ClavePeso(bytes.getDouble(), bytes.getLong());
+        }
+    }
+
+    /**
+     * Clave del índice de nombres: ordena por nombre normalizado y desempata por id
+     */
+    private static final class ClaveNombre implements Clave<ClaveNombre> {
+        final String nombre;
+        final long id;
+
+        ClaveNombre(String nombre, long id) {
+            this.nombre = nombre;
+            this.id = id;
+        }
+
+        @Override
+        public long id() {
+            return id;
+        }
+
+        @Override
+        public int compareTo(ClaveNombre otra) {
+            int porNombre = nombre.compareTo(otra.nombre);
+            return porNombre != 0 ? porNombre : Long.compare(id, otra.id);
+        }
+
+        @Override
+        public String codificar() {
+            byte[] texto = nombre.getBytes(StandardCharsets.UTF_8);
+            ByteBuffer bytes = ByteBuffer.allocate(8 + texto.length).putLong(id).put(texto);
+            return MARCA_NOMBRE + CODIFICADOR.encodeToString(bytes.array());
+        }
+
+        static ClaveNombre decodificar(String cursor) {
+            ByteBuffer bytes = ByteBuffer.wrap(decodificarCursor(cursor, MARCA_NOMBRE));
+            if (bytes.remaining() < 8) {
+                throw new IllegalArgumentException(CURSOR_INVALIDO);
+            }
+            long id = bytes.getLong();
+            return new ClaveNombre(StandardCharsets.UTF_8.decode(bytes).toString(), id);
+        }
+    }
+
+    private static byte[] decodificarCursor(String cursor, char marca) {
+        if (cursor.isEmpty() || cursor.charAt(0) != marca) {
+            throw new IllegalArgumentException(CURSOR_INVALIDO);
+        }
+        return DECODIFICADOR.decode(cursor.substring(1));
+    }
+
+    /**
+     * Usuario encontrado por una búsqueda
+     */
+    public static final class Coincidencia {
+        private final long id;
+        private final String nombre;
+        private final double peso;
+
+        Coincidencia(long id, String nombre, double peso) {
+            this.id = id;
+            this.nombre = nombre;
+            this.peso = peso;
+        }
+
+        public long getId() {
+            return id;
+        }
+
+        public String getNombre() {
+            return nombre;
+        }
+
+        public double getPeso() {
+            return peso;
+        }
+    }
+
+    /**
+     * Página de resultados de una búsqueda
+     */
+    public static final class Pagina {
+        private final List<Coincidencia> usuarios;
+        private final String siguiente;
+
+        Pagina(List<Coincidencia> usuarios, String siguiente) {
+            this.usuarios = Collections.unmodifiableList(usuarios);
+            this.siguiente = siguiente;
+        }
+
+        public List<Coincidencia> getUsuarios() {
+            return usuarios;
+        }
+
+        /**
+         * Cursor de la página siguiente
+         * @return cursor opaco o null si esta es la última página
+         */
+        public String getSiguiente() {
+            return siguiente;
+        }
+    }
+}
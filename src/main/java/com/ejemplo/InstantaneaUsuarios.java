@@ -0,0 +1,388 @@
+package com.ejemplo;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.function.LongConsumer;
+
+/**
+ * Instantánea binaria compacta del repositorio de usuarios
+ * Guarda id, nombre, peso y versión de cada usuario y su historial de pesos,
+ * junto con el LSN del registro de escritura a partir del cual hay que
+ * reproducir: así el registro ya cubierto puede borrarse sin perder nada.
+ * Los nombres se deduplican. La carga se hace a través de MappedByteBuffer,
+ * en ventanas para admitir archivos de más de 2 GB.
+ *
+ * Formato: [cabecera: 40 bytes]
+ *          [usuarios: (id: long, peso: double, versión: long, nombre: int) x N]
+ *          [nombres: (longitud: int, UTF-8) x M]
+ *          [historial: (id: long, muestras: int, (timestamp: long, peso: double) x muestras) x S]
+ * También se leen instantáneas de la versión 1, sin versión ni historial y
+ * con la longitud de cada nombre en un short.
+ */
+public final class InstantaneaUsuarios {
+
+    private static final int MAGICO = 0x48545331; // "HTS1"
+    private static final int VERSION = 2;
+    private static final int VERSION_SIN_HISTORIAL = 1;
+    private static final int CABECERA = 40;
+    private static final int TAMANO_USUARIO = 8 + 8 + 8 + 4;
+    private static final int TAMANO_USUARIO_SIN_HISTORIAL = 8 + 8 + 4;
+    private static final long VENTANA = 256L * 1024 * 1024;
+    private static final int LOTE_CARGA = 1 << 16;
+
+    private InstantaneaUsuarios() {
+    }
+
+    /**
+     * Escribe una instantánea del repositorio sin historial
+     * @see #escribir(RepositorioUsuarios, HistorialPesos, long, Path)
+     */
+    public static long escribir(RepositorioUsuarios repositorio, long lsn, Path archivo) throws IOException {
+        return escribir(repositorio, null, lsn, archivo);
+    }
+
+    /**
+     * Escribe una instantánea del repositorio de forma atómica (archivo temporal + renombrado)
+     * Las actualizaciones concurrentes pueden quedar o no incluidas; reproducir el
+     * registro desde {@code lsn} es idempotente y deja el estado correcto.
+     * @param repositorio Repositorio a guardar
+     * @param historial Historial de pesos a guardar, o null
+     * @param lsn Último LSN del registro ya aplicado antes de empezar el recorrido
+     * @param archivo Ruta final de la instantánea
+     * @return cantidad de usuarios escritos
+     * @throws IOException si no se puede escribir el archivo
+     */
+    public static long escribir(RepositorioUsuarios repositorio, HistorialPesos historial, long lsn, Path archivo)
+            throws IOException {
+        Path temporal = archivo.resolveSibling(archivo.getFileName() + ".tmp");
+        Map<String, Integer> referencias = new HashMap<>();
+        long[] usuarios = new long[1];
+
+        try (FileChannel canal = FileChannel.open(temporal, StandardOpenOption.CREATE,
+                StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+            EscritorBuffer escritor = new EscritorBuffer(canal);
+            escritor.buffer.put(new byte[CABECERA]);
+
+            IOException[] error = new IOException[1];
+            repositorio.recorrer((id, nombre, peso) -> {
+                if (error[0] != null) {
+                    return;
+                }
+                Integer ref = referencias.get(nombre);
+                if (ref == null) {
+                    ref = referencias.size();
+                    referencias.put(nombre, ref);
+                }
+                // Peso y versión de un mismo instante
+                Usuario.EstadoPeso estado = repositorio.obtenerEstado(id);
+                try {
+                    escritor.asegurar(TAMANO_USUARIO);
+                    escritor.buffer.putLong(id)
+                        .putDouble(estado != null ? estado.getPeso() : peso)
+                        .putLong(estado != null ? estado.getVersion() : 0)
+                        .putInt(ref);
+                    usuarios[0]++;
+                } catch (IOException e) {
+                    error[0] = e;
+                }
+            });
+            if (error[0] != null) {
+                throw error[0];
+            }
+
+            long offsetNombres = escritor.posicion();
+            String[] nombres = new String[referencias.size()];
+            referencias.forEach((nombre, ref) -> nombres[ref] = nombre);
+            for (String nombre : nombres) {
+                byte[] bytes = nombre.getBytes(StandardCharsets.UTF_8);
+                escritor.asegurar(4);
+                escritor.buffer.putInt(bytes.length);
+                escritor.escribir(bytes);
+            }
+            int series = historial == null ? 0 : escribirHistorial(historial, escritor);
+            escritor.vaciar();
+
+            ByteBuffer cabecera = ByteBuffer.allocate(CABECERA);
+            cabecera.putInt(MAGICO).putInt(VERSION).putLong(lsn).putLong(usuarios[0])
+                .putInt(nombres.length).putLong(offsetNombres).putInt(series);
+            cabecera.clear();
+            while (cabecera.hasRemaining()) {
+                canal.write(cabecera, cabecera.position());
+            }
+            canal.force(true);
+        }
+        Files.move(temporal, archivo, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        return usuarios[0];
+    }
+
+    /**
+     * Carga una instantánea en un repositorio, sin su historial
+     * @see #cargar(Path, RepositorioUsuarios, HistorialPesos, LongConsumer)
+     */
+    public static long cargar(Path archivo, RepositorioUsuarios destino, LongConsumer idCargado) throws IOException {
+        return cargar(archivo, destino, null, idCargado);
+    }
+
+    /**
+     * Carga una instantánea en un repositorio
+     * @param archivo Ruta de la instantánea
+     * @param destino Repositorio destino (con carga masiva si es {@link RepositorioColumnar})
+     * @param historial Recibe el historial de pesos guardado, puede ser null
+     * @param idCargado Recibe cada id cargado (p. ej. para reservar ids), puede ser null
+     * @return LSN del registro desde el que hay que reproducir
+     * @throws IOException si el archivo no puede leerse o no es una instantánea válida
+     */
+    public static long cargar(Path archivo, RepositorioUsuarios destino, HistorialPesos historial,
+            LongConsumer idCargado) throws IOException {
+        try (FileChannel canal = FileChannel.open(archivo, StandardOpenOption.READ)) {
+            LectorMapeado lector = new LectorMapeado(canal, 0);
+            if (lector.getInt() != MAGICO) {
+                throw new IOException("Archivo de instantánea no válido: " + archivo);
+            }
+            int version = lector.getInt();
+            if (version != VERSION && version != VERSION_SIN_HISTORIAL) {
+                throw new IOException("Archivo de instantánea no válido: " + archivo);
+            }
+            boolean conHistorial = version == VERSION;
+            long lsn = lector.getLong();
+            long usuarios = lector.getLong();
+            int cantidadNombres = lector.getInt();
+            long offsetNombres = lector.getLong();
+            int series = conHistorial ? lector.getInt() : 0;
+            long tamanoUsuario = conHistorial ? TAMANO_USUARIO : TAMANO_USUARIO_SIN_HISTORIAL;
+            if (offsetNombres != CABECERA + usuarios * tamanoUsuario || offsetNombres > canal.size()) {
+                throw new IOException("Instantánea incompleta: " + archivo);
+            }
+
+            String[] nombres = new String[cantidadNombres];
+            LectorMapeado lectorNombres = new LectorMapeado(canal, offsetNombres);
+            for (int i = 0; i < cantidadNombres; i++) {
+                nombres[i] = lectorNombres.getString(conHistorial ? lectorNombres.getInt()
+                    : lectorNombres.getShort() & 0xFFFF);
+            }
+
+            RepositorioColumnar columnar = destino instanceof RepositorioColumnar
+                ? (RepositorioColumnar) destino : null;
+            if (columnar != null) {
+                columnar.reservar((int) Math.min(usuarios, Integer.MAX_VALUE));
+            }
+            int[] traduccion = new int[cantidadNombres];
+            long[] ids = new long[LOTE_CARGA];
+            double[] pesos = new double[LOTE_CARGA];
+            long[] versiones = new long[LOTE_CARGA];
+            int[] refs = new int[LOTE_CARGA];
+            LectorMapeado lectorUsuarios = new LectorMapeado(canal, CABECERA);
+            long restantes = usuarios;
+            while (restantes > 0) {
+                int lote = (int) Math.min(LOTE_CARGA, restantes);
+                for (int i = 0; i < lote; i++) {
+                    ids[i] = lectorUsuarios.getLong();
+                    pesos[i] = Double.longBitsToDouble(lectorUsuarios.getLong());
+                    versiones[i] = conHistorial ? lectorUsuarios.getLong() : 0;
+                    refs[i] = lectorUsuarios.getInt();
+                    if (idCargado != null) {
+                        idCargado.accept(ids[i]);
+                    }
+                }
+                if (columnar != null) {
+                    columnar.cargarLote(ids, pesos, refs, lote, nombres, traduccion);
+                } else {
+                    for (int i = 0; i < lote; i++) {
+                        destino.insertar(ids[i], nombres[refs[i]], pesos[i]);
+                    }
+                }
+                // La carga masiva deja la versión en 0: se restaura la de quien ya cambió
+                for (int i = 0; i < lote; i++) {
+                    if (versiones[i] > 0) {
+                        destino.establecerEstado(ids[i], pesos[i], versiones[i]);
+                    }
+                }
+                restantes -= lote;
+            }
+
+            // El historial sigue a los nombres
+            for (int s = 0; s < series; s++) {
+                long id = lectorNombres.getLong();
+                int muestras = lectorNombres.getInt();
+                for (int i = 0; i < muestras; i++) {
+                    long timestampMs = lectorNombres.getLong();
+                    double peso = Double.longBitsToDouble(lectorNombres.getLong());
+                    if (historial != null) {
+                        historial.registrarOrdenado(id, timestampMs, peso);
+                    }
+                }
+            }
+            return lsn;
+        }
+    }
+
+    /**
+     * Escribe la serie de cada usuario del historial
+     * @return cantidad de series escritas
+     */
+    private static int escribirHistorial(HistorialPesos historial, EscritorBuffer escritor) throws IOException {
+        Muestras muestras = new Muestras();
+        int[] series = new int[1];
+        IOException[] error = new IOException[1];
+        historial.recorrer((id, serie) -> {
+            if (error[0] != null) {
+                return;
+            }
+            // Se copian antes de escribir: la serie puede crecer mientras tanto
+            muestras.cantidad = 0;
+            serie.recorrer(Long.MIN_VALUE, Long.MAX_VALUE, muestras::agregar);
+            if (muestras.cantidad == 0) {
+                return;
+            }
+            try {
+                escritor.asegurar(8 + 4);
+                escritor.buffer.putLong(id).putInt(muestras.cantidad);
+                for (int i = 0; i < muestras.cantidad; i++) {
+                    escritor.asegurar(8 + 8);
+                    escritor.buffer.putLong(muestras.timestamps[i]).putDouble(muestras.pesos[i]);
+                }
+                series[0]++;
+            } catch (IOException e) {
+                error[0] = e;
+            }
+        });
+        if (error[0] != null) {
+            throw error[0];
+        }
+        return series[0];
+    }
+
+    /**
+     * Muestras de una serie copiadas para escribirlas, reutilizadas entre series
+     */
+    private static final class Muestras {
+        private long[] timestamps = new long[SeriePesos.MUESTRAS_POR_BLOQUE];
+        private double[] pesos = new double[SeriePesos.MUESTRAS_POR_BLOQUE];
+        private int cantidad;
+
+        void agregar(long timestampMs, double peso) {
+            if (cantidad == timestamps.length) {
+                timestamps = Arrays.copyOf(timestamps, cantidad * 2);
+                pesos = Arrays.copyOf(pesos, cantidad * 2);
+            }
+            timestamps[cantidad] = timestampMs;
+            pesos[cantidad] = peso;
+            cantidad++;
+        }
+    }
+
+    /**
+     * Escritura secuencial con un buffer directo reutilizado
+     */
+    private static final class EscritorBuffer {
+        private final FileChannel canal;
+        private final ByteBuffer buffer = ByteBuffer.allocateDirect(1 << 20);
+        private long escritos;
+
+        EscritorBuffer(FileChannel canal) {
+            this.canal = canal;
+        }
+
+        void asegurar(int bytes) throws IOException {
+            if (buffer.remaining() < bytes) {
+                vaciar();
+            }
+        }
+
+        void vaciar() throws IOException {
+            buffer.flip();
+            while (buffer.hasRemaining()) {
+                escritos += canal.write(buffer);
+            }
+            buffer.clear();
+        }
+
+        /**
+         * Escribe bytes de cualquier longitud, aunque superen el buffer
+         */
+        void escribir(byte[] bytes) throws IOException {
+            int escritosDelArreglo = 0;
+            while (escritosDelArreglo < bytes.length) {
+                if (!buffer.hasRemaining()) {
+                    vaciar();
+                }
+                int cantidad = Math.min(buffer.remaining(), bytes.length - escritosDelArreglo);
+                buffer.put(bytes, escritosDelArreglo, cantidad);
+                escritosDelArreglo += cantidad;
+            }
+        }
+
+        long posicion() {
+            return escritos + buffer.position();
+        }
+    }
+
+    /**
+     * Lectura secuencial sobre ventanas mapeadas en memoria
+     */
+    private static final class LectorMapeado {
+        private final FileChannel canal;
+        private final long tamano;
+        private MappedByteBuffer ventana;
+        private long inicioVentana;
+        private long posicion;
+
+        LectorMapeado(FileChannel canal, long posicion) throws IOException {
+            this.canal = canal;
+            this.tamano = canal.size();
+            this.posicion = posicion;
+        }
+
+        int getInt() throws IOException {
+            int offset = asegurar(4);
+            posicion += 4;
+            return ventana.getInt(offset);
+        }
+
+        long getLong() throws IOException {
+            int offset = asegurar(8);
+            posicion += 8;
+            return ventana.getLong(offset);
+        }
+
+        String getString(int longitud) throws IOException {
+            if (longitud < 0) {
+                throw new IOException("Instantánea corrupta: longitud de nombre negativa");
+            }
+            int offset = asegurar(longitud);
+            byte[] bytes = new byte[longitud];
+            for (int i = 0; i < longitud; i++) {
+                bytes[i] = ventana.get(offset + i);
+            }
+            posicion += longitud;
+            return new String(bytes, StandardCharsets.UTF_8);
+        }
+
+        short getShort() throws IOException {
+            int offset = asegurar(2);
+            posicion += 2;
+            return ventana.getShort(offset);
+        }
+
+        private int asegurar(int bytes) throws IOException {
+            if (posicion + bytes > tamano) {
+                throw new IOException("Instantánea truncada");
+            }
+            if (ventana == null || posicion + bytes > inicioVentana + ventana.limit()) {
+                inicioVentana = posicion;
+                ventana = canal.map(FileChannel.MapMode.READ_ONLY, posicion, Math.min(VENTANA, tamano - posicion));
+            }
+            return (int) (posicion - inicioVentana);
+        }
+    }
+}
@@ -0,0 +1,109 @@
+package com.ejemplo;
+
+import java.util.Map;
+
+/**
+ * Serialización mínima a JSON de las respuestas del controlador
+ * Admite mapas, colecciones, arreglos de double, números, booleanos,
+ * cadenas y null, que es todo lo que devuelve la API en forma de mapa.
+ */
+public final class Json {
+
+    private Json() {
+    }
+
+    /**
+     * Convierte un valor a texto JSON
+     * @param valor Mapa, colección, número, cadena, booleano o null
+     * @return texto JSON
+     */
+    public static String aJson(Object valor) {
+        StringBuilder texto = new StringBuilder(128);
+        escribir(texto, valor);
+        return texto.toString();
+    }
+
+    private static void escribir(StringBuilder texto, Object valor) {
+        if (valor == null) {
+            texto.append("null");
+        } else if (valor instanceof String) {
+            escribirCadena(texto, (String) valor);
+        } else if (valor instanceof Double || valor instanceof Float) {
+            double numero = ((Number) valor).doubleValue();
+            if (Double.isNaN(numero) || Double.isInfinite(numero)) {
+                texto.append("null");
+            } else {
+                texto.append(numero);
+            }
+        } else if (valor instanceof Number || valor instanceof Boolean) {
+            texto.append(valor);
+        } else if (valor instanceof Map) {
+            texto.append('{');
+            boolean primero = true;
+            for (Map.Entry<?, ?> entrada : ((Map<?, ?>) valor).entrySet()) {
+                if (!primero) {
+                    texto.append(',');
+                }
+                primero = false;
+                escribirCadena(texto, String.valueOf(entrada.getKey()));
+                texto.append(':');
+                escribir(texto, entrada.getValue());
+            }
+            texto.append('}');
+        } else if (valor instanceof Iterable) {
+            texto.append('[');
+            boolean primero = true;
+            for (Object elemento : (Iterable<?>) valor) {
+                if (!primero) {
+                    texto.append(',');
+                }
+                primero = false;
+                escribir(texto, elemento);
+            }
+            texto.append(']');
+        } else if (valor instanceof double[]) {
+            texto.append('[');
+            double[] numeros = (double[]) valor;
+            for (int i = 0; i < numeros.length; i++) {
+                if (i > 0) {
+                    texto.append(',');
+                }
+                escribir(texto, numeros[i]);
+            }
+            texto.append(']');
+        } else {
+            escribirCadena(texto, valor.toString());
+        }
+    }
+
+    private static void escribirCadena(StringBuilder texto, String cadena) {
+        texto.append('"');
+        for (int i = 0; i < cadena.length(); i++) {
+            char c = cadena.charAt(i);
+            switch (c) {
+                case '"':
+                    texto.append("\\\"");
+                    break;
+                case '\\':
+                    texto.append("\\\\");
+                    break;
+                case '\n':
+                    texto.append("\\n");
+                    break;
+                case '\r':
+                    texto.append("\\r");
+                    break;
+                case '\t':
+                    texto.append("\\t");
+                    break;
+                default:
+                    if (c < 0x20) {
+                        texto.append(String.format("\\u%04x", (int) c));
+                    } else {
+                        texto.append(c);
+                    }
+            }
+        }
+        texto.append('"');
+    }
+}
@@ -0,0 +1,383 @@
+package com.ejemplo;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Lector JSON en streaming (pull) sobre un ByteBuffer con texto UTF-8
+ * Pensado para los cuerpos de alta y actualización: recorre un objeto campo a
+ * campo, compara nombres de campo contra constantes sin crear Strings y lee
+ * números sin pasar por texto cuando tienen hasta 15 cifras significativas.
+ * Los campos desconocidos se saltan. Un JSON mal formado lanza
+ * IllegalArgumentException con la posición del error.
+ */
+public final class LectorJson {
+
+    private static final double[] POTENCIAS_10 = {
+        1e0, 1e1, 1e2, 1e3, 1e4, 1e5, 1e6, 1e7, 1e8, 1e9, 1e10, 1e11,
+        1e12, 1e13, 1e14, 1e15, 1e16, 1e17, 1e18, 1e19, 1e20, 1e21, 1e22
+    };
+    private static final int CIFRAS_EXACTAS = 15;
+    private static final byte[] NOMBRE = "nombre".getBytes(StandardCharsets.US_ASCII);
+    private static final byte[] PESO = "peso".getBytes(StandardCharsets.US_ASCII);
+
+    private ByteBuffer origen;
+    private int inicioCampo;
+    private int finCampo;
+    private boolean primerCampo;
+
+    /**
+     * Prepara el lector para un documento nuevo
+     * @param buffer Texto JSON entre la posición y el límite del buffer
+     * @return este lector
+     */
+    public LectorJson iniciar(ByteBuffer buffer) {
+        this.origen = buffer;
+        return this;
+    }
+
+    /**
+     * Lee un cuerpo de alta: {"nombre": "...", "peso": 70.5}
+     * @return solicitud (nombre null o peso NaN si faltan)
+     */
+    public SolicitudCreacion leerCreacion() {
+        String nombre = null;
+        double peso = Double.NaN;
+        inicioObjeto();
+        while (siguienteCampo()) {
+            if (campoEs(NOMBRE)) {
+                nombre = leerCadena();
+            } else if (campoEs(PESO)) {
+                peso = leerNumero();
+            } else {
+                saltarValor();
+            }
+        }
+        finDocumento();
+        return new SolicitudCreacion(nombre, peso);
+    }
+
+    /**
+     * Lee un cuerpo de actualización: {"peso": 70.5}
+     * @return peso o NaN si falta
+     */
+    public double leerPeso() {
+        double peso = Double.NaN;
+        inicioObjeto();
+        while (siguienteCampo()) {
+            if (campoEs(PESO)) {
+                peso = leerNumero();
+            } else {
+                saltarValor();
+            }
+        }
+        finDocumento();
+        return peso;
+    }
+
+    /**
+     * Consume la apertura de un objeto
+     */
+    public void inicioObjeto() {
+        esperar('{');
+        primerCampo = true;
+    }
+
+    /**
+     * Avanza al siguiente campo del objeto actual y consume su ':'
+     * @return false si se llegó al cierre del objeto (ya consumido)
+     */
+    public boolean siguienteCampo() {
+        byte b = siguienteSignificativo();
+        if (b == '}') {
+            origen.get();
+            return false;
+        }
+        if (!primerCampo) {
+            esperar(',');
+            b = siguienteSignificativo();
+        }
+        primerCampo = false;
+        if (b != '"') {
+            throw error("se esperaba el nombre de un campo");
+        }
+        origen.get();
+        inicioCampo = origen.position();
+        saltarCadena();
+        finCampo = origen.position() - 1;
+        esperar(':');
+        return true;
+    }
+
+    /**
+     * Compara el nombre del último campo con una constante ASCII, sin crear un String
+     */
+    public boolean campoEs(byte[] nombre) {
+        if (finCampo - inicioCampo != nombre.length) {
+            return false;
+        }
+        for (int i = 0; i < nombre.length; i++) {
+            if (origen.get(inicioCampo + i) != nombre[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Lee una cadena (o null) y decodifica sus escapes
+     */
+    public String leerCadena() {
+        byte b = siguienteSignificativo();
+        if (b == 'n') {
+            esperarLiteral("null");
+            return null;
+        }
+        if (b != '"') {
+            throw error("se esperaba una cadena");
+        }
+        origen.get();
+        int inicio = origen.position();
+        boolean conEscapes = false;
+        while (true) {
+            byte c = leerByte();
+            if (c == '"') {
+                break;
+            }
+            if (c == '\\') {
+                conEscapes = true;
+                leerByte();
+            }
+        }
+        String crudo = new String(copiar(inicio, origen.position() - 1), StandardCharsets.UTF_8);
+        return conEscapes ? decodificarEscapes(crudo) : crudo;
+    }
+
+    /**
+     * Lee un número JSON
+     * Con hasta 15 cifras significativas y exponente decimal de hasta 22 el
+     * resultado se calcula exacto con una sola multiplicación o división (el
+     * caso habitual para pesos); si no, se delega en Double.parseDouble.
+     */
+    public double leerNumero() {
+        siguienteSignificativo();
+        int inicio = origen.position();
+        boolean negativo = false;
+        if (mirar() == '-') {
+            negativo = true;
+            origen.get();
+        }
+        long mantisa = 0;
+        int cifras = 0;
+        int exponente = 0;
+        boolean conDigitos = false;
+        while (origen.hasRemaining() && esDigito(mirar())) {
+            conDigitos = true;
+            int digito = origen.get() - '0';
+            if (mantisa != 0 || digito != 0) {
+                cifras++;
+            }
+            if (cifras <= 18) {
+                mantisa = mantisa * 10 + digito;
+            } else {
+                exponente++;
+            }
+        }
+        if (origen.hasRemaining() && mirar() == '.') {
+            origen.get();
+            while (origen.hasRemaining() && esDigito(mirar())) {
+                conDigitos = true;
+                int digito = origen.get() - '0';
+                if (mantisa != 0 || digito != 0) {
+                    cifras++;
+                }
+                if (cifras <= 18) {
+                    mantisa = mantisa * 10 + digito;
+                    exponente--;
+                }
+            }
+        }
+        if (!conDigitos) {
+            throw error("se esperaba un número");
+        }
+        if (origen.hasRemaining() && (mirar() == 'e' || mirar() == 'E')) {
+            origen.get();
+            boolean exponenteNegativo = false;
+            if (origen.hasRemaining() && (mirar() == '+' || mirar() == '-')) {
+                exponenteNegativo = origen.get() == '-';
+            }
+            int explicito = 0;
+            boolean conExponente = false;
+            while (origen.hasRemaining() && esDigito(mirar())) {
+                conExponente = true;
+                explicito = Math.min(explicito * 10 + (origen.get() - '0'), 10_000);
+            }
+            if (!conExponente) {
+                throw error("exponente incompleto");
+            }
+            exponente += exponenteNegativo ? -explicito : explicito;
+        }
+        if (cifras <= CIFRAS_EXACTAS && Math.abs(exponente) < POTENCIAS_10.length) {
+            // mantisa < 10^15 < 2^53 y 10^|exponente| son exactos: un solo redondeo
+            double valor = exponente >= 0 ? mantisa * POTENCIAS_10[exponente] : mantisa / POTENCIAS_10[-exponente];
+            return negativo ? -valor : valor;
+        }
+        return Double.parseDouble(new String(copiar(inicio, origen.position()), StandardCharsets.US_ASCII));
+    }
+
+    /**
+     * Salta un valor cualquiera (cadena, número, literal, objeto o arreglo)
+     */
+    public void saltarValor() {
+        byte b = siguienteSignificativo();
+        if (b == '"') {
+            origen.get();
+            saltarCadena();
+        } else if (b == '{' || b == '[') {
+            int anidamiento = 0;
+            do {
+                byte c = leerByte();
+                if (c == '"') {
+                    saltarCadena();
+                } else if (c == '{' || c == '[') {
+                    anidamiento++;
+                } else if (c == '}' || c == ']') {
+                    anidamiento--;
+                }
+            } while (anidamiento > 0);
+        } else if (b == 't') {
+            esperarLiteral("true");
+        } else if (b == 'f') {
+            esperarLiteral("false");
+        } else if (b == 'n') {
+            esperarLiteral("null");
+        } else {
+            leerNumero();
+        }
+    }
+
+    private void finDocumento() {
+        while (origen.hasRemaining()) {
+            if (!esEspacio(origen.get())) {
+                throw error("contenido después del objeto");
+            }
+        }
+    }
+
+    private void saltarCadena() {
+        while (true) {
+            byte c = leerByte();
+            if (c == '"') {
+                return;
+            }
+            if (c == '\\') {
+                leerByte();
+            }
+        }
+    }
+
+    /**
+     * Resuelve los escapes de una cadena (camino poco frecuente)
+     * Trabaja sobre chars para que un par sustituto escrito como dos \\uXXXX quede unido.
+     */
+    private String decodificarEscapes(String crudo) {
+        StringBuilder texto = new StringBuilder(crudo.length());
+        for (int i = 0; i < crudo.length(); i++) {
+            char c = crudo.charAt(i);
+            if (c != '\\') {
+                texto.append(c);
+                continue;
+            }
+            char escape = crudo.charAt(++i);
+            switch (escape) {
+                case 'n':
+                    texto.append('\n');
+                    break;
+                case 'r':
+                    texto.append('\r');
+                    break;
+                case 't':
+                    texto.append('\t');
+                    break;
+                case 'b':
+                    texto.append('\b');
+                    break;
+                case 'f':
+                    texto.append('\f');
+                    break;
+                case 'u':
+                    int punto = 0;
+                    for (int j = i + 1; j <= i + 4; j++) {
+                        int valor = j < crudo.length() ? Character.digit(crudo.charAt(j), 16) : -1;
+                        if (valor < 0) {
+                            throw error("escape \\u inválido");
+                        }
+                        punto = punto * 16 + valor;
+                    }
+                    texto.append((char) punto);
+                    i += 4;
+                    break;
+                default:
+                    texto.append(escape);
+            }
+        }
+        return texto.toString();
+    }
+
+    private byte[] copiar(int inicio, int fin) {
+        ByteBuffer vista = origen.duplicate();
+        vista.limit(fin).position(inicio);
+        byte[] bytes = new byte[fin - inicio];
+        vista.get(bytes);
+        return bytes;
+    }
+
+    private void esperar(char esperado) {
+        if (siguienteSignificativo() != esperado) {
+            throw error("se esperaba '" + esperado + "'");
+        }
+        origen.get();
+    }
+
+    private void esperarLiteral(String literal) {
+        for (int i = 0; i < literal.length(); i++) {
+            if (leerByte() != literal.charAt(i)) {
+                throw error("literal inválido");
+            }
+        }
+    }
+
+    private byte siguienteSignificativo() {
+        while (origen.hasRemaining()) {
+            byte b = mirar();
+            if (!esEspacio(b)) {
+                return b;
+            }
+            origen.get();
+        }
+        throw error("fin inesperado del documento");
+    }
+
+    private byte leerByte() {
+        if (!origen.hasRemaining()) {
+            throw error("fin inesperado del documento");
+        }
+        return origen.get();
+    }
+
+    private byte mirar() {
+        return origen.get(origen.position());
+    }
+
+    private static boolean esDigito(byte b) {
+        return b >= '0' && b <= '9';
+    }
+
+    private static boolean esEspacio(byte b) {
+        return b == ' ' || b == '\n' || b == '\r' || b == '\t';
+    }
+
+    private IllegalArgumentException error(String mensaje) {
+        return new IllegalArgumentException("JSON inválido en la posición " + origen.position() + ": " + mensaje);
+    }
+}
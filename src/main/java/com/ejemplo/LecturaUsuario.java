@@ -0,0 +1,66 @@
+package com.ejemplo;
+
+/**
+ * Contenedor mutable y reutilizable para consultar usuarios sin reservar memoria
+ * Cada hilo debe usar su propia instancia; el nombre se copia en un
+ * StringBuilder que conserva su capacidad entre consultas.
+ */
+public final class LecturaUsuario {
+
+    private final StringBuilder nombre = new StringBuilder(32);
+    private int status;
+    private String error;
+    private double peso = Double.NaN;
+    private long timestamp;
+
+    public int getStatus() {
+        return status;
+    }
+
+    /**
+     * Mensaje de error de la última consulta
+     * @return mensaje o null si la consulta tuvo éxito
+     */
+    public String getError() {
+        return error;
+    }
+
+    /**
+     * Nombre del usuario, válido hasta la siguiente consulta con este contenedor
+     * @return nombre del usuario
+     */
+    public CharSequence getNombre() {
+        return nombre;
+    }
+
+    public double getPeso() {
+        return peso;
+    }
+
+    public long getTimestamp() {
+        return timestamp;
+    }
+
+    StringBuilder limpiar() {
+        nombre.setLength(0);
+        status = 0;
+        error = null;
+        peso = Double.NaN;
+        timestamp = 0;
+        return nombre;
+    }
+
+    int completar(double pesoLeido, long timestampMs) {
+        peso = pesoLeido;
+        timestamp = timestampMs;
+        status = 200;
+        return status;
+    }
+
+    int fallar(String mensaje, int codigo) {
+        nombre.setLength(0);
+        error = mensaje;
+        status = codigo;
+        return status;
+    }
+}
@@ -1,10 +1,31 @@
 package com.ejemplo;
 
+import java.io.IOException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+
 /**
  * Clase principal para demostrar el funcionamiento del sistema
+ * Con el argumento {@code servidor [puerto]} levanta en cambio el servidor HTTP
+ * y con {@code importar <archivo>} importa usuarios desde CSV o NDJSON.
+ * {@code carga [tasa] [segundos] [crear:actualizar:consultar] [zipf]} mide el
+ * controlador con carga de lazo abierto (ver {@link GeneradorCarga}).
  */
 public class Main {
-    public static void main(String[] args) {
+    public static void main(String[] args) throws IOException, InterruptedException {
+        if (args.length > 0 && args[0].equals("servidor")) {
+            iniciarServidor(args.length > 1 ? Integer.parseInt(args[1]) : 8080);
+            return;
+        }
+        if (args.length > 1 && args[0].equals("importar")) {
+            importar(Paths.get(args[1]));
+            return;
+        }
+        if (args.length > 0 && args[0].equals("carga")) {
+            medirCarga(args);
+            return;
+        }
+        
         System.out.println("=== Sistema HealthTrack ===");
         System.out.println("Demostrando el error crítico del sistema\n");
         
@@ -36,4 +57,53 @@ public class Main {
         usuario.mostrarInformacion();
         System.out.println("   Confirmado: El sistema siempre resta 1kg al peso actual");
     }
-}
\ No newline at end of file
+    
+    private static void iniciarServidor(int puerto) throws IOException {
+        long inicio = System.nanoTime();
+        ServidorHttp servidor = ServidorHttp.iniciar(puerto);
+        long arranqueMs = (System.nanoTime() - inicio) / 1_000_000;
+        Runtime.getRuntime().addShutdownHook(new Thread(servidor::close, "servidor-cierre"));
+        System.out.println("=== Servidor HealthTrack ===");
+        System.out.println("🚀 Escuchando en http://localhost:" + servidor.getPuerto()
+            + " (arranque: " + arranqueMs + " ms)");
+    }
+    
+    private static void importar(Path archivo) throws IOException {
+        UsuarioController.configurarRepositorio(new RepositorioColumnar());
+        System.out.println("=== Importación HealthTrack ===");
+        int[] ultimoPorcentaje = {-1};
+        ImportadorUsuarios.Resultado resultado = UsuarioController.importarUsuarios(archivo, progreso -> {
+            int porcentaje = (int) (progreso.getFraccion() * 100);
+            if (porcentaje / 10 != ultimoPorcentaje[0] / 10) {
+                ultimoPorcentaje[0] = porcentaje;
+                System.out.println("⏳ " + porcentaje + "% (" + progreso.getImportados() + " importados, "
+                    + progreso.getRechazados() + " rechazados)");
+            }
+        });
+        System.out.println("✅ " + resultado.getImportados() + " usuarios importados en " + resultado.getDuracionMs()
+            + " ms (" + (long) resultado.getFilasPorSegundo() + " filas/s)");
+        if (resultado.getRechazados() > 0) {
+            System.out.println("❌ " + resultado.getRechazados() + " filas rechazadas:");
+            resultado.getRechazos().stream().limit(20).forEach(rechazo -> System.out.println("   " + rechazo));
+        }
+    }
+    
+    private static void medirCarga(String[] args) throws InterruptedException {
+        double tasa = args.length > 1 ? Double.parseDouble(args[1]) : 200;
+        long segundos = args.length > 2 ? Long.parseLong(args[2]) : 10;
+        GeneradorCarga.Configuracion configuracion = GeneradorCarga.Configuracion.constante(tasa, segundos * 1000);
+        if (args.length > 3) {
+            String[] mezcla = args[3].split(":");
+            configuracion = configuracion.conMezcla(Integer.parseInt(mezcla[0]), Integer.parseInt(mezcla[1]),
+                Integer.parseInt(mezcla[2]));
+        }
+        if (args.length > 4) {
+            configuracion = configuracion.conUsuarios(1000, Double.parseDouble(args[4]));
+        }
+        UsuarioController.configurarRepositorio(new RepositorioColumnar());
+        System.out.println("=== Carga HealthTrack ===");
+        System.out.println("⏳ Midiendo durante " + segundos + " s...");
+        GeneradorCarga.Informe informe = GeneradorCarga.ejecutar(configuracion, GeneradorCarga.CONTROLADOR);
+        System.out.print(informe.aTexto());
+    }
+}
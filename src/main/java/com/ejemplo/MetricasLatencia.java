@@ -0,0 +1,149 @@
+package com.ejemplo;
+
+import java.util.EnumMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Latencias por operación del controlador y código de estado
+ * Hay un {@link HistogramaLatencias} por cada par (operación, estado),
+ * creado de antemano para que registrar no reserve memoria ni tome cerrojos.
+ * Los estados fuera de {@link #ESTADOS} se acumulan en una serie "otro".
+ */
+public class MetricasLatencia {
+
+    /**
+     * Operaciones instrumentadas
+     */
+    public enum Operacion {
+        CREAR("crear"),
+        ACTUALIZAR("actualizar"),
+        CONSULTAR("consultar"),
+        ESTADISTICAS("estadisticas"),
+        BUSCAR("buscar"),
+        CREAR_LOTE("crear_lote"),
+        ACTUALIZAR_LOTE("actualizar_lote");
+
+        private final String etiqueta;
+
+        Operacion(String etiqueta) {
+            this.etiqueta = etiqueta;
+        }
+
+        public String getEtiqueta() {
+            return etiqueta;
+        }
+    }
+
+    static final int[] ESTADOS = {200, 201, 400, 404, 409, 429, 500, 503};
+    private static final String OTRO = "otro";
+    private static final double[] PERCENTILES = {50.0, 90.0, 99.0, 99.9};
+    private static final String NOMBRE = "healthtrack_latencia_segundos";
+
+    private final HistogramaLatencias[][] series =
+        new HistogramaLatencias[Operacion.values().length][ESTADOS.length + 1];
+
+    public MetricasLatencia() {
+        for (HistogramaLatencias[] porEstado : series) {
+            for (int i = 0; i < porEstado.length; i++) {
+                porEstado[i] = new HistogramaLatencias();
+            }
+        }
+    }
+
+    /**
+     * Registra la duración de una llamada
+     * @param operacion Operación del controlador
+     * @param status Código de estado devuelto
+     * @param nanos Duración en nanosegundos
+     */
+    public void registrar(Operacion operacion, int status, long nanos) {
+        series[operacion.ordinal()][posicion(status)].registrar(nanos);
+    }
+
+    /**
+     * Instantánea de una serie
+     * @param operacion Operación del controlador
+     * @param status Código de estado
+     * @return instantánea (vacía si no hubo llamadas)
+     */
+    public HistogramaLatencias.Instantanea instantanea(Operacion operacion, int status) {
+        return series[operacion.ordinal()][posicion(status)].instantanea();
+    }
+
+    /**
+     * Instantáneas de todas las series con al menos un registro
+     * @return operación -> estado ("201", "404", "otro"...) -> instantánea
+     */
+    public Map<Operacion, Map<String, HistogramaLatencias.Instantanea>> instantaneas() {
+        Map<Operacion, Map<String, HistogramaLatencias.Instantanea>> resultado = new EnumMap<>(Operacion.class);
+        for (Operacion operacion : Operacion.values()) {
+            Map<String, HistogramaLatencias.Instantanea> porEstado = new LinkedHashMap<>();
+            for (int i = 0; i <= ESTADOS.length; i++) {
+                HistogramaLatencias.Instantanea instantanea = series[operacion.ordinal()][i].instantanea();
+                if (instantanea.getCantidad() > 0) {
+                    porEstado.put(etiquetaEstado(i), instantanea);
+                }
+            }
+            if (!porEstado.isEmpty()) {
+                resultado.put(operacion, porEstado);
+            }
+        }
+        return resultado;
+    }
+
+    /**
+     * Exposición en formato de texto de Prometheus (tipo summary, en segundos)
+     * @return texto listo para servir en /metrics
+     */
+    public String exponer() {
+        StringBuilder texto = new StringBuilder(4096);
+        texto.append("# HELP ").append(NOMBRE).append(" Latencia de las operaciones del controlador\n");
+        texto.append("# TYPE ").append(NOMBRE).append(" summary\n");
+        instantaneas().forEach((operacion, porEstado) -> porEstado.forEach((estado, instantanea) -> {
+            String etiquetas = "operacion=\"" + operacion.getEtiqueta() + "\",status=\"" + estado + "\"";
+            for (double percentil : PERCENTILES) {
+                texto.append(NOMBRE).append('{').append(etiquetas)
+                    .append(",quantile=\"").append(formatear(percentil / 100.0)).append("\"} ")
+                    .append(segundos(instantanea.percentil(percentil))).append('\n');
+            }
+            texto.append(NOMBRE).append("_sum{").append(etiquetas).append("} ")
+                .append(segundos(instantanea.getSumaNs())).append('\n');
+            texto.append(NOMBRE).append("_count{").append(etiquetas).append("} ")
+                .append(instantanea.getCantidad()).append('\n');
+        }));
+        return texto.toString();
+    }
+
+    /**
+     * Vacía todas las series
+     */
+    public void reiniciar() {
+        for (HistogramaLatencias[] porEstado : series) {
+            for (HistogramaLatencias histograma : porEstado) {
+                histograma.reiniciar();
+            }
+        }
+    }
+
+    private static int posicion(int status) {
+        for (int i = 0; i < ESTADOS.length; i++) {
+            if (ESTADOS[i] == status) {
+                return i;
+            }
+        }
+        return ESTADOS.length;
+    }
+
+    private static String etiquetaEstado(int posicion) {
+        return posicion < ESTADOS.length ? Integer.toString(ESTADOS[posicion]) : OTRO;
+    }
+
+    private static String segundos(long nanos) {
+        return formatear(nanos / 1e9);
+    }
+
+    private static String formatear(double valor) {
+        return Double.toString(valor);
+    }
+}
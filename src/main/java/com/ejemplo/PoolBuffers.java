@@ -0,0 +1,49 @@
+package com.ejemplo;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Pool acotado de ByteBuffer directos de tamaño fijo
+ * Los buffers viven en un {@link PoolObjetos}: tomar y devolver son un
+ * recorrido con getAndSet/compareAndSet, sin cerrojos ni nodos nuevos.
+ * Si el pool está vacío se crea un buffer; si está lleno, el devuelto se descarta.
+ */
+public class PoolBuffers {
+
+    private final PoolObjetos<ByteBuffer> buffers;
+    private final int capacidadBuffer;
+
+    /**
+     * Constructor del pool
+     * @param ranuras Cantidad máxima de buffers retenidos
+     * @param capacidadBuffer Tamaño de cada buffer en bytes
+     */
+    public PoolBuffers(int ranuras, int capacidadBuffer) {
+        this.buffers = new PoolObjetos<>(ranuras, () -> ByteBuffer.allocateDirect(capacidadBuffer));
+        this.capacidadBuffer = capacidadBuffer;
+    }
+
+    /**
+     * Toma un buffer vacío (posición 0, límite = capacidad)
+     * @return buffer directo propiedad del llamador hasta que lo devuelva
+     */
+    public ByteBuffer tomar() {
+        return buffers.tomar();
+    }
+
+    /**
+     * Devuelve un buffer al pool
+     * @param buffer Buffer obtenido con {@link #tomar()}; no debe usarse después
+     */
+    public void devolver(ByteBuffer buffer) {
+        if (buffer.capacity() != capacidadBuffer || !buffer.isDirect()) {
+            return;
+        }
+        buffer.clear();
+        buffers.devolver(buffer);
+    }
+
+    public int getCapacidadBuffer() {
+        return capacidadBuffer;
+    }
+}
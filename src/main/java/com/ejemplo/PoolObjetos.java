@@ -0,0 +1,66 @@
+package com.ejemplo;
+
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.function.Supplier;
+
+/**
+ * Pool acotado y sin cerrojos de objetos reutilizables
+ * Los objetos viven en ranuras de un AtomicReferenceArray: tomar y devolver
+ * son un recorrido con getAndSet/compareAndSet que empieza en una ranura
+ * derivada del hilo, sin nodos nuevos. Si el pool está vacío se crea un objeto
+ * con la fábrica; si está lleno, el devuelto se descarta.
+ *
+ * A diferencia de un ThreadLocal, la cantidad retenida no depende del número de
+ * hilos: con hilos virtuales (uno por solicitud) cada hilo es nuevo y un
+ * ThreadLocal crearía un objeto por solicitud.
+ *
+ * @param <T> tipo de objeto reutilizable
+ */
+public class PoolObjetos<T> {
+
+    private final AtomicReferenceArray<T> ranuras;
+    private final Supplier<T> fabrica;
+
+    /**
+     * Constructor del pool
+     * @param ranuras Cantidad máxima de objetos retenidos
+     * @param fabrica Crea un objeto cuando el pool está vacío
+     */
+    public PoolObjetos(int ranuras, Supplier<T> fabrica) {
+        this.ranuras = new AtomicReferenceArray<>(ranuras);
+        this.fabrica = fabrica;
+    }
+
+    /**
+     * @return objeto propiedad del llamador hasta que lo devuelva
+     */
+    public T tomar() {
+        int inicio = (int) (Thread.currentThread().getId() % ranuras.length());
+        for (int i = 0; i < ranuras.length(); i++) {
+            int ranura = (inicio + i) % ranuras.length();
+            if (ranuras.get(ranura) != null) {
+                T objeto = ranuras.getAndSet(ranura, null);
+                if (objeto != null) {
+                    return objeto;
+                }
+            }
+        }
+        return fabrica.get();
+    }
+
+    /**
+     * Devuelve un objeto al pool
+     * @param objeto Objeto obtenido con {@link #tomar()}; no debe usarse después
+     * @return false si el pool estaba lleno y el objeto se descartó
+     */
+    public boolean devolver(T objeto) {
+        int inicio = (int) (Thread.currentThread().getId() % ranuras.length());
+        for (int i = 0; i < ranuras.length(); i++) {
+            int ranura = (inicio + i) % ranuras.length();
+            if (ranuras.get(ranura) == null && ranuras.compareAndSet(ranura, null, objeto)) {
+                return true;
+            }
+        }
+        return false;
+    }
+}
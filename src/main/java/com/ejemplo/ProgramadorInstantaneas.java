@@ -0,0 +1,76 @@
+package com.ejemplo;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Guarda periódicamente una instantánea de los usuarios del controlador
+ * Así el arranque solo necesita reproducir la cola reciente del registro.
+ */
+public class ProgramadorInstantaneas implements AutoCloseable {
+
+    private final Path archivo;
+    private final ScheduledExecutorService programador;
+    private volatile long ultimoLsn = -1;
+    private volatile Exception ultimoError;
+
+    /**
+     * Inicia el guardado periódico
+     * @param archivo Ruta de la instantánea
+     * @param periodo Intervalo entre instantáneas
+     * @param unidad Unidad del intervalo
+     */
+    public ProgramadorInstantaneas(Path archivo, long periodo, TimeUnit unidad) {
+        this.archivo = archivo;
+        this.programador = Executors.newSingleThreadScheduledExecutor(tarea -> {
+            Thread hilo = new Thread(tarea, "instantaneas-usuarios");
+            hilo.setDaemon(true);
+            return hilo;
+        });
+        programador.scheduleWithFixedDelay(this::guardar, periodo, periodo, unidad);
+    }
+
+    /**
+     * Guarda una instantánea inmediatamente
+     * Ningún error escapa: una excepción que saliera de la tarea programada
+     * cancelaría todas las instantáneas siguientes sin aviso.
+     */
+    public void guardar() {
+        try {
+            ultimoLsn = UsuarioController.guardarInstantanea(archivo);
+            ultimoError = null;
+        } catch (IOException | RuntimeException e) {
+            // Se reintenta en el siguiente periodo; la instantánea anterior sigue siendo válida
+            ultimoError = e;
+        }
+    }
+
+    /**
+     * LSN de la última instantánea guardada (-1 si aún no hay ninguna)
+     * @return LSN de la última instantánea
+     */
+    public long getUltimoLsn() {
+        return ultimoLsn;
+    }
+
+    /**
+     * Error del último intento de guardado, o null si tuvo éxito
+     * @return último error
+     */
+    public Exception getUltimoError() {
+        return ultimoError;
+    }
+
+    @Override
+    public void close() {
+        programador.shutdown();
+        try {
+            programador.awaitTermination(1, TimeUnit.MINUTES);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -0,0 +1,815 @@
+package com.ejemplo;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.PriorityQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.zip.CRC32;
+
+/**
+ * Registro de escritura anticipada (write-ahead log) de las mutaciones de usuarios
+ * Cada mutación se agrega al final de un archivo local mediante FileChannel antes
+ * de aplicarse en memoria. La sincronización a disco se hace según el
+ * {@link ModoDurabilidad}; en modo AGRUPADO los escritores concurrentes comparten
+ * un único fsync (group commit).
+ *
+ * El registro se divide en segmentos: el activo conserva la ruta dada y
+ * {@link #rotar()} lo cierra renombrándolo con el sufijo de su último LSN
+ * ("archivo.00000000000000000042"). Cada segmento nuevo empieza con una marca
+ * que conserva la numeración de LSN, de modo que los segmentos cubiertos por
+ * una instantánea pueden borrarse con {@link #descartarHasta(long)} y tanto
+ * la apertura como la reproducción solo leen la cola.
+ *
+ * Formato de cada entrada: [longitud: int][crc32: int][carga útil]
+ * Carga útil: [tipo: byte][lsn: long][timestamp: long][id: long][peso: double]
+ *             y, solo en creaciones, [longitud nombre: short][nombre UTF-8],
+ *             o, solo en actualizaciones versionadas, [versión: long]
+ */
+public class RegistroEscritura implements AutoCloseable {
+
+    /**
+     * Cuándo se considera durable una escritura
+     */
+    public enum ModoDurabilidad {
+        /** fsync en cada escritura antes de responder */
+        POR_ESCRITURA,
+        /** los escritores concurrentes esperan un fsync compartido */
+        AGRUPADO,
+        /** se responde tras escribir; el fsync ocurre en segundo plano */
+        ASINCRONO
+    }
+
+    static final byte TIPO_CREACION = 1;
+    static final byte TIPO_ACTUALIZACION = 2;
+    /** Inicio de segmento: su LSN es el último del segmento anterior y no se entrega al reproducir */
+    static final byte TIPO_INICIO_SEGMENTO = 3;
+    /** Actualización con la versión que dejó: al reproducir solo se aplica sobre una anterior */
+    static final byte TIPO_ACTUALIZACION_VERSIONADA = 4;
+
+    private static final int CABECERA = 8;
+    private static final int CARGA_FIJA = 1 + 8 + 8 + 8 + 8;
+    private static final long SIN_VERSION = -1;
+    private static final int MAXIMO_NOMBRE = 0xFFFF;
+    private static final long INTERVALO_ASINCRONO_MS = 10;
+    private static final int DIGITOS_SEGMENTO = 20;
+
+    private final Path archivo;
+    private volatile FileChannel canal;
+    private final ModoDurabilidad modo;
+    private final CRC32 crc = new CRC32();
+    private ByteBuffer buffer = ByteBuffer.allocateDirect(4096);
+
+    // Orden de escritura en el archivo
+    private final ReentrantLock cerrojoEscritura = new ReentrantLock();
+    private long ultimoLsn;
+    private boolean activoConEntradas;
+
+    // Coordinación con el hilo de sincronización
+    private final ReentrantLock cerrojoSincronizacion = new ReentrantLock();
+    private final Condition hayPendientes = cerrojoSincronizacion.newCondition();
+    private final Condition hayDurables = cerrojoSincronizacion.newCondition();
+    private long lsnEscrito;
+    private long lsnDurable;
+    private final PriorityQueue<EsperaDurable> esperas =
+        new PriorityQueue<>(Comparator.comparingLong(espera -> espera.lsn));
+    private IOException falla;
+    private boolean cerrado;
+    private boolean rotando;
+    private boolean forzando;
+    private final Thread sincronizador;
+
+    /**
+     * Abre (o crea) el registro y descarta una posible cola incompleta
+     * Solo se lee el segmento activo; los cerrados únicamente aportan su último LSN.
+     * @param archivo Ruta del segmento activo del registro
+     * @param modo Modo de durabilidad de las escrituras
+     * @throws IOException si el archivo no puede abrirse
+     */
+    public RegistroEscritura(Path archivo, ModoDurabilidad modo) throws IOException {
+        this.archivo = archivo;
+        this.modo = modo;
+        this.canal = FileChannel.open(archivo, StandardOpenOption.CREATE,
+            StandardOpenOption.READ, StandardOpenOption.WRITE);
+
+        long[] fin = {0, ultimoLsnCerrado(archivo)};
+        reproducir(canal, 0, entrada -> activoConEntradas = true, fin);
+        canal.truncate(fin[0]);
+        canal.position(fin[0]);
+        ultimoLsn = fin[1];
+        lsnEscrito = ultimoLsn;
+        lsnDurable = ultimoLsn;
+
+        if (modo == ModoDurabilidad.POR_ESCRITURA) {
+            sincronizador = null;
+        } else {
+            sincronizador = new Thread(this::bucleSincronizacion, "registro-escritura-fsync");
+            sincronizador.setDaemon(true);
+            sincronizador.start();
+        }
+    }
+
+    /**
+     * Registra la creación de un usuario y espera según el modo de durabilidad
+     * @return LSN asignado a la entrada
+     * @throws IOException si la escritura o el fsync fallan
+     */
+    public long registrarCreacion(long id, String nombre, double peso) throws IOException {
+        long lsn = agregarCreacion(id, nombre, peso);
+        confirmar(lsn);
+        return lsn;
+    }
+
+    /**
+     * Registra el peso resultante de una actualización y espera según el modo de durabilidad
+     * Se guarda el valor final (no el solicitado) para que reaplicar sea idempotente.
+     * @return LSN asignado a la entrada
+     * @throws IOException si la escritura o el fsync fallan
+     */
+    public long registrarActualizacion(long id, double pesoResultante) throws IOException {
+        long lsn = agregarActualizacion(id, pesoResultante);
+        confirmar(lsn);
+        return lsn;
+    }
+
+    /**
+     * Variante de {@link #registrarActualizacion(long, double)} que guarda la
+     * versión resultante del cambio
+     * @return LSN asignado a la entrada
+     * @throws IOException si la escritura o el fsync fallan
+     */
+    public long registrarActualizacion(long id, double pesoResultante, long version) throws IOException {
+        long lsn = agregarActualizacion(id, pesoResultante, version);
+        confirmar(lsn);
+        return lsn;
+    }
+
+    /**
+     * Escribe una creación sin esperar el fsync compartido (para lotes)
+     * @return LSN asignado; usar {@link #confirmar(long)} con el último LSN del lote
+     * @throws IOException si la escritura falla
+     */
+    public long agregarCreacion(long id, String nombre, double peso) throws IOException {
+        byte[] bytesNombre = nombre.getBytes(StandardCharsets.UTF_8);
+        if (bytesNombre.length > MAXIMO_NOMBRE) {
+            throw new IllegalArgumentException("Nombre demasiado largo: " + bytesNombre.length + " bytes");
+        }
+        return agregar(TIPO_CREACION, id, peso, SIN_VERSION, bytesNombre);
+    }
+
+    /**
+     * Escribe una actualización sin esperar el fsync compartido (para lotes)
+     * @return LSN asignado; usar {@link #confirmar(long)} con el último LSN del lote
+     * @throws IOException si la escritura falla
+     */
+    public long agregarActualizacion(long id, double pesoResultante) throws IOException {
+        return agregar(TIPO_ACTUALIZACION, id, pesoResultante, SIN_VERSION, null);
+    }
+
+    /**
+     * Escribe una actualización con la versión que dejó, sin esperar el fsync
+     * Con la versión, dos cambios concurrentes del mismo usuario pueden
+     * escribirse en cualquier orden: al reproducir gana la versión mayor.
+     * @param version Versión del usuario tras el cambio
+     * @return LSN asignado; usar {@link #confirmar(long)} para esperar la durabilidad
+     * @throws IOException si la escritura falla
+     */
+    public long agregarActualizacion(long id, double pesoResultante, long version) throws IOException {
+        return agregar(TIPO_ACTUALIZACION_VERSIONADA, id, pesoResultante, version, null);
+    }
+
+    /**
+     * Espera a que una entrada sea durable según el modo configurado
+     * En modo AGRUPADO espera el fsync compartido; en los demás modos retorna de inmediato.
+     * @param lsn LSN devuelto al agregar la entrada
+     * @throws IOException si el fsync falló
+     */
+    public void confirmar(long lsn) throws IOException {
+        if (modo != ModoDurabilidad.AGRUPADO) {
+            return;
+        }
+        cerrojoSincronizacion.lock();
+        try {
+            while (lsnDurable < lsn && falla == null) {
+                hayDurables.awaitUninterruptibly();
+            }
+            verificarFalla();
+        } finally {
+            cerrojoSincronizacion.unlock();
+        }
+    }
+
+    /**
+     * Variante no bloqueante de {@link #confirmar(long)}
+     * En modo AGRUPADO el futuro lo completa el hilo de sincronización tras el
+     * fsync compartido que cubre la entrada, sin ocupar un hilo mientras tanto;
+     * en los demás modos ya está completo. Las etapas dependientes sin executor
+     * corren en ese hilo, así que deben ser breves.
+     * @param lsn LSN devuelto al agregar la entrada
+     * @return futuro completado al ser durable, o con la excepción si el fsync falló
+     */
+    public CompletableFuture<Void> confirmarAsincrono(long lsn) {
+        if (modo != ModoDurabilidad.AGRUPADO) {
+            return CompletableFuture.completedFuture(null);
+        }
+        cerrojoSincronizacion.lock();
+        try {
+            if (falla != null) {
+                return CompletableFuture.failedFuture(
+                    new IOException("El registro de escritura falló previamente", falla));
+            }
+            if (lsnDurable >= lsn) {
+                return CompletableFuture.completedFuture(null);
+            }
+            EsperaDurable espera = new EsperaDurable(lsn);
+            esperas.add(espera);
+            return espera.futuro;
+        } finally {
+            cerrojoSincronizacion.unlock();
+        }
+    }
+
+    /**
+     * Modo de durabilidad configurado
+     * @return modo de durabilidad
+     */
+    public ModoDurabilidad getModo() {
+        return modo;
+    }
+
+    /**
+     * Último LSN escrito en el archivo
+     * @return LSN de la última entrada
+     */
+    public long ultimoLsn() {
+        cerrojoEscritura.lock();
+        try {
+            return ultimoLsn;
+        } finally {
+            cerrojoEscritura.unlock();
+        }
+    }
+
+    /**
+     * Ruta del archivo de registro
+     * @return ruta del archivo
+     */
+    public Path getArchivo() {
+        return archivo;
+    }
+
+    /**
+     * Cierra el segmento activo y abre uno nuevo en la misma ruta
+     * El segmento cerrado se fuerza a disco y se renombra con el sufijo de su
+     * último LSN; si el activo no tiene entradas no se rota.
+     * @return último LSN del registro al rotar (el del segmento cerrado)
+     * @throws IOException si el fsync, el renombrado o la apertura fallan;
+     *         en ese caso el registro queda inutilizado
+     */
+    public long rotar() throws IOException {
+        cerrojoEscritura.lock();
+        try {
+            verificarFalla();
+            if (!activoConEntradas) {
+                return ultimoLsn;
+            }
+            pausarSincronizacion();
+            boolean forzado = false;
+            try {
+                canal.force(false);
+                forzado = true;
+                canal.close();
+                Files.move(archivo, segmentoCerrado(archivo, ultimoLsn), StandardCopyOption.ATOMIC_MOVE);
+                canal = FileChannel.open(archivo, StandardOpenOption.CREATE_NEW,
+                    StandardOpenOption.READ, StandardOpenOption.WRITE);
+                activoConEntradas = false;
+                escribirEntrada(TIPO_INICIO_SEGMENTO, ultimoLsn, 0, 0, SIN_VERSION, null);
+                canal.force(false);
+            } catch (IOException e) {
+                fallar(e);
+                throw e;
+            } finally {
+                reanudarSincronizacion(forzado);
+            }
+            return ultimoLsn;
+        } finally {
+            cerrojoEscritura.unlock();
+        }
+    }
+
+    /**
+     * Borra los segmentos cerrados cuyas entradas ya cubre una instantánea
+     * @param lsn LSN de la instantánea
+     * @return cantidad de segmentos borrados
+     * @throws IOException si el directorio no puede listarse o un segmento no puede borrarse
+     */
+    public int descartarHasta(long lsn) throws IOException {
+        int borrados = 0;
+        for (Path segmento : segmentosCerrados(archivo)) {
+            if (lsnDeSegmento(segmento) > lsn) {
+                break;
+            }
+            Files.deleteIfExists(segmento);
+            borrados++;
+        }
+        return borrados;
+    }
+
+    /**
+     * Fuerza a disco todo lo escrito y detiene el hilo de sincronización
+     */
+    @Override
+    public void close() throws IOException {
+        cerrojoSincronizacion.lock();
+        try {
+            cerrado = true;
+            hayPendientes.signalAll();
+        } finally {
+            cerrojoSincronizacion.unlock();
+        }
+        if (sincronizador != null) {
+            try {
+                sincronizador.join();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        cerrojoEscritura.lock();
+        try {
+            if (canal.isOpen()) {
+                canal.force(false);
+                canal.close();
+            }
+        } finally {
+            cerrojoEscritura.unlock();
+        }
+    }
+
+    /**
+     * Recorre las entradas válidas de un registro: los segmentos cerrados en orden y luego el activo
+     * Se omiten sin abrirlos los segmentos cerrados que terminan en desdeLsn o antes, y
+     * cada segmento se lee hasta su primera entrada incompleta o corrupta (cola de un fallo).
+     * @param archivo Ruta del segmento activo del registro
+     * @param desdeLsn Solo se entregan entradas con LSN mayor a este valor
+     * @param consumidor Receptor de cada entrada
+     * @return último LSN del registro (0 si no hay ninguna entrada)
+     * @throws IOException si algún segmento no puede leerse
+     */
+    public static long reproducir(Path archivo, long desdeLsn, ConsumidorEntrada consumidor) throws IOException {
+        long[] fin = new long[2];
+        for (Path segmento : segmentosCerrados(archivo)) {
+            long ultimo = lsnDeSegmento(segmento);
+            if (ultimo > desdeLsn) {
+                reproducirSegmento(segmento, desdeLsn, consumidor, fin);
+            }
+            fin[1] = Math.max(fin[1], ultimo);
+        }
+        if (Files.exists(archivo)) {
+            reproducirSegmento(archivo, desdeLsn, consumidor, fin);
+        }
+        return fin[1];
+    }
+
+    private static void reproducirSegmento(Path segmento, long desdeLsn, ConsumidorEntrada consumidor, long[] fin)
+            throws IOException {
+        long previo = fin[1];
+        try (FileChannel lectura = FileChannel.open(segmento, StandardOpenOption.READ)) {
+            reproducir(lectura, desdeLsn, consumidor, fin);
+        }
+        fin[1] = Math.max(fin[1], previo);
+    }
+
+    /**
+     * Segmentos cerrados de un registro ordenados por LSN
+     */
+    private static List<Path> segmentosCerrados(Path archivo) throws IOException {
+        Path absoluto = archivo.toAbsolutePath();
+        Path directorio = absoluto.getParent();
+        String prefijo = absoluto.getFileName() + ".";
+        List<Path> segmentos = new ArrayList<>();
+        if (directorio == null || !Files.isDirectory(directorio)) {
+            return segmentos;
+        }
+        try (DirectoryStream<Path> contenido = Files.newDirectoryStream(directorio)) {
+            for (Path ruta : contenido) {
+                String nombre = ruta.getFileName().toString();
+                if (nombre.length() == prefijo.length() + DIGITOS_SEGMENTO && nombre.startsWith(prefijo)
+                        && nombre.chars().skip(prefijo.length()).allMatch(Character::isDigit)) {
+                    segmentos.add(ruta);
+                }
+            }
+        }
+        // El sufijo tiene ancho fijo: el orden alfabético es el de los LSN
+        segmentos.sort(null);
+        return segmentos;
+    }
+
+    private static long ultimoLsnCerrado(Path archivo) throws IOException {
+        List<Path> segmentos = segmentosCerrados(archivo);
+        return segmentos.isEmpty() ? 0 : lsnDeSegmento(segmentos.get(segmentos.size() - 1));
+    }
+
+    private static long lsnDeSegmento(Path segmento) {
+        String nombre = segmento.getFileName().toString();
+        return Long.parseLong(nombre.substring(nombre.length() - DIGITOS_SEGMENTO));
+    }
+
+    private static Path segmentoCerrado(Path archivo, long ultimoLsn) {
+        String sufijo = String.format("%0" + DIGITOS_SEGMENTO + "d", ultimoLsn);
+        return archivo.resolveSibling(archivo.getFileName() + "." + sufijo);
+    }
+
+    /**
+     * Receptor de entradas durante la reproducción del registro
+     */
+    public interface ConsumidorEntrada {
+        void aceptar(Entrada entrada);
+    }
+
+    /**
+     * Entrada leída del registro
+     */
+    public static final class Entrada {
+        private final byte tipo;
+        private final long lsn;
+        private final long timestampMs;
+        private final long id;
+        private final double peso;
+        private final String nombre;
+        private final long version;
+
+        Entrada(byte tipo, long lsn, long timestampMs, long id, double peso, String nombre, long version) {
+            this.tipo = tipo;
+            this.lsn = lsn;
+            this.timestampMs = timestampMs;
+            this.id = id;
+            this.peso = peso;
+            this.nombre = nombre;
+            this.version = version;
+        }
+
+        public boolean esCreacion() {
+            return tipo == TIPO_CREACION;
+        }
+
+        public long getLsn() {
+            return lsn;
+        }
+
+        public long getTimestampMs() {
+            return timestampMs;
+        }
+
+        public long getId() {
+            return id;
+        }
+
+        /**
+         * Peso inicial en creaciones o peso resultante en actualizaciones
+         */
+        public double getPeso() {
+            return peso;
+        }
+
+        /**
+         * Nombre del usuario (solo en creaciones)
+         */
+        public String getNombre() {
+            return nombre;
+        }
+
+        /**
+         * Versión del usuario tras una actualización versionada
+         * @return versión o -1 en creaciones y actualizaciones sin versión
+         */
+        public long getVersion() {
+            return version;
+        }
+
+        /**
+         * Aplica la entrada sobre un repositorio; es idempotente, por lo que puede
+         * reaplicarse sobre una instantánea que ya la incluya
+         * Una actualización versionada solo se aplica sobre una versión anterior.
+         * @param repositorio Repositorio destino
+         * @return true si cambió el repositorio (false si ya la incluía)
+         */
+        public boolean aplicar(RepositorioUsuarios repositorio) {
+            if (esCreacion()) {
+                return repositorio.insertar(id, nombre, peso);
+            } else if (version != SIN_VERSION) {
+                return repositorio.establecerEstado(id, peso, version);
+            } else {
+                return repositorio.establecerPeso(id, peso);
+            }
+        }
+    }
+
+    /**
+     * Escribe una entrada al final del archivo
+     * Si la escritura o el fsync fallan, el registro queda inutilizado: una
+     * entrada a medias haría que la reproducción se detenga antes de las
+     * confirmadas después. Se intenta truncar el archivo a la última entrada
+     * completa y toda escritura o confirmación posterior falla.
+     */
+    private long agregar(byte tipo, long id, double peso, long version, byte[] nombre) throws IOException {
+        long lsn;
+        cerrojoEscritura.lock();
+        try {
+            verificarFalla();
+            lsn = ++ultimoLsn;
+            long posicionPrevia = -1;
+            try {
+                posicionPrevia = canal.position();
+                escribirEntrada(tipo, lsn, id, peso, version, nombre);
+                activoConEntradas = true;
+            } catch (IOException e) {
+                ultimoLsn = lsn - 1;
+                if (posicionPrevia >= 0) {
+                    descartarCola(posicionPrevia, e);
+                }
+                fallar(e);
+                throw e;
+            }
+            if (modo == ModoDurabilidad.POR_ESCRITURA) {
+                return lsn;
+            }
+            cerrojoSincronizacion.lock();
+            try {
+                lsnEscrito = lsn;
+                if (modo == ModoDurabilidad.AGRUPADO) {
+                    hayPendientes.signal();
+                }
+            } finally {
+                cerrojoSincronizacion.unlock();
+            }
+        } finally {
+            cerrojoEscritura.unlock();
+        }
+        return lsn;
+    }
+
+    /**
+     * Serializa la entrada y la escribe (con fsync en modo POR_ESCRITURA)
+     */
+    private void escribirEntrada(byte tipo, long lsn, long id, double peso, long version, byte[] nombre)
+            throws IOException {
+        int carga = CARGA_FIJA + (nombre == null ? 0 : 2 + nombre.length)
+            + (tipo == TIPO_ACTUALIZACION_VERSIONADA ? 8 : 0);
+        if (buffer.capacity() < CABECERA + carga) {
+            buffer = ByteBuffer.allocateDirect(CABECERA + carga);
+        }
+        buffer.clear();
+        buffer.position(CABECERA);
+        buffer.put(tipo).putLong(lsn).putLong(System.currentTimeMillis()).putLong(id).putDouble(peso);
+        if (nombre != null) {
+            buffer.putShort((short) nombre.length).put(nombre);
+        }
+        if (tipo == TIPO_ACTUALIZACION_VERSIONADA) {
+            buffer.putLong(version);
+        }
+        buffer.flip();
+        buffer.position(CABECERA);
+        crc.reset();
+        crc.update(buffer);
+        buffer.putInt(0, carga).putInt(4, (int) crc.getValue());
+        buffer.position(0);
+        while (buffer.hasRemaining()) {
+            canal.write(buffer);
+        }
+        if (modo == ModoDurabilidad.POR_ESCRITURA) {
+            canal.force(false);
+        }
+    }
+
+    /**
+     * Intenta quitar los bytes de una entrada a medias; si tampoco se puede,
+     * la reproducción se detendrá en ella como en la cola de un corte
+     */
+    private void descartarCola(long posicion, IOException causa) {
+        try {
+            if (canal.isOpen() && canal.size() > posicion) {
+                canal.truncate(posicion);
+            }
+        } catch (IOException e) {
+            causa.addSuppressed(e);
+        }
+    }
+
+    /**
+     * Detiene el hilo de sincronización y espera a que termine el fsync en curso,
+     * para que no fuerce un canal que se está cerrando
+     */
+    private void pausarSincronizacion() {
+        cerrojoSincronizacion.lock();
+        try {
+            rotando = true;
+            while (forzando) {
+                hayDurables.awaitUninterruptibly();
+            }
+        } finally {
+            cerrojoSincronizacion.unlock();
+        }
+    }
+
+    /**
+     * @param forzado si el segmento cerrado llegó a disco: todo lo escrito hasta aquí es durable
+     */
+    private void reanudarSincronizacion(boolean forzado) {
+        List<EsperaDurable> cumplidas = List.of();
+        cerrojoSincronizacion.lock();
+        try {
+            rotando = false;
+            if (forzado) {
+                lsnDurable = Math.max(lsnDurable, lsnEscrito);
+                hayDurables.signalAll();
+                cumplidas = tomarEsperas(lsnDurable);
+            }
+            hayPendientes.signalAll();
+        } finally {
+            cerrojoSincronizacion.unlock();
+        }
+        completar(cumplidas, null);
+    }
+
+    /**
+     * Marca el registro como fallido y despierta a quienes esperan un fsync
+     */
+    private void fallar(IOException error) {
+        List<EsperaDurable> abandonadas;
+        cerrojoSincronizacion.lock();
+        try {
+            forzando = false;
+            if (falla == null) {
+                falla = error;
+            }
+            hayDurables.signalAll();
+            hayPendientes.signalAll();
+            abandonadas = tomarEsperas(Long.MAX_VALUE);
+        } finally {
+            cerrojoSincronizacion.unlock();
+        }
+        completar(abandonadas, new IOException("El registro de escritura falló", error));
+    }
+
+    private void verificarFalla() throws IOException {
+        if (falla != null) {
+            throw new IOException("El registro de escritura falló previamente", falla);
+        }
+    }
+
+    private void bucleSincronizacion() {
+        while (true) {
+            long objetivo;
+            cerrojoSincronizacion.lock();
+            try {
+                while ((lsnEscrito == lsnDurable && !cerrado) || rotando) {
+                    if (modo == ModoDurabilidad.ASINCRONO) {
+                        hayPendientes.await(INTERVALO_ASINCRONO_MS, TimeUnit.MILLISECONDS);
+                    } else {
+                        hayPendientes.await();
+                    }
+                }
+                if (lsnEscrito == lsnDurable) {
+                    return;
+                }
+                objetivo = lsnEscrito;
+                forzando = true;
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            } finally {
+                cerrojoSincronizacion.unlock();
+            }
+
+            try {
+                // Un solo fsync cubre a todos los escritores hasta "objetivo"
+                canal.force(false);
+            } catch (IOException e) {
+                fallar(e);
+                return;
+            }
+
+            List<EsperaDurable> cumplidas;
+            cerrojoSincronizacion.lock();
+            try {
+                forzando = false;
+                lsnDurable = Math.max(lsnDurable, objetivo);
+                hayDurables.signalAll();
+                cumplidas = tomarEsperas(lsnDurable);
+            } finally {
+                cerrojoSincronizacion.unlock();
+            }
+            completar(cumplidas, null);
+        }
+    }
+
+    /**
+     * Quita las esperas cubiertas por {@code hastaLsn}; llamar con cerrojoSincronizacion tomado
+     */
+    private List<EsperaDurable> tomarEsperas(long hastaLsn) {
+        List<EsperaDurable> cumplidas = new ArrayList<>();
+        while (!esperas.isEmpty() && esperas.peek().lsn <= hastaLsn) {
+            cumplidas.add(esperas.poll());
+        }
+        return cumplidas;
+    }
+
+    /**
+     * Completa las esperas fuera del cerrojo, para que sus etapas dependientes no lo retengan
+     */
+    private static void completar(List<EsperaDurable> cumplidas, IOException error) {
+        for (EsperaDurable espera : cumplidas) {
+            if (error == null) {
+                espera.futuro.complete(null);
+            } else {
+                espera.futuro.completeExceptionally(error);
+            }
+        }
+    }
+
+    /**
+     * Respuesta pendiente de que el fsync compartido alcance su LSN
+     */
+    private static final class EsperaDurable {
+        final long lsn;
+        final CompletableFuture<Void> futuro = new CompletableFuture<>();
+
+        EsperaDurable(long lsn) {
+            this.lsn = lsn;
+        }
+    }
+
+    /**
+     * @param fin al terminar: [posición tras la última entrada válida, último LSN]
+     */
+    private static void reproducir(FileChannel lectura, long desdeLsn, ConsumidorEntrada consumidor,
+            long[] fin) throws IOException {
+        ByteBuffer cabecera = ByteBuffer.allocate(CABECERA);
+        ByteBuffer carga = ByteBuffer.allocate(CARGA_FIJA + 2 + MAXIMO_NOMBRE);
+        CRC32 verificador = new CRC32();
+        long posicion = 0;
+        long tamano = lectura.size();
+
+        while (posicion + CABECERA <= tamano) {
+            cabecera.clear();
+            leerCompleto(lectura, cabecera, posicion);
+            int longitud = cabecera.getInt(0);
+            int crcEsperado = cabecera.getInt(4);
+            if (longitud < CARGA_FIJA || longitud > carga.capacity()
+                    || posicion + CABECERA + longitud > tamano) {
+                break;
+            }
+            carga.clear().limit(longitud);
+            leerCompleto(lectura, carga, posicion + CABECERA);
+            carga.flip();
+            verificador.reset();
+            verificador.update(carga);
+            if ((int) verificador.getValue() != crcEsperado) {
+                break;
+            }
+            carga.flip();
+            byte tipo = carga.get();
+            long lsn = carga.getLong();
+            long timestamp = carga.getLong();
+            long id = carga.getLong();
+            double peso = carga.getDouble();
+            String nombre = null;
+            long version = SIN_VERSION;
+            if (tipo == TIPO_CREACION) {
+                byte[] bytes = new byte[carga.getShort() & 0xFFFF];
+                carga.get(bytes);
+                nombre = new String(bytes, StandardCharsets.UTF_8);
+            } else if (tipo == TIPO_ACTUALIZACION_VERSIONADA) {
+                version = carga.getLong();
+            }
+            if (lsn > desdeLsn && tipo != TIPO_INICIO_SEGMENTO) {
+                consumidor.aceptar(new Entrada(tipo, lsn, timestamp, id, peso, nombre, version));
+            }
+            posicion += CABECERA + longitud;
+            fin[1] = lsn;
+        }
+        fin[0] = posicion;
+    }
+
+    private static void leerCompleto(FileChannel lectura, ByteBuffer destino, long posicion) throws IOException {
+        while (destino.hasRemaining()) {
+            int leidos = lectura.read(destino, posicion);
+            if (leidos < 0) {
+                throw new IOException("Fin de archivo inesperado en el registro");
+            }
+            posicion += leidos;
+        }
+    }
+}
@@ -0,0 +1,496 @@
+package com.ejemplo;
+
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.util.Arrays;
+import java.util.concurrent.locks.StampedLock;
+
+/**
+ * Repositorio compacto en columnas de tipos primitivos
+ * Los usuarios se guardan en bloques de arreglos paralelos (id, peso, nombre)
+ * indexados por un mapa abierto long -> posición, sin objetos por usuario.
+ * Los nombres se deduplican en un {@link DiccionarioNombres}, que puede
+ * residir fuera del heap.
+ * Las inserciones se serializan con un StampedLock; las lecturas usan
+ * lectura optimista y las actualizaciones de peso no toman el cerrojo.
+ *
+ * Cada peso tiene al lado una palabra de versión (el doble de la versión,
+ * impar mientras se escribe). Como no hay CAS de dos palabras, un escritor
+ * reclama la posición con una CAS de par a impar, escribe el peso y publica
+ * la versión siguiente; la ventana es una sola escritura, y los escritores de
+ * otras posiciones no se ven afectados. Las lecturas de solo peso leen una
+ * palabra y nunca esperan; las de peso y versión reintentan si la versión
+ * cambió en medio.
+ *
+ * Eliminar quita el id del índice y marca la posición como libre en la
+ * columna de ids; la posición no se reutiliza, así que una lectura o
+ * actualización que ya la tenía resuelta nunca toca a otro usuario.
+ */
+public class RepositorioColumnar implements RepositorioUsuarios {
+
+    private static final int BITS_BLOQUE = 16;
+    private static final int TAMANO_BLOQUE = 1 << BITS_BLOQUE;
+    private static final int MASCARA_BLOQUE = TAMANO_BLOQUE - 1;
+    private static final VarHandle PESO = MethodHandles.arrayElementVarHandle(double[].class);
+    private static final VarHandle VERSION = MethodHandles.arrayElementVarHandle(long[].class);
+    private static final long ELIMINADO = Long.MIN_VALUE;
+
+    private final StampedLock cerrojo = new StampedLock();
+    private final DiccionarioNombres nombres;
+
+    private volatile long[][] ids = new long[0][];
+    private volatile double[][] pesos = new double[0][];
+    private volatile long[][] versiones = new long[0][];
+    private volatile int[][] refNombres = new int[0][];
+    private volatile int cantidad;
+    private volatile int eliminados;
+    private Indice indice = new Indice(1024);
+
+    /**
+     * Constructor con los nombres almacenados en el heap
+     */
+    public RepositorioColumnar() {
+        this(false);
+    }
+
+    /**
+     * Constructor del repositorio columnar
+     * @param nombresFueraDelHeap true para guardar los nombres en memoria directa
+     */
+    public RepositorioColumnar(boolean nombresFueraDelHeap) {
+        this.nombres = new DiccionarioNombres(nombresFueraDelHeap);
+    }
+
+    @Override
+    public boolean insertar(long id, String nombre, double peso) {
+        long stamp = cerrojo.writeLock();
+        try {
+            if (indice.buscar(id) >= 0) {
+                return false;
+            }
+            indice.verificarLugar();
+            int posicion = cantidad;
+            if ((posicion >>> BITS_BLOQUE) == ids.length) {
+                agregarBloque();
+            }
+            int bloque = posicion >>> BITS_BLOQUE;
+            int offset = posicion & MASCARA_BLOQUE;
+            ids[bloque][offset] = id;
+            pesos[bloque][offset] = peso;
+            refNombres[bloque][offset] = nombres.registrar(nombre);
+            if (indice.insertar(id, posicion)) {
+                indice = indice.duplicar();
+            }
+            cantidad = posicion + 1;
+            return true;
+        } finally {
+            cerrojo.unlockWrite(stamp);
+        }
+    }
+
+    @Override
+    public boolean existe(long id) {
+        return buscarPosicion(id) >= 0;
+    }
+
+    @Override
+    public String obtenerNombre(long id) {
+        int posicion = buscarPosicion(id);
+        if (posicion < 0) {
+            return null;
+        }
+        return nombres.obtener(refNombres[posicion >>> BITS_BLOQUE][posicion & MASCARA_BLOQUE]);
+    }
+
+    @Override
+    public double leer(long id, StringBuilder nombre) {
+        int posicion = buscarPosicion(id);
+        if (posicion < 0) {
+            return Double.NaN;
+        }
+        int bloque = posicion >>> BITS_BLOQUE;
+        int offset = posicion & MASCARA_BLOQUE;
+        nombres.copiar(refNombres[bloque][offset], nombre);
+        return (double) PESO.getVolatile(pesos[bloque], offset);
+    }
+
+    @Override
+    public double obtenerPeso(long id) {
+        int posicion = buscarPosicion(id);
+        if (posicion < 0) {
+            return Double.NaN;
+        }
+        return (double) PESO.getVolatile(pesos[posicion >>> BITS_BLOQUE], posicion & MASCARA_BLOQUE);
+    }
+
+    @Override
+    public double actualizarPeso(long id, double nuevoPeso) {
+        int posicion = buscarPosicion(id);
+        if (posicion < 0) {
+            return Double.NaN;
+        }
+        double[] bloque = pesos[posicion >>> BITS_BLOQUE];
+        long[] bloqueVersiones = versiones[posicion >>> BITS_BLOQUE];
+        int offset = posicion & MASCARA_BLOQUE;
+        long sello = reclamar(bloqueVersiones, offset);
+        double pesoAnterior = (double) PESO.getVolatile(bloque, offset);
+        PESO.setVolatile(bloque, offset, Usuario.calcularPesoActualizado(pesoAnterior, nuevoPeso));
+        VERSION.setVolatile(bloqueVersiones, offset, sello + 2);
+        return pesoAnterior;
+    }
+
+    @Override
+    public Usuario.EstadoPeso obtenerEstado(long id) {
+        int posicion = buscarPosicion(id);
+        if (posicion < 0) {
+            return null;
+        }
+        double[] bloque = pesos[posicion >>> BITS_BLOQUE];
+        long[] bloqueVersiones = versiones[posicion >>> BITS_BLOQUE];
+        int offset = posicion & MASCARA_BLOQUE;
+        while (true) {
+            long sello = (long) VERSION.getVolatile(bloqueVersiones, offset);
+            double peso = (double) PESO.getVolatile(bloque, offset);
+            if ((sello & 1) == 0 && (long) VERSION.getVolatile(bloqueVersiones, offset) == sello) {
+                return new Usuario.EstadoPeso(peso, sello >>> 1);
+            }
+            Thread.onSpinWait();
+        }
+    }
+
+    @Override
+    public Usuario.EstadoPeso actualizarPesoSiVersion(long id, long versionEsperada, double nuevoPeso) {
+        int posicion = buscarPosicion(id);
+        if (posicion < 0) {
+            return null;
+        }
+        double[] bloque = pesos[posicion >>> BITS_BLOQUE];
+        long[] bloqueVersiones = versiones[posicion >>> BITS_BLOQUE];
+        int offset = posicion & MASCARA_BLOQUE;
+        long esperado = versionEsperada << 1;
+        while (true) {
+            long sello = (long) VERSION.getVolatile(bloqueVersiones, offset);
+            if ((sello & 1) != 0) {
+                Thread.onSpinWait();
+            } else if (sello != esperado) {
+                return obtenerEstado(id);
+            } else if (VERSION.compareAndSet(bloqueVersiones, offset, sello, sello + 1)) {
+                double pesoAnterior = (double) PESO.getVolatile(bloque, offset);
+                PESO.setVolatile(bloque, offset, Usuario.calcularPesoActualizado(pesoAnterior, nuevoPeso));
+                VERSION.setVolatile(bloqueVersiones, offset, sello + 2);
+                return new Usuario.EstadoPeso(pesoAnterior, versionEsperada);
+            }
+        }
+    }
+
+    @Override
+    public boolean establecerPeso(long id, double peso) {
+        int posicion = buscarPosicion(id);
+        if (posicion < 0) {
+            return false;
+        }
+        long[] bloqueVersiones = versiones[posicion >>> BITS_BLOQUE];
+        int offset = posicion & MASCARA_BLOQUE;
+        long sello = reclamar(bloqueVersiones, offset);
+        PESO.setVolatile(pesos[posicion >>> BITS_BLOQUE], offset, peso);
+        VERSION.setVolatile(bloqueVersiones, offset, sello + 2);
+        return true;
+    }
+
+    @Override
+    public boolean establecerEstado(long id, double peso, long version) {
+        int posicion = buscarPosicion(id);
+        if (posicion < 0) {
+            return false;
+        }
+        long[] bloqueVersiones = versiones[posicion >>> BITS_BLOQUE];
+        int offset = posicion & MASCARA_BLOQUE;
+        long sello = reclamar(bloqueVersiones, offset);
+        if ((sello >>> 1) >= version) {
+            VERSION.setVolatile(bloqueVersiones, offset, sello);
+            return false;
+        }
+        PESO.setVolatile(pesos[posicion >>> BITS_BLOQUE], offset, peso);
+        VERSION.setVolatile(bloqueVersiones, offset, version << 1);
+        return true;
+    }
+
+    /**
+     * Marca la posición como en escritura (versión impar)
+     * @return palabra de versión par que había antes del reclamo
+     */
+    private static long reclamar(long[] bloqueVersiones, int offset) {
+        while (true) {
+            long sello = (long) VERSION.getVolatile(bloqueVersiones, offset);
+            if ((sello & 1) == 0 && VERSION.compareAndSet(bloqueVersiones, offset, sello, sello + 1)) {
+                return sello;
+            }
+            Thread.onSpinWait();
+        }
+    }
+
+    @Override
+    public boolean eliminar(long id) {
+        long stamp = cerrojo.writeLock();
+        try {
+            int posicion = indice.eliminar(id);
+            if (posicion < 0) {
+                return false;
+            }
+            ids[posicion >>> BITS_BLOQUE][posicion & MASCARA_BLOQUE] = ELIMINADO;
+            eliminados++;
+            return true;
+        } finally {
+            cerrojo.unlockWrite(stamp);
+        }
+    }
+
+    @Override
+    public void recorrer(VisitanteUsuario visitante) {
+        int total = cantidad;
+        long[][] bloquesIds = ids;
+        double[][] bloquesPesos = pesos;
+        int[][] bloquesNombres = refNombres;
+        for (int posicion = 0; posicion < total; posicion++) {
+            int bloque = posicion >>> BITS_BLOQUE;
+            int offset = posicion & MASCARA_BLOQUE;
+            long id = bloquesIds[bloque][offset];
+            if (id == ELIMINADO) {
+                continue;
+            }
+            visitante.visitar(id,
+                nombres.obtener(bloquesNombres[bloque][offset]),
+                (double) PESO.getVolatile(bloquesPesos[bloque], offset));
+        }
+    }
+
+    /**
+     * Dimensiona el índice para recibir más usuarios sin redimensionados intermedios
+     * @param adicionales Cantidad de usuarios que se van a insertar
+     */
+    void reservar(int adicionales) {
+        long stamp = cerrojo.writeLock();
+        try {
+            indice = indice.conCapacidadPara((long) cantidad + adicionales);
+        } finally {
+            cerrojo.unlockWrite(stamp);
+        }
+    }
+
+    /**
+     * Carga masiva de usuarios con nombres ya deduplicados (p. ej. desde una instantánea)
+     * Toma el cerrojo de escritura una sola vez y registra cada nombre distinto una vez.
+     * @param idsLote Identificadores a insertar
+     * @param pesosLote Pesos de cada usuario
+     * @param refsLote Índice de cada usuario en {@code nombresLote}
+     * @param cantidadLote Cantidad de elementos válidos en los arreglos
+     * @param nombresLote Nombres distintos del lote
+     * @param traduccion Caché reutilizable entre lotes: referencia local + 1 por índice de nombre
+     * @return cantidad de usuarios insertados (se omiten ids existentes)
+     */
+    int cargarLote(long[] idsLote, double[] pesosLote, int[] refsLote, int cantidadLote,
+            String[] nombresLote, int[] traduccion) {
+        long stamp = cerrojo.writeLock();
+        try {
+            int insertados = 0;
+            for (int i = 0; i < cantidadLote; i++) {
+                long id = idsLote[i];
+                if (indice.buscar(id) >= 0) {
+                    continue;
+                }
+                indice.verificarLugar();
+                int ref = refsLote[i];
+                if (traduccion[ref] == 0) {
+                    traduccion[ref] = nombres.registrar(nombresLote[ref]) + 1;
+                }
+                int posicion = cantidad;
+                if ((posicion >>> BITS_BLOQUE) == ids.length) {
+                    agregarBloque();
+                }
+                int bloque = posicion >>> BITS_BLOQUE;
+                int offset = posicion & MASCARA_BLOQUE;
+                ids[bloque][offset] = id;
+                pesos[bloque][offset] = pesosLote[i];
+                refNombres[bloque][offset] = traduccion[ref] - 1;
+                if (indice.insertar(id, posicion)) {
+                    indice = indice.duplicar();
+                }
+                cantidad = posicion + 1;
+                insertados++;
+            }
+            return insertados;
+        } finally {
+            cerrojo.unlockWrite(stamp);
+        }
+    }
+
+    @Override
+    public int tamano() {
+        return cantidad - eliminados;
+    }
+
+    /**
+     * Cantidad de nombres distintos almacenados tras la deduplicación
+     * @return nombres distintos
+     */
+    public int nombresDistintos() {
+        long stamp = cerrojo.readLock();
+        try {
+            return nombres.cantidad();
+        } finally {
+            cerrojo.unlockRead(stamp);
+        }
+    }
+
+    private int buscarPosicion(long id) {
+        long stamp = cerrojo.tryOptimisticRead();
+        int posicion = indice.buscar(id);
+        if (!cerrojo.validate(stamp)) {
+            stamp = cerrojo.readLock();
+            try {
+                posicion = indice.buscar(id);
+            } finally {
+                cerrojo.unlockRead(stamp);
+            }
+        }
+        return posicion;
+    }
+
+    private void agregarBloque() {
+        int n = ids.length;
+        long[][] nuevosIds = Arrays.copyOf(ids, n + 1);
+        double[][] nuevosPesos = Arrays.copyOf(pesos, n + 1);
+        long[][] nuevasVersiones = Arrays.copyOf(versiones, n + 1);
+        int[][] nuevasRefs = Arrays.copyOf(refNombres, n + 1);
+        nuevosIds[n] = new long[TAMANO_BLOQUE];
+        nuevosPesos[n] = new double[TAMANO_BLOQUE];
+        nuevasVersiones[n] = new long[TAMANO_BLOQUE];
+        nuevasRefs[n] = new int[TAMANO_BLOQUE];
+        ids = nuevosIds;
+        pesos = nuevosPesos;
+        versiones = nuevasVersiones;
+        refNombres = nuevasRefs;
+    }
+
+    /**
+     * Tabla hash abierta long -> posición con sondeo lineal
+     * Se reemplaza completa al crecer para que las lecturas optimistas
+     * siempre vean un par de arreglos coherente.
+     */
+    private static final class Indice {
+        /** Mayor potencia de dos que admite un arreglo de Java */
+        static final int CAPACIDAD_MAXIMA = 1 << 30;
+
+        private final long[] claves;
+        private final int[] posiciones; // posición + 1, 0 = libre
+        private int ocupados;
+
+        Indice(int capacidad) {
+            claves = new long[capacidad];
+            posiciones = new int[capacidad];
+        }
+
+        int buscar(long id) {
+            int mascara = claves.length - 1;
+            int i = mezclar(id) & mascara;
+            for (int intentos = 0; intentos < claves.length; intentos++) {
+                int posicion = posiciones[i];
+                if (posicion == 0) {
+                    return -1;
+                }
+                if (claves[i] == id) {
+                    return posicion - 1;
+                }
+                i = (i + 1) & mascara;
+            }
+            return -1;
+        }
+
+        /**
+         * @return true si la tabla superó el factor de carga y debe duplicarse
+         */
+        boolean insertar(long id, int posicion) {
+            int mascara = claves.length - 1;
+            int i = mezclar(id) & mascara;
+            while (posiciones[i] != 0) {
+                i = (i + 1) & mascara;
+            }
+            claves[i] = id;
+            posiciones[i] = posicion + 1;
+            ocupados++;
+            return ocupados * 2 > claves.length;
+        }
+
+        /**
+         * Quita un id desplazando hacia atrás las claves de su racha de sondeo,
+         * para que las búsquedas no necesiten marcas de borrado
+         * @return posición que tenía el id o -1 si no estaba
+         */
+        int eliminar(long id) {
+            int mascara = claves.length - 1;
+            int i = mezclar(id) & mascara;
+            while (posiciones[i] != 0 && claves[i] != id) {
+                i = (i + 1) & mascara;
+            }
+            int posicion = posiciones[i] - 1;
+            if (posicion < 0) {
+                return -1;
+            }
+            posiciones[i] = 0;
+            ocupados--;
+            for (int j = (i + 1) & mascara; posiciones[j] != 0; j = (j + 1) & mascara) {
+                int ideal = mezclar(claves[j]) & mascara;
+                // La clave puede quedarse si su posición ideal está en (i, j] de forma cíclica
+                boolean quedarse = i <= j ? i < ideal && ideal <= j : i < ideal || ideal <= j;
+                if (!quedarse) {
+                    claves[i] = claves[j];
+                    posiciones[i] = posiciones[j];
+                    posiciones[j] = 0;
+                    i = j;
+                }
+            }
+            return posicion;
+        }
+
+        /**
+         * Falla antes de insertar si la tabla ya no puede crecer y está llena
+         * @throws IllegalStateException si no admite otra clave
+         */
+        void verificarLugar() {
+            if (claves.length >= CAPACIDAD_MAXIMA && ocupados * 2 >= claves.length) {
+                throw new IllegalStateException("El índice de ids alcanzó su capacidad máxima de "
+                    + CAPACIDAD_MAXIMA / 2 + " usuarios");
+            }
+        }
+
+        /**
+         * @return tabla del doble de tamaño, o esta misma si ya tiene la capacidad máxima
+         */
+        Indice duplicar() {
+            return claves.length >= CAPACIDAD_MAXIMA ? this : redimensionar(claves.length * 2);
+        }
+
+        Indice conCapacidadPara(long elementos) {
+            long requerida = Long.highestOneBit(Math.max(elementos, 1) * 2) << 1;
+            if (requerida <= claves.length || requerida > CAPACIDAD_MAXIMA) {
+                return this;
+            }
+            return redimensionar((int) requerida);
+        }
+
+        private Indice redimensionar(int capacidad) {
+            Indice nuevo = new Indice(capacidad);
+            for (int j = 0; j < claves.length; j++) {
+                if (posiciones[j] != 0) {
+                    nuevo.insertar(claves[j], posiciones[j] - 1);
+                }
+            }
+            return nuevo;
+        }
+
+        private static int mezclar(long id) {
+            long h = id * 0x9E3779B97F4A7C15L;
+            return (int) (h ^ (h >>> 32));
+        }
+    }
+}
@@ -0,0 +1,130 @@
+package com.ejemplo;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Repositorio basado en un mapa concurrente de objetos Usuario
+ * Es la implementación por defecto del controlador. Las búsquedas usan una
+ * {@link ClaveBusqueda} reutilizable por hilo en lugar de crear un Long por
+ * consulta; solo insertar y eliminar reservan la clave.
+ */
+public class RepositorioMapa implements RepositorioUsuarios {
+
+    private static final ThreadLocal<ClaveBusqueda> CLAVES = ThreadLocal.withInitial(ClaveBusqueda::new);
+
+    private final Map<Long, Usuario> usuarios = new ConcurrentHashMap<>();
+
+    @Override
+    public boolean insertar(long id, String nombre, double peso) {
+        return usuarios.putIfAbsent(id, new Usuario(nombre, peso)) == null;
+    }
+
+    @Override
+    public boolean existe(long id) {
+        return buscar(id) != null;
+    }
+
+    @Override
+    public String obtenerNombre(long id) {
+        Usuario usuario = buscar(id);
+        return usuario == null ? null : usuario.getNombre();
+    }
+
+    @Override
+    public double leer(long id, StringBuilder nombre) {
+        Usuario usuario = buscar(id);
+        if (usuario == null) {
+            return Double.NaN;
+        }
+        nombre.append(usuario.getNombre());
+        return usuario.getPeso();
+    }
+
+    @Override
+    public double obtenerPeso(long id) {
+        Usuario usuario = buscar(id);
+        return usuario == null ? Double.NaN : usuario.getPeso();
+    }
+
+    @Override
+    public double actualizarPeso(long id, double nuevoPeso) {
+        Usuario usuario = buscar(id);
+        if (usuario == null) {
+            return Double.NaN;
+        }
+        return usuario.actualizarPeso(nuevoPeso).getPeso(); // Aquí está el error
+    }
+
+    @Override
+    public Usuario.EstadoPeso obtenerEstado(long id) {
+        Usuario usuario = buscar(id);
+        return usuario == null ? null : usuario.getEstado();
+    }
+
+    @Override
+    public Usuario.EstadoPeso actualizarPesoSiVersion(long id, long versionEsperada, double nuevoPeso) {
+        Usuario usuario = buscar(id);
+        return usuario == null ? null : usuario.actualizarPesoSiVersion(versionEsperada, nuevoPeso);
+    }
+
+    @Override
+    public boolean establecerPeso(long id, double peso) {
+        Usuario usuario = buscar(id);
+        if (usuario == null) {
+            return false;
+        }
+        usuario.establecerPeso(peso);
+        return true;
+    }
+
+    @Override
+    public boolean establecerEstado(long id, double peso, long version) {
+        Usuario usuario = buscar(id);
+        return usuario != null && usuario.establecerEstado(peso, version).getVersion() < version;
+    }
+
+    @Override
+    public boolean eliminar(long id) {
+        return usuarios.remove(id) != null;
+    }
+
+    @Override
+    public void recorrer(VisitanteUsuario visitante) {
+        usuarios.forEach((id, usuario) -> visitante.visitar(id, usuario.getNombre(), usuario.getPeso()));
+    }
+
+    @Override
+    public int tamano() {
+        return usuarios.size();
+    }
+
+    private Usuario buscar(long id) {
+        return usuarios.get(CLAVES.get().con(id));
+    }
+
+    /**
+     * Clave de consulta equivalente a un Long para el mapa: mismo hash y
+     * equals contra el Long guardado. ConcurrentHashMap compara siempre
+     * {@code clave.equals(guardada)}, como pide {@link Map#get}. Nunca se
+     * guarda en el mapa; cada hilo reutiliza la suya.
+     */
+    private static final class ClaveBusqueda {
+        private long id;
+
+        ClaveBusqueda con(long valor) {
+            id = valor;
+            return this;
+        }
+
+        @Override
+        public int hashCode() {
+            return Long.hashCode(id);
+        }
+
+        @Override
+        public boolean equals(Object otro) {
+            return otro instanceof Long && (Long) otro == id;
+        }
+    }
+}
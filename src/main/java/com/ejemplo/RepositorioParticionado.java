@@ -0,0 +1,441 @@
+package com.ejemplo;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.Supplier;
+
+/**
+ * Repositorio repartido en particiones por hash consistente
+ * Cada partición es un repositorio independiente (un nodo en proceso) con sus
+ * propios agregados de población; este enrutador manda cada operación a la
+ * partición dueña del id según un {@link AnilloConsistente}. Como las
+ * particiones no comparten cerrojos ni contadores, las escrituras de
+ * particiones distintas no compiten entre sí: cada escritura cruza solo la
+ * puerta (ReentrantReadWriteLock) de su partición, en modo compartido.
+ *
+ * Agregar una partición traslada solo los usuarios que pasan a ser suyos:
+ * primero los copia con su peso y su versión, luego publica el anillo nuevo y
+ * al final los retira de su partición anterior, así que las lecturas por id
+ * los encuentran en todo momento. Durante el traslado tiene en exclusiva las
+ * puertas de las particiones existentes: las escrituras esperan y, al entrar,
+ * vuelven a buscar la partición dueña, así ninguna cae en la copia que se
+ * descarta. Tamaño, agregados y recorridos cruzan todas las puertas en modo
+ * compartido, de modo que nunca ven un usuario a la vez en la partición vieja
+ * y en la nueva.
+ */
+public class RepositorioParticionado implements RepositorioUsuarios {
+
+    /**
+     * Puntos del anillo por partición: con 160 el tamaño de cada partición
+     * queda en torno a ±10 % de la media
+     */
+    public static final int VIRTUALES_POR_DEFECTO = 160;
+    private static final String PREFIJO_PARTICION = "particion-";
+
+    private final Supplier<RepositorioUsuarios> fabrica;
+    private volatile Estado estado;
+
+    /**
+     * Constructor con {@value #VIRTUALES_POR_DEFECTO} puntos por partición
+     * @param particiones Cantidad inicial de particiones (al menos 1)
+     * @param fabrica Crea el repositorio de cada partición
+     */
+    public RepositorioParticionado(int particiones, Supplier<RepositorioUsuarios> fabrica) {
+        this(particiones, VIRTUALES_POR_DEFECTO, fabrica);
+    }
+
+    /**
+     * Constructor del repositorio particionado
+     * @param particiones Cantidad inicial de particiones (al menos 1)
+     * @param virtuales Puntos del anillo por partición
+     * @param fabrica Crea el repositorio de cada partición
+     */
+    public RepositorioParticionado(int particiones, int virtuales, Supplier<RepositorioUsuarios> fabrica) {
+        if (particiones < 1) {
+            throw new IllegalArgumentException("Se necesita al menos una partición");
+        }
+        this.fabrica = Objects.requireNonNull(fabrica, "fabrica");
+        AnilloConsistente anillo = new AnilloConsistente(virtuales);
+        Particion[] iniciales = new Particion[particiones];
+        for (int i = 0; i < particiones; i++) {
+            anillo = anillo.conNodo(PREFIJO_PARTICION + i);
+            iniciales[i] = new Particion(PREFIJO_PARTICION + i, fabrica.get());
+        }
+        this.estado = new Estado(anillo, iniciales);
+    }
+
+    /**
+     * Agrega una partición y le traslada los usuarios que ahora le pertenecen
+     * Las demás particiones no intercambian usuarios entre sí.
+     * @return cantidad de usuarios trasladados
+     */
+    public synchronized int agregarParticion() {
+        Estado actual = estado;
+        for (Particion particion : actual.particiones) {
+            particion.puerta.writeLock().lock();
+        }
+        try {
+            return trasladar(actual);
+        } finally {
+            for (Particion particion : actual.particiones) {
+                particion.puerta.writeLock().unlock();
+            }
+        }
+    }
+
+    private int trasladar(Estado actual) {
+        int indice = actual.particiones.length;
+        String nombre = PREFIJO_PARTICION + indice;
+        AnilloConsistente anillo = actual.anillo.conNodo(nombre);
+        Particion nueva = new Particion(nombre, fabrica.get());
+
+        List<long[]> trasladados = new ArrayList<>(indice);
+        int total = 0;
+        for (Particion origen : actual.particiones) {
+            long[][] ids = {new long[64]};
+            int[] cantidad = {0};
+            origen.repositorio.recorrer((id, nombreUsuario, peso) -> {
+                if (anillo.duenoDe(id) != indice) {
+                    return;
+                }
+                // La versión viaja con el usuario: una escritura condicional
+                // con una versión vieja no debe coincidir tras el traslado
+                Usuario.EstadoPeso estado = origen.repositorio.obtenerEstado(id);
+                if (nueva.insertar(id, nombreUsuario, estado.getPeso())) {
+                    nueva.repositorio.establecerEstado(id, estado.getPeso(), estado.getVersion());
+                    if (cantidad[0] == ids[0].length) {
+                        ids[0] = Arrays.copyOf(ids[0], cantidad[0] * 2);
+                    }
+                    ids[0][cantidad[0]++] = id;
+                }
+            });
+            trasladados.add(Arrays.copyOf(ids[0], cantidad[0]));
+            total += cantidad[0];
+        }
+
+        Particion[] particiones = Arrays.copyOf(actual.particiones, indice + 1);
+        particiones[indice] = nueva;
+        estado = new Estado(anillo, particiones);
+
+        for (int i = 0; i < indice; i++) {
+            for (long id : trasladados.get(i)) {
+                actual.particiones[i].eliminar(id);
+            }
+        }
+        return total;
+    }
+
+    /**
+     * Cantidad de particiones
+     */
+    public int cantidadParticiones() {
+        return estado.particiones.length;
+    }
+
+    /**
+     * Índice de la partición dueña de un id
+     * @param id Identificador numérico del usuario
+     */
+    public int particionDe(long id) {
+        return estado.anillo.duenoDe(id);
+    }
+
+    /**
+     * Agregados de población de todas las particiones combinados
+     * @return resumen igual al de una sola población con todos los usuarios
+     */
+    public EstadisticasPoblacion.Resumen resumir() {
+        Particion[] particiones = entrarTodas();
+        try {
+            List<EstadisticasPoblacion> partes = new ArrayList<>(particiones.length);
+            for (Particion particion : particiones) {
+                partes.add(particion.poblacion);
+            }
+            return EstadisticasPoblacion.combinar(partes);
+        } finally {
+            salirTodas(particiones);
+        }
+    }
+
+    /**
+     * Tamaño y agregados de cada partición
+     * @return lista inmutable en el orden de las particiones
+     */
+    public List<ResumenParticion> resumirParticiones() {
+        Particion[] particiones = entrarTodas();
+        try {
+            List<ResumenParticion> resumenes = new ArrayList<>(particiones.length);
+            for (Particion particion : particiones) {
+                resumenes.add(new ResumenParticion(particion.nombre, particion.repositorio.tamano(),
+                    particion.poblacion.resumir()));
+            }
+            return Collections.unmodifiableList(resumenes);
+        } finally {
+            salirTodas(particiones);
+        }
+    }
+
+    @Override
+    public boolean insertar(long id, String nombre, double peso) {
+        Particion particion = entrar(id);
+        try {
+            return particion.insertar(id, nombre, peso);
+        } finally {
+            particion.salir();
+        }
+    }
+
+    @Override
+    public boolean existe(long id) {
+        return particion(id).repositorio.existe(id);
+    }
+
+    @Override
+    public String obtenerNombre(long id) {
+        return particion(id).repositorio.obtenerNombre(id);
+    }
+
+    @Override
+    public double leer(long id, StringBuilder nombre) {
+        return particion(id).repositorio.leer(id, nombre);
+    }
+
+    @Override
+    public double obtenerPeso(long id) {
+        return particion(id).repositorio.obtenerPeso(id);
+    }
+
+    @Override
+    public double actualizarPeso(long id, double nuevoPeso) {
+        Particion particion = entrar(id);
+        try {
+            double pesoAnterior = particion.repositorio.actualizarPeso(id, nuevoPeso); // Aquí está el error
+            particion.poblacion.cambiar(pesoAnterior, Usuario.calcularPesoActualizado(pesoAnterior, nuevoPeso));
+            return pesoAnterior;
+        } finally {
+            particion.salir();
+        }
+    }
+
+    @Override
+    public Usuario.EstadoPeso obtenerEstado(long id) {
+        return particion(id).repositorio.obtenerEstado(id);
+    }
+
+    @Override
+    public Usuario.EstadoPeso actualizarPesoSiVersion(long id, long versionEsperada, double nuevoPeso) {
+        Particion particion = entrar(id);
+        try {
+            Usuario.EstadoPeso anterior = particion.repositorio.actualizarPesoSiVersion(id, versionEsperada,
+                nuevoPeso);
+            if (anterior != null && anterior.getVersion() == versionEsperada) {
+                particion.poblacion.cambiar(anterior.getPeso(),
+                    Usuario.calcularPesoActualizado(anterior.getPeso(), nuevoPeso));
+            }
+            return anterior;
+        } finally {
+            particion.salir();
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     * Los agregados de la partición usan el peso leído justo antes, así que
+     * el llamador debe serializar los cambios de un mismo usuario (la
+     * reproducción del registro corre en un solo hilo).
+     */
+    @Override
+    public boolean establecerPeso(long id, double peso) {
+        Particion particion = entrar(id);
+        try {
+            double pesoAnterior = particion.repositorio.obtenerPeso(id);
+            if (!particion.repositorio.establecerPeso(id, peso)) {
+                return false;
+            }
+            particion.poblacion.cambiar(pesoAnterior, peso);
+            return true;
+        } finally {
+            particion.salir();
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     * Como en {@link #establecerPeso}, los agregados usan el peso leído justo antes.
+     */
+    @Override
+    public boolean establecerEstado(long id, double peso, long version) {
+        Particion particion = entrar(id);
+        try {
+            double pesoAnterior = particion.repositorio.obtenerPeso(id);
+            if (!particion.repositorio.establecerEstado(id, peso, version)) {
+                return false;
+            }
+            particion.poblacion.cambiar(pesoAnterior, peso);
+            return true;
+        } finally {
+            particion.salir();
+        }
+    }
+
+    @Override
+    public boolean eliminar(long id) {
+        Particion particion = entrar(id);
+        try {
+            return particion.eliminar(id);
+        } finally {
+            particion.salir();
+        }
+    }
+
+    @Override
+    public void recorrer(VisitanteUsuario visitante) {
+        Particion[] particiones = entrarTodas();
+        try {
+            for (Particion particion : particiones) {
+                particion.repositorio.recorrer(visitante);
+            }
+        } finally {
+            salirTodas(particiones);
+        }
+    }
+
+    @Override
+    public int tamano() {
+        Particion[] particiones = entrarTodas();
+        try {
+            int total = 0;
+            for (Particion particion : particiones) {
+                total += particion.repositorio.tamano();
+            }
+            return total;
+        } finally {
+            salirTodas(particiones);
+        }
+    }
+
+    private Particion particion(long id) {
+        Estado actual = estado;
+        return actual.particiones[actual.anillo.duenoDe(id)];
+    }
+
+    /**
+     * Cruza la puerta de la partición dueña del id en modo compartido.
+     * Si un traslado publicó otro anillo mientras se esperaba, la dueña pudo
+     * cambiar: se suelta y se vuelve a buscar.
+     * @return partición dueña, con su puerta tomada hasta {@link Particion#salir()}
+     */
+    private Particion entrar(long id) {
+        while (true) {
+            Estado actual = estado;
+            Particion particion = actual.particiones[actual.anillo.duenoDe(id)];
+            particion.puerta.readLock().lock();
+            if (estado == actual) {
+                return particion;
+            }
+            particion.salir();
+        }
+    }
+
+    /**
+     * Cruza en modo compartido las puertas de todas las particiones vigentes
+     * (en orden, como el traslado), reintentando si entretanto se agregó una
+     */
+    private Particion[] entrarTodas() {
+        while (true) {
+            Particion[] particiones = estado.particiones;
+            for (Particion particion : particiones) {
+                particion.puerta.readLock().lock();
+            }
+            if (estado.particiones == particiones) {
+                return particiones;
+            }
+            salirTodas(particiones);
+        }
+    }
+
+    private static void salirTodas(Particion[] particiones) {
+        for (Particion particion : particiones) {
+            particion.salir();
+        }
+    }
+
+    /**
+     * Anillo y particiones publicados juntos, para que un índice del anillo
+     * siempre tenga su partición
+     */
+    private static final class Estado {
+        final AnilloConsistente anillo;
+        final Particion[] particiones;
+
+        Estado(AnilloConsistente anillo, Particion[] particiones) {
+            this.anillo = anillo;
+            this.particiones = particiones;
+        }
+    }
+
+    private static final class Particion {
+        final String nombre;
+        final RepositorioUsuarios repositorio;
+        final EstadisticasPoblacion poblacion = new EstadisticasPoblacion();
+        /** Compartida por las escrituras de la partición, exclusiva durante un traslado */
+        final ReentrantReadWriteLock puerta = new ReentrantReadWriteLock();
+
+        Particion(String nombre, RepositorioUsuarios repositorio) {
+            this.nombre = nombre;
+            this.repositorio = repositorio;
+        }
+
+        void salir() {
+            puerta.readLock().unlock();
+        }
+
+        boolean insertar(long id, String nombre, double peso) {
+            if (!repositorio.insertar(id, nombre, peso)) {
+                return false;
+            }
+            poblacion.agregar(peso);
+            return true;
+        }
+
+        boolean eliminar(long id) {
+            double peso = repositorio.obtenerPeso(id);
+            if (!repositorio.eliminar(id)) {
+                return false;
+            }
+            poblacion.quitar(peso);
+            return true;
+        }
+    }
+
+    /**
+     * Tamaño y agregados de una partición
+     */
+    public static final class ResumenParticion {
+        private final String nombre;
+        private final int usuarios;
+        private final EstadisticasPoblacion.Resumen poblacion;
+
+        ResumenParticion(String nombre, int usuarios, EstadisticasPoblacion.Resumen poblacion) {
+            this.nombre = nombre;
+            this.usuarios = usuarios;
+            this.poblacion = poblacion;
+        }
+
+        public String getNombre() {
+            return nombre;
+        }
+
+        public int getUsuarios() {
+            return usuarios;
+        }
+
+        public EstadisticasPoblacion.Resumen getPoblacion() {
+            return poblacion;
+        }
+    }
+}
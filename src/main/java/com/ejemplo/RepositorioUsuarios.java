@@ -0,0 +1,122 @@
+package com.ejemplo;
+
+/**
+ * Almacenamiento de usuarios utilizado por {@link UsuarioController}
+ * Los identificadores son numéricos; el prefijo "user_" solo existe en la API
+ */
+public interface RepositorioUsuarios {
+
+    /**
+     * Inserta un nuevo usuario
+     * @param id Identificador numérico del usuario
+     * @param nombre Nombre del usuario
+     * @param peso Peso inicial del usuario
+     * @return false si el identificador ya existía
+     */
+    boolean insertar(long id, String nombre, double peso);
+
+    /**
+     * Indica si existe un usuario con el identificador dado
+     * @param id Identificador numérico del usuario
+     * @return true si el usuario existe
+     */
+    boolean existe(long id);
+
+    /**
+     * Obtiene el nombre de un usuario
+     * @param id Identificador numérico del usuario
+     * @return nombre del usuario o null si no existe
+     */
+    String obtenerNombre(long id);
+
+    /**
+     * Lee nombre y peso con una sola búsqueda y sin crear objetos
+     * @param id Identificador numérico del usuario
+     * @param nombre Buffer al que se agrega el nombre
+     * @return peso actual o NaN si el usuario no existe (el buffer queda intacto)
+     */
+    double leer(long id, StringBuilder nombre);
+
+    /**
+     * Obtiene el peso actual de un usuario
+     * @param id Identificador numérico del usuario
+     * @return peso actual o NaN si el usuario no existe
+     */
+    double obtenerPeso(long id);
+
+    /**
+     * Actualiza el peso de un usuario aplicando la regla de {@link Usuario}
+     * @param id Identificador numérico del usuario
+     * @param nuevoPeso El nuevo peso a asignar
+     * @return peso anterior a la actualización o NaN si el usuario no existe
+     */
+    double actualizarPeso(long id, double nuevoPeso);
+
+    /**
+     * Lee peso y versión de forma coherente
+     * La versión empieza en 0 al insertar y crece en uno con cada cambio de peso.
+     * @param id Identificador numérico del usuario
+     * @return estado actual o null si el usuario no existe
+     */
+    Usuario.EstadoPeso obtenerEstado(long id);
+
+    /**
+     * Actualiza el peso aplicando la regla de {@link Usuario} solo si la
+     * versión sigue siendo la indicada (compare-and-set)
+     * @param id Identificador numérico del usuario
+     * @param versionEsperada Versión que el llamador leyó
+     * @param nuevoPeso El nuevo peso a asignar
+     * @return estado anterior (se aplicó si su versión es {@code versionEsperada};
+     *     si no, es el estado vigente) o null si el usuario no existe
+     */
+    Usuario.EstadoPeso actualizarPesoSiVersion(long id, long versionEsperada, double nuevoPeso);
+
+    /**
+     * Asigna un peso exacto sin aplicar la regla de actualización
+     * Se usa al restaurar desde disco, donde se guarda el peso resultante.
+     * @param id Identificador numérico del usuario
+     * @param peso Peso a almacenar
+     * @return false si el usuario no existe
+     */
+    boolean establecerPeso(long id, double peso);
+
+    /**
+     * Asigna un peso exacto con su versión, solo si es posterior a la vigente
+     * Se usa al reproducir actualizaciones versionadas: dos cambios concurrentes
+     * del mismo usuario pueden quedar en el registro en cualquier orden.
+     * @param id Identificador numérico del usuario
+     * @param peso Peso a almacenar
+     * @param version Versión que dejó el cambio
+     * @return false si el usuario no existe o ya tiene esa versión o una posterior
+     */
+    boolean establecerEstado(long id, double peso, long version);
+
+    /**
+     * Retira un usuario del repositorio
+     * Se usa al trasladar usuarios entre particiones (ver {@link RepositorioParticionado}).
+     * @param id Identificador numérico del usuario
+     * @return false si el usuario no existe
+     */
+    boolean eliminar(long id);
+
+    /**
+     * Recorre todos los usuarios almacenados
+     * Cada visita ve un peso coherente; usuarios creados durante el recorrido
+     * pueden o no aparecer.
+     * @param visitante Receptor de cada usuario
+     */
+    void recorrer(VisitanteUsuario visitante);
+
+    /**
+     * Cantidad de usuarios almacenados
+     * @return total de usuarios
+     */
+    int tamano();
+
+    /**
+     * Receptor de usuarios durante un recorrido
+     */
+    interface VisitanteUsuario {
+        void visitar(long id, String nombre, double peso);
+    }
+}
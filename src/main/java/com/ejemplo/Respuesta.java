@@ -0,0 +1,125 @@
+package com.ejemplo;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Respuesta tipada e inmutable de un endpoint de {@link UsuarioController}
+ * El código de estado es primitivo; {@link #aMapa()} produce la forma
+ * {@code Map<String, Object>} histórica de la API.
+ */
+public abstract class Respuesta {
+
+    private final int status;
+    private final String error;
+    private final long timestamp;
+    private final long reintentarEnMs;
+
+    Respuesta(int status, String error, long timestamp) {
+        this(status, error, timestamp, 0);
+    }
+
+    Respuesta(int status, String error, long timestamp, long reintentarEnMs) {
+        this.status = status;
+        this.error = error;
+        this.timestamp = timestamp;
+        this.reintentarEnMs = reintentarEnMs;
+    }
+
+    public int getStatus() {
+        return status;
+    }
+
+    /**
+     * Mensaje de error
+     * @return mensaje o null si la solicitud tuvo éxito
+     */
+    public String getError() {
+        return error;
+    }
+
+    /**
+     * Momento de la respuesta (epoch ms), 0 en las respuestas de error
+     * @return timestamp de la respuesta
+     */
+    public long getTimestamp() {
+        return timestamp;
+    }
+
+    /**
+     * Sugerencia de espera de un rechazo por control de admisión (429 o 503)
+     * @return milisegundos antes de reintentar, 0 si no aplica
+     */
+    public long getReintentarEnMs() {
+        return reintentarEnMs;
+    }
+
+    public boolean esExitosa() {
+        return error == null;
+    }
+
+    /**
+     * Adaptador a la forma de mapa usada por la API original
+     * @return mapa nuevo con las mismas claves que devolvía el controlador
+     */
+    public Map<String, Object> aMapa() {
+        Map<String, Object> mapa = new HashMap<>();
+        if (error != null) {
+            mapa.put("error", error);
+            mapa.put("status", status);
+            if (reintentarEnMs > 0) {
+                mapa.put("reintentarEnMs", reintentarEnMs);
+            }
+            completarMapaError(mapa);
+            return mapa;
+        }
+        completarMapa(mapa);
+        mapa.put("status", status);
+        mapa.put("timestamp", timestamp);
+        return mapa;
+    }
+
+    /**
+     * Escribe la respuesta como JSON, con los mismos campos que {@link #aMapa()}
+     * pero sin mapa intermedio
+     * @param json Escritor ya iniciado sobre el buffer de destino
+     */
+    public void escribirJson(EscritorJson json) {
+        json.inicioObjeto();
+        if (error != null) {
+            json.campo("error").valor(error);
+            json.campo("status").valor(status);
+            if (reintentarEnMs > 0) {
+                json.campo("reintentarEnMs").valor(reintentarEnMs);
+            }
+            completarJsonError(json);
+        } else {
+            completarJson(json);
+            json.campo("status").valor(status);
+            json.campo("timestamp").valor(timestamp);
+        }
+        json.finObjeto();
+    }
+
+    /**
+     * Agrega al mapa los campos propios de una respuesta exitosa
+     */
+    abstract void completarMapa(Map<String, Object> mapa);
+
+    /**
+     * Escribe los campos propios de una respuesta exitosa
+     */
+    abstract void completarJson(EscritorJson json);
+
+    /**
+     * Agrega al mapa los campos propios de una respuesta de error (por defecto ninguno)
+     */
+    void completarMapaError(Map<String, Object> mapa) {
+    }
+
+    /**
+     * Escribe los campos propios de una respuesta de error (por defecto ninguno)
+     */
+    void completarJsonError(EscritorJson json) {
+    }
+}
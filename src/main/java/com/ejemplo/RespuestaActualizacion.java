@@ -0,0 +1,131 @@
+package com.ejemplo;
+
+import java.util.Map;
+
+/**
+ * Respuesta de actualización de peso de un usuario
+ */
+public final class RespuestaActualizacion extends Respuesta {
+
+    static final long SIN_VERSION = -1;
+
+    private final String nombre;
+    private final double pesoAnterior;
+    private final double pesoActual;
+    private final double esperado;
+    private final long version;
+
+    RespuestaActualizacion(String nombre, double pesoAnterior, double pesoActual, double esperado, long timestamp) {
+        this(nombre, pesoAnterior, pesoActual, esperado, SIN_VERSION, timestamp);
+    }
+
+    /**
+     * Respuesta de una actualización condicional
+     * @param version Versión del peso tras la actualización
+     */
+    RespuestaActualizacion(String nombre, double pesoAnterior, double pesoActual, double esperado, long version,
+            long timestamp) {
+        super(200, null, timestamp);
+        this.nombre = nombre;
+        this.pesoAnterior = pesoAnterior;
+        this.pesoActual = pesoActual;
+        this.esperado = esperado;
+        this.version = version;
+    }
+
+    private RespuestaActualizacion(String error, int status, long reintentarEnMs, long version) {
+        super(status, error, 0, reintentarEnMs);
+        this.nombre = null;
+        this.pesoAnterior = Double.NaN;
+        this.pesoActual = Double.NaN;
+        this.esperado = Double.NaN;
+        this.version = version;
+    }
+
+    static RespuestaActualizacion error(String error, int status) {
+        return new RespuestaActualizacion(error, status, 0, SIN_VERSION);
+    }
+
+    /**
+     * Rechazo del control de admisión con sugerencia de reintento
+     */
+    static RespuestaActualizacion rechazo(String error, int status, long reintentarEnMs) {
+        return new RespuestaActualizacion(error, status, reintentarEnMs, SIN_VERSION);
+    }
+
+    /**
+     * Conflicto de una actualización condicional (409)
+     * @param versionActual Versión vigente, con la que el cliente puede reintentar
+     */
+    static RespuestaActualizacion conflicto(long versionActual) {
+        return new RespuestaActualizacion("Versión desactualizada", 409, 0, versionActual);
+    }
+
+    public String getNombre() {
+        return nombre;
+    }
+
+    public double getPesoAnterior() {
+        return pesoAnterior;
+    }
+
+    public double getPesoActual() {
+        return pesoActual;
+    }
+
+    /**
+     * Peso solicitado por el cliente (puede diferir de {@link #getPesoActual()})
+     * @return peso esperado
+     */
+    public double getEsperado() {
+        return esperado;
+    }
+
+    /**
+     * Versión del peso tras una actualización condicional, o la vigente en un conflicto
+     * @return versión o {@value #SIN_VERSION} si la respuesta no la informa
+     */
+    public long getVersion() {
+        return version;
+    }
+
+    @Override
+    void completarMapa(Map<String, Object> mapa) {
+        mapa.put("usuario", Map.of(
+            "nombre", nombre,
+            "pesoAnterior", pesoAnterior,
+            "pesoActual", pesoActual,
+            "esperado", esperado
+        ));
+        if (version != SIN_VERSION) {
+            mapa.put("version", version);
+        }
+    }
+
+    @Override
+    void completarJson(EscritorJson json) {
+        json.campo("usuario").inicioObjeto()
+            .campo("nombre").valor(nombre)
+            .campo("pesoAnterior").valor(pesoAnterior)
+            .campo("pesoActual").valor(pesoActual)
+            .campo("esperado").valor(esperado)
+            .finObjeto();
+        if (version != SIN_VERSION) {
+            json.campo("version").valor(version);
+        }
+    }
+
+    @Override
+    void completarMapaError(Map<String, Object> mapa) {
+        if (version != SIN_VERSION) {
+            mapa.put("version", version);
+        }
+    }
+
+    @Override
+    void completarJsonError(EscritorJson json) {
+        if (version != SIN_VERSION) {
+            json.campo("version").valor(version);
+        }
+    }
+}
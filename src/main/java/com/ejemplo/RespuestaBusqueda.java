@@ -0,0 +1,86 @@
+package com.ejemplo;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Respuesta paginada de una búsqueda de usuarios por peso o por nombre
+ */
+public final class RespuestaBusqueda extends Respuesta {
+
+    private final List<IndicesUsuarios.Coincidencia> usuarios;
+    private final String siguiente;
+
+    RespuestaBusqueda(IndicesUsuarios.Pagina pagina, long timestamp) {
+        super(200, null, timestamp);
+        this.usuarios = pagina.getUsuarios();
+        this.siguiente = pagina.getSiguiente();
+    }
+
+    private RespuestaBusqueda(String error, int status, long reintentarEnMs) {
+        super(status, error, 0, reintentarEnMs);
+        this.usuarios = Collections.emptyList();
+        this.siguiente = null;
+    }
+
+    static RespuestaBusqueda error(String error, int status) {
+        return new RespuestaBusqueda(error, status, 0);
+    }
+
+    /**
+     * Rechazo del control de admisión con sugerencia de reintento
+     */
+    static RespuestaBusqueda rechazo(String error, int status, long reintentarEnMs) {
+        return new RespuestaBusqueda(error, status, reintentarEnMs);
+    }
+
+    /**
+     * Usuarios de la página, en el orden del índice
+     * @return lista inmutable (vacía en las respuestas de error)
+     */
+    public List<IndicesUsuarios.Coincidencia> getUsuarios() {
+        return usuarios;
+    }
+
+    /**
+     * Cursor para pedir la página siguiente
+     * @return cursor opaco o null si no hay más resultados
+     */
+    public String getSiguiente() {
+        return siguiente;
+    }
+
+    @Override
+    void completarMapa(Map<String, Object> mapa) {
+        List<Map<String, Object>> lista = new ArrayList<>(usuarios.size());
+        for (IndicesUsuarios.Coincidencia usuario : usuarios) {
+            lista.add(Map.of(
+                "id", UsuarioController.formatearId(usuario.getId()),
+                "nombre", usuario.getNombre(),
+                "peso", usuario.getPeso()
+            ));
+        }
+        mapa.put("usuarios", lista);
+        if (siguiente != null) {
+            mapa.put("siguiente", siguiente);
+        }
+    }
+
+    @Override
+    void completarJson(EscritorJson json) {
+        json.campo("usuarios").inicioArreglo();
+        for (IndicesUsuarios.Coincidencia usuario : usuarios) {
+            json.inicioObjeto()
+                .campo("id").valor(UsuarioController.formatearId(usuario.getId()))
+                .campo("nombre").valor(usuario.getNombre())
+                .campo("peso").valor(usuario.getPeso())
+                .finObjeto();
+        }
+        json.finArreglo();
+        if (siguiente != null) {
+            json.campo("siguiente").valor(siguiente);
+        }
+    }
+}
@@ -0,0 +1,192 @@
+package com.ejemplo;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Respuesta de estadísticas del sistema
+ */
+public final class RespuestaEstadisticas extends Respuesta {
+
+    private final int totalUsuarios;
+    private final EstadisticasPoblacion.Resumen poblacion;
+    private final boolean conCache;
+    private final long cacheAciertos;
+    private final long cacheFallos;
+    private final long cacheDesalojos;
+    private final int cacheEntradas;
+    private final long consultasAgrupadas;
+    private final List<RepositorioParticionado.ResumenParticion> particiones;
+
+    RespuestaEstadisticas(int totalUsuarios, EstadisticasPoblacion.Resumen poblacion, CacheUsuarios cache,
+            long consultasAgrupadas, long timestamp) {
+        this(totalUsuarios, poblacion, Collections.emptyList(), cache, consultasAgrupadas, timestamp);
+    }
+
+    /**
+     * Estadísticas de un repositorio particionado
+     * @param poblacion Agregados combinados de todas las particiones
+     * @param particiones Tamaño y agregados de cada partición
+     */
+    RespuestaEstadisticas(int totalUsuarios, EstadisticasPoblacion.Resumen poblacion,
+            List<RepositorioParticionado.ResumenParticion> particiones, CacheUsuarios cache,
+            long consultasAgrupadas, long timestamp) {
+        super(200, null, timestamp);
+        this.totalUsuarios = totalUsuarios;
+        this.poblacion = poblacion;
+        this.particiones = particiones;
+        this.conCache = cache != null;
+        this.cacheAciertos = conCache ? cache.getAciertos() : 0;
+        this.cacheFallos = conCache ? cache.getFallos() : 0;
+        this.cacheDesalojos = conCache ? cache.getDesalojos() : 0;
+        this.cacheEntradas = conCache ? cache.tamano() : 0;
+        this.consultasAgrupadas = consultasAgrupadas;
+    }
+
+    private RespuestaEstadisticas(String error, int status, long reintentarEnMs) {
+        super(status, error, 0, reintentarEnMs);
+        this.totalUsuarios = 0;
+        this.poblacion = null;
+        this.conCache = false;
+        this.cacheAciertos = 0;
+        this.cacheFallos = 0;
+        this.cacheDesalojos = 0;
+        this.cacheEntradas = 0;
+        this.consultasAgrupadas = 0;
+        this.particiones = Collections.emptyList();
+    }
+
+    static RespuestaEstadisticas error(String error, int status) {
+        return new RespuestaEstadisticas(error, status, 0);
+    }
+
+    /**
+     * Rechazo del control de admisión con sugerencia de reintento
+     */
+    static RespuestaEstadisticas rechazo(String error, int status, long reintentarEnMs) {
+        return new RespuestaEstadisticas(error, status, reintentarEnMs);
+    }
+
+    public int getTotalUsuarios() {
+        return totalUsuarios;
+    }
+
+    /**
+     * Agregados de peso de la población
+     * @return resumen o null en las respuestas de error
+     */
+    public EstadisticasPoblacion.Resumen getPoblacion() {
+        return poblacion;
+    }
+
+    /**
+     * Indica si la caché de consultas está activa
+     * @return false si los contadores de caché no aplican
+     */
+    public boolean isConCache() {
+        return conCache;
+    }
+
+    public long getCacheAciertos() {
+        return cacheAciertos;
+    }
+
+    public long getCacheFallos() {
+        return cacheFallos;
+    }
+
+    public long getCacheDesalojos() {
+        return cacheDesalojos;
+    }
+
+    public int getCacheEntradas() {
+        return cacheEntradas;
+    }
+
+    /**
+     * Consultas que compartieron el viaje de otra consulta concurrente del mismo usuario
+     * @return consultas agrupadas desde el arranque
+     */
+    public long getConsultasAgrupadas() {
+        return consultasAgrupadas;
+    }
+
+    /**
+     * Tamaño y agregados de cada partición
+     * @return lista vacía si el repositorio no está particionado
+     */
+    public List<RepositorioParticionado.ResumenParticion> getParticiones() {
+        return particiones;
+    }
+
+    /**
+     * Proporción de consultas servidas desde la caché
+     * @return tasa de aciertos entre 0 y 1 (0 sin consultas)
+     */
+    public double getCacheTasaAciertos() {
+        long consultas = cacheAciertos + cacheFallos;
+        return consultas == 0 ? 0.0 : (double) cacheAciertos / consultas;
+    }
+
+    @Override
+    void completarMapa(Map<String, Object> mapa) {
+        mapa.put("totalUsuarios", totalUsuarios);
+        mapa.put("poblacion", poblacion.aMapa());
+        mapa.put("consultasAgrupadas", consultasAgrupadas);
+        if (conCache) {
+            mapa.put("cache", Map.of(
+                "aciertos", cacheAciertos,
+                "fallos", cacheFallos,
+                "desalojos", cacheDesalojos,
+                "entradas", cacheEntradas,
+                "tasaAciertos", getCacheTasaAciertos()
+            ));
+        }
+        if (!particiones.isEmpty()) {
+            List<Map<String, Object>> lista = new ArrayList<>(particiones.size());
+            for (RepositorioParticionado.ResumenParticion particion : particiones) {
+                lista.add(Map.of(
+                    "nombre", particion.getNombre(),
+                    "usuarios", particion.getUsuarios(),
+                    "poblacion", particion.getPoblacion().aMapa()
+                ));
+            }
+            mapa.put("particiones", lista);
+        }
+    }
+
+    /**
+     * Los agregados se escriben redondeados (ver {@link EstadisticasPoblacion.Resumen#escribirJson})
+     * y la tasa de aciertos con 4 decimales
+     */
+    @Override
+    void completarJson(EscritorJson json) {
+        json.campo("totalUsuarios").valor(totalUsuarios);
+        json.campo("poblacion");
+        poblacion.escribirJson(json);
+        json.campo("consultasAgrupadas").valor(consultasAgrupadas);
+        if (conCache) {
+            json.campo("cache").inicioObjeto()
+                .campo("aciertos").valor(cacheAciertos)
+                .campo("fallos").valor(cacheFallos)
+                .campo("desalojos").valor(cacheDesalojos)
+                .campo("entradas").valor(cacheEntradas)
+                .campo("tasaAciertos").valor(getCacheTasaAciertos(), 4)
+                .finObjeto();
+        }
+        if (!particiones.isEmpty()) {
+            json.campo("particiones").inicioArreglo();
+            for (RepositorioParticionado.ResumenParticion particion : particiones) {
+                json.inicioObjeto()
+                    .campo("nombre").valor(particion.getNombre())
+                    .campo("usuarios").valor(particion.getUsuarios())
+                    .campo("poblacion");
+                particion.getPoblacion().escribirJson(json);
+                json.finObjeto();
+            }
+            json.finArreglo();
+        }
+    }
+}
@@ -0,0 +1,80 @@
+package com.ejemplo;
+
+import java.util.Map;
+
+/**
+ * Respuesta de creación o consulta de un usuario
+ */
+public final class RespuestaUsuario extends Respuesta {
+
+    private final String id;
+    private final String nombre;
+    private final double peso;
+
+    RespuestaUsuario(int status, String id, String nombre, double peso, long timestamp) {
+        super(status, null, timestamp);
+        this.id = id;
+        this.nombre = nombre;
+        this.peso = peso;
+    }
+
+    private RespuestaUsuario(String error, int status, long reintentarEnMs) {
+        super(status, error, 0, reintentarEnMs);
+        this.id = null;
+        this.nombre = null;
+        this.peso = Double.NaN;
+    }
+
+    static RespuestaUsuario error(String error, int status) {
+        return new RespuestaUsuario(error, status, 0);
+    }
+
+    /**
+     * Rechazo del control de admisión con sugerencia de reintento
+     */
+    static RespuestaUsuario rechazo(String error, int status, long reintentarEnMs) {
+        return new RespuestaUsuario(error, status, reintentarEnMs);
+    }
+
+    /**
+     * Identificador de la API ("user_N")
+     * @return id del usuario creado, o null en las consultas y errores
+     */
+    public String getId() {
+        return id;
+    }
+
+    public String getNombre() {
+        return nombre;
+    }
+
+    /**
+     * Peso del usuario
+     * @return peso o NaN en las respuestas de error
+     */
+    public double getPeso() {
+        return peso;
+    }
+
+    @Override
+    void completarMapa(Map<String, Object> mapa) {
+        if (id != null) {
+            mapa.put("id", id);
+        }
+        mapa.put("usuario", Map.of(
+            "nombre", nombre,
+            "peso", peso
+        ));
+    }
+
+    @Override
+    void completarJson(EscritorJson json) {
+        if (id != null) {
+            json.campo("id").valor(id);
+        }
+        json.campo("usuario").inicioObjeto()
+            .campo("nombre").valor(nombre)
+            .campo("peso").valor(peso)
+            .finObjeto();
+    }
+}
@@ -0,0 +1,302 @@
+package com.ejemplo;
+
+import java.util.Arrays;
+
+/**
+ * Serie temporal comprimida de lecturas de peso de un usuario (solo agregar)
+ * Usa la codificación de Gorilla: timestamps como delta de deltas y pesos como
+ * XOR con el valor anterior. La serie se divide en bloques independientes de
+ * {@link #MUESTRAS_POR_BLOQUE} muestras para que las consultas por rango salten
+ * directamente al primer bloque relevante.
+ * Los timestamps se reciben en milisegundos y se guardan con resolución de segundos.
+ */
+public class SeriePesos {
+
+    static final int MUESTRAS_POR_BLOQUE = 128;
+
+    private long[] palabras = new long[4];
+    private int bits;
+    private int muestras;
+
+    // Índice de bloques: primer timestamp (s) y posición en bits de cada bloque
+    private long[] inicioBloques = new long[1];
+    private int[] posicionBloques = new int[1];
+    private int bloques;
+
+    // Estado del codificador dentro del bloque actual
+    private long ultimoTimestamp;
+    private long ultimoDelta;
+    private long ultimoValor;
+    private int ceros;
+    private int significativos;
+
+    /**
+     * Agrega una lectura al final de la serie
+     * @param timestampMs Momento de la lectura (epoch en milisegundos)
+     * @param peso Peso registrado
+     */
+    public synchronized void agregar(long timestampMs, double peso) {
+        long timestamp = Math.floorDiv(timestampMs, 1000L);
+        if (muestras > 0 && timestamp < ultimoTimestamp) {
+            throw new IllegalArgumentException("Las lecturas deben agregarse en orden cronológico");
+        }
+        long valor = Double.doubleToRawLongBits(peso);
+
+        if (muestras % MUESTRAS_POR_BLOQUE == 0) {
+            iniciarBloque(timestamp);
+            escribir(timestamp, 64);
+            escribir(valor, 64);
+            ultimoDelta = 0;
+            ceros = Integer.MAX_VALUE;
+            significativos = 0;
+        } else {
+            long delta = timestamp - ultimoTimestamp;
+            escribirDeltaDeDelta(delta - ultimoDelta);
+            escribirXor(valor ^ ultimoValor);
+            ultimoDelta = delta;
+        }
+        ultimoTimestamp = timestamp;
+        ultimoValor = valor;
+        muestras++;
+    }
+
+    /**
+     * Agrega una lectura sin retroceder respecto a la última (tolera saltos del reloj)
+     * @param timestampMs Momento de la lectura (epoch ms); se ajusta a la última si es anterior
+     * @param peso Peso registrado
+     */
+    public synchronized void agregarOrdenado(long timestampMs, double peso) {
+        long ultimoMs = muestras == 0 ? Long.MIN_VALUE : ultimoTimestamp * 1000L;
+        agregar(Math.max(timestampMs, ultimoMs), peso);
+    }
+
+    /**
+     * Recorre las lecturas dentro de un rango de tiempo
+     * @param desdeMs Inicio del rango (inclusivo, epoch ms)
+     * @param hastaMs Fin del rango (exclusivo, epoch ms)
+     * @param consumidor Receptor de cada lectura
+     */
+    public synchronized void recorrer(long desdeMs, long hastaMs, ConsumidorMuestra consumidor) {
+        long desde = Math.floorDiv(desdeMs, 1000L);
+        long hasta = Math.floorDiv(hastaMs, 1000L);
+        if (muestras == 0 || desde >= hasta) {
+            return;
+        }
+        int bloque = primerBloque(desde);
+        Lector lector = new Lector(posicionBloques[bloque]);
+        int restantes = muestras - bloque * MUESTRAS_POR_BLOQUE;
+        long timestamp = 0;
+        long delta = 0;
+        long valor = 0;
+        int cerosLector = 0;
+        int significativosLector = 0;
+
+        for (int i = 0; i < restantes; i++) {
+            if (i % MUESTRAS_POR_BLOQUE == 0) {
+                timestamp = lector.leer(64);
+                valor = lector.leer(64);
+                delta = 0;
+            } else {
+                delta += leerDeltaDeDelta(lector);
+                timestamp += delta;
+                if (lector.leer(1) != 0) {
+                    if (lector.leer(1) != 0) {
+                        cerosLector = (int) lector.leer(5);
+                        significativosLector = (int) lector.leer(6) + 1;
+                    }
+                    long xor = lector.leer(significativosLector);
+                    valor ^= xor << (64 - cerosLector - significativosLector);
+                }
+            }
+            if (timestamp >= hasta) {
+                return;
+            }
+            if (timestamp >= desde) {
+                consumidor.aceptar(timestamp * 1000L, Double.longBitsToDouble(valor));
+            }
+        }
+    }
+
+    /**
+     * Promedia las lecturas en ventanas de tamaño fijo (p. ej. semanas en los últimos 90 días)
+     * @param desdeMs Inicio del rango (inclusivo, epoch ms)
+     * @param hastaMs Fin del rango (exclusivo, epoch ms)
+     * @param ventanaMs Ancho de cada ventana en milisegundos
+     * @return promedio por ventana, NaN en ventanas sin lecturas
+     */
+    public double[] promediarPorVentana(long desdeMs, long hastaMs, long ventanaMs) {
+        if (ventanaMs <= 0) {
+            throw new IllegalArgumentException("La ventana debe ser mayor a 0");
+        }
+        int cantidad = (int) Math.max(0, (hastaMs - desdeMs + ventanaMs - 1) / ventanaMs);
+        double[] sumas = new double[cantidad];
+        int[] conteos = new int[cantidad];
+        recorrer(desdeMs, hastaMs, (timestampMs, peso) -> {
+            int ventana = (int) ((timestampMs - desdeMs) / ventanaMs);
+            if (ventana >= 0 && ventana < cantidad) {
+                sumas[ventana] += peso;
+                conteos[ventana]++;
+            }
+        });
+        for (int i = 0; i < cantidad; i++) {
+            sumas[i] = conteos[i] == 0 ? Double.NaN : sumas[i] / conteos[i];
+        }
+        return sumas;
+    }
+
+    /**
+     * Cantidad de lecturas almacenadas
+     * @return total de lecturas
+     */
+    public synchronized int cantidad() {
+        return muestras;
+    }
+
+    /**
+     * Bytes ocupados por los datos comprimidos (sin contar el índice de bloques)
+     * @return bytes usados
+     */
+    public synchronized int bytesComprimidos() {
+        return (bits + 7) / 8;
+    }
+
+    /**
+     * Receptor de lecturas durante un recorrido
+     */
+    public interface ConsumidorMuestra {
+        void aceptar(long timestampMs, double peso);
+    }
+
+    private void iniciarBloque(long timestamp) {
+        if (bloques == inicioBloques.length) {
+            inicioBloques = Arrays.copyOf(inicioBloques, bloques * 2);
+            posicionBloques = Arrays.copyOf(posicionBloques, bloques * 2);
+        }
+        inicioBloques[bloques] = timestamp;
+        posicionBloques[bloques] = bits;
+        bloques++;
+    }
+
+    private int primerBloque(long desde) {
+        int bajo = 0;
+        int alto = bloques - 1;
+        while (bajo < alto) {
+            int medio = (bajo + alto + 1) >>> 1;
+            // Estricto: un bloque anterior puede terminar con lecturas en "desde"
+            if (inicioBloques[medio] < desde) {
+                bajo = medio;
+            } else {
+                alto = medio - 1;
+            }
+        }
+        return bajo;
+    }
+
+    private void escribirDeltaDeDelta(long dod) {
+        // Intervalos pensados para lecturas diarias con resolución de segundos
+        if (dod == 0) {
+            escribir(0, 1);
+        } else if (dod >= -63 && dod <= 64) {
+            escribir(0b10, 2);
+            escribir(dod + 63, 7);
+        } else if (dod >= -65_535 && dod <= 65_536) {
+            escribir(0b110, 3);
+            escribir(dod + 65_535, 17);
+        } else if (dod >= -8_388_607 && dod <= 8_388_608) {
+            escribir(0b1110, 4);
+            escribir(dod + 8_388_607, 24);
+        } else {
+            escribir(0b1111, 4);
+            escribir(dod, 64);
+        }
+    }
+
+    private static long leerDeltaDeDelta(Lector lector) {
+        if (lector.leer(1) == 0) {
+            return 0;
+        }
+        if (lector.leer(1) == 0) {
+            return lector.leer(7) - 63;
+        }
+        if (lector.leer(1) == 0) {
+            return lector.leer(17) - 65_535;
+        }
+        if (lector.leer(1) == 0) {
+            return lector.leer(24) - 8_388_607;
+        }
+        return lector.leer(64);
+    }
+
+    private void escribirXor(long xor) {
+        if (xor == 0) {
+            escribir(0, 1);
+            return;
+        }
+        int cerosIniciales = Math.min(Long.numberOfLeadingZeros(xor), 31);
+        int cerosFinales = Long.numberOfTrailingZeros(xor);
+        if (ceros != Integer.MAX_VALUE && cerosIniciales >= ceros
+                && cerosFinales >= 64 - ceros - significativos) {
+            // Reutiliza la ventana de bits significativos anterior
+            escribir(0b10, 2);
+            escribir(xor >>> (64 - ceros - significativos), significativos);
+        } else {
+            ceros = cerosIniciales;
+            significativos = 64 - cerosIniciales - cerosFinales;
+            escribir(0b11, 2);
+            escribir(ceros, 5);
+            escribir(significativos - 1, 6);
+            escribir(xor >>> cerosFinales, significativos);
+        }
+    }
+
+    private void escribir(long valor, int cantidadBits) {
+        if (cantidadBits == 0) {
+            return;
+        }
+        int palabra = bits >>> 6;
+        if (palabra + 1 >= palabras.length) {
+            palabras = Arrays.copyOf(palabras, palabras.length + (palabras.length >> 1) + 2);
+        }
+        if (cantidadBits < 64) {
+            valor &= (1L << cantidadBits) - 1;
+        }
+        int libres = 64 - (bits & 63);
+        if (cantidadBits <= libres) {
+            palabras[palabra] |= valor << (libres - cantidadBits);
+        } else {
+            int resto = cantidadBits - libres;
+            palabras[palabra] |= valor >>> resto;
+            palabras[palabra + 1] |= valor << (64 - resto);
+        }
+        bits += cantidadBits;
+    }
+
+    /**
+     * Lector secuencial de bits sobre los datos de la serie
+     */
+    private final class Lector {
+        private int posicion;
+
+        Lector(int posicion) {
+            this.posicion = posicion;
+        }
+
+        long leer(int cantidadBits) {
+            if (cantidadBits == 0) {
+                return 0;
+            }
+            int palabra = posicion >>> 6;
+            int usados = posicion & 63;
+            int disponibles = 64 - usados;
+            long resultado;
+            if (cantidadBits <= disponibles) {
+                resultado = palabras[palabra] >>> (disponibles - cantidadBits);
+            } else {
+                int resto = cantidadBits - disponibles;
+                resultado = (palabras[palabra] << resto) | (palabras[palabra + 1] >>> (64 - resto));
+            }
+            posicion += cantidadBits;
+            return cantidadBits == 64 ? resultado : resultado & ((1L << cantidadBits) - 1);
+        }
+    }
+}
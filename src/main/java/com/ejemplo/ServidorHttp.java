@@ -0,0 +1,432 @@
+package com.ejemplo;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.lang.reflect.Method;
+import java.net.InetSocketAddress;
+import java.nio.BufferOverflowException;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Servidor HTTP/1.1 embebido que expone {@link UsuarioController}
+ * Usa el servidor del JDK (com.sun.net.httpserver), que mantiene las
+ * conexiones abiertas (keep-alive) entre solicitudes. Los manejadores llaman a
+ * la API síncrona del controlador: con hilos virtuales (JDK 21+) cada
+ * solicitud tiene su hilo; en JDK anteriores se usa un pool fijo de
+ * -Dhealthtrack.http.hilos hilos (256 por defecto).
+ *
+ * Las respuestas se serializan con {@link EscritorJson} en ByteBuffer directos
+ * de un {@link PoolBuffers}; los cuerpos application/json se leen con
+ * {@link LectorJson} y el resto como application/x-www-form-urlencoded.
+ * Lector, escritor y buffers forman un contexto que se toma de un
+ * {@link PoolObjetos} por solicitud: con hilos virtuales cada solicitud corre en
+ * un hilo nuevo y un ThreadLocal no reutilizaría nada.
+ * Los rechazos del control de admisión (429 y 503) llevan la cabecera Retry-After.
+ *
+ * Rutas (los parámetros también pueden ir en la query en el caso de formulario):
+ * <pre>
+ * POST /usuarios               nombre, peso  -> 201
+ * GET  /usuarios               prefijo | pesoMin, pesoMax; cursor, limite (100)
+ *                                            -> 200, una página y el cursor siguiente
+ * PUT  /usuarios/{id}/peso     peso          -> 200
+ *                              con If-Match: "version" solo se aplica si la
+ *                              versión coincide; si no -> 409 y la vigente
+ * GET  /usuarios/{id}                        -> 200
+ * GET  /usuarios/exportar      formato (csv | ndjson), pesoMin, pesoMax, nombre
+ *                                            -> 200, cuerpo en streaming (chunked)
+ * GET  /estadisticas                         -> 200
+ * GET  /metricas                             -> texto de Prometheus
+ * </pre>
+ */
+public class ServidorHttp implements AutoCloseable {
+
+    private static final String RUTA_USUARIOS = "/usuarios";
+    private static final String SUFIJO_PESO = "/peso";
+    private static final String RUTA_EXPORTAR = RUTA_USUARIOS + "/exportar";
+    private static final String TIPO_JSON = "application/json; charset=utf-8";
+    private static final String TIPO_METRICAS = "text/plain; version=0.0.4; charset=utf-8";
+    private static final String TIPO_CSV = "text/csv; charset=utf-8";
+    private static final String TIPO_NDJSON = "application/x-ndjson; charset=utf-8";
+    private static final String PESO_INVALIDO = "Peso inválido";
+    private static final int TAMANO_COPIA = 8 * 1024;
+    private static final int LIMITE_POR_DEFECTO = 100;
+    private static final PoolBuffers BUFFERS = new PoolBuffers(512,
+        Integer.getInteger("healthtrack.http.buffer", 16 * 1024));
+    private static final PoolObjetos<Contexto> CONTEXTOS = new PoolObjetos<>(256, Contexto::new);
+
+    private final HttpServer servidor;
+    private final ExecutorService ejecutor;
+
+    private ServidorHttp(HttpServer servidor, ExecutorService ejecutor) {
+        this.servidor = servidor;
+        this.ejecutor = ejecutor;
+    }
+
+    /**
+     * Crea e inicia el servidor
+     * @param puerto Puerto TCP (0 para uno libre cualquiera)
+     * @return servidor ya escuchando
+     * @throws IOException si no se puede abrir el puerto
+     */
+    public static ServidorHttp iniciar(int puerto) throws IOException {
+        // Sin TCP_NODELAY, cabeceras y cuerpo escritos por separado chocan con el
+        // ACK diferido del cliente y cada respuesta espera ~40 ms (algoritmo de Nagle).
+        // La propiedad se lee una sola vez, al crear el primer servidor.
+        if (System.getProperty("sun.net.httpserver.nodelay") == null) {
+            System.setProperty("sun.net.httpserver.nodelay", "true");
+        }
+        // Inicializa el controlador antes de aceptar la primera conexión
+        UsuarioController.metricas();
+        HttpServer servidor = HttpServer.create(new InetSocketAddress(puerto), 1024);
+        ExecutorService ejecutor = crearEjecutor();
+        ServidorHttp instancia = new ServidorHttp(servidor, ejecutor);
+        servidor.createContext("/", instancia::atender);
+        servidor.setExecutor(ejecutor);
+        servidor.start();
+        return instancia;
+    }
+
+    /**
+     * @return puerto en el que escucha el servidor
+     */
+    public int getPuerto() {
+        return servidor.getAddress().getPort();
+    }
+
+    /**
+     * Deja de aceptar conexiones y espera hasta un segundo a las solicitudes en curso
+     */
+    @Override
+    public void close() {
+        servidor.stop(1);
+        ejecutor.shutdown();
+        try {
+            ejecutor.awaitTermination(1, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private void atender(HttpExchange intercambio) throws IOException {
+        Contexto contexto = CONTEXTOS.tomar();
+        ByteBuffer entrada = contexto.entrada;
+        ByteBuffer salida = contexto.salida;
+        try {
+            String metodo = intercambio.getRequestMethod();
+            String ruta = intercambio.getRequestURI().getPath();
+            boolean completo = leerCuerpo(intercambio.getRequestBody(), entrada, contexto.copia);
+
+            if (ruta.equals("/metricas") && metodo.equals("GET")) {
+                byte[] texto = UsuarioController.exponerMetricas().getBytes(StandardCharsets.UTF_8);
+                responder(intercambio, 200, TIPO_METRICAS, ByteBuffer.wrap(texto), contexto.copia);
+                return;
+            }
+            if (ruta.equals(RUTA_EXPORTAR) && metodo.equals("GET")) {
+                exportar(intercambio);
+                return;
+            }
+            Respuesta respuesta = completo
+                ? enrutar(metodo, ruta, intercambio, entrada, contexto)
+                : RespuestaUsuario.error("Cuerpo demasiado grande", 413);
+            responderJson(intercambio, respuesta, salida, contexto);
+        } catch (RuntimeException e) {
+            // Con las cabeceras ya enviadas (exportación a medias) no cabe otra
+            // respuesta: cerrar el intercambio corta el cuerpo chunked
+            if (intercambio.getResponseCode() == -1) {
+                responderJson(intercambio, RespuestaUsuario.error("Error interno del servidor", 500), salida, contexto);
+            }
+        } finally {
+            contexto.reiniciar();
+            if (!CONTEXTOS.devolver(contexto)) {
+                contexto.liberar();
+            }
+            intercambio.close();
+        }
+    }
+
+    private static Respuesta enrutar(String metodo, String ruta, HttpExchange intercambio, ByteBuffer cuerpo,
+            Contexto contexto) {
+        if (ruta.equals("/metricas") || ruta.equals(RUTA_EXPORTAR)) {
+            return metodoNoPermitido();
+        } else if (ruta.equals("/estadisticas")) {
+            return metodo.equals("GET") ? UsuarioController.obtenerEstadisticasTipado() : metodoNoPermitido();
+        } else if (ruta.equals(RUTA_USUARIOS)) {
+            if (metodo.equals("GET")) {
+                return buscar(intercambio);
+            }
+            return metodo.equals("POST") ? crear(intercambio, cuerpo, contexto) : metodoNoPermitido();
+        } else if (ruta.startsWith(RUTA_USUARIOS + "/") && ruta.endsWith(SUFIJO_PESO)) {
+            String id = ruta.substring(RUTA_USUARIOS.length() + 1, ruta.length() - SUFIJO_PESO.length());
+            return metodo.equals("PUT") ? actualizar(id, intercambio, cuerpo, contexto) : metodoNoPermitido();
+        } else if (ruta.startsWith(RUTA_USUARIOS + "/") && ruta.indexOf('/', RUTA_USUARIOS.length() + 1) < 0) {
+            String id = ruta.substring(RUTA_USUARIOS.length() + 1);
+            return metodo.equals("GET") ? UsuarioController.obtenerUsuarioTipado(id) : metodoNoPermitido();
+        }
+        return RespuestaUsuario.error("Ruta no encontrada", 404);
+    }
+
+    private static Respuesta crear(HttpExchange intercambio, ByteBuffer cuerpo, Contexto contexto) {
+        String nombre;
+        double peso;
+        try {
+            if (esJson(intercambio)) {
+                SolicitudCreacion solicitud = contexto.lector.iniciar(cuerpo).leerCreacion();
+                nombre = solicitud.getNombre();
+                peso = solicitud.getPeso();
+            } else {
+                Map<String, String> parametros = leerParametros(intercambio, cuerpo);
+                nombre = parametros.get("nombre");
+                peso = leerPeso(parametros);
+            }
+        } catch (IllegalArgumentException e) {
+            return RespuestaUsuario.error(e.getMessage(), 400);
+        }
+        if (Double.isNaN(peso)) {
+            return RespuestaUsuario.error(PESO_INVALIDO, 400);
+        }
+        return UsuarioController.crearUsuarioTipado(nombre, peso);
+    }
+
+    private static Respuesta actualizar(String id, HttpExchange intercambio, ByteBuffer cuerpo, Contexto contexto) {
+        double peso;
+        try {
+            peso = esJson(intercambio)
+                ? contexto.lector.iniciar(cuerpo).leerPeso()
+                : leerPeso(leerParametros(intercambio, cuerpo));
+        } catch (IllegalArgumentException e) {
+            return RespuestaActualizacion.error(e.getMessage(), 400);
+        }
+        if (Double.isNaN(peso)) {
+            return RespuestaActualizacion.error(PESO_INVALIDO, 400);
+        }
+        String version = intercambio.getRequestHeaders().getFirst("If-Match");
+        if (version == null) {
+            return UsuarioController.actualizarPesoTipado(id, peso);
+        }
+        try {
+            return UsuarioController.actualizarPesoSiVersionTipado(id, leerVersion(version), peso);
+        } catch (NumberFormatException e) {
+            return RespuestaActualizacion.error("Versión inválida", 400);
+        }
+    }
+
+    /**
+     * Versión de una cabecera If-Match, con o sin comillas ({@code "3"} o {@code 3})
+     */
+    private static long leerVersion(String texto) {
+        String version = texto.trim();
+        if (version.length() >= 2 && version.startsWith("\"") && version.endsWith("\"")) {
+            version = version.substring(1, version.length() - 1);
+        }
+        return Long.parseLong(version);
+    }
+
+    /**
+     * Búsqueda paginada: por prefijo de nombre si viene {@code prefijo}, si no por rango de peso
+     */
+    private static Respuesta buscar(HttpExchange intercambio) {
+        Map<String, String> parametros = new HashMap<>();
+        agregarParametros(parametros, intercambio.getRequestURI().getRawQuery());
+        int limite = LIMITE_POR_DEFECTO;
+        String texto = parametros.get("limite");
+        if (texto != null) {
+            try {
+                limite = Integer.parseInt(texto);
+            } catch (NumberFormatException e) {
+                return RespuestaBusqueda.error("Límite inválido", 400);
+            }
+        }
+        String cursor = parametros.get("cursor");
+        String prefijo = parametros.get("prefijo");
+        if (prefijo != null) {
+            return UsuarioController.buscarPorNombreTipado(prefijo, cursor, limite);
+        }
+        return UsuarioController.buscarPorPesoTipado(leerNumero(parametros.get("pesoMin")),
+            leerNumero(parametros.get("pesoMax")), cursor, limite);
+    }
+
+    /**
+     * Exporta el repositorio con codificación chunked: el tamaño no se conoce de
+     * antemano y el cuerpo nunca se arma completo en memoria
+     */
+    private static void exportar(HttpExchange intercambio) throws IOException {
+        Map<String, String> parametros = new HashMap<>();
+        agregarParametros(parametros, intercambio.getRequestURI().getRawQuery());
+        ImportadorUsuarios.Formato formato = "ndjson".equalsIgnoreCase(parametros.get("formato"))
+            ? ImportadorUsuarios.Formato.NDJSON : ImportadorUsuarios.Formato.CSV;
+        ExportadorUsuarios.Filtro filtro = ExportadorUsuarios.Filtro.todos()
+            .conPeso(leerNumero(parametros.get("pesoMin")), leerNumero(parametros.get("pesoMax")))
+            .conNombre(parametros.get("nombre"));
+        intercambio.getResponseHeaders().set("Content-Type",
+            formato == ImportadorUsuarios.Formato.CSV ? TIPO_CSV : TIPO_NDJSON);
+        intercambio.sendResponseHeaders(200, 0);
+        try (OutputStream salida = intercambio.getResponseBody()) {
+            UsuarioController.exportarUsuarios(Channels.newChannel(salida), formato, filtro);
+        }
+    }
+
+    private static boolean esJson(HttpExchange intercambio) {
+        String tipo = intercambio.getRequestHeaders().getFirst("Content-Type");
+        return tipo != null && tipo.startsWith("application/json");
+    }
+
+    /**
+     * @return peso o NaN si falta o no es un número
+     */
+    private static double leerPeso(Map<String, String> parametros) {
+        return leerNumero(parametros.get("peso"));
+    }
+
+    /**
+     * @return número o NaN si falta o no es un número
+     */
+    private static double leerNumero(String texto) {
+        if (texto == null) {
+            return Double.NaN;
+        }
+        try {
+            return Double.parseDouble(texto);
+        } catch (NumberFormatException e) {
+            return Double.NaN;
+        }
+    }
+
+    /**
+     * Une los parámetros de la query y de un cuerpo application/x-www-form-urlencoded
+     */
+    private static Map<String, String> leerParametros(HttpExchange intercambio, ByteBuffer cuerpo) {
+        Map<String, String> parametros = new HashMap<>();
+        agregarParametros(parametros, intercambio.getRequestURI().getRawQuery());
+        byte[] bytes = new byte[cuerpo.remaining()];
+        cuerpo.get(bytes);
+        agregarParametros(parametros, new String(bytes, StandardCharsets.UTF_8));
+        return parametros;
+    }
+
+    private static void agregarParametros(Map<String, String> parametros, String codificados) {
+        if (codificados == null || codificados.isEmpty()) {
+            return;
+        }
+        for (String par : codificados.split("&")) {
+            int igual = par.indexOf('=');
+            if (igual > 0) {
+                parametros.put(URLDecoder.decode(par.substring(0, igual), StandardCharsets.UTF_8),
+                    URLDecoder.decode(par.substring(igual + 1), StandardCharsets.UTF_8));
+            }
+        }
+    }
+
+    /**
+     * Lee el cuerpo completo en el buffer (siempre hasta el final, para que la
+     * conexión pueda reutilizarse) y lo deja listo para leer
+     * @return false si no cabía en el buffer
+     */
+    private static boolean leerCuerpo(InputStream cuerpo, ByteBuffer destino, byte[] copia) throws IOException {
+        boolean cabe = true;
+        try (cuerpo) {
+            int leidos;
+            while ((leidos = cuerpo.read(copia)) > 0) {
+                if (leidos > destino.remaining()) {
+                    cabe = false;
+                } else if (cabe) {
+                    destino.put(copia, 0, leidos);
+                }
+            }
+        }
+        destino.flip();
+        return cabe;
+    }
+
+    /**
+     * Serializa la respuesta directamente en el buffer de salida
+     * Si no cabe (p. ej. un nombre enorme) se recurre a {@link Json}.
+     */
+    private static void responderJson(HttpExchange intercambio, Respuesta respuesta, ByteBuffer salida,
+            Contexto contexto) throws IOException {
+        salida.clear();
+        try {
+            respuesta.escribirJson(contexto.escritor.iniciar(salida));
+            salida.flip();
+        } catch (BufferOverflowException e) {
+            salida = ByteBuffer.wrap(Json.aJson(respuesta.aMapa()).getBytes(StandardCharsets.UTF_8));
+        }
+        if (respuesta.getReintentarEnMs() > 0) {
+            // Retry-After se expresa en segundos enteros
+            intercambio.getResponseHeaders().set("Retry-After",
+                Long.toString((respuesta.getReintentarEnMs() + 999) / 1000));
+        }
+        responder(intercambio, respuesta.getStatus(), TIPO_JSON, salida, contexto.copia);
+    }
+
+    /**
+     * El OutputStream del servidor del JDK solo acepta byte[]: el buffer directo
+     * se vuelca por tramos a través del arreglo del contexto
+     */
+    private static void responder(HttpExchange intercambio, int status, String tipo, ByteBuffer cuerpo,
+            byte[] copia) throws IOException {
+        intercambio.getResponseHeaders().set("Content-Type", tipo);
+        intercambio.sendResponseHeaders(status, cuerpo.remaining());
+        try (OutputStream salida = intercambio.getResponseBody()) {
+            while (cuerpo.hasRemaining()) {
+                int tramo = Math.min(copia.length, cuerpo.remaining());
+                cuerpo.get(copia, 0, tramo);
+                salida.write(copia, 0, tramo);
+            }
+        }
+    }
+
+    private static Respuesta metodoNoPermitido() {
+        return RespuestaUsuario.error("Método no permitido", 405);
+    }
+
+    /**
+     * Estado reutilizable de una solicitud; lo usa un solo hilo entre tomar y devolver
+     */
+    private static final class Contexto {
+        final EscritorJson escritor = new EscritorJson();
+        final LectorJson lector = new LectorJson();
+        final byte[] copia = new byte[TAMANO_COPIA];
+        final ByteBuffer entrada = BUFFERS.tomar();
+        final ByteBuffer salida = BUFFERS.tomar();
+
+        void reiniciar() {
+            entrada.clear();
+            salida.clear();
+        }
+
+        /**
+         * Devuelve los buffers a su pool cuando el contexto no cabe en el de contextos
+         */
+        void liberar() {
+            BUFFERS.devolver(entrada);
+            BUFFERS.devolver(salida);
+        }
+    }
+
+    /**
+     * Hilos virtuales si la JVM los ofrece; si no, un pool fijo de hilos daemon
+     */
+    private static ExecutorService crearEjecutor() {
+        try {
+            Method fabrica = Executors.class.getMethod("newVirtualThreadPerTaskExecutor");
+            return (ExecutorService) fabrica.invoke(null);
+        } catch (ReflectiveOperationException | RuntimeException e) {
+            return Executors.newFixedThreadPool(Integer.getInteger("healthtrack.http.hilos", 256), tarea -> {
+                Thread hilo = new Thread(tarea, "http-manejador");
+                hilo.setDaemon(true);
+                return hilo;
+            });
+        }
+    }
+}
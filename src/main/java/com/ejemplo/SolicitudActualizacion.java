@@ -0,0 +1,27 @@
+package com.ejemplo;
+
+/**
+ * Actualización de peso de un usuario dentro de un lote
+ */
+public final class SolicitudActualizacion {
+    private final String id;
+    private final double nuevoPeso;
+
+    /**
+     * Constructor de la solicitud
+     * @param id Identificador del usuario ("user_N")
+     * @param nuevoPeso El nuevo peso a asignar
+     */
+    public SolicitudActualizacion(String id, double nuevoPeso) {
+        this.id = id;
+        this.nuevoPeso = nuevoPeso;
+    }
+
+    public String getId() {
+        return id;
+    }
+
+    public double getNuevoPeso() {
+        return nuevoPeso;
+    }
+}
@@ -0,0 +1,27 @@
+package com.ejemplo;
+
+/**
+ * Datos de un usuario a crear dentro de un lote
+ */
+public final class SolicitudCreacion {
+    private final String nombre;
+    private final double peso;
+
+    /**
+     * Constructor de la solicitud
+     * @param nombre Nombre del usuario
+     * @param peso Peso inicial del usuario
+     */
+    public SolicitudCreacion(String nombre, double peso) {
+        this.nombre = nombre;
+        this.peso = peso;
+    }
+
+    public String getNombre() {
+        return nombre;
+    }
+
+    public double getPeso() {
+        return peso;
+    }
+}
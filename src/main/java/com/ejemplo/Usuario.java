@@ -1,21 +1,40 @@
 package com.ejemplo;
 
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+
 /**
  * Clase Usuario para la plataforma HealthTrack
  * NOTA: Esta clase contiene el error original del sistema
+ *
+ * El peso se guarda junto con su versión en un {@link EstadoPeso} inmutable
+ * que se reemplaza con CAS: cada cambio incrementa la versión en uno y las
+ * actualizaciones concurrentes no se pierden ni se ven a medias, sin cerrojos.
  */
 public class Usuario {
+
+    private static final VarHandle ESTADO;
+
+    static {
+        try {
+            ESTADO = MethodHandles.lookup().findVarHandle(Usuario.class, "estado", EstadoPeso.class);
+        } catch (ReflectiveOperationException e) {
+            throw new ExceptionInInitializerError(e);
+        }
+    }
+
     private String nombre;
-    private double peso;
+    // volatile: los recorridos (exportación, instantáneas) leen desde otros hilos
+    private volatile EstadoPeso estado;
 
     /**
      * Constructor para crear un nuevo usuario
      * @param nombre Nombre del usuario
-     * @param peso Peso inicial del usuario
+     * @param peso Peso inicial del usuario (versión 0)
      */
     public Usuario(String nombre, double peso) {
         this.nombre = nombre;
-        this.peso = peso;
+        this.estado = new EstadoPeso(peso, 0);
     }
 
     /**
@@ -31,23 +50,135 @@ public class Usuario {
      * @return peso actual del usuario
      */
     public double getPeso() {
-        return peso;
+        return estado.getPeso();
+    }
+
+    /**
+     * Versión del peso: 0 al crear el usuario, más uno por cada cambio
+     * @return versión actual
+     */
+    public long getVersion() {
+        return estado.getVersion();
+    }
+
+    /**
+     * Peso y versión leídos juntos
+     * @return estado actual (inmutable)
+     */
+    public EstadoPeso getEstado() {
+        return estado;
     }
 
     /**
      * Actualiza el peso del usuario
      * ERROR CRÍTICO: En lugar de asignar el nuevo peso, se está restando 1kg
      * @param nuevoPeso El nuevo peso a asignar
+     * @return peso y versión anteriores a esta actualización
+     */
+    public EstadoPeso actualizarPeso(double nuevoPeso) {
+        while (true) {
+            EstadoPeso anterior = estado;
+            EstadoPeso nuevo = new EstadoPeso(calcularPesoActualizado(anterior.getPeso(), nuevoPeso),
+                anterior.getVersion() + 1);
+            if (ESTADO.compareAndSet(this, anterior, nuevo)) {
+                return anterior;
+            }
+        }
+    }
+
+    /**
+     * Actualiza el peso solo si nadie lo cambió desde la versión indicada
+     * Aplica la misma regla que {@link #actualizarPeso(double)}.
+     * @param versionEsperada Versión que el llamador leyó
+     * @param nuevoPeso El nuevo peso a asignar
+     * @return estado anterior; la actualización se aplicó si su versión es
+     *     {@code versionEsperada}, si no es el estado vigente que la impidió
      */
-    public void actualizarPeso(double nuevoPeso) {
+    public EstadoPeso actualizarPesoSiVersion(long versionEsperada, double nuevoPeso) {
+        EstadoPeso anterior = estado;
+        if (anterior.getVersion() != versionEsperada) {
+            return anterior;
+        }
+        EstadoPeso nuevo = new EstadoPeso(calcularPesoActualizado(anterior.getPeso(), nuevoPeso),
+            versionEsperada + 1);
+        // Cada cambio incrementa la versión: si la CAS falla, el testigo trae otra versión
+        return (EstadoPeso) ESTADO.compareAndExchange(this, anterior, nuevo);
+    }
+
+    /**
+     * Asigna un peso exacto sin aplicar la regla (restauración desde disco)
+     * @param peso Peso a almacenar
+     * @return estado anterior
+     */
+    public EstadoPeso establecerPeso(double peso) {
+        while (true) {
+            EstadoPeso anterior = estado;
+            if (ESTADO.compareAndSet(this, anterior, new EstadoPeso(peso, anterior.getVersion() + 1))) {
+                return anterior;
+            }
+        }
+    }
+
+    /**
+     * Asigna peso y versión exactos solo si la versión es posterior a la vigente
+     * (reproducción de cambios versionados, que pueden llegar en cualquier orden)
+     * @param peso Peso a almacenar
+     * @param version Versión que dejó el cambio
+     * @return estado anterior; no se aplicó si su versión es igual o mayor
+     */
+    public EstadoPeso establecerEstado(double peso, long version) {
+        while (true) {
+            EstadoPeso anterior = estado;
+            if (anterior.getVersion() >= version
+                    || ESTADO.compareAndSet(this, anterior, new EstadoPeso(peso, version))) {
+                return anterior;
+            }
+        }
+    }
+
+    /**
+     * Regla de actualización de peso compartida por Usuario y los repositorios
+     * que no guardan objetos Usuario (ver {@link RepositorioColumnar})
+     * ERROR CRÍTICO: se conserva el comportamiento original del sistema
+     * @param pesoActual Peso almacenado actualmente
+     * @param nuevoPeso El nuevo peso a asignar
+     * @return peso que queda almacenado tras la actualización
+     */
+    static double calcularPesoActualizado(double pesoActual, double nuevoPeso) {
         // ERROR: En lugar de asignar el nuevo peso, se está restando 1kg.
-        this.peso -= 1;
+        return pesoActual - 1;
     }
 
     /**
      * Muestra la información del usuario
      */
     public void mostrarInformacion() {
-        System.out.println("Usuario: " + nombre + ", Peso Actual: " + peso + " kg");
+        System.out.println("Usuario: " + nombre + ", Peso Actual: " + getPeso() + " kg");
+    }
+
+    /**
+     * Peso de un usuario junto con su versión
+     */
+    public static final class EstadoPeso {
+        private final double peso;
+        private final long version;
+
+        public EstadoPeso(double peso, long version) {
+            this.peso = peso;
+            this.version = version;
+        }
+
+        public double getPeso() {
+            return peso;
+        }
+
+        public long getVersion() {
+            return version;
+        }
+
+        @Override
+        public String toString() {
+            return peso + " kg (v" + version + ")";
+        }
     }
-}
\ No newline at end of file
+}
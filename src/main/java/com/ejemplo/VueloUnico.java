@@ -0,0 +1,110 @@
+package com.ejemplo;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
+
+/**
+ * Agrupación de solicitudes concurrentes por clave ("single flight")
+ * La primera llamada para una clave ejecuta la carga; las que llegan mientras
+ * sigue en curso esperan esa misma ejecución y reciben el mismo resultado. No
+ * hay cerrojo global: el registro de cargas en curso es un ConcurrentHashMap y
+ * solo compiten las llamadas de una misma clave.
+ *
+ * La carga se quita del registro antes de publicar el resultado, así que una
+ * llamada que llega después de terminada la carga empieza una nueva; quien se
+ * suma a una carga en curso recibe un valor leído después de su llegada o muy
+ * poco antes, nunca uno cacheado de antes.
+ *
+ * @param <V> Tipo del resultado compartido (debe ser inmutable)
+ */
+public final class VueloUnico<V> {
+
+    private final ConcurrentHashMap<Long, CompletableFuture<V>> enCurso = new ConcurrentHashMap<>();
+    private final LongAdder ejecutadas = new LongAdder();
+    private final LongAdder agrupadas = new LongAdder();
+
+    /**
+     * Ejecuta la carga en el hilo llamador o espera la que ya está en curso
+     * @param clave Clave de la solicitud (p. ej. id del usuario)
+     * @param carga Carga a ejecutar si no hay otra en curso para la clave
+     * @return resultado de la carga propia o de la compartida
+     */
+    public V ejecutar(long clave, Supplier<V> carga) {
+        CompletableFuture<V> propia = new CompletableFuture<>();
+        CompletableFuture<V> existente = enCurso.putIfAbsent(clave, propia);
+        if (existente != null) {
+            agrupadas.increment();
+            return existente.join();
+        }
+        ejecutadas.increment();
+        V resultado;
+        try {
+            resultado = carga.get();
+        } catch (RuntimeException | Error e) {
+            enCurso.remove(clave, propia);
+            propia.completeExceptionally(e);
+            throw e;
+        }
+        enCurso.remove(clave, propia);
+        propia.complete(resultado);
+        return resultado;
+    }
+
+    /**
+     * Inicia la carga asíncrona o se suma a la que ya está en curso
+     * @param clave Clave de la solicitud
+     * @param carga Inicia la carga si no hay otra en curso para la clave
+     * @return futuro compartido por todas las llamadas agrupadas
+     */
+    public CompletableFuture<V> ejecutarAsincrono(long clave, Supplier<CompletableFuture<V>> carga) {
+        CompletableFuture<V> propia = new CompletableFuture<>();
+        CompletableFuture<V> existente = enCurso.putIfAbsent(clave, propia);
+        if (existente != null) {
+            agrupadas.increment();
+            return existente;
+        }
+        ejecutadas.increment();
+        CompletableFuture<V> iniciada;
+        try {
+            iniciada = carga.get();
+        } catch (RuntimeException | Error e) {
+            enCurso.remove(clave, propia);
+            propia.completeExceptionally(e);
+            throw e;
+        }
+        iniciada.whenComplete((resultado, error) -> {
+            enCurso.remove(clave, propia);
+            if (error != null) {
+                propia.completeExceptionally(error);
+            } else {
+                propia.complete(resultado);
+            }
+        });
+        return propia;
+    }
+
+    /**
+     * Cargas realmente ejecutadas
+     * @return llamadas que ejecutaron su propia carga
+     */
+    public long getEjecutadas() {
+        return ejecutadas.sum();
+    }
+
+    /**
+     * Llamadas que se sumaron a una carga en curso en lugar de ejecutar la suya
+     * @return llamadas agrupadas
+     */
+    public long getAgrupadas() {
+        return agrupadas.sum();
+    }
+
+    /**
+     * @return cantidad de claves con una carga en curso
+     */
+    public int enCurso() {
+        return enCurso.size();
+    }
+}
@@ -0,0 +1,155 @@
+package com.ejemplo;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+import static org.assertj.core.api.Assertions.*;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Pruebas de la caché de consultas y benchmark con accesos Zipf
+ */
+public class CacheUsuariosTest {
+
+    @Test
+    @DisplayName("✅ Debe desalojar el usuario usado hace más tiempo")
+    void debeDesalojarLru() {
+        RepositorioMapa repositorio = new RepositorioMapa();
+        for (int i = 1; i <= 3; i++) {
+            repositorio.insertar(i, "Usuario" + i, 70.0);
+        }
+        CacheUsuarios cache = new CacheUsuarios(2, 1);
+
+        cache.cargar(1, repositorio);
+        cache.cargar(2, repositorio);
+        assertThat(cache.obtener(1)).isNotNull(); // 1 pasa a ser el más reciente
+        cache.cargar(3, repositorio);
+
+        assertThat(cache.obtener(2)).isNull();
+        assertThat(cache.obtener(1)).isNotNull();
+        assertThat(cache.obtener(3)).isNotNull();
+        assertThat(cache.getDesalojos()).isEqualTo(1);
+        assertThat(cache.getAciertos()).isEqualTo(3);
+        assertThat(cache.getFallos()).isEqualTo(1);
+        assertThat(cache.cargar(99, repositorio)).isNull();
+    }
+
+    @Test
+    @DisplayName("✅ Actualizar peso refresca la caché y las estadísticas la reportan")
+    void actualizacionRefrescaCache() {
+        String id = UsuarioController.crearUsuarioTipado("Cacheado", 80.0).getId();
+        assertThat(UsuarioController.obtenerUsuarioTipado(id).getPeso()).isEqualTo(80.0);
+        long aciertosAntes = UsuarioController.obtenerEstadisticasTipado().getCacheAciertos();
+
+        UsuarioController.actualizarPeso(id, 75.0);
+        RespuestaUsuario despues = UsuarioController.obtenerUsuarioTipado(id);
+        RespuestaEstadisticas estadisticas = UsuarioController.obtenerEstadisticasTipado();
+
+        assertThat(despues.getPeso()).isEqualTo(79.0); // el error original se conserva
+        assertThat(estadisticas.getCacheAciertos()).isGreaterThan(aciertosAntes);
+        assertThat(estadisticas.aMapa()).containsKey("cache");
+    }
+
+    @Test
+    @DisplayName("✅ Con accesos Zipf la caché acierta más de la mitad de las consultas")
+    void tasaDeAciertosZipf() {
+        int poblacion = 100_000;
+        RepositorioColumnar repositorio = new RepositorioColumnar();
+        for (int i = 1; i <= poblacion; i++) {
+            repositorio.insertar(i, "Usuario " + i, 50.0 + i % 60);
+        }
+        DistribucionZipf zipf = new DistribucionZipf(poblacion, 0.99);
+        Random aleatorio = new Random(42);
+        CacheUsuarios cache = new CacheUsuarios(10_000);
+
+        try {
+            UsuarioController.configurarRepositorio(repositorio);
+            UsuarioController.configurarCache(cache);
+            UsuarioController.configurarLatenciaSimulada(false);
+            // Consultas síncronas en un solo hilo: la secuencia y los aciertos son siempre los mismos
+            for (int i = 0; i < 40_000; i++) {
+                assertThat(UsuarioController.obtenerUsuarioTipado("user_" + (zipf.siguiente(aleatorio) + 1))
+                    .getStatus()).isEqualTo(200);
+            }
+
+            double tasa = (double) cache.getAciertos() / (cache.getAciertos() + cache.getFallos());
+            assertThat(tasa).isGreaterThan(0.5);
+        } finally {
+            UsuarioController.configurarLatenciaSimulada(true);
+            UsuarioController.configurarRepositorio(new RepositorioMapa());
+            UsuarioController.configurarCache(new CacheUsuarios(10_000));
+        }
+    }
+
+    @Test
+    @EnabledIfSystemProperty(named = "healthtrack.benchmark", matches = "true")
+    @DisplayName("📊 Benchmark: tasa de aciertos y latencia con accesos Zipf")
+    void benchmarkZipf() {
+        int poblacion = 100_000;
+        int consultas = 40_000;
+        RepositorioColumnar repositorio = new RepositorioColumnar();
+        for (int i = 1; i <= poblacion; i++) {
+            repositorio.insertar(i, "Usuario " + i, 50.0 + i % 60);
+        }
+        DistribucionZipf zipf = new DistribucionZipf(poblacion, 0.99);
+
+        try {
+            UsuarioController.configurarRepositorio(repositorio);
+            UsuarioController.configurarCache(null);
+            double[] sinCache = medirConsultas(zipf, consultas);
+
+            CacheUsuarios cache = new CacheUsuarios(10_000);
+            UsuarioController.configurarCache(cache);
+            double[] conCache = medirConsultas(zipf, consultas);
+            double tasa = (double) cache.getAciertos() / (cache.getAciertos() + cache.getFallos());
+
+            System.out.println("\n📊 CACHÉ CON ACCESOS ZIPF (s=0.99, " + poblacion + " usuarios, 10.000 en caché):");
+            System.out.println("==================================");
+            System.out.println("🎯 Tasa de aciertos: " + String.format("%.1f", tasa * 100) + " %");
+            System.out.println("🗑️  Desalojos: " + cache.getDesalojos());
+            System.out.println("⏱️  Latencia media sin caché: " + String.format("%.2f", sinCache[0]) + " ms");
+            System.out.println("⚡ Latencia media con caché: " + String.format("%.2f", conCache[0]) + " ms");
+            System.out.println("🔥 p99 sin caché / con caché: " + String.format("%.1f", sinCache[1])
+                + " / " + String.format("%.1f", conCache[1]) + " ms");
+
+            assertThat(tasa).isGreaterThan(0.5);
+            assertThat(conCache[0]).isLessThan(sinCache[0] / 2);
+        } finally {
+            UsuarioController.configurarRepositorio(new RepositorioMapa());
+            UsuarioController.configurarCache(new CacheUsuarios(10_000));
+        }
+    }
+
+    /**
+     * Lanza las consultas con la API asíncrona y mide la latencia de cada una
+     * @return latencia media y p99 en ms
+     */
+    private double[] medirConsultas(DistribucionZipf zipf, int consultas) {
+        Random aleatorio = new Random(42);
+        long[] latencias = new long[consultas];
+        List<CompletableFuture<Map<String, Object>>> pendientes = new ArrayList<>(consultas);
+        for (int i = 0; i < consultas; i++) {
+            int indice = i;
+            long inicio = System.nanoTime();
+            pendientes.add(UsuarioController.obtenerUsuarioAsincrono("user_" + (zipf.siguiente(aleatorio) + 1))
+                .whenComplete((resultado, error) -> latencias[indice] = System.nanoTime() - inicio));
+        }
+        CompletableFuture.allOf(pendientes.toArray(new CompletableFuture<?>[0])).join();
+
+        long suma = 0;
+        for (long latencia : latencias) {
+            suma += latencia;
+        }
+        long[] ordenadas = latencias.clone();
+        Arrays.sort(ordenadas);
+        return new double[] {
+            suma / (double) consultas / 1_000_000,
+            ordenadas[(int) (consultas * 0.99)] / 1_000_000.0
+        };
+    }
+}
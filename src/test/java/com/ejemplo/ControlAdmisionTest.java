@@ -0,0 +1,250 @@
+package com.ejemplo;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+import static org.assertj.core.api.Assertions.*;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import com.ejemplo.MetricasLatencia.Operacion;
+
+/**
+ * Pruebas del control de admisión y prueba de carga al doble de la capacidad
+ */
+public class ControlAdmisionTest {
+
+    @Test
+    @DisplayName("✅ Rechaza con 503 al superar la concurrencia y admite al liberar")
+    void limiteDeConcurrencia() {
+        ControlAdmision control = new ControlAdmision(2, 0, 1);
+
+        assertThat(control.admitir().esAdmitida()).isTrue();
+        assertThat(control.admitir().esAdmitida()).isTrue();
+        ControlAdmision.Decision rechazo = control.admitir();
+        assertThat(rechazo.esAdmitida()).isFalse();
+        assertThat(rechazo.getStatus()).isEqualTo(503);
+        assertThat(rechazo.getReintentarEnMs()).isPositive();
+
+        control.liberar(TimeUnit.MILLISECONDS.toNanos(40));
+        assertThat(control.admitir().esAdmitida()).isTrue();
+        assertThat(control.getEnCurso()).isEqualTo(2);
+        assertThat(control.getRechazadasConcurrencia()).isEqualTo(1);
+        assertThat(control.admitir().getReintentarEnMs()).isEqualTo(20); // 40 ms / 2 en curso
+    }
+
+    @Test
+    @DisplayName("✅ La cubeta de fichas admite la ráfaga y sugiere cuándo vuelve a haber ficha")
+    void limiteDeTasa() {
+        ControlAdmision control = new ControlAdmision(0, 10, 3);
+
+        // Decisiones seguidas, sin aserciones en medio que den tiempo a reponer fichas
+        ControlAdmision.Decision[] decisiones = new ControlAdmision.Decision[4];
+        for (int i = 0; i < decisiones.length; i++) {
+            decisiones[i] = control.admitir();
+            if (decisiones[i].esAdmitida()) {
+                control.liberar(1_000);
+            }
+        }
+        assertThat(decisiones).extracting(ControlAdmision.Decision::getStatus).containsExactly(0, 0, 0, 429);
+        ControlAdmision.Decision rechazo = decisiones[3];
+        assertThat(rechazo.getReintentarEnMs()).isBetween(1L, 100L);
+        assertThat(control.getEnCurso()).isZero();
+        assertThat(control.getRechazadasTasa()).isEqualTo(1);
+    }
+
+    @Test
+    @DisplayName("✅ El límite adaptativo crece con latencia estable y se recorta cuando sube")
+    void limiteAdaptativo() throws InterruptedException {
+        ControlAdmision control = ControlAdmision.adaptativo(20, 40);
+        for (int i = 0; i < 1_000; i++) {
+            assertThat(control.admitir().esAdmitida()).isTrue();
+            control.liberar(TimeUnit.MILLISECONDS.toNanos(1));
+        }
+        assertThat(control.getLimite()).isEqualTo(40);
+
+        // Latencia diez veces mayor: un recorte por latencia típica, hasta el mínimo
+        for (int i = 0; i < 40; i++) {
+            assertThat(control.admitir().esAdmitida()).isTrue();
+            Thread.sleep(11);
+            control.liberar(TimeUnit.MILLISECONDS.toNanos(10));
+        }
+        assertThat(control.getLimite()).isBetween(5, 10);
+    }
+
+    @Test
+    @DisplayName("✅ Una sobrecarga sostenida no sube la latencia de referencia hasta que salen sus ventanas")
+    void minimaPorVentanas() throws InterruptedException {
+        ControlAdmision control = ControlAdmision.adaptativo(20, 40);
+        for (int i = 0; i < 999; i++) {
+            control.admitir();
+            control.liberar(TimeUnit.MILLISECONDS.toNanos(1));
+        }
+        assertThat(control.getLimite()).isEqualTo(40);
+
+        // Tres ventanas a 10 ms: la mínima sigue siendo 1 ms y el límite no vuelve a crecer
+        for (int i = 0; i < 3; i++) {
+            control.admitir();
+            Thread.sleep(11);
+            control.liberar(TimeUnit.MILLISECONDS.toNanos(10));
+        }
+        int limiteSobrecargado = control.getLimite();
+        assertThat(limiteSobrecargado).isLessThan(40);
+        for (int i = 3; i < 3_000; i++) {
+            control.admitir();
+            control.liberar(TimeUnit.MILLISECONDS.toNanos(10));
+        }
+        assertThat(control.getLimite()).isLessThanOrEqualTo(limiteSobrecargado);
+
+        // Cuando la ventana de 1 ms sale del anillo, 10 ms pasa a ser la referencia
+        for (int i = 0; i < 8_000; i++) {
+            control.admitir();
+            control.liberar(TimeUnit.MILLISECONDS.toNanos(10));
+        }
+        assertThat(control.getLimite()).isEqualTo(40);
+    }
+
+    @Test
+    @DisplayName("✅ El controlador responde 429 con la sugerencia de reintento")
+    void controladorRechaza() {
+        try {
+            UsuarioController.configurarAdmision(Operacion.CREAR, new ControlAdmision(0, 1, 1));
+
+            assertThat(UsuarioController.crearUsuario("Ana", 70).get("status")).isEqualTo(201);
+            Map<String, Object> rechazo = UsuarioController.crearUsuario("Leo", 80);
+            assertThat(rechazo.get("status")).isEqualTo(429);
+            assertThat((Long) rechazo.get("reintentarEnMs")).isBetween(1L, 1_000L);
+            assertThat(UsuarioController.metricas().instantanea(Operacion.CREAR, 429).getCantidad()).isPositive();
+        } finally {
+            UsuarioController.configurarAdmision(Operacion.CREAR, null);
+        }
+    }
+
+    @Test
+    @DisplayName("✅ Los lotes pasan por su propio control de admisión y se miden")
+    void controladorRechazaLotes() {
+        UsuarioController.configurarLatenciaSimulada(false);
+        try {
+            UsuarioController.configurarAdmision(Operacion.CREAR_LOTE, new ControlAdmision(0, 1, 1));
+            UsuarioController.configurarAdmision(Operacion.ACTUALIZAR_LOTE, new ControlAdmision(0, 1, 1));
+            long medidos = UsuarioController.metricas().instantanea(Operacion.CREAR_LOTE, 200).getCantidad();
+
+            Map<String, Object> creacion = UsuarioController.crearUsuarios(
+                List.of(new SolicitudCreacion("Ana", 70), new SolicitudCreacion("Leo", 80)));
+            assertThat(creacion.get("status")).isEqualTo(200);
+            Map<String, Object> rechazo = UsuarioController.crearUsuarios(List.of(new SolicitudCreacion("Eva", 60)));
+            assertThat(rechazo.get("status")).isEqualTo(429);
+            assertThat((Long) rechazo.get("reintentarEnMs")).isBetween(1L, 1_000L);
+
+            @SuppressWarnings("unchecked")
+            String id = (String) ((List<Map<String, Object>>) creacion.get("resultados")).get(0).get("id");
+            List<SolicitudActualizacion> actualizacion = List.of(new SolicitudActualizacion(id, 69));
+            assertThat(UsuarioController.actualizarPesos(actualizacion).get("status")).isEqualTo(200);
+            assertThat(UsuarioController.actualizarPesos(actualizacion).get("status")).isEqualTo(429);
+
+            MetricasLatencia metricas = UsuarioController.metricas();
+            assertThat(metricas.instantanea(Operacion.CREAR_LOTE, 200).getCantidad()).isEqualTo(medidos + 1);
+            assertThat(metricas.instantanea(Operacion.CREAR_LOTE, 429).getCantidad()).isPositive();
+            assertThat(metricas.instantanea(Operacion.ACTUALIZAR_LOTE, 429).getCantidad()).isPositive();
+        } finally {
+            UsuarioController.configurarAdmision(Operacion.CREAR_LOTE, null);
+            UsuarioController.configurarAdmision(Operacion.ACTUALIZAR_LOTE, null);
+            UsuarioController.configurarLatenciaSimulada(true);
+        }
+    }
+
+    @Test
+    @DisplayName("✅ Al doble de la capacidad la admisión rechaza el exceso y atiende el resto")
+    void rechazaElExcesoAlDobleDeLaCapacidad() throws InterruptedException {
+        int hilos = 16;
+        try {
+            UsuarioController.configurarAdmision(Operacion.CREAR, new ControlAdmision(hilos - 4, 0, 1));
+            Resultado conControl = medirCarga(hilos, 320);
+
+            assertThat(conControl.rechazadas).isPositive();
+            assertThat(conControl.exitosas).isPositive();
+        } finally {
+            UsuarioController.configurarAdmision(Operacion.CREAR, null);
+        }
+    }
+
+    @Test
+    @EnabledIfSystemProperty(named = "healthtrack.benchmark", matches = "true")
+    @DisplayName("📊 Carga al doble de la capacidad: p99 estable con admisión, colapso sin ella")
+    void cargaAlDobleDeLaCapacidad() throws InterruptedException {
+        // 16 hilos con ~100 ms por alta: capacidad de ~160 solicitudes/s
+        int hilos = 16;
+        int porSegundo = 320;
+        try {
+            Resultado sinControl = medirCarga(hilos, porSegundo);
+            UsuarioController.configurarAdmision(Operacion.CREAR, new ControlAdmision(hilos - 4, 0, 1));
+            Resultado conControl = medirCarga(hilos, porSegundo);
+
+            System.out.println("\n📊 CONTROL DE ADMISIÓN (" + porSegundo + " altas/s, capacidad ~"
+                + hilos * 10 + "/s):");
+            System.out.println("==================================");
+            System.out.println("❌ Sin control: p99 " + sinControl.p99Ms + " ms, " + sinControl.exitosas
+                + " exitosas");
+            System.out.println("✅ Con control: p99 " + conControl.p99Ms + " ms, " + conControl.exitosas
+                + " exitosas, " + conControl.rechazadas + " rechazadas");
+
+            assertThat(conControl.rechazadas).isPositive();
+            assertThat(conControl.p99Ms).isLessThan(500);
+            assertThat(sinControl.p99Ms).isGreaterThan(2 * conControl.p99Ms);
+        } finally {
+            UsuarioController.configurarAdmision(Operacion.CREAR, null);
+        }
+    }
+
+    /**
+     * Llegadas a tasa fija (lazo abierto) durante dos segundos sobre un pool fijo,
+     * como el del servidor HTTP sin hilos virtuales; la latencia se mide desde la llegada
+     */
+    private static Resultado medirCarga(int hilos, int porSegundo) throws InterruptedException {
+        ExecutorService pool = Executors.newFixedThreadPool(hilos);
+        ScheduledExecutorService llegadas = Executors.newSingleThreadScheduledExecutor();
+        HistogramaLatencias latencias = new HistogramaLatencias();
+        AtomicInteger exitosas = new AtomicInteger();
+        AtomicInteger rechazadas = new AtomicInteger();
+        AtomicInteger enviadas = new AtomicInteger();
+        int total = porSegundo * 2;
+        llegadas.scheduleAtFixedRate(() -> {
+            if (enviadas.incrementAndGet() > total) {
+                return;
+            }
+            long llegada = System.nanoTime();
+            pool.submit(() -> {
+                int status = UsuarioController.crearUsuarioTipado("Carga", 70).getStatus();
+                if (status == 201) {
+                    latencias.registrar(System.nanoTime() - llegada);
+                    exitosas.incrementAndGet();
+                } else {
+                    rechazadas.incrementAndGet();
+                }
+            });
+        }, 0, 1_000_000 / porSegundo, TimeUnit.MICROSECONDS);
+        while (enviadas.get() < total) {
+            Thread.sleep(10);
+        }
+        llegadas.shutdown();
+        pool.shutdown();
+        assertThat(pool.awaitTermination(30, TimeUnit.SECONDS)).isTrue();
+        return new Resultado(latencias.instantanea().percentil(99) / 1_000_000, exitosas.get(), rechazadas.get());
+    }
+
+    private static final class Resultado {
+        final long p99Ms;
+        final int exitosas;
+        final int rechazadas;
+
+        Resultado(long p99Ms, int exitosas, int rechazadas) {
+            this.p99Ms = p99Ms;
+            this.exitosas = exitosas;
+            this.rechazadas = rechazadas;
+        }
+    }
+}
@@ -0,0 +1,175 @@
+package com.ejemplo;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.DisplayName;
+import static org.assertj.core.api.Assertions.*;
+import java.util.Arrays;
+import java.util.Random;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Pruebas de los agregados incrementales de población
+ */
+public class EstadisticasPoblacionTest {
+
+    @Test
+    @DisplayName("✅ Los agregados coinciden con un recorrido completo")
+    void agregadosCoincidenConRecorrido() {
+        EstadisticasPoblacion estadisticas = new EstadisticasPoblacion();
+        Random aleatorio = new Random(7);
+        double[] pesos = new double[50_000];
+        for (int i = 0; i < pesos.length; i++) {
+            pesos[i] = Math.round((45.0 + aleatorio.nextGaussian() * 12 + 30) * 10) / 10.0;
+            estadisticas.agregar(pesos[i]);
+        }
+        // Cambios de peso: el agregado debe deshacer exactamente el valor anterior
+        for (int i = 0; i < pesos.length; i += 3) {
+            double nuevo = pesos[i] - 1;
+            estadisticas.cambiar(pesos[i], nuevo);
+            pesos[i] = nuevo;
+        }
+
+        double media = Arrays.stream(pesos).average().orElse(0);
+        double varianza = Arrays.stream(pesos).map(p -> (p - media) * (p - media)).sum() / pesos.length;
+        double[] ordenados = pesos.clone();
+        Arrays.sort(ordenados);
+        EstadisticasPoblacion.Resumen resumen = estadisticas.resumir();
+
+        assertThat(resumen.getCantidad()).isEqualTo(pesos.length);
+        assertThat(resumen.getMedia()).isCloseTo(media, within(1e-6));
+        assertThat(resumen.getVarianza()).isCloseTo(varianza, within(1e-3));
+        assertThat(resumen.getMinimo()).isCloseTo(ordenados[0], within(EstadisticasPoblacion.ANCHO_CUBETA_KG));
+        assertThat(resumen.getMaximo()).isCloseTo(ordenados[ordenados.length - 1], within(EstadisticasPoblacion.ANCHO_CUBETA_KG));
+        assertThat(resumen.getP50()).isCloseTo(ordenados[ordenados.length / 2], within(EstadisticasPoblacion.ANCHO_CUBETA_KG));
+        assertThat(resumen.getP99()).isCloseTo(ordenados[(int) (ordenados.length * 0.99)], within(EstadisticasPoblacion.ANCHO_CUBETA_KG));
+    }
+
+    @Test
+    @DisplayName("✅ Pesos fuera del histograma y población vacía")
+    void fueraDeRangoYVacia() {
+        EstadisticasPoblacion estadisticas = new EstadisticasPoblacion();
+        assertThat(estadisticas.resumir().getMedia()).isNaN();
+
+        estadisticas.agregar(-2.0);
+        estadisticas.agregar(70.0);
+        estadisticas.agregar(1500.0);
+        EstadisticasPoblacion.Resumen resumen = estadisticas.resumir();
+
+        assertThat(resumen.getMinimo()).isEqualTo(-2.0);
+        assertThat(resumen.getMaximo()).isEqualTo(1500.0);
+        assertThat(resumen.getP50()).isBetween(70.0, 70.5);
+
+        estadisticas.quitar(-2.0);
+        estadisticas.quitar(70.0);
+        estadisticas.quitar(1500.0);
+        assertThat(estadisticas.resumir().getCantidad()).isZero();
+    }
+
+    @Test
+    @DisplayName("✅ Quitar o cambiar un peso fuera de rango retrae el mínimo y el máximo")
+    void retraeExtremosFueraDeRango() {
+        EstadisticasPoblacion estadisticas = new EstadisticasPoblacion();
+        estadisticas.agregar(-5.0);
+        estadisticas.agregar(-2.0);
+        estadisticas.agregar(-2.0);
+        estadisticas.agregar(70.0);
+        estadisticas.agregar(1200.0);
+        estadisticas.agregar(1500.0);
+
+        estadisticas.quitar(-5.0);
+        estadisticas.cambiar(1500.0, 80.0);
+        EstadisticasPoblacion.Resumen resumen = estadisticas.resumir();
+        assertThat(resumen.getMinimo()).isEqualTo(-2.0);
+        assertThat(resumen.getMaximo()).isEqualTo(1200.0);
+
+        // Quedan dos usuarios con -2.0: quitar uno no cambia el mínimo
+        estadisticas.quitar(-2.0);
+        assertThat(estadisticas.resumir().getMinimo()).isEqualTo(-2.0);
+        estadisticas.quitar(-2.0);
+        estadisticas.quitar(1200.0);
+        resumen = estadisticas.resumir();
+        assertThat(resumen.getMinimo()).isEqualTo(70.0);
+        assertThat(resumen.getMaximo()).isEqualTo(80.5);
+
+        // Combinar partes también ve los extremos ya retraídos
+        EstadisticasPoblacion otra = new EstadisticasPoblacion();
+        otra.agregar(-1.0);
+        otra.quitar(-1.0);
+        otra.agregar(60.0);
+        assertThat(EstadisticasPoblacion.combinar(Arrays.asList(estadisticas, otra)).getMinimo()).isEqualTo(60.0);
+    }
+
+    @Test
+    @DisplayName("✅ El controlador mantiene los agregados al crear y actualizar")
+    void controladorMantieneAgregados() {
+        try {
+            UsuarioController.configurarRepositorio(new RepositorioMapa());
+            UsuarioController.crearUsuarios(Arrays.asList(
+                new SolicitudCreacion("Uno", 60.0), new SolicitudCreacion("Dos", 80.0)));
+            String id = UsuarioController.crearUsuarioTipado("Tres", 100.0).getId();
+            UsuarioController.actualizarPeso(id, 90.0);
+
+            EstadisticasPoblacion.Resumen resumen = UsuarioController.obtenerEstadisticasTipado().getPoblacion();
+
+            assertThat(resumen.getCantidad()).isEqualTo(3);
+            assertThat(resumen.getMedia()).isCloseTo((60.0 + 80.0 + 99.0) / 3, within(1e-9)); // el error original resta 1 kg
+            assertThat(UsuarioController.obtenerEstadisticas()).containsKey("poblacion");
+        } finally {
+            UsuarioController.configurarRepositorio(new RepositorioMapa());
+        }
+    }
+
+    @Test
+    @DisplayName("📊 Benchmark: actualizaciones concurrentes y consulta O(1)")
+    void benchmarkConcurrencia() throws InterruptedException {
+        EstadisticasPoblacion estadisticas = new EstadisticasPoblacion();
+        double sumaInicial = 0;
+        for (int i = 0; i < 1_000_000; i++) {
+            estadisticas.agregar(50.0 + i % 60);
+            sumaInicial += 50.0 + i % 60;
+        }
+
+        int hilos = 8;
+        int cambiosPorHilo = 500_000;
+        ExecutorService executor = Executors.newFixedThreadPool(hilos);
+        CountDownLatch latch = new CountDownLatch(hilos);
+        long inicio = System.nanoTime();
+        for (int h = 0; h < hilos; h++) {
+            executor.submit(() -> {
+                try {
+                    for (int i = 0; i < cambiosPorHilo; i++) {
+                        double peso = 50.0 + i % 60;
+                        estadisticas.cambiar(peso, peso + 0.5);
+                        estadisticas.cambiar(peso + 0.5, peso);
+                    }
+                } finally {
+                    latch.countDown();
+                }
+            });
+        }
+        latch.await();
+        executor.shutdown();
+        long duracion = Math.max(1, (System.nanoTime() - inicio) / 1_000_000);
+
+        int consultas = 10_000;
+        long inicioConsultas = System.nanoTime();
+        double sumidero = 0;
+        for (int i = 0; i < consultas; i++) {
+            sumidero += estadisticas.resumir().getP90();
+        }
+        double microsPorConsulta = (System.nanoTime() - inicioConsultas) / 1_000.0 / consultas;
+        double throughput = (double) hilos * cambiosPorHilo * 2 / duracion * 1000;
+
+        System.out.println("\n📊 AGREGADOS INCREMENTALES (1M usuarios):");
+        System.out.println("==================================");
+        System.out.println("🔄 Cambios de peso (" + hilos + " hilos): " + String.format("%.0f", throughput) + " cambios/seg");
+        System.out.println("⚡ Consulta de estadísticas: " + String.format("%.1f", microsPorConsulta) + " µs");
+
+        assertThat(sumidero).isPositive();
+        assertThat(estadisticas.resumir().getCantidad()).isEqualTo(1_000_000);
+        assertThat(estadisticas.resumir().getMedia()).isCloseTo(sumaInicial / 1_000_000, within(1e-9)); // cada cambio se deshizo
+        assertThat(microsPorConsulta).isLessThan(1_000.0);
+    }
+}
@@ -0,0 +1,249 @@
+package com.ejemplo;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+import org.junit.jupiter.api.io.TempDir;
+import static org.assertj.core.api.Assertions.*;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Pruebas de la exportación en streaming y benchmark de 1M usuarios
+ */
+public class ExportadorUsuariosTest {
+
+    @TempDir
+    Path directorio;
+
+    @Test
+    @DisplayName("✅ CSV: cabecera, comillas y UTF-8 que la importación vuelve a leer")
+    void exportaCsv() throws IOException {
+        RepositorioColumnar repositorio = new RepositorioColumnar();
+        repositorio.insertar(1, "Ana", 70.5);
+        repositorio.insertar(2, "Pérez, Juan", 80);
+        repositorio.insertar(3, "Dice \"hola\"", 55.25);
+
+        String csv = exportar(repositorio, ImportadorUsuarios.Formato.CSV, ExportadorUsuarios.Filtro.todos());
+
+        assertThat(csv).isEqualTo("id,nombre,peso\n"
+            + "user_1,Ana,70.5\n"
+            + "user_2,\"Pérez, Juan\",80.0\n"
+            + "user_3,\"Dice \"\"hola\"\"\",55.25\n");
+    }
+
+    @Test
+    @DisplayName("✅ NDJSON: un objeto por línea que la importación acepta tal cual")
+    void exportaNdjsonEImportaDeVuelta() throws IOException {
+        RepositorioColumnar repositorio = new RepositorioColumnar();
+        repositorio.insertar(7, "Ñu \"el\" grande", 72.5);
+        repositorio.insertar(8, "Leo", 61);
+        Path archivo = directorio.resolve("usuarios.ndjson");
+        try (FileChannel canal = FileChannel.open(archivo, StandardOpenOption.CREATE, StandardOpenOption.WRITE)) {
+            assertThat(new ExportadorUsuarios(ImportadorUsuarios.Formato.NDJSON)
+                .exportar(repositorio, ExportadorUsuarios.Filtro.todos(), canal)).isEqualTo(2);
+        }
+
+        assertThat(Files.readAllLines(archivo, StandardCharsets.UTF_8)).containsExactly(
+            "{\"id\":\"user_7\",\"nombre\":\"Ñu \\\"el\\\" grande\",\"peso\":72.5}",
+            "{\"id\":\"user_8\",\"nombre\":\"Leo\",\"peso\":61.0}");
+
+        List<String> cargados = Collections.synchronizedList(new ArrayList<>());
+        ImportadorUsuarios.Resultado resultado = new ImportadorUsuarios(ImportadorUsuarios.Formato.NDJSON)
+            .importar(archivo, lote -> {
+                for (int i = 0; i < lote.getCantidad(); i++) {
+                    cargados.add(lote.getNombre(i) + "=" + lote.getPeso(i));
+                }
+            }, null);
+        assertThat(resultado.getRechazados()).isZero();
+        assertThat(cargados).containsExactlyInAnyOrder("Ñu \"el\" grande=72.5", "Leo=61.0");
+    }
+
+    @Test
+    @DisplayName("✅ Filtra por rango de peso inclusivo y por texto en el nombre")
+    void filtra() throws IOException {
+        RepositorioMapa repositorio = new RepositorioMapa();
+        repositorio.insertar(1, "María López", 60);
+        repositorio.insertar(2, "Mario Ruiz", 75);
+        repositorio.insertar(3, "Ana María", 90);
+        repositorio.insertar(4, "Leo", 75);
+
+        ExportadorUsuarios.Filtro rango = ExportadorUsuarios.Filtro.todos().conPeso(60, 75);
+        assertThat(exportar(repositorio, ImportadorUsuarios.Formato.CSV, rango).lines().skip(1))
+            .containsExactlyInAnyOrder("user_1,María López,60.0", "user_2,Mario Ruiz,75.0", "user_4,Leo,75.0");
+
+        ExportadorUsuarios.Filtro nombre = ExportadorUsuarios.Filtro.todos().conNombre("MARÍA");
+        assertThat(exportar(repositorio, ImportadorUsuarios.Formato.CSV, nombre).lines().skip(1))
+            .containsExactlyInAnyOrder("user_1,María López,60.0", "user_3,Ana María,90.0");
+
+        ExportadorUsuarios.Filtro ambos = nombre.conPeso(Double.NaN, 70);
+        assertThat(exportar(repositorio, ImportadorUsuarios.Formato.CSV, ambos).lines().skip(1))
+            .containsExactly("user_1,María López,60.0");
+    }
+
+    @Test
+    @DisplayName("✅ Nombres más grandes que el buffer no se truncan")
+    void nombreEnorme() throws IOException {
+        RepositorioMapa repositorio = new RepositorioMapa();
+        String nombre = "ñ".repeat(ExportadorUsuarios.TAMANO_BUFFER);
+        repositorio.insertar(1, nombre, 70);
+
+        assertThat(exportar(repositorio, ImportadorUsuarios.Formato.CSV, ExportadorUsuarios.Filtro.todos()))
+            .isEqualTo("id,nombre,peso\nuser_1," + nombre + ",70.0\n");
+    }
+
+    @Test
+    @DisplayName("✅ Cada fila es coherente con el filtro durante actualizaciones concurrentes")
+    void coherenteConActualizaciones() throws Exception {
+        RepositorioColumnar repositorio = new RepositorioColumnar();
+        int cantidad = 200_000;
+        for (int i = 0; i < cantidad; i++) {
+            repositorio.insertar(i, "Usuario " + i % 100, 1_000_000);
+        }
+        AtomicBoolean activo = new AtomicBoolean(true);
+        Thread actualizador = new Thread(() -> {
+            // La regla de actualización resta 1 kg: los pesos bajan de a uno
+            for (int vuelta = 0; activo.get(); vuelta++) {
+                repositorio.actualizarPeso(vuelta % cantidad, 0);
+            }
+        });
+        actualizador.start();
+        try {
+            for (int exportacion = 0; exportacion < 5; exportacion++) {
+                ExportadorUsuarios.Filtro filtro = ExportadorUsuarios.Filtro.todos().conPeso(999_999, 1_000_000);
+                String csv = exportar(repositorio, ImportadorUsuarios.Formato.CSV, filtro);
+                csv.lines().skip(1).forEach(linea -> {
+                    double peso = Double.parseDouble(linea.substring(linea.lastIndexOf(',') + 1));
+                    assertThat(peso).isIn(999_999.0, 1_000_000.0);
+                });
+            }
+        } finally {
+            activo.set(false);
+            actualizador.join();
+        }
+    }
+
+    @Test
+    @DisplayName("✅ El controlador exporta a archivo según la extensión")
+    void controladorExporta() throws IOException {
+        try {
+            UsuarioController.configurarRepositorio(new RepositorioColumnar());
+            UsuarioController.configurarLatenciaSimulada(false);
+            UsuarioController.crearUsuario("Ana", 70);
+            UsuarioController.crearUsuario("Leo", 80);
+            Path archivo = directorio.resolve("reporte.jsonl");
+
+            assertThat(UsuarioController.exportarUsuarios(archivo,
+                ExportadorUsuarios.Filtro.todos().conNombre("leo"))).isEqualTo(1);
+            List<String> lineas = Files.readAllLines(archivo, StandardCharsets.UTF_8);
+            assertThat(lineas).hasSize(1);
+            assertThat(lineas.get(0)).startsWith("{\"id\":\"user_").endsWith("\"nombre\":\"Leo\",\"peso\":80.0}");
+        } finally {
+            UsuarioController.configurarLatenciaSimulada(true);
+            UsuarioController.configurarRepositorio(new RepositorioMapa());
+        }
+    }
+
+    @Test
+    @DisplayName("❌ Un fallo del canal corta el recorrido en la primera escritura")
+    void fallaDelCanalCortaElRecorrido() {
+        int cantidad = 100_000;
+        int[] visitados = new int[1];
+        RepositorioColumnar repositorio = new RepositorioColumnar() {
+            @Override
+            public void recorrer(VisitanteUsuario visitante) {
+                super.recorrer((id, nombre, peso) -> {
+                    visitados[0]++;
+                    visitante.visitar(id, nombre, peso);
+                });
+            }
+        };
+        for (int i = 1; i <= cantidad; i++) {
+            repositorio.insertar(i, "Usuario " + i, 70);
+        }
+        int[] escrituras = new int[1];
+        WritableByteChannel roto = new WritableByteChannel() {
+            @Override
+            public int write(ByteBuffer origen) throws IOException {
+                escrituras[0]++;
+                throw new IOException("disco lleno");
+            }
+
+            @Override
+            public boolean isOpen() {
+                return true;
+            }
+
+            @Override
+            public void close() {
+            }
+        };
+
+        assertThatThrownBy(() -> new ExportadorUsuarios(ImportadorUsuarios.Formato.CSV)
+            .exportar(repositorio, ExportadorUsuarios.Filtro.todos(), roto))
+            .isInstanceOf(IOException.class)
+            .hasMessage("disco lleno");
+        assertThat(escrituras[0]).isEqualTo(1);
+        assertThat(visitados[0]).isLessThan(cantidad);
+    }
+
+    @Test
+    @DisplayName("✅ Exporta 1M usuarios a CSV completos")
+    void exportaUnMillon() throws IOException {
+        medirExportacionUnMillon();
+    }
+
+    @Test
+    @EnabledIfSystemProperty(named = "healthtrack.benchmark", matches = "true")
+    @DisplayName("📊 Benchmark: exportación de 1M usuarios a CSV")
+    void benchmarkExportacionUnMillon() throws IOException {
+        assertThat(medirExportacionUnMillon()).isLessThan(10_000);
+    }
+
+    private long medirExportacionUnMillon() throws IOException {
+        int cantidad = 1_000_000;
+        RepositorioColumnar repositorio = new RepositorioColumnar();
+        for (int i = 1; i <= cantidad; i++) {
+            repositorio.insertar(i, "Usuario " + (i % 5_000), 50 + i % 60 + (i % 10) / 10.0);
+        }
+        Path archivo = directorio.resolve("exportacion.csv");
+
+        long inicio = System.nanoTime();
+        long escritos;
+        try (FileChannel canal = FileChannel.open(archivo, StandardOpenOption.CREATE, StandardOpenOption.WRITE)) {
+            escritos = new ExportadorUsuarios(ImportadorUsuarios.Formato.CSV)
+                .exportar(repositorio, ExportadorUsuarios.Filtro.todos(), canal);
+        }
+        long duracionMs = Math.max(1, (System.nanoTime() - inicio) / 1_000_000);
+
+        System.out.println("\n📊 EXPORTACIÓN EN STREAMING (" + cantidad + " usuarios CSV):");
+        System.out.println("==================================");
+        System.out.println("💾 Tamaño del archivo: " + Files.size(archivo) / (1024 * 1024) + " MB");
+        System.out.println("⏱️  Duración: " + duracionMs + " ms");
+        System.out.println("🚀 Filas/s: " + cantidad * 1000L / duracionMs);
+
+        assertThat(escritos).isEqualTo(cantidad);
+        return duracionMs;
+    }
+
+    private static String exportar(RepositorioUsuarios repositorio, ImportadorUsuarios.Formato formato,
+            ExportadorUsuarios.Filtro filtro) throws IOException {
+        ByteArrayOutputStream salida = new ByteArrayOutputStream();
+        try (WritableByteChannel canal = Channels.newChannel(salida)) {
+            new ExportadorUsuarios(formato).exportar(repositorio, filtro, canal);
+        }
+        return salida.toString(StandardCharsets.UTF_8);
+    }
+}
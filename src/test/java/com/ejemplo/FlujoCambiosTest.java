@@ -0,0 +1,269 @@
+package com.ejemplo;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.DisplayName;
+import static org.assertj.core.api.Assertions.*;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Pruebas del flujo de cambios y benchmark de publicación por estrategia de espera
+ */
+public class FlujoCambiosTest {
+
+    @Test
+    @DisplayName("✅ Cada consumidor recibe todos los eventos en orden y por lotes")
+    void consumidoresIndependientes() throws InterruptedException {
+        int productores = 4;
+        int porProductor = 50_000;
+        FlujoCambios flujo = new FlujoCambios(1024, FlujoCambios.EstrategiaEspera.CEDER,
+            FlujoCambios.PoliticaLleno.ESPERAR);
+        List<Verificador> verificadores = new ArrayList<>();
+        for (int c = 0; c < 3; c++) {
+            Verificador verificador = new Verificador(productores);
+            verificadores.add(verificador);
+            flujo.agregarConsumidor("consumidor-" + c, verificador);
+        }
+        flujo.iniciar();
+        assertThatThrownBy(() -> flujo.agregarConsumidor("tarde", (e, s, f) -> { }))
+            .isInstanceOf(IllegalStateException.class);
+
+        publicarEnParalelo(flujo, productores, porProductor);
+        flujo.close();
+
+        assertThat(flujo.getPublicados()).isEqualTo((long) productores * porProductor);
+        assertThat(flujo.getDescartados()).isZero();
+        for (Verificador verificador : verificadores) {
+            assertThat(verificador.fueraDeOrden.get()).isZero();
+            assertThat(verificador.recibidos.get()).isEqualTo((long) productores * porProductor);
+            assertThat(verificador.lotes.get()).isPositive().isLessThanOrEqualTo(verificador.recibidos.get());
+        }
+        assertThat(flujo.getPendientes()).isZero();
+    }
+
+    @Test
+    @DisplayName("✅ Todas las estrategias de espera entregan todos los eventos")
+    void estrategiasDeEspera() throws InterruptedException {
+        for (FlujoCambios.EstrategiaEspera estrategia : FlujoCambios.EstrategiaEspera.values()) {
+            FlujoCambios flujo = new FlujoCambios(256, estrategia, FlujoCambios.PoliticaLleno.ESPERAR);
+            Verificador verificador = new Verificador(2);
+            flujo.agregarConsumidor("consumidor", verificador);
+            flujo.iniciar();
+            publicarEnParalelo(flujo, 2, 20_000);
+            // Un evento suelto tras una pausa despierta al consumidor dormido o bloqueado
+            Thread.sleep(5);
+            flujo.publicar(FlujoCambios.Tipo.ALTA, 2L << 32, Double.NaN, 70.0, 0);
+            flujo.close();
+
+            assertThat(verificador.recibidos.get()).as(estrategia.name()).isEqualTo(40_001);
+            assertThat(verificador.fueraDeOrden.get()).as(estrategia.name()).isZero();
+        }
+    }
+
+    @Test
+    @DisplayName("❌ Un consumidor que falla no detiene el flujo y publicar tras cerrar descarta")
+    void erroresYCierre() {
+        FlujoCambios flujo = new FlujoCambios(4, FlujoCambios.EstrategiaEspera.BLOQUEANTE,
+            FlujoCambios.PoliticaLleno.ESPERAR);
+        AtomicLong recibidos = new AtomicLong();
+        flujo.agregarConsumidor("con-errores", (evento, secuencia, finDeLote) -> {
+            if (secuencia % 10 == 0) {
+                throw new IllegalStateException("fallo");
+            }
+            recibidos.incrementAndGet();
+        });
+        flujo.iniciar();
+        for (int i = 0; i < 100; i++) {
+            flujo.publicar(FlujoCambios.Tipo.PESO, i, 70.0, 69.0, 1);
+        }
+        flujo.close();
+
+        assertThat(flujo.getErrores()).isEqualTo(10);
+        assertThat(recibidos.get()).isEqualTo(90);
+        for (int i = 0; i < 10; i++) {
+            assertThat(flujo.publicar(FlujoCambios.Tipo.PESO, i, 70.0, 69.0, 1)).isFalse();
+        }
+        assertThat(flujo.getPublicados()).isEqualTo(100);
+        assertThat(flujo.getDescartados()).isEqualTo(10);
+        assertThatThrownBy(() -> new FlujoCambios(100, FlujoCambios.EstrategiaEspera.OCUPADA))
+            .isInstanceOf(IllegalArgumentException.class);
+    }
+
+    @Test
+    @DisplayName("❌ Con el anillo lleno o sin iniciar, publicar descarta sin esperar")
+    void descartaSinEsperar() throws InterruptedException {
+        FlujoCambios flujo = new FlujoCambios(8, FlujoCambios.EstrategiaEspera.BLOQUEANTE);
+        CountDownLatch dentro = new CountDownLatch(1);
+        CountDownLatch soltar = new CountDownLatch(1);
+        AtomicLong recibidos = new AtomicLong();
+        flujo.agregarConsumidor("lento", (evento, secuencia, finDeLote) -> {
+            dentro.countDown();
+            soltar.await();
+            recibidos.incrementAndGet();
+        });
+        assertThat(flujo.getPoliticaLleno()).isEqualTo(FlujoCambios.PoliticaLleno.DESCARTAR);
+        assertThat(flujo.publicar(FlujoCambios.Tipo.ALTA, 1, Double.NaN, 70.0, 0)).isFalse();
+
+        flujo.iniciar();
+        assertThat(flujo.publicar(FlujoCambios.Tipo.ALTA, 1, Double.NaN, 70.0, 0)).isTrue();
+        assertThat(dentro.await(5, TimeUnit.SECONDS)).isTrue();
+        // El consumidor retiene la primera posición: caben 7 eventos más
+        int aceptados = 0;
+        for (int i = 0; i < 20; i++) {
+            if (flujo.publicar(FlujoCambios.Tipo.PESO, 1, 70.0, 69.0, i + 1)) {
+                aceptados++;
+            }
+        }
+        assertThat(aceptados).isEqualTo(7);
+        assertThat(flujo.getDescartados()).isEqualTo(1 + 13);
+        soltar.countDown();
+        flujo.close();
+        assertThat(recibidos.get()).isEqualTo(8);
+
+        // Con espera pero sin iniciar tampoco se queda girando
+        FlujoCambios sinIniciar = new FlujoCambios(2, FlujoCambios.EstrategiaEspera.OCUPADA,
+            FlujoCambios.PoliticaLleno.ESPERAR);
+        sinIniciar.agregarConsumidor("nunca", (evento, secuencia, finDeLote) -> { });
+        for (int i = 0; i < 10; i++) {
+            assertThat(sinIniciar.publicar(FlujoCambios.Tipo.ALTA, i, Double.NaN, 70.0, 0)).isFalse();
+        }
+        assertThat(sinIniciar.getDescartados()).isEqualTo(10);
+        assertThat(sinIniciar.getPublicados()).isZero();
+    }
+
+    @Test
+    @DisplayName("✅ El controlador publica altas y cambios de peso")
+    void publicaDesdeElControlador() {
+        FlujoCambios flujo = new FlujoCambios(64, FlujoCambios.EstrategiaEspera.BLOQUEANTE);
+        List<String> eventos = Collections.synchronizedList(new ArrayList<>());
+        flujo.agregarConsumidor("registro", (evento, secuencia, finDeLote) ->
+            eventos.add(evento.getTipo() + " " + UsuarioController.formatearId(evento.getId()) + " "
+                + evento.getPesoAnterior() + " -> " + evento.getPesoNuevo() + " v" + evento.getVersion()));
+        flujo.iniciar();
+        UsuarioController.configurarLatenciaSimulada(false);
+        UsuarioController.configurarFlujoCambios(flujo);
+        try {
+            String id = UsuarioController.crearUsuarioTipado("Marta", 62.0).getId();
+            UsuarioController.actualizarPesoTipado(id, 61.0);
+            UsuarioController.actualizarPesoSiVersionTipado(id, 1, 60.0);
+            UsuarioController.actualizarPesoSiVersionTipado(id, 1, 59.0);
+            flujo.close();
+
+            assertThat(eventos).containsExactly(
+                "ALTA " + id + " NaN -> 62.0 v0",
+                "PESO " + id + " 62.0 -> 61.0 v1",
+                "PESO " + id + " 61.0 -> 60.0 v2");
+        } finally {
+            UsuarioController.configurarFlujoCambios(null);
+            UsuarioController.configurarLatenciaSimulada(true);
+        }
+    }
+
+    @Test
+    @DisplayName("📊 Eventos por segundo y latencia de publicación por estrategia de espera")
+    void benchmarkPublicacion() throws InterruptedException {
+        int productores = 4;
+        int porProductor = 250_000;
+        System.out.println("\n📊 FLUJO DE CAMBIOS (" + productores + " productores, 2 consumidores, anillo de 65536, "
+            + Runtime.getRuntime().availableProcessors() + " CPU):");
+        System.out.println("==================================");
+        for (FlujoCambios.EstrategiaEspera estrategia : FlujoCambios.EstrategiaEspera.values()) {
+            FlujoCambios flujo = new FlujoCambios(65_536, estrategia, FlujoCambios.PoliticaLleno.ESPERAR);
+            Verificador primero = new Verificador(productores);
+            Verificador segundo = new Verificador(productores);
+            flujo.agregarConsumidor("consumidor-1", primero);
+            flujo.agregarConsumidor("consumidor-2", segundo);
+            flujo.iniciar();
+
+            HistogramaLatencias publicacion = new HistogramaLatencias();
+            long inicio = System.nanoTime();
+            publicarEnParalelo(flujo, productores, porProductor, publicacion);
+            flujo.close();
+            double segundos = (System.nanoTime() - inicio) / 1e9;
+            HistogramaLatencias.Instantanea latencias = publicacion.instantanea();
+
+            System.out.printf("⚡ %-10s %,12.0f eventos/s | publicar p50 %,d ns, p99 %,d ns, p99.9 %,d ns"
+                + " | %,d lotes%n", estrategia, productores * porProductor / segundos, latencias.percentil(50),
+                latencias.percentil(99), latencias.percentil(99.9), primero.lotes.get());
+
+            assertThat(primero.recibidos.get()).isEqualTo((long) productores * porProductor);
+            assertThat(segundo.recibidos.get()).isEqualTo((long) productores * porProductor);
+            assertThat(primero.fueraDeOrden.get() + segundo.fueraDeOrden.get()).isZero();
+        }
+    }
+
+    private static void publicarEnParalelo(FlujoCambios flujo, int productores, int porProductor)
+            throws InterruptedException {
+        publicarEnParalelo(flujo, productores, porProductor, null);
+    }
+
+    /**
+     * Cada productor publica ids {@code (productor << 32) | i} con i creciente
+     * @param latencias Histograma donde registrar cada publicación o null
+     */
+    private static void publicarEnParalelo(FlujoCambios flujo, int productores, int porProductor,
+            HistogramaLatencias latencias) throws InterruptedException {
+        CountDownLatch salida = new CountDownLatch(1);
+        ExecutorService executor = Executors.newFixedThreadPool(productores);
+        for (int p = 0; p < productores; p++) {
+            final long prefijo = (long) p << 32;
+            executor.submit(() -> {
+                try {
+                    salida.await();
+                } catch (InterruptedException e) {
+                    return;
+                }
+                for (int i = 0; i < porProductor; i++) {
+                    long antes = latencias == null ? 0 : System.nanoTime();
+                    flujo.publicar(FlujoCambios.Tipo.PESO, prefijo | i, 70.0, 69.0, 1);
+                    if (latencias != null) {
+                        latencias.registrar(System.nanoTime() - antes);
+                    }
+                }
+            });
+        }
+        salida.countDown();
+        executor.shutdown();
+        assertThat(executor.awaitTermination(120, TimeUnit.SECONDS)).isTrue();
+    }
+
+    /**
+     * Consumidor que comprueba que los eventos de cada productor llegan en orden
+     */
+    private static final class Verificador implements FlujoCambios.Consumidor {
+        final long[] ultimos;
+        final AtomicLong recibidos = new AtomicLong();
+        final AtomicLong lotes = new AtomicLong();
+        final AtomicLong fueraDeOrden = new AtomicLong();
+        private long esperada;
+
+        Verificador(int productores) {
+            ultimos = new long[productores + 1];
+            Arrays.fill(ultimos, -1);
+        }
+
+        @Override
+        public void alCambio(FlujoCambios.Evento evento, long secuencia, boolean finDeLote) {
+            if (secuencia != esperada++) {
+                fueraDeOrden.incrementAndGet();
+            }
+            int productor = (int) (evento.getId() >>> 32);
+            long indice = evento.getId() & 0xffffffffL;
+            if (indice <= ultimos[productor]) {
+                fueraDeOrden.incrementAndGet();
+            }
+            ultimos[productor] = indice;
+            recibidos.incrementAndGet();
+            if (finDeLote) {
+                lotes.incrementAndGet();
+            }
+        }
+    }
+}
@@ -0,0 +1,146 @@
+package com.ejemplo;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.DisplayName;
+import static org.assertj.core.api.Assertions.*;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Pruebas del generador de carga de lazo abierto y medición contra el controlador
+ */
+public class GeneradorCargaTest {
+
+    @Test
+    @DisplayName("✅ Envía tasa × duración solicitudes con la mezcla configurada")
+    void tasaYMezcla() throws InterruptedException {
+        ObjetivoFalso objetivo = new ObjetivoFalso(0);
+        GeneradorCarga.Configuracion configuracion = GeneradorCarga.Configuracion.constante(2000, 1000)
+            .conMezcla(10, 30, 60).conUsuarios(50, 0.99).conHilos(4);
+
+        GeneradorCarga.Informe informe = GeneradorCarga.ejecutar(configuracion, objetivo);
+
+        assertThat(informe.getProgramadas()).isEqualTo(2000);
+        long crear = informe.getResultado(GeneradorCarga.TipoSolicitud.CREAR).getCantidad();
+        long actualizar = informe.getResultado(GeneradorCarga.TipoSolicitud.ACTUALIZAR).getCantidad();
+        long consultar = informe.getResultado(GeneradorCarga.TipoSolicitud.CONSULTAR).getCantidad();
+        assertThat(crear + actualizar + consultar).isEqualTo(2000);
+        assertThat(informe.getRespuesta().getCantidad()).isEqualTo(2000);
+        assertThat(crear).isBetween(140L, 260L);
+        assertThat(actualizar).isBetween(500L, 700L);
+        assertThat(consultar).isBetween(1050L, 1350L);
+        // 50 altas iniciales sin medir más las altas medidas
+        assertThat(objetivo.altas.get()).isEqualTo(50 + crear);
+        assertThat(informe.getTasaLograda()).isBetween(1500.0, 2100.0);
+        assertThat(informe.getResultado(GeneradorCarga.TipoSolicitud.CONSULTAR).getErrores()).isZero();
+        assertThat(informe.aTexto()).contains("Percentil", "CONSULTAR");
+
+        assertThatThrownBy(() -> GeneradorCarga.Configuracion.constante(0, 1000))
+            .isInstanceOf(IllegalArgumentException.class);
+        assertThatThrownBy(() -> configuracion.conMezcla(0, 0, 0)).isInstanceOf(IllegalArgumentException.class);
+    }
+
+    @Test
+    @DisplayName("✅ Una pausa del sistema se ve en la respuesta aunque no en el tiempo de servicio")
+    void sinOmisionCoordinada() throws InterruptedException {
+        // Un solo hilo y una pausa de 300 ms: a 1000 sol/s, ~300 solicitudes debieron salir durante la pausa
+        ObjetivoFalso objetivo = new ObjetivoFalso(300);
+        GeneradorCarga.Configuracion configuracion = GeneradorCarga.Configuracion.constante(1000, 1000)
+            .conMezcla(0, 0, 1).conUsuarios(10, 0).conHilos(1);
+
+        GeneradorCarga.Informe informe = GeneradorCarga.ejecutar(configuracion, objetivo);
+        GeneradorCarga.Resultado consultas = informe.getResultado(GeneradorCarga.TipoSolicitud.CONSULTAR);
+
+        assertThat(consultas.getCantidad()).isEqualTo(1000);
+        // En lazo cerrado solo una solicitud ve la pausa: el p90 del servicio sigue siendo mínimo
+        assertThat(consultas.getServicio().percentil(90)).isLessThan(50_000_000L);
+        assertThat(consultas.getServicio().getMaximoNs()).isGreaterThanOrEqualTo(300_000_000L);
+        // Medida desde el inicio previsto, la pausa alcanza a más del 10 % de las solicitudes
+        assertThat(consultas.getRespuesta().percentil(90)).isGreaterThan(100_000_000L);
+        assertThat(consultas.getRespuesta().getMediaNs()).isGreaterThan(10 * consultas.getServicio().getMediaNs());
+    }
+
+    @Test
+    @DisplayName("❌ Los status de error y las excepciones cuentan como errores")
+    void errores() throws InterruptedException {
+        GeneradorCarga.Objetivo fallido = new ObjetivoFalso(0) {
+            @Override
+            public Respuesta actualizar(String id, double peso) {
+                throw new IllegalStateException("fallo");
+            }
+
+            @Override
+            public Respuesta consultar(String id) {
+                return RespuestaUsuario.error("Usuario no encontrado", 404);
+            }
+        };
+        GeneradorCarga.Informe informe = GeneradorCarga.ejecutar(
+            GeneradorCarga.Configuracion.constante(500, 200).conMezcla(0, 1, 1).conUsuarios(5, 0.5).conHilos(2),
+            fallido);
+
+        GeneradorCarga.Resultado actualizaciones = informe.getResultado(GeneradorCarga.TipoSolicitud.ACTUALIZAR);
+        GeneradorCarga.Resultado consultas = informe.getResultado(GeneradorCarga.TipoSolicitud.CONSULTAR);
+        assertThat(actualizaciones.getErrores()).isEqualTo(actualizaciones.getCantidad()).isPositive();
+        assertThat(consultas.getErrores()).isEqualTo(consultas.getCantidad()).isPositive();
+    }
+
+    @Test
+    @DisplayName("📊 Latencia del controlador con llegadas constantes y claves Zipf")
+    void benchmarkControlador() throws InterruptedException {
+        UsuarioController.configurarRepositorio(new RepositorioColumnar());
+        GeneradorCarga.Configuracion configuracion = GeneradorCarga.Configuracion.constante(300, 3000)
+            .conUsuarios(1000, 0.99);
+        System.out.println("\n📊 CARGA DE LAZO ABIERTO CONTRA EL CONTROLADOR ("
+            + Runtime.getRuntime().availableProcessors() + " CPU):");
+        System.out.println("==================================");
+        try {
+            GeneradorCarga.Informe informe = GeneradorCarga.ejecutar(configuracion, GeneradorCarga.CONTROLADOR);
+            System.out.print(informe.aTexto());
+
+            assertThat(informe.getRespuesta().getCantidad()).isEqualTo(900);
+            for (GeneradorCarga.TipoSolicitud tipo : GeneradorCarga.TipoSolicitud.values()) {
+                GeneradorCarga.Resultado resultado = informe.getResultado(tipo);
+                assertThat(resultado.getRespuesta().getMaximoNs())
+                    .isGreaterThanOrEqualTo(resultado.getServicio().getMinimoNs());
+            }
+        } finally {
+            UsuarioController.configurarRepositorio(new RepositorioMapa());
+        }
+    }
+
+    /**
+     * Objetivo en memoria que responde al instante salvo una pausa en la consulta número 100
+     */
+    private static class ObjetivoFalso implements GeneradorCarga.Objetivo {
+        final AtomicLong altas = new AtomicLong();
+        final AtomicLong consultas = new AtomicLong();
+        private final long pausaMs;
+        private final AtomicBoolean pausado = new AtomicBoolean();
+
+        ObjetivoFalso(long pausaMs) {
+            this.pausaMs = pausaMs;
+        }
+
+        @Override
+        public Respuesta crear(String nombre, double peso) {
+            return new RespuestaUsuario(201, "USR-" + altas.incrementAndGet(), nombre, peso, 0);
+        }
+
+        @Override
+        public Respuesta actualizar(String id, double peso) {
+            return new RespuestaUsuario(200, id, "Carga", peso, 0);
+        }
+
+        @Override
+        public Respuesta consultar(String id) {
+            if (pausaMs > 0 && consultas.incrementAndGet() == 100 && pausado.compareAndSet(false, true)) {
+                try {
+                    Thread.sleep(pausaMs);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+            return new RespuestaUsuario(200, id, "Carga", 70.0, 0);
+        }
+    }
+}
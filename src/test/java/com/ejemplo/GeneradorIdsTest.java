@@ -0,0 +1,115 @@
+package com.ejemplo;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.DisplayName;
+import static org.assertj.core.api.Assertions.*;
+import java.util.Arrays;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Pruebas de stress del generador de identificadores
+ */
+public class GeneradorIdsTest {
+
+    @Test
+    @DisplayName("🔄 Stress: 64 hilos sin ids duplicados")
+    void noDebeGenerarDuplicadosCon64Hilos() throws InterruptedException {
+        int hilos = 64;
+        int porHilo = 50_000;
+        GeneradorIds generador = new GeneradorIds(7, 256);
+        long[][] generados = new long[hilos][porHilo];
+
+        CountDownLatch listos = new CountDownLatch(hilos);
+        CountDownLatch inicio = new CountDownLatch(1);
+        CountDownLatch fin = new CountDownLatch(hilos);
+        ExecutorService executor = Executors.newFixedThreadPool(hilos);
+
+        for (int h = 0; h < hilos; h++) {
+            final long[] destino = generados[h];
+            executor.submit(() -> {
+                try {
+                    listos.countDown();
+                    inicio.await();
+                    for (int i = 0; i < porHilo; i++) {
+                        destino[i] = generador.siguiente();
+                    }
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                } finally {
+                    fin.countDown();
+                }
+            });
+        }
+
+        listos.await();
+        long tiempoInicio = System.nanoTime();
+        inicio.countDown();
+        fin.await();
+        long duracionNs = System.nanoTime() - tiempoInicio;
+        executor.shutdown();
+
+        long[] todos = new long[hilos * porHilo];
+        for (int h = 0; h < hilos; h++) {
+            System.arraycopy(generados[h], 0, todos, h * porHilo, porHilo);
+        }
+        Arrays.sort(todos);
+        int duplicados = 0;
+        for (int i = 1; i < todos.length; i++) {
+            if (todos[i] == todos[i - 1]) {
+                duplicados++;
+            }
+        }
+
+        double throughput = (double) todos.length / duracionNs * 1_000_000_000L;
+        System.out.println("\n🔄 RESULTADOS GENERADOR DE IDS:");
+        System.out.println("===================================");
+        System.out.println("🧵 Hilos: " + hilos);
+        System.out.println("🆔 Ids generados: " + todos.length);
+        System.out.println("❌ Duplicados: " + duplicados);
+        System.out.println("📈 Throughput: " + String.format("%.0f", throughput) + " ids/seg");
+
+        assertThat(duplicados).isZero();
+        assertThat(todos[0]).isGreaterThan(0L);
+        assertThat(Arrays.stream(todos).allMatch(id -> GeneradorIds.nodo(id) == 7)).isTrue();
+    }
+
+    @Test
+    @DisplayName("✅ Nodos distintos generan ids disjuntos sin coordinarse")
+    void nodosDistintosGeneranIdsDisjuntos() {
+        GeneradorIds nodoA = new GeneradorIds(1);
+        GeneradorIds nodoB = new GeneradorIds(2);
+
+        long idA = nodoA.siguiente();
+        long idB = nodoB.siguiente();
+
+        assertThat(GeneradorIds.secuencia(idA)).isEqualTo(GeneradorIds.secuencia(idB));
+        assertThat(idA).isNotEqualTo(idB);
+        assertThat(GeneradorIds.nodo(idA)).isEqualTo(1);
+        assertThat(GeneradorIds.nodo(idB)).isEqualTo(2);
+    }
+
+    @Test
+    @DisplayName("✅ El controlador acepta los ids con prefijo de nodo")
+    void controladorAceptaIdsConPrefijoDeNodo() {
+        long id = new GeneradorIds(GeneradorIds.NODO_MAXIMO).siguiente();
+
+        assertThat(UsuarioController.parsearId("user_" + id)).isEqualTo(id);
+        assertThat(UsuarioController.parsearId("user_99999999999999999999")).isEqualTo(-1);
+        assertThat(UsuarioController.parsearId("user_abc")).isEqualTo(-1);
+        assertThat(UsuarioController.parsearId("otro_1")).isEqualTo(-1);
+        // Un solo id por usuario: sin ceros a la izquierda
+        assertThat(UsuarioController.parsearId("user_007")).isEqualTo(-1);
+        assertThat(UsuarioController.parsearId("user_0")).isZero();
+    }
+
+    @Test
+    @DisplayName("❌ Debe rechazar nodos fuera de rango")
+    void debeRechazarNodosFueraDeRango() {
+        assertThatThrownBy(() -> new GeneradorIds(GeneradorIds.NODO_MAXIMO + 1))
+            .isInstanceOf(IllegalArgumentException.class);
+        assertThatThrownBy(() -> new GeneradorIds(-1))
+            .isInstanceOf(IllegalArgumentException.class);
+    }
+}
@@ -0,0 +1,148 @@
+package com.ejemplo;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+import static org.assertj.core.api.Assertions.*;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import com.ejemplo.MetricasLatencia.Operacion;
+
+/**
+ * Pruebas del histograma de latencias y de las métricas por operación
+ */
+public class HistogramaLatenciasTest {
+
+    @Test
+    @DisplayName("✅ Los percentiles tienen error relativo menor al 1,6 %")
+    void percentilesConPrecisionAcotada() {
+        HistogramaLatencias histograma = new HistogramaLatencias();
+        for (long i = 1; i <= 100_000; i++) {
+            histograma.registrar(i * 1_000); // 1 µs .. 100 ms
+        }
+        HistogramaLatencias.Instantanea instantanea = histograma.instantanea();
+
+        assertThat(instantanea.getCantidad()).isEqualTo(100_000);
+        assertThat(instantanea.getMinimoNs()).isEqualTo(1_000);
+        assertThat(instantanea.getMaximoNs()).isEqualTo(100_000_000);
+        assertThat(instantanea.getMediaNs()).isEqualTo(50_000_500.0);
+        assertThat((double) instantanea.percentil(50)).isCloseTo(50_000_000, withinPercentage(1.6));
+        assertThat((double) instantanea.percentil(99)).isCloseTo(99_000_000, withinPercentage(1.6));
+        assertThat((double) instantanea.percentil(99.9)).isCloseTo(99_900_000, withinPercentage(1.6));
+        assertThat(instantanea.percentil(100)).isEqualTo(100_000_000);
+    }
+
+    @Test
+    @DisplayName("✅ Valores pequeños exactos y valores enormes acotados")
+    void extremos() {
+        HistogramaLatencias histograma = new HistogramaLatencias();
+        histograma.registrar(-5);
+        histograma.registrar(7);
+        histograma.registrar(Long.MAX_VALUE);
+        HistogramaLatencias.Instantanea instantanea = histograma.instantanea();
+
+        assertThat(instantanea.getMinimoNs()).isZero();
+        assertThat(instantanea.percentil(50)).isEqualTo(7);
+        assertThat(instantanea.getMaximoNs()).isEqualTo(HistogramaLatencias.VALOR_MAXIMO);
+        assertThat(new HistogramaLatencias().instantanea().percentil(99)).isZero();
+        for (long valor = 1; valor < HistogramaLatencias.VALOR_MAXIMO; valor = valor * 3 + 1) {
+            int indice = HistogramaLatencias.indice(valor);
+            assertThat(HistogramaLatencias.valorSuperior(indice)).isGreaterThanOrEqualTo(valor);
+            assertThat(indice == 0 || HistogramaLatencias.valorSuperior(indice - 1) < valor).isTrue();
+        }
+    }
+
+    @Test
+    @DisplayName("✅ El controlador registra latencias por operación y estado")
+    void controladorRegistraPorEstado() {
+        MetricasLatencia metricas = UsuarioController.metricas();
+        long creados = metricas.instantanea(Operacion.CREAR, 201).getCantidad();
+        long rechazados = metricas.instantanea(Operacion.CREAR, 400).getCantidad();
+        long noEncontrados = metricas.instantanea(Operacion.CONSULTAR, 404).getCantidad();
+
+        String id = (String) UsuarioController.crearUsuario("Elena", 61.0).get("id");
+        UsuarioController.crearUsuario("", 61.0);
+        UsuarioController.obtenerUsuario("user_inexistente");
+        UsuarioController.obtenerUsuarioAsincrono(id).join();
+        UsuarioController.obtenerEstadisticas();
+
+        assertThat(metricas.instantanea(Operacion.CREAR, 201).getCantidad()).isEqualTo(creados + 1);
+        assertThat(metricas.instantanea(Operacion.CREAR, 201).getMaximoNs())
+            .isGreaterThanOrEqualTo(TimeUnit.MILLISECONDS.toNanos(50));
+        assertThat(metricas.instantanea(Operacion.CREAR, 400).getCantidad()).isEqualTo(rechazados + 1);
+        assertThat(metricas.instantanea(Operacion.CONSULTAR, 404).getCantidad()).isEqualTo(noEncontrados + 1);
+        assertThat(metricas.instantanea(Operacion.CONSULTAR, 200).getCantidad()).isPositive();
+
+        String texto = UsuarioController.exponerMetricas();
+        assertThat(texto).startsWith("# HELP healthtrack_latencia_segundos");
+        assertThat(texto).contains("# TYPE healthtrack_latencia_segundos summary");
+        assertThat(texto).containsPattern(
+            "healthtrack_latencia_segundos\\{operacion=\"crear\",status=\"201\",quantile=\"0.99\"} [0-9.E-]+\n");
+        assertThat(texto).contains("healthtrack_latencia_segundos_count{operacion=\"estadisticas\",status=\"200\"} ");
+        assertThat(texto).doesNotContain("status=\"otro\"");
+    }
+
+    @Test
+    @DisplayName("🔄 Los registros concurrentes no se pierden")
+    void registrosConcurrentes() throws InterruptedException {
+        int hilos = 4;
+        int porHilo = 100_000;
+        HistogramaLatencias histograma = new HistogramaLatencias();
+        ExecutorService executor = Executors.newFixedThreadPool(hilos);
+        CountDownLatch listo = new CountDownLatch(hilos);
+        for (int h = 0; h < hilos; h++) {
+            executor.submit(() -> {
+                for (int i = 0; i < porHilo; i++) {
+                    histograma.registrar(1_000_000);
+                }
+                listo.countDown();
+            });
+        }
+        listo.await();
+        executor.shutdown();
+
+        HistogramaLatencias.Instantanea instantanea = histograma.instantanea();
+        assertThat(instantanea.getCantidad()).isEqualTo(hilos * (long) porHilo);
+        assertThat(instantanea.percentil(50)).isCloseTo(1_000_000, withinPercentage(1.6));
+    }
+
+    @Test
+    @EnabledIfSystemProperty(named = "healthtrack.benchmark", matches = "true")
+    @DisplayName("📊 Benchmark: costo de registrar con varios hilos")
+    void benchmarkCostoRegistro() throws InterruptedException {
+        int hilos = 4;
+        int porHilo = 2_000_000;
+        HistogramaLatencias histograma = new HistogramaLatencias();
+        ExecutorService executor = Executors.newFixedThreadPool(hilos);
+        CountDownLatch listo = new CountDownLatch(hilos);
+        long inicio = System.nanoTime();
+        for (int h = 0; h < hilos; h++) {
+            executor.submit(() -> {
+                ThreadLocalRandom aleatorio = ThreadLocalRandom.current();
+                for (int i = 0; i < porHilo; i++) {
+                    histograma.registrar(aleatorio.nextLong(10_000, 200_000_000));
+                }
+                listo.countDown();
+            });
+        }
+        listo.await();
+        long duracion = System.nanoTime() - inicio;
+        executor.shutdown();
+        double nsPorRegistro = (double) duracion / (hilos * (long) porHilo);
+        HistogramaLatencias.Instantanea instantanea = histograma.instantanea();
+
+        System.out.println("\n📊 COSTO DE REGISTRO EN EL HISTOGRAMA:");
+        System.out.println("==================================");
+        System.out.println("🧵 Hilos: " + hilos + " x " + porHilo + " registros");
+        System.out.println("⚡ Costo por registro: " + String.format("%.1f", nsPorRegistro) + " ns");
+        System.out.println("📈 p50 / p99 / p99.9: " + instantanea.percentil(50) / 1_000_000 + " / "
+            + instantanea.percentil(99) / 1_000_000 + " / " + instantanea.percentil(99.9) / 1_000_000 + " ms");
+
+        assertThat(instantanea.getCantidad()).isEqualTo(hilos * (long) porHilo);
+        // Frente a 20-150 ms de latencia simulada por operación es despreciable
+        assertThat(nsPorRegistro).isLessThan(1_000.0);
+    }
+}
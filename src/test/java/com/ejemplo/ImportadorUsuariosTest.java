@@ -0,0 +1,161 @@
+package com.ejemplo;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+import org.junit.jupiter.api.io.TempDir;
+import static org.assertj.core.api.Assertions.*;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Pruebas de la importación masiva y benchmark de 1M (y 10M) filas
+ */
+public class ImportadorUsuariosTest {
+
+    @TempDir
+    Path directorio;
+
+    @Test
+    @DisplayName("✅ CSV: cabecera, comillas y rechazos con su número de línea entre tramos")
+    void importaCsv() throws IOException {
+        Path archivo = escribir("usuarios.csv",
+            "nombre,peso\r\n"
+            + "Ana,70.5\r\n"
+            + "\"Pérez, Juan\",80\n"
+            + "\n"
+            + "Sin peso\n"
+            + "Eva,-3\n"
+            + ",60\n"
+            + "\"Dice \"\"hola\"\"\",55.25\n"
+            + "Leo,setenta\n"
+            + "Mia,65.0");
+        List<String> cargados = Collections.synchronizedList(new ArrayList<>());
+        List<Double> fracciones = Collections.synchronizedList(new ArrayList<>());
+
+        // Tramos de 16 bytes: casi una línea por tarea
+        ImportadorUsuarios.Resultado resultado = new ImportadorUsuarios(ImportadorUsuarios.Formato.CSV, 16, 4)
+            .importar(archivo, lote -> {
+                for (int i = 0; i < lote.getCantidad(); i++) {
+                    cargados.add(lote.getNombre(i) + "=" + lote.getPeso(i));
+                }
+            }, progreso -> fracciones.add(progreso.getFraccion()));
+
+        assertThat(cargados).containsExactlyInAnyOrder("Ana=70.5", "Pérez, Juan=80.0", "Dice \"hola\"=55.25", "Mia=65.0");
+        assertThat(resultado.getImportados()).isEqualTo(4);
+        assertThat(resultado.getRechazados()).isEqualTo(4);
+        assertThat(resultado.getLineas()).isEqualTo(10);
+        assertThat(resultado.getRechazos()).extracting(Object::toString).containsExactly(
+            "línea 5: Falta la columna peso",
+            "línea 6: Peso debe ser mayor a 0",
+            "línea 7: Nombre requerido",
+            "línea 9: Peso inválido");
+        assertThat(fracciones).isNotEmpty().isSorted();
+        assertThat(fracciones.get(fracciones.size() - 1)).isEqualTo(1.0);
+    }
+
+    @Test
+    @DisplayName("✅ NDJSON: reutiliza el lector JSON e informa la columna del error")
+    void importaNdjson() throws IOException {
+        Path archivo = escribir("usuarios.ndjson",
+            "{\"nombre\":\"Ana\",\"peso\":70.5}\n"
+            + "{\"peso\":60}\n"
+            + "{\"nombre\":\"Eva\",\"peso\":}\n"
+            + "{\"nombre\":\"Ñu\",\"extra\":[1,2],\"peso\":7.25e1}\n");
+        List<String> cargados = Collections.synchronizedList(new ArrayList<>());
+
+        ImportadorUsuarios.Resultado resultado = new ImportadorUsuarios(ImportadorUsuarios.Formato.deArchivo(archivo))
+            .importar(archivo, lote -> {
+                for (int i = 0; i < lote.getCantidad(); i++) {
+                    cargados.add(lote.getNombre(i) + "=" + lote.getPeso(i));
+                }
+            }, null);
+
+        assertThat(cargados).containsExactly("Ana=70.5", "Ñu=72.5");
+        assertThat(resultado.getRechazos()).extracting(Object::toString).containsExactly(
+            "línea 2: Nombre requerido",
+            "línea 3: JSON inválido en la columna 24: se esperaba un número");
+    }
+
+    @Test
+    @DisplayName("✅ El controlador carga lo importado en el repositorio y las estadísticas")
+    void controladorImporta() throws IOException {
+        Path archivo = escribir("controlador.csv", "Ana,70\nLeo,80\nmal\n");
+        try {
+            RepositorioColumnar repositorio = new RepositorioColumnar();
+            UsuarioController.configurarRepositorio(repositorio);
+
+            ImportadorUsuarios.Resultado resultado = UsuarioController.importarUsuarios(archivo, null);
+
+            assertThat(resultado.getImportados()).isEqualTo(2);
+            assertThat(resultado.getRechazos()).extracting(ImportadorUsuarios.Rechazo::getLinea).containsExactly(3L);
+            assertThat(repositorio.tamano()).isEqualTo(2);
+            List<String> nombres = new ArrayList<>();
+            repositorio.recorrer((id, nombre, peso) -> nombres.add(nombre + "=" + peso));
+            assertThat(nombres).containsExactlyInAnyOrder("Ana=70.0", "Leo=80.0");
+            assertThat(UsuarioController.obtenerEstadisticasTipado().getPoblacion().getMedia()).isEqualTo(75.0);
+        } finally {
+            UsuarioController.configurarRepositorio(new RepositorioMapa());
+        }
+    }
+
+    @Test
+    @EnabledIfSystemProperty(named = "healthtrack.benchmark.grande", matches = "true")
+    @DisplayName("📊 Benchmark: importación de 1M filas CSV")
+    void benchmarkImportacionUnMillon() throws IOException {
+        medirImportacion(1_000_000);
+    }
+
+    @Test
+    @EnabledIfSystemProperty(named = "healthtrack.benchmark.grande", matches = "true")
+    @DisplayName("📊 Benchmark: importación de 10M filas CSV")
+    void benchmarkImportacionDiezMillones() throws IOException {
+        medirImportacion(10_000_000);
+    }
+
+    private void medirImportacion(int cantidad) throws IOException {
+        Path archivo = directorio.resolve("importacion-" + cantidad + ".csv");
+        try (BufferedWriter escritor = Files.newBufferedWriter(archivo, StandardCharsets.UTF_8)) {
+            escritor.write("nombre,peso\n");
+            for (int i = 1; i <= cantidad; i++) {
+                escritor.write("Usuario " + (i % 5_000) + "," + (50 + i % 60) + "." + (i % 10) + "\n");
+            }
+        }
+        try {
+            RepositorioColumnar repositorio = new RepositorioColumnar();
+            UsuarioController.configurarRepositorio(repositorio);
+
+            ImportadorUsuarios.Resultado resultado = UsuarioController.importarUsuarios(archivo, null);
+
+            System.out.println("\n📊 IMPORTACIÓN MASIVA (" + cantidad + " filas CSV):");
+            System.out.println("==================================");
+            System.out.println("💾 Tamaño del archivo: " + Files.size(archivo) / (1024 * 1024) + " MB");
+            System.out.println("🧵 Hilos: " + Runtime.getRuntime().availableProcessors());
+            System.out.println("⏱️  Duración: " + resultado.getDuracionMs() + " ms");
+            System.out.println("🚀 Filas/s: " + String.format("%.0f", resultado.getFilasPorSegundo()));
+            System.out.println("🔮 Proyección para 10M filas: "
+                + String.format("%.1f", 10_000_000 / resultado.getFilasPorSegundo()) + " s");
+
+            assertThat(resultado.getImportados()).isEqualTo(cantidad);
+            assertThat(resultado.getRechazados()).isZero();
+            assertThat(repositorio.tamano()).isEqualTo(cantidad);
+            assertThat(repositorio.nombresDistintos()).isEqualTo(5_000);
+            // Objetivo: 10M filas en menos de un minuto
+            assertThat(resultado.getFilasPorSegundo()).isGreaterThan(10_000_000 / 60.0);
+        } finally {
+            UsuarioController.configurarRepositorio(new RepositorioMapa());
+        }
+    }
+
+    private Path escribir(String nombre, String contenido) throws IOException {
+        Path archivo = directorio.resolve(nombre);
+        Files.write(archivo, contenido.getBytes(StandardCharsets.UTF_8));
+        return archivo;
+    }
+}
@@ -0,0 +1,298 @@
+package com.ejemplo;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+import static org.assertj.core.api.Assertions.*;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.stream.Collectors;
+
+/**
+ * Pruebas de los índices secundarios y benchmark contra el recorrido lineal
+ */
+public class IndicesUsuariosTest {
+
+    @Test
+    @DisplayName("✅ El rango de peso se pagina en orden y coincide con el recorrido lineal")
+    void paginaPorPeso() {
+        RepositorioMapa repositorio = new RepositorioMapa();
+        IndicesUsuarios indices = new IndicesUsuarios();
+        for (long id = 1; id <= 500; id++) {
+            double peso = 40 + id % 90;
+            repositorio.insertar(id, "Usuario " + id, peso);
+            indices.agregar(id, "Usuario " + id, peso);
+        }
+
+        List<IndicesUsuarios.Coincidencia> porIndice = paginarPeso(indices, repositorio, 60, 80, 7, true);
+        List<IndicesUsuarios.Coincidencia> porRecorrido = paginarPeso(indices, repositorio, 60, 80, 7, false);
+
+        assertThat(porIndice).hasSize(126); // 21 pesos enteros, 6 usuarios cada uno
+        assertThat(porIndice).extracting(IndicesUsuarios.Coincidencia::getPeso)
+            .isSorted()
+            .allMatch(p -> p >= 60 && p <= 80);
+        assertThat(porIndice).extracting(IndicesUsuarios.Coincidencia::getId)
+            .doesNotHaveDuplicates()
+            .containsExactlyElementsOf(porRecorrido.stream().map(IndicesUsuarios.Coincidencia::getId)
+                .collect(Collectors.toList()));
+    }
+
+    @Test
+    @DisplayName("✅ Un cursor anterior al rango no adelanta el mínimo ni el prefijo")
+    void cursorAnteriorAlRango() {
+        RepositorioMapa repositorio = new RepositorioMapa();
+        IndicesUsuarios indices = new IndicesUsuarios();
+        String[] nombres = {"Ana", "Beto", "Bruno", "Carla"};
+        for (long id = 1; id <= 40; id++) {
+            String nombre = nombres[(int) (id % nombres.length)];
+            repositorio.insertar(id, nombre, 40 + id);
+            indices.agregar(id, nombre, 40 + id);
+        }
+
+        // Cursor de una búsqueda de 40 a 50 kg reutilizado en otra de 60 a 70 kg
+        String cursorBajo = indices.buscarPorPeso(40, 50, null, 2, repositorio).getSiguiente();
+        IndicesUsuarios.Pagina pagina = indices.buscarPorPeso(60, 70, cursorBajo, 3, repositorio);
+        assertThat(pagina.getUsuarios()).extracting(IndicesUsuarios.Coincidencia::getPeso)
+            .containsExactly(60.0, 61.0, 62.0);
+        assertThat(IndicesUsuarios.escanearPorPeso(60, 70, cursorBajo, 3, repositorio).getUsuarios())
+            .extracting(IndicesUsuarios.Coincidencia::getPeso).containsExactly(60.0, 61.0, 62.0);
+
+        String cursorAna = indices.buscarPorNombre("a", null, 1, repositorio).getSiguiente();
+        assertThat(indices.buscarPorNombre("b", cursorAna, 100, repositorio).getUsuarios())
+            .hasSize(20)
+            .extracting(IndicesUsuarios.Coincidencia::getNombre).allMatch(n -> n.startsWith("B"));
+    }
+
+    @Test
+    @DisplayName("✅ El prefijo de nombre no distingue mayúsculas y se pagina por nombre e id")
+    void paginaPorNombre() {
+        RepositorioMapa repositorio = new RepositorioMapa();
+        IndicesUsuarios indices = new IndicesUsuarios();
+        String[] nombres = {"Ana", "ANDRÉS", "andrea", "Beto", "Anabel", "Ana"};
+        for (int i = 0; i < nombres.length; i++) {
+            repositorio.insertar(i + 1, nombres[i], 70);
+            indices.agregar(i + 1, nombres[i], 70);
+        }
+
+        IndicesUsuarios.Pagina primera = indices.buscarPorNombre("an", null, 3, repositorio);
+        IndicesUsuarios.Pagina segunda = indices.buscarPorNombre("an", primera.getSiguiente(), 3, repositorio);
+
+        assertThat(primera.getUsuarios()).extracting(IndicesUsuarios.Coincidencia::getNombre)
+            .containsExactly("Ana", "Ana", "Anabel");
+        assertThat(segunda.getUsuarios()).extracting(IndicesUsuarios.Coincidencia::getNombre)
+            .containsExactly("andrea", "ANDRÉS");
+        assertThat(segunda.getSiguiente()).isNull();
+        assertThat(IndicesUsuarios.escanearPorNombre("AN", primera.getSiguiente(), 3, repositorio).getUsuarios())
+            .extracting(IndicesUsuarios.Coincidencia::getNombre).containsExactly("andrea", "ANDRÉS");
+    }
+
+    @Test
+    @DisplayName("✅ Crear y actualizar desde el controlador mantienen los índices al día")
+    void controladorMantieneIndices() {
+        UsuarioController.configurarRepositorio(new RepositorioMapa());
+        try {
+            String id = UsuarioController.crearUsuarioTipado("Zulema Índice", 150.5).getId();
+            UsuarioController.crearUsuarioTipado("Zulema Otra", 151.5);
+
+            RespuestaBusqueda antes = UsuarioController.buscarPorPesoTipado(150, 151, null, 10);
+            assertThat(antes.getUsuarios()).extracting(IndicesUsuarios.Coincidencia::getNombre)
+                .containsExactly("Zulema Índice");
+
+            UsuarioController.actualizarPeso(id, 150.5);
+
+            assertThat(UsuarioController.buscarPorPesoTipado(150, 151, null, 10).getUsuarios()).isEmpty();
+            assertThat(UsuarioController.buscarPorPesoTipado(149, 150, null, 10).getUsuarios())
+                .extracting(IndicesUsuarios.Coincidencia::getPeso).containsExactly(149.5);
+            Map<String, Object> porNombre = UsuarioController.buscarPorNombre("zulema", null, 1);
+            assertThat(porNombre.get("status")).isEqualTo(200);
+            assertThat((List<?>) porNombre.get("usuarios")).hasSize(1);
+            assertThat(porNombre.get("siguiente")).isNotNull();
+        } finally {
+            UsuarioController.configurarRepositorio(new RepositorioMapa());
+        }
+    }
+
+    @Test
+    @DisplayName("❌ Límite, rango o cursor inválidos devuelven 400")
+    void parametrosInvalidos() {
+        assertThat(UsuarioController.buscarPorPesoTipado(80, 60, null, 10).getStatus()).isEqualTo(400);
+        assertThat(UsuarioController.buscarPorPesoTipado(60, 80, null, 0).getStatus()).isEqualTo(400);
+        assertThat(UsuarioController.buscarPorPesoTipado(60, 80, null, 1_001).getStatus()).isEqualTo(400);
+        assertThat(UsuarioController.buscarPorNombreTipado("", null, 10).getStatus()).isEqualTo(400);
+        RespuestaBusqueda cursor = UsuarioController.buscarPorPesoTipado(60, 80, "nAAAA", 10);
+        assertThat(cursor.getStatus()).isEqualTo(400);
+        assertThat(cursor.getError()).isEqualTo(IndicesUsuarios.CURSOR_INVALIDO);
+    }
+
+    @Test
+    @DisplayName("✅ Con actualizaciones concurrentes cada usuario aparece una sola vez")
+    void actualizacionesConcurrentes() throws InterruptedException {
+        UsuarioController.configurarRepositorio(new RepositorioColumnar());
+        UsuarioController.configurarLatenciaSimulada(false);
+        int cantidad = 2_000;
+        List<String> ids = new ArrayList<>();
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        try {
+            for (int i = 0; i < cantidad; i++) {
+                ids.add(UsuarioController.crearUsuarioTipado("Concurrente " + i, 500).getId());
+            }
+            AtomicBoolean enCurso = new AtomicBoolean(true);
+            AtomicBoolean duplicado = new AtomicBoolean();
+            for (int h = 0; h < 3; h++) {
+                executor.submit(() -> {
+                    ThreadLocalRandom aleatorio = ThreadLocalRandom.current();
+                    for (int i = 0; i < 20_000; i++) {
+                        UsuarioController.actualizarPesoTipado(ids.get(aleatorio.nextInt(cantidad)), 1);
+                    }
+                });
+            }
+            executor.submit(() -> {
+                while (enCurso.get()) {
+                    Set<Long> vistos = new HashSet<>();
+                    String cursor = null;
+                    do {
+                        RespuestaBusqueda pagina = UsuarioController.buscarPorPesoTipado(0, 1_000, cursor, 1_000);
+                        pagina.getUsuarios().forEach(u -> {
+                            if (!vistos.add(u.getId())) {
+                                duplicado.set(true);
+                            }
+                        });
+                        cursor = pagina.getSiguiente();
+                    } while (cursor != null);
+                }
+            });
+            Thread.sleep(100);
+            executor.shutdown();
+            enCurso.set(false);
+            assertThat(executor.awaitTermination(60, TimeUnit.SECONDS)).isTrue();
+            assertThat(duplicado).isFalse();
+
+            List<IndicesUsuarios.Coincidencia> todos = new ArrayList<>();
+            String cursor = null;
+            do {
+                RespuestaBusqueda pagina =
+                    UsuarioController.buscarPorPesoTipado(Double.NaN, Double.NaN, cursor, 1_000);
+                todos.addAll(pagina.getUsuarios());
+                cursor = pagina.getSiguiente();
+            } while (cursor != null);
+            assertThat(todos).hasSize(cantidad);
+            assertThat(todos).extracting(IndicesUsuarios.Coincidencia::getPeso).isSorted();
+            assertThat(todos.stream().mapToDouble(IndicesUsuarios.Coincidencia::getPeso).sum())
+                .isEqualTo(500.0 * cantidad - 60_000);
+        } finally {
+            executor.shutdownNow();
+            UsuarioController.configurarLatenciaSimulada(true);
+            UsuarioController.configurarRepositorio(new RepositorioMapa());
+        }
+    }
+
+    @Test
+    @DisplayName("✅ Con 1M usuarios el índice y el recorrido devuelven páginas completas")
+    void unMillonDeUsuarios() {
+        medirBusquedas(20, 1);
+    }
+
+    @Test
+    @EnabledIfSystemProperty(named = "healthtrack.benchmark", matches = "true")
+    @DisplayName("📊 Benchmark: búsquedas con índice vs recorrido lineal (1M usuarios)")
+    void benchmarkContraRecorrido() {
+        double[] tiempos = medirBusquedas(200, 5);
+
+        assertThat(tiempos[0] * 100).isLessThan(tiempos[1]);
+        assertThat(tiempos[2] * 100).isLessThan(tiempos[3]);
+    }
+
+    /**
+     * Indexa 1M usuarios y mide páginas de 50 con y sin índice
+     * @return microsegundos por página: peso con índice, peso con recorrido,
+     *         nombre con índice, nombre con recorrido
+     */
+    private static double[] medirBusquedas(int consultas, int recorridos) {
+        int cantidad = 1_000_000;
+        RepositorioColumnar repositorio = new RepositorioColumnar();
+        IndicesUsuarios indices = new IndicesUsuarios();
+        for (long id = 1; id <= cantidad; id++) {
+            String nombre = "Usuario " + id % 50_000;
+            double peso = 40 + (id * 7919 % 100_000) / 1_000.0;
+            repositorio.insertar(id, nombre, peso);
+        }
+        long inicioIndexado = System.nanoTime();
+        indices.reconstruir(repositorio);
+        long indexadoMs = (System.nanoTime() - inicioIndexado) / 1_000_000;
+
+        double pesoIndiceUs = medirPeso(indices, repositorio, consultas, true);
+        double pesoRecorridoUs = medirPeso(indices, repositorio, recorridos, false);
+        double nombreIndiceUs = medirNombre(indices, repositorio, consultas, true);
+        double nombreRecorridoUs = medirNombre(indices, repositorio, recorridos, false);
+
+        System.out.println("\n📊 ÍNDICES SECUNDARIOS (" + cantidad + " usuarios, páginas de 50):");
+        System.out.println("==================================");
+        System.out.println("🏗️  Construcción de índices: " + indexadoMs + " ms");
+        System.out.println("⚖️  Rango de peso con índice: " + String.format("%.1f", pesoIndiceUs) + " µs");
+        System.out.println("🐢 Rango de peso con recorrido: " + String.format("%.1f", pesoRecorridoUs) + " µs");
+        System.out.println("🔤 Prefijo de nombre con índice: " + String.format("%.1f", nombreIndiceUs) + " µs");
+        System.out.println("🐢 Prefijo de nombre con recorrido: " + String.format("%.1f", nombreRecorridoUs) + " µs");
+        System.out.println("🚀 Aceleración: x" + String.format("%.0f", pesoRecorridoUs / pesoIndiceUs) + " (peso), x"
+            + String.format("%.0f", nombreRecorridoUs / nombreIndiceUs) + " (nombre)");
+
+        assertThat(indices.tamano()).isEqualTo(cantidad);
+        return new double[] {pesoIndiceUs, pesoRecorridoUs, nombreIndiceUs, nombreRecorridoUs};
+    }
+
+    /**
+     * Tiempo medio de una página de 50 usuarios en un rango de 1 kg al azar
+     */
+    private static double medirPeso(IndicesUsuarios indices, RepositorioUsuarios repositorio, int consultas,
+            boolean conIndice) {
+        ThreadLocalRandom aleatorio = ThreadLocalRandom.current();
+        long inicio = System.nanoTime();
+        for (int i = 0; i < consultas; i++) {
+            double minimo = 40 + aleatorio.nextInt(99);
+            IndicesUsuarios.Pagina pagina = conIndice
+                ? indices.buscarPorPeso(minimo, minimo + 1, null, 50, repositorio)
+                : IndicesUsuarios.escanearPorPeso(minimo, minimo + 1, null, 50, repositorio);
+            assertThat(pagina.getUsuarios()).hasSize(50);
+        }
+        return (System.nanoTime() - inicio) / 1_000.0 / consultas;
+    }
+
+    /**
+     * Tiempo medio de una página de 50 usuarios con un prefijo de nombre al azar
+     */
+    private static double medirNombre(IndicesUsuarios indices, RepositorioUsuarios repositorio, int consultas,
+            boolean conIndice) {
+        ThreadLocalRandom aleatorio = ThreadLocalRandom.current();
+        long inicio = System.nanoTime();
+        for (int i = 0; i < consultas; i++) {
+            String prefijo = "usuario " + aleatorio.nextInt(1, 5_000);
+            IndicesUsuarios.Pagina pagina = conIndice
+                ? indices.buscarPorNombre(prefijo, null, 50, repositorio)
+                : IndicesUsuarios.escanearPorNombre(prefijo, null, 50, repositorio);
+            assertThat(pagina.getUsuarios()).hasSize(50);
+        }
+        return (System.nanoTime() - inicio) / 1_000.0 / consultas;
+    }
+
+    private static List<IndicesUsuarios.Coincidencia> paginarPeso(IndicesUsuarios indices,
+            RepositorioUsuarios repositorio, double minimo, double maximo, int limite, boolean conIndice) {
+        List<IndicesUsuarios.Coincidencia> todos = new ArrayList<>();
+        String cursor = null;
+        do {
+            IndicesUsuarios.Pagina pagina = conIndice
+                ? indices.buscarPorPeso(minimo, maximo, cursor, limite, repositorio)
+                : IndicesUsuarios.escanearPorPeso(minimo, maximo, cursor, limite, repositorio);
+            assertThat(pagina.getUsuarios()).hasSizeLessThanOrEqualTo(limite);
+            todos.addAll(pagina.getUsuarios());
+            cursor = pagina.getSiguiente();
+        } while (cursor != null);
+        return todos;
+    }
+}
@@ -0,0 +1,281 @@
+package com.ejemplo;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+import org.junit.jupiter.api.io.TempDir;
+import static org.assertj.core.api.Assertions.*;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Stream;
+
+/**
+ * Pruebas de instantáneas y benchmark de arranque en frío
+ */
+public class InstantaneaUsuariosTest {
+
+    @TempDir
+    Path directorio;
+
+    @Test
+    @DisplayName("✅ Debe guardar y cargar usuarios con nombres deduplicados")
+    void debeGuardarYCargar() throws IOException {
+        RepositorioMapa origen = new RepositorioMapa();
+        for (int i = 1; i <= 1_000; i++) {
+            origen.insertar(i, "Usuario " + (i % 10), 60.0 + i % 40);
+        }
+        Path archivo = directorio.resolve("usuarios.snap");
+
+        assertThat(InstantaneaUsuarios.escribir(origen, 42, archivo)).isEqualTo(1_000);
+
+        RepositorioColumnar columnar = new RepositorioColumnar();
+        RepositorioMapa mapa = new RepositorioMapa();
+        assertThat(InstantaneaUsuarios.cargar(archivo, columnar, null)).isEqualTo(42);
+        assertThat(InstantaneaUsuarios.cargar(archivo, mapa, null)).isEqualTo(42);
+
+        assertThat(columnar.tamano()).isEqualTo(1_000);
+        assertThat(columnar.nombresDistintos()).isEqualTo(10);
+        assertThat(mapa.tamano()).isEqualTo(1_000);
+        for (int i = 1; i <= 1_000; i += 37) {
+            assertThat(columnar.obtenerNombre(i)).isEqualTo("Usuario " + (i % 10));
+            assertThat(columnar.obtenerPeso(i)).isEqualTo(60.0 + i % 40);
+            assertThat(mapa.obtenerPeso(i)).isEqualTo(60.0 + i % 40);
+        }
+    }
+
+    @Test
+    @DisplayName("❌ Debe rechazar archivos que no son instantáneas")
+    void debeRechazarArchivoInvalido() throws IOException {
+        Path archivo = directorio.resolve("basura.snap");
+        Files.write(archivo, new byte[64]);
+
+        assertThatThrownBy(() -> InstantaneaUsuarios.cargar(archivo, new RepositorioMapa(), null))
+            .isInstanceOf(IOException.class);
+    }
+
+    @Test
+    @DisplayName("✅ Restaurar = instantánea + cola del registro posterior")
+    void debeRestaurarInstantaneaYCola() throws IOException {
+        Path instantanea = directorio.resolve("controlador.snap");
+        Path archivoRegistro = directorio.resolve("controlador.wal");
+        String antes;
+        String despues;
+        try (RegistroEscritura registro = new RegistroEscritura(archivoRegistro, RegistroEscritura.ModoDurabilidad.AGRUPADO)) {
+            UsuarioController.configurarRepositorio(new RepositorioColumnar());
+            UsuarioController.configurarRegistro(registro);
+            antes = (String) UsuarioController.crearUsuario("Antes", 80.0).get("id");
+            UsuarioController.actualizarPeso(antes, 79.0);
+
+            assertThat(UsuarioController.guardarInstantanea(instantanea)).isEqualTo(2);
+
+            UsuarioController.actualizarPeso(antes, 78.0);
+            despues = (String) UsuarioController.crearUsuario("Despues", 90.0).get("id");
+        } finally {
+            UsuarioController.configurarRegistro(null);
+        }
+
+        try {
+            UsuarioController.configurarRepositorio(new RepositorioColumnar());
+            assertThat(UsuarioController.restaurar(instantanea, archivoRegistro)).isEqualTo(4);
+
+            assertThat(UsuarioController.obtenerUsuario(antes).get("usuario"))
+                .isEqualTo(Map.of("nombre", "Antes", "peso", 78.0));
+            assertThat(UsuarioController.obtenerUsuario(despues).get("usuario"))
+                .isEqualTo(Map.of("nombre", "Despues", "peso", 90.0));
+        } finally {
+            UsuarioController.configurarRepositorio(new RepositorioMapa());
+        }
+    }
+
+    @Test
+    @DisplayName("✅ La instantánea conserva versiones e historial del registro que descarta")
+    void debeConservarVersionesEHistorial() throws IOException {
+        Path instantanea = directorio.resolve("versiones.snap");
+        Path archivoRegistro = directorio.resolve("versiones.wal");
+        String id;
+        try (RegistroEscritura registro = new RegistroEscritura(archivoRegistro, RegistroEscritura.ModoDurabilidad.AGRUPADO)) {
+            UsuarioController.configurarLatenciaSimulada(false);
+            UsuarioController.configurarRepositorio(new RepositorioColumnar());
+            UsuarioController.configurarRegistro(registro);
+            id = UsuarioController.crearUsuarioTipado("Versionado", 80.0).getId();
+            UsuarioController.actualizarPeso(id, 79.0);
+            UsuarioController.actualizarPeso(id, 78.0);
+            UsuarioController.guardarInstantanea(instantanea);
+        } finally {
+            UsuarioController.configurarRegistro(null);
+        }
+        // Los segmentos con el alta y las actualizaciones ya se borraron
+        try (Stream<Path> archivos = Files.list(directorio)) {
+            assertThat(archivos.map(ruta -> ruta.getFileName().toString()))
+                .containsExactlyInAnyOrder("versiones.snap", "versiones.wal");
+        }
+
+        try {
+            long numero = Long.parseLong(id.substring("user_".length()));
+            UsuarioController.historial().limpiar();
+            RepositorioColumnar restaurado = new RepositorioColumnar();
+            UsuarioController.configurarRepositorio(restaurado);
+            UsuarioController.restaurar(instantanea, archivoRegistro);
+
+            assertThat(restaurado.obtenerEstado(numero).getVersion()).isEqualTo(2);
+            assertThat(UsuarioController.historial().serie(numero).cantidad()).isEqualTo(3);
+            // Un If-Match anterior al reinicio no vuelve a coincidir
+            RespuestaActualizacion vieja = UsuarioController.actualizarPesoSiVersionTipado(id, 0, 70.0);
+            assertThat(vieja.getStatus()).isEqualTo(409);
+            assertThat(vieja.getVersion()).isEqualTo(2);
+        } finally {
+            UsuarioController.configurarLatenciaSimulada(true);
+            UsuarioController.configurarRepositorio(new RepositorioMapa());
+        }
+    }
+
+    @Test
+    @DisplayName("✅ Debe guardar nombres de más de 32.767 bytes")
+    void debeGuardarNombresLargos() throws IOException {
+        String largo = "ñ".repeat(20_000);
+        RepositorioMapa origen = new RepositorioMapa();
+        origen.insertar(1, largo, 70.0);
+        Path archivo = directorio.resolve("largo.snap");
+        InstantaneaUsuarios.escribir(origen, 0, archivo);
+
+        RepositorioMapa destino = new RepositorioMapa();
+        InstantaneaUsuarios.cargar(archivo, destino, null);
+        assertThat(destino.obtenerNombre(1)).isEqualTo(largo);
+    }
+
+    @Test
+    @DisplayName("❌ El guardado periódico sobrevive a errores inesperados")
+    void programadorSobreviveAErrores() throws InterruptedException {
+        AtomicBoolean roto = new AtomicBoolean();
+        AtomicInteger intentos = new AtomicInteger();
+        UsuarioController.configurarRepositorio(new RepositorioMapa() {
+            @Override
+            public void recorrer(VisitanteUsuario visitante) {
+                if (roto.get()) {
+                    intentos.incrementAndGet();
+                    throw new IllegalStateException("recorrido roto");
+                }
+                super.recorrer(visitante);
+            }
+        });
+        roto.set(true);
+        try (ProgramadorInstantaneas programador = new ProgramadorInstantaneas(
+                directorio.resolve("roto.snap"), 5, TimeUnit.MILLISECONDS)) {
+            long limite = System.nanoTime() + TimeUnit.SECONDS.toNanos(10);
+            while (intentos.get() < 3 && System.nanoTime() < limite) {
+                Thread.sleep(5);
+            }
+            assertThat(intentos.get()).isGreaterThanOrEqualTo(3);
+            assertThat(programador.getUltimoError()).isInstanceOf(IllegalStateException.class);
+            assertThat(programador.getUltimoLsn()).isEqualTo(-1);
+        } finally {
+            UsuarioController.configurarRepositorio(new RepositorioMapa());
+        }
+    }
+
+    @Test
+    @DisplayName("🔄 Instantáneas durante escrituras concurrentes no pierden cambios")
+    void instantaneasConcurrentes() throws Exception {
+        Path instantanea = directorio.resolve("concurrente.snap");
+        Path archivoRegistro = directorio.resolve("concurrente.wal");
+        RepositorioColumnar vivo = new RepositorioColumnar();
+        ExecutorService escritores = Executors.newFixedThreadPool(4);
+        try (RegistroEscritura registro = new RegistroEscritura(archivoRegistro, RegistroEscritura.ModoDurabilidad.ASINCRONO)) {
+            UsuarioController.configurarLatenciaSimulada(false);
+            UsuarioController.configurarRepositorio(vivo);
+            UsuarioController.configurarRegistro(registro);
+            List<Future<?>> tareas = new ArrayList<>();
+            for (int t = 0; t < 4; t++) {
+                tareas.add(escritores.submit(() -> {
+                    for (int i = 0; i < 500; i++) {
+                        String id = (String) UsuarioController.crearUsuario("Concurrente", 70.0 + i % 10).get("id");
+                        UsuarioController.actualizarPeso(id, 60.0 + i % 20);
+                    }
+                }));
+            }
+            while (!tareas.stream().allMatch(Future::isDone)) {
+                UsuarioController.guardarInstantanea(instantanea);
+            }
+            for (Future<?> tarea : tareas) {
+                tarea.get();
+            }
+            // Una instantánea tomada con un cambio aún sin aplicar se sella antes de él
+            // y conserva su segmento: la última, ya sin escritores, los cubre todos
+            UsuarioController.guardarInstantanea(instantanea);
+        } finally {
+            escritores.shutdownNow();
+            UsuarioController.configurarRegistro(null);
+            UsuarioController.configurarLatenciaSimulada(true);
+        }
+        // Los segmentos cubiertos por la última instantánea ya no existen
+        try (Stream<Path> archivos = Files.list(directorio)) {
+            assertThat(archivos.map(ruta -> ruta.getFileName().toString()))
+                .containsExactlyInAnyOrder("concurrente.snap", "concurrente.wal");
+        }
+
+        try {
+            RepositorioColumnar restaurado = new RepositorioColumnar();
+            UsuarioController.configurarRepositorio(restaurado);
+            UsuarioController.restaurar(instantanea, archivoRegistro);
+
+            assertThat(restaurado.tamano()).isEqualTo(vivo.tamano()).isEqualTo(2_000);
+            vivo.recorrer((id, nombre, peso) -> assertThat(restaurado.obtenerPeso(id)).isEqualTo(peso));
+        } finally {
+            UsuarioController.configurarRepositorio(new RepositorioMapa());
+        }
+    }
+
+    @Test
+    @DisplayName("📊 Benchmark: arranque en frío con 1M usuarios")
+    void benchmarkArranqueUnMillon() throws IOException {
+        medirArranque(1_000_000);
+    }
+
+    @Test
+    @EnabledIfSystemProperty(named = "healthtrack.benchmark.grande", matches = "true")
+    @DisplayName("📊 Benchmark: arranque en frío con 10M usuarios")
+    void benchmarkArranqueDiezMillones() throws IOException {
+        medirArranque(10_000_000);
+    }
+
+    private void medirArranque(int cantidad) throws IOException {
+        Path archivo = directorio.resolve("arranque-" + cantidad + ".snap");
+        long escritos;
+        long inicioEscritura = System.nanoTime();
+        {
+            RepositorioColumnar origen = new RepositorioColumnar();
+            for (int i = 1; i <= cantidad; i++) {
+                origen.insertar(i, "Usuario " + (i % 5_000), 50.0 + i % 60);
+            }
+            inicioEscritura = System.nanoTime();
+            escritos = InstantaneaUsuarios.escribir(origen, 0, archivo);
+        }
+        long duracionEscritura = (System.nanoTime() - inicioEscritura) / 1_000_000;
+
+        long inicioCarga = System.nanoTime();
+        RepositorioColumnar destino = new RepositorioColumnar();
+        InstantaneaUsuarios.cargar(archivo, destino, null);
+        double pesoConsultado = destino.obtenerPeso(cantidad / 2);
+        long duracionCarga = (System.nanoTime() - inicioCarga) / 1_000_000;
+
+        System.out.println("\n📊 ARRANQUE DESDE INSTANTÁNEA (" + cantidad + " usuarios):");
+        System.out.println("==================================");
+        System.out.println("💾 Tamaño del archivo: " + Files.size(archivo) / (1024 * 1024) + " MB");
+        System.out.println("✍️  Escritura: " + duracionEscritura + " ms");
+        System.out.println("⏱️  Carga hasta primera consulta: " + duracionCarga + " ms");
+
+        assertThat(escritos).isEqualTo(cantidad);
+        assertThat(destino.tamano()).isEqualTo(cantidad);
+        assertThat(pesoConsultado).isEqualTo(50.0 + (cantidad / 2) % 60);
+    }
+}
@@ -0,0 +1,207 @@
+package com.ejemplo;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+import static org.assertj.core.api.Assertions.*;
+import java.lang.management.ManagementFactory;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Locale;
+import java.util.Random;
+
+/**
+ * Pruebas del escritor y lector JSON en streaming y comparación con la serialización ingenua
+ */
+public class JsonTest {
+
+    private final EscritorJson escritor = new EscritorJson();
+    private final LectorJson lector = new LectorJson();
+
+    @Test
+    @DisplayName("✅ Escribe las respuestas con la forma de la API")
+    void escribeRespuestas() {
+        assertThat(escribir(new RespuestaUsuario(201, "user_7", "Ana", 70.5, 1_700_000_000_000L)))
+            .isEqualTo("{\"id\":\"user_7\",\"usuario\":{\"nombre\":\"Ana\",\"peso\":70.5},"
+                + "\"status\":201,\"timestamp\":1700000000000}");
+        assertThat(escribir(new RespuestaActualizacion("Ana", 70.5, 69.5, 75.0, 1L)))
+            .isEqualTo("{\"usuario\":{\"nombre\":\"Ana\",\"pesoAnterior\":70.5,\"pesoActual\":69.5,"
+                + "\"esperado\":75.0},\"status\":200,\"timestamp\":1}");
+        assertThat(escribir(RespuestaUsuario.error("Usuario no encontrado", 404)))
+            .isEqualTo("{\"error\":\"Usuario no encontrado\",\"status\":404}");
+
+        String estadisticas = escribir(UsuarioController.obtenerEstadisticasTipado());
+        assertThat(estadisticas).startsWith("{\"totalUsuarios\":").contains("\"poblacion\":{\"cantidad\":");
+    }
+
+    @Test
+    @DisplayName("✅ Los double vuelven a leerse como el mismo valor")
+    void doublesIdaYVuelta() {
+        Random aleatorio = new Random(42);
+        ByteBuffer buffer = ByteBuffer.allocateDirect(256);
+        double[] fijos = {0.0, -0.5, 70.0, 70.1, 0.1 + 0.2, 1e-7, 123456789.125, 1e300, -Double.MIN_VALUE};
+        for (int i = 0; i < 20_000; i++) {
+            double valor = i < fijos.length ? fijos[i]
+                : i % 2 == 0 ? Math.round(aleatorio.nextDouble() * 2_000) / 10.0 : aleatorio.nextGaussian() * 1e3;
+            buffer.clear();
+            escritor.iniciar(buffer).inicioObjeto().campo("peso").valor(valor).finObjeto();
+            buffer.flip();
+            assertThat(lector.iniciar(buffer).leerPeso()).isEqualTo(valor);
+        }
+        assertThat(escribirValor(70.0)).isEqualTo("70.0");
+        assertThat(escribirValor(70.1)).isEqualTo("70.1");
+        assertThat(escribirValor(Double.NaN)).isEqualTo("null");
+    }
+
+    @Test
+    @DisplayName("✅ Cadenas UTF-8 y escapes de ida y vuelta")
+    void cadenasIdaYVuelta() {
+        String nombre = "Ñandú \"Rápido\" \\ \n\t\u0001 😀";
+        ByteBuffer buffer = ByteBuffer.allocateDirect(256);
+        escritor.iniciar(buffer).inicioObjeto().campo("nombre").valor(nombre).campo("peso").valor(61.25).finObjeto();
+        buffer.flip();
+        byte[] bytes = new byte[buffer.remaining()];
+        buffer.duplicate().get(bytes);
+
+        assertThat(new String(bytes, StandardCharsets.UTF_8)).contains("\\\"Rápido\\\"", "\\u0001", "😀");
+        SolicitudCreacion solicitud = lector.iniciar(buffer).leerCreacion();
+        assertThat(solicitud.getNombre()).isEqualTo(nombre);
+        assertThat(solicitud.getPeso()).isEqualTo(61.25);
+    }
+
+    @Test
+    @DisplayName("✅ El lector salta campos desconocidos y rechaza JSON inválido")
+    void lectorTolerante() {
+        SolicitudCreacion solicitud = leerCreacion(
+            " { \"extra\" : {\"a\":[1,2,{\"b\":\"}\"}]}, \"peso\":7.25E1 ,\"activo\":true,\"nombre\":\"Eva\\u00f1\"}\n");
+        assertThat(solicitud.getNombre()).isEqualTo("Evañ");
+        assertThat(solicitud.getPeso()).isEqualTo(72.5);
+        assertThat(leerCreacion("{\"peso\":-0.5}").getNombre()).isNull();
+        assertThat(leerCreacion("{}").getPeso()).isNaN();
+        assertThat(leerCreacion("{\"peso\":0.30000000000000004}").getPeso()).isEqualTo(0.1 + 0.2);
+
+        for (String invalido : new String[] {"", "{", "{\"peso\" 1}", "{\"peso\":}", "{\"peso\":1,}", "{} x",
+                "{\"peso\":1e}", "[1]"}) {
+            assertThatThrownBy(() -> leerCreacion(invalido))
+                .as(invalido)
+                .isInstanceOf(IllegalArgumentException.class)
+                .hasMessageStartingWith("JSON inválido");
+        }
+    }
+
+    @Test
+    @DisplayName("✅ El pool reutiliza los buffers devueltos")
+    void poolReutiliza() {
+        PoolBuffers pool = new PoolBuffers(2, 1024);
+        ByteBuffer primero = pool.tomar();
+        primero.put((byte) 1);
+        pool.devolver(primero);
+        ByteBuffer segundo = pool.tomar();
+
+        assertThat(segundo).isSameAs(primero);
+        assertThat(segundo.isDirect()).isTrue();
+        assertThat(segundo.position()).isZero();
+        assertThat(pool.tomar()).isNotSameAs(primero);
+    }
+
+    @Test
+    @DisplayName("✅ La serialización en streaming coincide con la ingenua y no asigna memoria")
+    void streamingSinAsignaciones() {
+        com.sun.management.ThreadMXBean hilos = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        long hilo = Thread.currentThread().getId();
+        RespuestaUsuario respuesta = new RespuestaUsuario(200, "user_123456789", "María José", 72.35,
+            1_700_000_000_000L);
+        PoolBuffers pool = new PoolBuffers(4, 4096);
+        assertThat(escribir(respuesta)).isEqualTo(new String(formatear(respuesta), StandardCharsets.UTF_8));
+
+        int iteraciones = 100_000;
+        long sumidero = 0;
+        double bytesPorRespuesta = 0;
+        // La última pasada se mide, con el JIT ya caliente
+        for (int pasada = 0; pasada < 3; pasada++) {
+            long antes = hilos.getThreadAllocatedBytes(hilo);
+            for (int i = 0; i < iteraciones; i++) {
+                ByteBuffer buffer = pool.tomar();
+                respuesta.escribirJson(escritor.iniciar(buffer));
+                sumidero += buffer.position();
+                pool.devolver(buffer);
+            }
+            bytesPorRespuesta = (double) (hilos.getThreadAllocatedBytes(hilo) - antes) / iteraciones;
+        }
+
+        assertThat(sumidero).isPositive();
+        assertThat(bytesPorRespuesta).isLessThanOrEqualTo(1.0);
+    }
+
+    @Test
+    @EnabledIfSystemProperty(named = "healthtrack.benchmark", matches = "true")
+    @DisplayName("📊 Benchmark: streaming vs StringBuilder vs String.format")
+    void benchmarkSerializacion() {
+        com.sun.management.ThreadMXBean hilos = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        long hilo = Thread.currentThread().getId();
+        RespuestaUsuario respuesta = new RespuestaUsuario(200, "user_123456789", "María José", 72.35,
+            System.currentTimeMillis());
+        PoolBuffers pool = new PoolBuffers(4, 4096);
+        int iteraciones = 300_000;
+        String[] nombres = {"String.format", "StringBuilder (Json + mapa)", "EscritorJson (buffer directo)"};
+        double[] bytesPorRespuesta = new double[3];
+        double[] nsPorRespuesta = new double[3];
+        long sumidero = 0;
+
+        // Varias pasadas: las primeras calientan el JIT, la última se mide
+        for (int pasada = 0; pasada < 4; pasada++) {
+            for (int forma = 0; forma < 3; forma++) {
+                long antes = hilos.getThreadAllocatedBytes(hilo);
+                long inicio = System.nanoTime();
+                for (int i = 0; i < iteraciones; i++) {
+                    if (forma == 0) {
+                        sumidero += formatear(respuesta).length;
+                    } else if (forma == 1) {
+                        sumidero += Json.aJson(respuesta.aMapa()).getBytes(StandardCharsets.UTF_8).length;
+                    } else {
+                        ByteBuffer buffer = pool.tomar();
+                        respuesta.escribirJson(escritor.iniciar(buffer));
+                        sumidero += buffer.position();
+                        pool.devolver(buffer);
+                    }
+                }
+                nsPorRespuesta[forma] = (double) (System.nanoTime() - inicio) / iteraciones;
+                bytesPorRespuesta[forma] = (double) (hilos.getThreadAllocatedBytes(hilo) - antes) / iteraciones;
+            }
+        }
+
+        System.out.println("\n📊 SERIALIZACIÓN JSON DE UNA RESPUESTA DE USUARIO:");
+        System.out.println("==================================");
+        for (int forma = 0; forma < 3; forma++) {
+            System.out.println("🧾 " + nombres[forma] + ": " + String.format("%.0f", nsPorRespuesta[forma])
+                + " ns, " + String.format("%.1f", bytesPorRespuesta[forma]) + " bytes asignados");
+        }
+
+        assertThat(sumidero).isPositive();
+        assertThat(bytesPorRespuesta[2]).isLessThanOrEqualTo(1.0);
+        assertThat(nsPorRespuesta[2]).isLessThan(nsPorRespuesta[0]);
+    }
+
+    private static byte[] formatear(RespuestaUsuario respuesta) {
+        return String.format(Locale.ROOT,
+            "{\"id\":\"%s\",\"usuario\":{\"nombre\":\"%s\",\"peso\":%s},\"status\":%d,\"timestamp\":%d}",
+            respuesta.getId(), respuesta.getNombre(), respuesta.getPeso(), respuesta.getStatus(),
+            respuesta.getTimestamp()).getBytes(StandardCharsets.UTF_8);
+    }
+
+    private String escribir(Respuesta respuesta) {
+        ByteBuffer buffer = ByteBuffer.allocate(4096);
+        respuesta.escribirJson(escritor.iniciar(buffer));
+        return new String(buffer.array(), 0, buffer.position(), StandardCharsets.UTF_8);
+    }
+
+    private String escribirValor(double valor) {
+        ByteBuffer buffer = ByteBuffer.allocate(64);
+        escritor.iniciar(buffer).valor(valor);
+        return new String(buffer.array(), 0, buffer.position(), StandardCharsets.UTF_8);
+    }
+
+    private SolicitudCreacion leerCreacion(String texto) {
+        return lector.iniciar(ByteBuffer.wrap(texto.getBytes(StandardCharsets.UTF_8))).leerCreacion();
+    }
+}
@@ -0,0 +1,417 @@
+package com.ejemplo;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.io.TempDir;
+import static org.assertj.core.api.Assertions.*;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Pruebas y benchmark del registro de escritura anticipada
+ */
+public class RegistroEscrituraTest {
+
+    @TempDir
+    Path directorio;
+
+    @Test
+    @DisplayName("✅ Debe reproducir las entradas escritas")
+    void debeReproducirEntradas() throws IOException {
+        Path archivo = directorio.resolve("usuarios.wal");
+        try (RegistroEscritura registro = new RegistroEscritura(archivo, RegistroEscritura.ModoDurabilidad.AGRUPADO)) {
+            registro.registrarCreacion(1, "Ana García", 65.5);
+            registro.registrarCreacion(2, "José Pérez", 80.0);
+            registro.registrarActualizacion(1, 64.5);
+        }
+
+        RepositorioColumnar repositorio = new RepositorioColumnar();
+        List<RegistroEscritura.Entrada> entradas = new ArrayList<>();
+        long ultimo = RegistroEscritura.reproducir(archivo, 0, entrada -> {
+            entradas.add(entrada);
+            entrada.aplicar(repositorio);
+        });
+
+        assertThat(ultimo).isEqualTo(3);
+        assertThat(entradas).extracting(RegistroEscritura.Entrada::getLsn).containsExactly(1L, 2L, 3L);
+        assertThat(repositorio.obtenerNombre(2)).isEqualTo("José Pérez");
+        // Las actualizaciones guardan el peso resultante: reaplicarlas es idempotente
+        assertThat(repositorio.obtenerPeso(1)).isEqualTo(64.5);
+        RegistroEscritura.reproducir(archivo, 0, entrada -> entrada.aplicar(repositorio));
+        assertThat(repositorio.obtenerPeso(1)).isEqualTo(64.5);
+    }
+
+    @Test
+    @DisplayName("✅ Rotar cierra el segmento activo y conserva la numeración de LSN")
+    void debeRotarSegmentos() throws IOException {
+        Path archivo = directorio.resolve("segmentos.wal");
+        try (RegistroEscritura registro = new RegistroEscritura(archivo, RegistroEscritura.ModoDurabilidad.AGRUPADO)) {
+            registro.registrarCreacion(1, "Ana", 60.0);
+            registro.registrarActualizacion(1, 61.0);
+            assertThat(registro.rotar()).isEqualTo(2);
+            // Sin entradas nuevas no se crea otro segmento
+            assertThat(registro.rotar()).isEqualTo(2);
+            registro.registrarCreacion(2, "Luis", 70.0);
+            assertThat(registro.rotar()).isEqualTo(3);
+            registro.registrarActualizacion(2, 71.0);
+        }
+        assertThat(Files.exists(directorio.resolve("segmentos.wal.00000000000000000002"))).isTrue();
+        assertThat(Files.exists(directorio.resolve("segmentos.wal.00000000000000000003"))).isTrue();
+
+        List<Long> lsns = new ArrayList<>();
+        assertThat(RegistroEscritura.reproducir(archivo, 0, entrada -> lsns.add(entrada.getLsn()))).isEqualTo(4);
+        assertThat(lsns).containsExactly(1L, 2L, 3L, 4L);
+        lsns.clear();
+        RegistroEscritura.reproducir(archivo, 2, entrada -> lsns.add(entrada.getLsn()));
+        assertThat(lsns).containsExactly(3L, 4L);
+
+        try (RegistroEscritura registro = new RegistroEscritura(archivo, RegistroEscritura.ModoDurabilidad.POR_ESCRITURA)) {
+            assertThat(registro.descartarHasta(3)).isEqualTo(2);
+            assertThat(registro.rotar()).isEqualTo(4);
+            assertThat(registro.descartarHasta(4)).isEqualTo(1);
+        }
+        // Solo queda el segmento activo, vacío salvo su marca de inicio: la numeración sigue
+        try (RegistroEscritura registro = new RegistroEscritura(archivo, RegistroEscritura.ModoDurabilidad.POR_ESCRITURA)) {
+            assertThat(registro.ultimoLsn()).isEqualTo(4);
+            assertThat(registro.registrarActualizacion(2, 72.0)).isEqualTo(5);
+        }
+        lsns.clear();
+        assertThat(RegistroEscritura.reproducir(archivo, 0, entrada -> lsns.add(entrada.getLsn()))).isEqualTo(5);
+        assertThat(lsns).containsExactly(5L);
+    }
+
+    @Test
+    @DisplayName("✅ Debe descartar una cola incompleta y continuar los LSN")
+    void debeDescartarColaIncompleta() throws IOException {
+        Path archivo = directorio.resolve("cola.wal");
+        try (RegistroEscritura registro = new RegistroEscritura(archivo, RegistroEscritura.ModoDurabilidad.POR_ESCRITURA)) {
+            registro.registrarCreacion(1, "Ana", 60.0);
+            registro.registrarCreacion(2, "Luis", 70.0);
+        }
+        // Simula una escritura interrumpida a mitad de entrada
+        try (FileChannel canal = FileChannel.open(archivo, StandardOpenOption.WRITE, StandardOpenOption.APPEND)) {
+            canal.write(ByteBuffer.wrap(new byte[] { 0, 0, 0, 40, 1, 2, 3 }));
+        }
+
+        try (RegistroEscritura registro = new RegistroEscritura(archivo, RegistroEscritura.ModoDurabilidad.ASINCRONO)) {
+            assertThat(registro.ultimoLsn()).isEqualTo(2);
+            assertThat(registro.registrarActualizacion(1, 65.0)).isEqualTo(3);
+        }
+
+        AtomicInteger cantidad = new AtomicInteger();
+        assertThat(RegistroEscritura.reproducir(archivo, 1, entrada -> cantidad.incrementAndGet())).isEqualTo(3);
+        assertThat(cantidad.get()).isEqualTo(2);
+    }
+
+    @Test
+    @DisplayName("❌ Una escritura fallida inutiliza el registro sin dejar entradas a medias")
+    void escrituraFallidaInutilizaElRegistro() throws IOException {
+        Path archivo = directorio.resolve("fallido.wal");
+        RegistroEscritura registro = new RegistroEscritura(archivo, RegistroEscritura.ModoDurabilidad.POR_ESCRITURA);
+        try {
+            registro.registrarCreacion(1, "Ana", 60.0);
+            // Un hilo interrumpido cierra el canal a mitad de la escritura
+            Thread.currentThread().interrupt();
+            assertThatThrownBy(() -> registro.registrarCreacion(2, "Luis", 70.0)).isInstanceOf(IOException.class);
+            assertThat(Thread.interrupted()).isTrue();
+
+            assertThat(registro.ultimoLsn()).isEqualTo(1);
+            assertThatThrownBy(() -> registro.registrarActualizacion(1, 59.0))
+                .isInstanceOf(IOException.class)
+                .hasMessageContaining("falló previamente");
+        } finally {
+            registro.close();
+        }
+
+        AtomicInteger cantidad = new AtomicInteger();
+        assertThat(RegistroEscritura.reproducir(archivo, 0, entrada -> cantidad.incrementAndGet())).isEqualTo(1);
+        assertThat(cantidad.get()).isEqualTo(1);
+    }
+
+    @Test
+    @DisplayName("✅ El controlador se recupera tras un reinicio")
+    void controladorSeRecuperaDesdeRegistro() throws IOException {
+        Path archivo = directorio.resolve("controlador.wal");
+        String id;
+        try (RegistroEscritura registro = new RegistroEscritura(archivo, RegistroEscritura.ModoDurabilidad.AGRUPADO)) {
+            UsuarioController.configurarRegistro(registro);
+            id = (String) UsuarioController.crearUsuario("Persistente", 90.0).get("id");
+            UsuarioController.actualizarPeso(id, 85.0);
+        } finally {
+            UsuarioController.configurarRegistro(null);
+        }
+
+        // Un nuevo repositorio simula el arranque en frío
+        try {
+            UsuarioController.configurarRepositorio(new RepositorioColumnar());
+            assertThat(UsuarioController.obtenerUsuario(id).get("status")).isEqualTo(404);
+
+            assertThat(UsuarioController.restaurarDesdeRegistro(archivo, 0)).isEqualTo(2);
+
+            Map<String, Object> resultado = UsuarioController.obtenerUsuario(id);
+            assertThat(resultado.get("status")).isEqualTo(200);
+            assertThat(resultado.get("usuario")).isEqualTo(Map.of("nombre", "Persistente", "peso", 89.0));
+            String nuevoId = (String) UsuarioController.crearUsuario("Posterior", 70.0).get("id");
+            assertThat(nuevoId).isNotEqualTo(id);
+        } finally {
+            UsuarioController.configurarRepositorio(new RepositorioMapa());
+        }
+    }
+
+    @Test
+    @DisplayName("✅ La API asíncrona responde desde el fsync compartido sin bloquear trabajadores")
+    void apiAsincronaConfirmaSinBloquear() throws IOException {
+        Path archivo = directorio.resolve("asincrono.wal");
+        List<CompletableFuture<Map<String, Object>>> respuestas = new ArrayList<>();
+        try (RegistroEscritura registro = new RegistroEscritura(archivo, RegistroEscritura.ModoDurabilidad.AGRUPADO)) {
+            long lsn = registro.agregarActualizacion(1, 70.0);
+            CompletableFuture<Void> confirmacion = registro.confirmarAsincrono(lsn);
+            confirmacion.join();
+            assertThat(registro.confirmarAsincrono(lsn)).isDone();
+
+            UsuarioController.configurarRegistro(registro);
+            UsuarioController.configurarLatenciaSimulada(false);
+            String id = (String) UsuarioController.crearUsuario("Asincrono", 80.0).get("id");
+            for (int i = 0; i < 2_000; i++) {
+                respuestas.add(i % 2 == 0
+                    ? UsuarioController.actualizarPesoAsincrono(id, 70.0 + i % 10)
+                    : UsuarioController.crearUsuarioAsincrono("Asincrono", 70.0));
+            }
+            CompletableFuture.allOf(respuestas.toArray(new CompletableFuture<?>[0])).join();
+        } finally {
+            UsuarioController.configurarRegistro(null);
+            UsuarioController.configurarLatenciaSimulada(true);
+        }
+
+        assertThat(respuestas).allSatisfy(respuesta ->
+            assertThat(respuesta.join().get("status")).isIn(200, 201));
+        // Entrada inicial, alta síncrona y las 2.000 solicitudes asíncronas
+        assertThat(RegistroEscritura.reproducir(archivo, 0, entrada -> { })).isEqualTo(2_002);
+    }
+
+    @Test
+    @DisplayName("✅ Las actualizaciones versionadas se reproducen en cualquier orden")
+    void reproduceVersionesFueraDeOrden() throws IOException {
+        Path archivo = directorio.resolve("versiones.wal");
+        try (RegistroEscritura registro = new RegistroEscritura(archivo, RegistroEscritura.ModoDurabilidad.AGRUPADO)) {
+            registro.registrarCreacion(1, "Ana", 70.0);
+            // Dos cambios concurrentes escritos al revés de como se aplicaron
+            registro.registrarActualizacion(1, 68.0, 2);
+            registro.registrarActualizacion(1, 69.0, 1);
+        }
+
+        for (RepositorioUsuarios repositorio : List.of(new RepositorioColumnar(), new RepositorioMapa(),
+                new RepositorioParticionado(2, RepositorioMapa::new))) {
+            RegistroEscritura.reproducir(archivo, 0, entrada -> entrada.aplicar(repositorio));
+
+            Usuario.EstadoPeso estado = repositorio.obtenerEstado(1);
+            assertThat(estado.getPeso()).isEqualTo(68.0);
+            assertThat(estado.getVersion()).isEqualTo(2);
+        }
+    }
+
+    @Test
+    @DisplayName("🔄 Cambios concurrentes del mismo usuario se reproducen con la versión final")
+    void cambiosConcurrentesDelMismoUsuario() throws Exception {
+        Path archivo = directorio.resolve("concurrentes.wal");
+        RepositorioColumnar vivo = new RepositorioColumnar();
+        List<String> ids = new ArrayList<>();
+        ExecutorService escritores = Executors.newFixedThreadPool(4);
+        try (RegistroEscritura registro = new RegistroEscritura(archivo, RegistroEscritura.ModoDurabilidad.ASINCRONO)) {
+            UsuarioController.configurarLatenciaSimulada(false);
+            UsuarioController.configurarRepositorio(vivo);
+            UsuarioController.configurarRegistro(registro);
+            for (int i = 0; i < 8; i++) {
+                ids.add(UsuarioController.crearUsuarioTipado("Disputado", 10_000).getId());
+            }
+            List<Future<?>> tareas = new ArrayList<>();
+            for (int t = 0; t < 4; t++) {
+                tareas.add(escritores.submit(() -> {
+                    for (int i = 0; i < 1_000; i++) {
+                        RespuestaActualizacion respuesta =
+                            UsuarioController.actualizarPesoTipado(ids.get(i % ids.size()), 1);
+                        assertThat(respuesta.getPesoActual()).isEqualTo(respuesta.getPesoAnterior() - 1);
+                    }
+                }));
+            }
+            for (Future<?> tarea : tareas) {
+                tarea.get();
+            }
+        } finally {
+            escritores.shutdownNow();
+            UsuarioController.configurarRegistro(null);
+            UsuarioController.configurarLatenciaSimulada(true);
+        }
+
+        try {
+            RepositorioColumnar restaurado = new RepositorioColumnar();
+            RegistroEscritura.reproducir(archivo, 0, entrada -> entrada.aplicar(restaurado));
+            for (String id : ids) {
+                long numero = Long.parseLong(id.substring("user_".length()));
+                assertThat(restaurado.obtenerEstado(numero).getVersion()).isEqualTo(500);
+                assertThat(restaurado.obtenerPeso(numero)).isEqualTo(vivo.obtenerPeso(numero)).isEqualTo(9_500.0);
+            }
+            // El índice de peso quedó con cada usuario solo bajo su peso vigente
+            assertThat(UsuarioController.buscarPorPesoTipado(Double.NaN, Double.NaN, null, 100).getUsuarios())
+                .hasSize(ids.size())
+                .allSatisfy(usuario -> assertThat(usuario.getPeso()).isEqualTo(9_500.0));
+        } finally {
+            UsuarioController.configurarRepositorio(new RepositorioMapa());
+        }
+    }
+
+    @Test
+    @DisplayName("📊 Benchmark: escrituras/seg y p99 por modo de durabilidad")
+    void benchmarkModosDeDurabilidad() throws Exception {
+        System.out.println("\n📊 RESULTADOS REGISTRO DE ESCRITURA:");
+        System.out.println("===================================");
+        for (RegistroEscritura.ModoDurabilidad modo : RegistroEscritura.ModoDurabilidad.values()) {
+            medirModo(modo, 8, 250);
+        }
+    }
+
+    private void medirModo(RegistroEscritura.ModoDurabilidad modo, int hilos, int porHilo) throws Exception {
+        Path archivo = directorio.resolve("benchmark-" + modo + ".wal");
+        long[] latencias = new long[hilos * porHilo];
+        CountDownLatch latch = new CountDownLatch(hilos);
+        ExecutorService executor = Executors.newFixedThreadPool(hilos);
+        long inicio;
+        long duracionNs;
+
+        try (RegistroEscritura registro = new RegistroEscritura(archivo, modo)) {
+            inicio = System.nanoTime();
+            for (int h = 0; h < hilos; h++) {
+                final int base = h * porHilo;
+                executor.submit(() -> {
+                    try {
+                        for (int i = 0; i < porHilo; i++) {
+                            long t0 = System.nanoTime();
+                            registro.registrarActualizacion(base + i, 70.0 + i % 10);
+                            latencias[base + i] = System.nanoTime() - t0;
+                        }
+                    } catch (IOException e) {
+                        throw new IllegalStateException(e);
+                    } finally {
+                        latch.countDown();
+                    }
+                });
+            }
+            latch.await();
+            duracionNs = System.nanoTime() - inicio;
+        }
+        executor.shutdown();
+
+        Arrays.sort(latencias);
+        double throughput = (double) latencias.length / duracionNs * 1_000_000_000L;
+        double p99 = latencias[(int) (latencias.length * 0.99) - 1] / 1_000_000.0;
+        System.out.println("💾 " + modo + ": " + String.format("%.0f", throughput) + " escrituras/seg, p99 "
+            + String.format("%.3f", p99) + " ms");
+
+        assertThat(RegistroEscritura.reproducir(archivo, 0, entrada -> { })).isEqualTo(latencias.length);
+    }
+
+    @Test
+    @DisplayName("❌ El controlador responde 500 si el registro falla")
+    void controladorResponde500SiRegistroFalla() throws IOException {
+        Path archivo = directorio.resolve("cerrado.wal");
+        RegistroEscritura registro = new RegistroEscritura(archivo, RegistroEscritura.ModoDurabilidad.POR_ESCRITURA);
+        registro.close();
+        try {
+            UsuarioController.configurarRegistro(registro);
+            Map<String, Object> resultado = UsuarioController.crearUsuario("SinDisco", 70.0);
+            assertThat(resultado.get("status")).isEqualTo(500);
+        } finally {
+            UsuarioController.configurarRegistro(null);
+        }
+    }
+
+    @Test
+    @DisplayName("❌ Si el registro falla, la actualización no llega a la memoria")
+    void actualizacionSinRegistroNoCambiaMemoria() throws IOException {
+        Path archivo = directorio.resolve("sin-disco.wal");
+        RepositorioMapa vivo = new RepositorioMapa();
+        RegistroEscritura registro = new RegistroEscritura(archivo, RegistroEscritura.ModoDurabilidad.AGRUPADO);
+        try {
+            UsuarioController.configurarLatenciaSimulada(false);
+            UsuarioController.configurarRepositorio(vivo);
+            UsuarioController.configurarRegistro(registro);
+            String id = UsuarioController.crearUsuarioTipado("SinDisco", 70.0).getId();
+            long numero = Long.parseLong(id.substring("user_".length()));
+            registro.close();
+
+            assertThat(UsuarioController.actualizarPesoTipado(id, 65.0).getStatus()).isEqualTo(500);
+            assertThat(UsuarioController.actualizarPesoAsincrono(id, 65.0).join().get("status")).isEqualTo(500);
+            assertThat(UsuarioController.actualizarPesos(List.of(new SolicitudActualizacion(id, 65.0)))
+                .get("status")).isEqualTo(500);
+            assertThat(UsuarioController.crearUsuarios(List.of(new SolicitudCreacion("SinDisco", 70.0)))
+                .get("status")).isEqualTo(500);
+            Path csv = directorio.resolve("sin-disco.csv");
+            Files.write(csv, "Ana,60\nLeo,80\n".getBytes(StandardCharsets.UTF_8));
+            assertThatThrownBy(() -> UsuarioController.importarUsuarios(csv, null)).isInstanceOf(IOException.class);
+
+            // Ni el peso ni la versión avanzaron, y no quedó ningún usuario a medias
+            Usuario.EstadoPeso estado = vivo.obtenerEstado(numero);
+            assertThat(estado.getPeso()).isEqualTo(70.0);
+            assertThat(estado.getVersion()).isZero();
+            assertThat(vivo.tamano()).isEqualTo(1);
+        } finally {
+            UsuarioController.configurarRegistro(null);
+            UsuarioController.configurarLatenciaSimulada(true);
+            UsuarioController.configurarRepositorio(new RepositorioMapa());
+        }
+    }
+
+    @Test
+    @DisplayName("❌ Una actualización condicional sin registro no avanza la versión y el mismo If-Match sirve después")
+    void condicionalSinRegistroNoAvanzaVersion() throws IOException {
+        RepositorioMapa vivo = new RepositorioMapa();
+        RegistroEscritura cerrado = new RegistroEscritura(directorio.resolve("cerrado.wal"),
+            RegistroEscritura.ModoDurabilidad.AGRUPADO);
+        try (RegistroEscritura abierto = new RegistroEscritura(directorio.resolve("abierto.wal"),
+                RegistroEscritura.ModoDurabilidad.AGRUPADO)) {
+            UsuarioController.configurarLatenciaSimulada(false);
+            UsuarioController.configurarRepositorio(vivo);
+            UsuarioController.configurarRegistro(cerrado);
+            String id = UsuarioController.crearUsuarioTipado("Condicional", 70.0).getId();
+            long numero = Long.parseLong(id.substring("user_".length()));
+            cerrado.close();
+
+            assertThat(UsuarioController.actualizarPesoSiVersionTipado(id, 0, 65.0).getStatus()).isEqualTo(500);
+            Usuario.EstadoPeso estado = vivo.obtenerEstado(numero);
+            assertThat(estado.getPeso()).isEqualTo(70.0);
+            assertThat(estado.getVersion()).isZero();
+
+            // Con el registro de nuevo disponible, la misma versión esperada se aplica
+            UsuarioController.configurarRegistro(abierto);
+            RespuestaActualizacion aplicada = UsuarioController.actualizarPesoSiVersionTipado(id, 0, 65.0);
+            assertThat(aplicada.getStatus()).isEqualTo(200);
+            assertThat(aplicada.getVersion()).isEqualTo(1);
+            assertThat(vivo.obtenerEstado(numero).getVersion()).isEqualTo(1);
+            // Y una versión ya superada responde 409 con la vigente, sin escribir en el registro
+            long lsnAntes = abierto.ultimoLsn();
+            RespuestaActualizacion conflicto = UsuarioController.actualizarPesoSiVersionTipado(id, 0, 60.0);
+            assertThat(conflicto.getStatus()).isEqualTo(409);
+            assertThat(conflicto.getVersion()).isEqualTo(1);
+            assertThat(abierto.ultimoLsn()).isEqualTo(lsnAntes);
+        } finally {
+            UsuarioController.configurarRegistro(null);
+            UsuarioController.configurarLatenciaSimulada(true);
+            UsuarioController.configurarRepositorio(new RepositorioMapa());
+        }
+    }
+}
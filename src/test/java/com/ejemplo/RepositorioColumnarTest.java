@@ -0,0 +1,272 @@
+package com.ejemplo;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+import static org.assertj.core.api.Assertions.*;
+import java.lang.ref.Reference;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.IntFunction;
+
+/**
+ * Pruebas del repositorio columnar y comparación de memoria con el mapa original
+ */
+public class RepositorioColumnarTest {
+
+    private static final String[] NOMBRES = {
+        "María", "José", "Ana", "Juan", "Carmen", "Luis", "Lucía", "Pedro", "Sofía", "Diego"
+    };
+    private static final String[] APELLIDOS = {
+        "García", "López", "Pérez", "González", "Rodríguez", "Martínez", "Sánchez", "Díaz"
+    };
+
+    @Test
+    @DisplayName("✅ Debe insertar, consultar y actualizar usuarios")
+    void debeInsertarConsultarYActualizar() {
+        RepositorioColumnar repositorio = new RepositorioColumnar();
+
+        assertThat(repositorio.insertar(1, "Ana García", 65.5)).isTrue();
+        assertThat(repositorio.insertar(1, "Otra", 80.0)).isFalse();
+
+        assertThat(repositorio.existe(1)).isTrue();
+        assertThat(repositorio.existe(2)).isFalse();
+        assertThat(repositorio.obtenerNombre(1)).isEqualTo("Ana García");
+        assertThat(repositorio.obtenerNombre(2)).isNull();
+        assertThat(repositorio.obtenerPeso(2)).isNaN();
+
+        double anterior = repositorio.actualizarPeso(1, 70.0);
+        assertThat(anterior).isEqualTo(65.5);
+        // Misma regla (errónea) que Usuario.actualizarPeso
+        assertThat(repositorio.obtenerPeso(1)).isEqualTo(64.5);
+        assertThat(repositorio.actualizarPeso(2, 70.0)).isNaN();
+        assertThat(repositorio.tamano()).isEqualTo(1);
+    }
+
+    @Test
+    @DisplayName("✅ Debe deduplicar nombres y soportar almacenamiento fuera del heap")
+    void debeDeduplicarNombres() {
+        RepositorioColumnar repositorio = new RepositorioColumnar(true);
+
+        for (int i = 1; i <= 200_000; i++) {
+            repositorio.insertar(i, nombreCompleto(i), 60.0 + (i % 40));
+        }
+
+        assertThat(repositorio.tamano()).isEqualTo(200_000);
+        assertThat(repositorio.nombresDistintos()).isEqualTo(NOMBRES.length * APELLIDOS.length);
+        for (int i = 1; i <= 200_000; i += 997) {
+            assertThat(repositorio.obtenerNombre(i)).isEqualTo(nombreCompleto(i));
+            assertThat(repositorio.obtenerPeso(i)).isEqualTo(60.0 + (i % 40));
+        }
+    }
+
+    @Test
+    @DisplayName("🔄 Debe permitir lecturas y escrituras concurrentes")
+    void debePermitirAccesoConcurrente() throws InterruptedException {
+        RepositorioColumnar repositorio = new RepositorioColumnar();
+        int hilos = 8;
+        int porHilo = 20_000;
+        CountDownLatch latch = new CountDownLatch(hilos);
+        ExecutorService executor = Executors.newFixedThreadPool(hilos);
+
+        for (int h = 0; h < hilos; h++) {
+            final int base = h * porHilo;
+            executor.submit(() -> {
+                try {
+                    for (int i = 1; i <= porHilo; i++) {
+                        long id = base + i;
+                        repositorio.insertar(id, nombreCompleto(i), 70.0);
+                        assertThat(repositorio.obtenerPeso(id)).isEqualTo(70.0);
+                        repositorio.actualizarPeso(id, 75.0);
+                    }
+                } finally {
+                    latch.countDown();
+                }
+            });
+        }
+        latch.await();
+        executor.shutdown();
+
+        assertThat(repositorio.tamano()).isEqualTo(hilos * porHilo);
+        for (long id = 1; id <= hilos * porHilo; id += 113) {
+            assertThat(repositorio.obtenerPeso(id)).isEqualTo(69.0);
+        }
+    }
+
+    @Test
+    @DisplayName("✅ Debe eliminar usuarios sin perder a los vecinos del índice")
+    void debeEliminarUsuarios() {
+        RepositorioColumnar repositorio = new RepositorioColumnar();
+        int cantidad = 50_000;
+        for (int i = 1; i <= cantidad; i++) {
+            repositorio.insertar(i, nombreCompleto(i), 60.0 + (i % 40));
+        }
+
+        for (int i = 1; i <= cantidad; i += 3) {
+            assertThat(repositorio.eliminar(i)).isTrue();
+        }
+        assertThat(repositorio.eliminar(1)).isFalse();
+        assertThat(repositorio.eliminar(cantidad + 1)).isFalse();
+
+        int restantes = cantidad - (cantidad + 2) / 3;
+        assertThat(repositorio.tamano()).isEqualTo(restantes);
+        for (int i = 1; i <= cantidad; i++) {
+            boolean eliminado = i % 3 == 1;
+            assertThat(repositorio.existe(i)).as("id %d", i).isEqualTo(!eliminado);
+            if (!eliminado) {
+                assertThat(repositorio.obtenerNombre(i)).isEqualTo(nombreCompleto(i));
+            }
+        }
+        int[] visitados = {0};
+        repositorio.recorrer((id, nombre, peso) -> {
+            assertThat(id % 3).isNotEqualTo(1);
+            visitados[0]++;
+        });
+        assertThat(visitados[0]).isEqualTo(restantes);
+
+        // Un id eliminado puede volver a insertarse en una posición nueva
+        assertThat(repositorio.insertar(1, "Ana García", 70.0)).isTrue();
+        assertThat(repositorio.obtenerPeso(1)).isEqualTo(70.0);
+        assertThat(repositorio.tamano()).isEqualTo(restantes + 1);
+    }
+
+    @Test
+    @DisplayName("🔄 Versiones: sin actualizaciones perdidas en ambos repositorios")
+    void versionesSinActualizacionesPerdidas() throws InterruptedException {
+        verificarVersiones(new RepositorioColumnar());
+        verificarVersiones(new RepositorioMapa());
+    }
+
+    private void verificarVersiones(RepositorioUsuarios repositorio) throws InterruptedException {
+        repositorio.insertar(1, "Ana García", 1_000_000.0);
+        assertThat(repositorio.obtenerEstado(1).getVersion()).isZero();
+        assertThat(repositorio.obtenerEstado(2)).isNull();
+        assertThat(repositorio.actualizarPesoSiVersion(2, 0, 70.0)).isNull();
+
+        int hilos = 8;
+        int porHilo = 10_000;
+        CountDownLatch salida = new CountDownLatch(1);
+        AtomicLong condicionales = new AtomicLong();
+        AtomicLong incoherentes = new AtomicLong();
+        ExecutorService executor = Executors.newFixedThreadPool(hilos + 1);
+        for (int h = 0; h < hilos; h++) {
+            final boolean condicional = h % 2 == 0;
+            executor.submit(() -> {
+                try {
+                    salida.await();
+                } catch (InterruptedException e) {
+                    return;
+                }
+                for (int i = 0; i < porHilo; i++) {
+                    if (!condicional) {
+                        repositorio.actualizarPeso(1, 0);
+                        continue;
+                    }
+                    while (true) {
+                        Usuario.EstadoPeso leido = repositorio.obtenerEstado(1);
+                        if (repositorio.actualizarPesoSiVersion(1, leido.getVersion(), 0).getVersion()
+                                == leido.getVersion()) {
+                            condicionales.incrementAndGet();
+                            break;
+                        }
+                    }
+                }
+            });
+        }
+        // Cada cambio resta 1 kg y suma una versión: un lector nunca ve un par mezclado
+        executor.submit(() -> {
+            try {
+                salida.await();
+            } catch (InterruptedException e) {
+                return;
+            }
+            for (int i = 0; i < porHilo; i++) {
+                Usuario.EstadoPeso estado = repositorio.obtenerEstado(1);
+                if (estado.getPeso() + estado.getVersion() != 1_000_000.0) {
+                    incoherentes.incrementAndGet();
+                }
+            }
+        });
+        salida.countDown();
+        executor.shutdown();
+        assertThat(executor.awaitTermination(60, TimeUnit.SECONDS)).isTrue();
+
+        Usuario.EstadoPeso ultimo = repositorio.obtenerEstado(1);
+        assertThat(condicionales.get()).isEqualTo((long) hilos / 2 * porHilo);
+        assertThat(ultimo.getVersion()).isEqualTo((long) hilos * porHilo);
+        assertThat(ultimo.getPeso()).isEqualTo(1_000_000.0 - hilos * porHilo);
+        assertThat(incoherentes.get()).isZero();
+
+        // establecerPeso (restauración) también cuenta como cambio
+        repositorio.establecerPeso(1, 70.0);
+        assertThat(repositorio.obtenerEstado(1).getVersion()).isEqualTo((long) hilos * porHilo + 1);
+        assertThat(repositorio.obtenerPeso(1)).isEqualTo(70.0);
+    }
+
+    @Test
+    @DisplayName("📊 Memoria: repositorio columnar vs mapa original con 1M usuarios")
+    void comparaMemoriaUnMillon() {
+        compararMemoria(1_000_000);
+    }
+
+    @Test
+    @EnabledIfSystemProperty(named = "healthtrack.benchmark.grande", matches = "true")
+    @DisplayName("📊 Memoria: repositorio columnar vs mapa original con 10M usuarios")
+    void comparaMemoriaDiezMillones() {
+        compararMemoria(10_000_000);
+    }
+
+    private void compararMemoria(int cantidad) {
+        long bytesMapa = medirMemoria(n -> {
+            // Estructura original del controlador: clave "user_N" -> Usuario
+            Map<String, Usuario> mapa = new ConcurrentHashMap<>();
+            for (int i = 1; i <= n; i++) {
+                mapa.put("user_" + i, new Usuario(nombreCompleto(i), 60.0 + (i % 40)));
+            }
+            return mapa;
+        }, cantidad);
+
+        long bytesColumnar = medirMemoria(n -> {
+            RepositorioColumnar repositorio = new RepositorioColumnar();
+            for (int i = 1; i <= n; i++) {
+                repositorio.insertar(i, nombreCompleto(i), 60.0 + (i % 40));
+            }
+            return repositorio;
+        }, cantidad);
+
+        System.out.println("\n📊 HUELLA DE MEMORIA (" + cantidad + " usuarios):");
+        System.out.println("==================================");
+        System.out.println("🗺️  Mapa original: " + bytesMapa / (1024 * 1024) + " MB ("
+            + String.format("%.1f", (double) bytesMapa / cantidad) + " bytes/usuario)");
+        System.out.println("📦 Columnar: " + bytesColumnar / (1024 * 1024) + " MB ("
+            + String.format("%.1f", (double) bytesColumnar / cantidad) + " bytes/usuario)");
+
+        assertThat(bytesColumnar).isLessThan(bytesMapa / 2);
+    }
+
+    private static long medirMemoria(IntFunction<Object> constructor, int cantidad) {
+        long antes = memoriaUsada();
+        Object estructura = constructor.apply(cantidad);
+        long despues = memoriaUsada();
+        Reference.reachabilityFence(estructura);
+        return despues - antes;
+    }
+
+    private static long memoriaUsada() {
+        Runtime runtime = Runtime.getRuntime();
+        for (int i = 0; i < 3; i++) {
+            System.gc();
+        }
+        return runtime.totalMemory() - runtime.freeMemory();
+    }
+
+    private static String nombreCompleto(int i) {
+        // Nombre nuevo en cada llamada, como llegaría en una solicitud real
+        return NOMBRES[i % NOMBRES.length] + " " + APELLIDOS[(i / NOMBRES.length) % APELLIDOS.length];
+    }
+}
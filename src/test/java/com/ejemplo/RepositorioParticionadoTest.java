@@ -0,0 +1,280 @@
+package com.ejemplo;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+import static org.assertj.core.api.Assertions.*;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Pruebas del enrutamiento por hash consistente y benchmark de 1 a 8 particiones
+ */
+public class RepositorioParticionadoTest {
+
+    private static final int USUARIOS = 100_000;
+
+    @Test
+    @DisplayName("✅ Cada usuario vive en su partición y el reparto es parejo")
+    void enrutaYReparte() {
+        RepositorioParticionado repositorio = new RepositorioParticionado(4, RepositorioMapa::new);
+        GeneradorIds generador = new GeneradorIds(3);
+        long[] ids = new long[USUARIOS];
+        for (int i = 0; i < USUARIOS; i++) {
+            ids[i] = generador.siguiente();
+            assertThat(repositorio.insertar(ids[i], "Usuario " + i, 60.0 + i % 40)).isTrue();
+        }
+        assertThat(repositorio.insertar(ids[0], "Otro", 70.0)).isFalse();
+
+        assertThat(repositorio.tamano()).isEqualTo(USUARIOS);
+        for (int i = 0; i < USUARIOS; i += 101) {
+            assertThat(repositorio.obtenerNombre(ids[i])).isEqualTo("Usuario " + i);
+            assertThat(repositorio.obtenerPeso(ids[i])).isEqualTo(60.0 + i % 40);
+        }
+        assertThat(repositorio.actualizarPeso(ids[7], 80.0)).isEqualTo(67.0);
+        assertThat(repositorio.obtenerEstado(ids[7]).getVersion()).isEqualTo(1);
+        assertThat(repositorio.obtenerPeso(-1)).isNaN();
+
+        // Con 160 puntos por partición ninguna se aleja más de un 25 % de la media
+        List<RepositorioParticionado.ResumenParticion> particiones = repositorio.resumirParticiones();
+        assertThat(particiones).hasSize(4);
+        for (RepositorioParticionado.ResumenParticion particion : particiones) {
+            assertThat(particion.getUsuarios()).isBetween(USUARIOS / 4 * 3 / 4, USUARIOS / 4 * 5 / 4);
+        }
+        Set<Long> visitados = new HashSet<>();
+        repositorio.recorrer((id, nombre, peso) -> visitados.add(id));
+        assertThat(visitados).hasSize(USUARIOS);
+    }
+
+    @Test
+    @DisplayName("✅ Agregar una partición solo le traslada a ella alrededor de 1/N usuarios")
+    void rebalanceoMinimo() {
+        RepositorioParticionado repositorio = new RepositorioParticionado(4, RepositorioColumnar::new);
+        for (long id = 1; id <= USUARIOS; id++) {
+            repositorio.insertar(id, "Usuario " + id, 50.0 + id % 50);
+        }
+        int[] duenosAntes = new int[USUARIOS + 1];
+        for (long id = 1; id <= USUARIOS; id++) {
+            duenosAntes[(int) id] = repositorio.particionDe(id);
+        }
+        for (long id = 1; id <= 1_000; id++) {
+            repositorio.actualizarPeso(id, 0);
+        }
+
+        int trasladados = repositorio.agregarParticion();
+
+        assertThat(repositorio.cantidadParticiones()).isEqualTo(5);
+        assertThat(trasladados).isBetween(USUARIOS / 5 * 3 / 4, USUARIOS / 5 * 5 / 4);
+        int cambiaron = 0;
+        for (long id = 1; id <= USUARIOS; id++) {
+            int dueno = repositorio.particionDe(id);
+            if (dueno != duenosAntes[(int) id]) {
+                assertThat(dueno).as("ningún usuario se mueve entre particiones viejas").isEqualTo(4);
+                cambiaron++;
+            }
+            assertThat(repositorio.obtenerNombre(id)).isEqualTo("Usuario " + id);
+            // Los trasladados conservan su versión
+            assertThat(repositorio.obtenerEstado(id).getVersion()).isEqualTo(id <= 1_000 ? 1 : 0);
+        }
+        assertThat(cambiaron).isEqualTo(trasladados);
+        assertThat(repositorio.tamano()).isEqualTo(USUARIOS);
+        assertThat(repositorio.obtenerPeso(1)).isEqualTo(50.0);
+        assertThat(repositorio.resumirParticiones().get(4).getUsuarios()).isEqualTo(trasladados);
+        assertThat(repositorio.resumir().getCantidad()).isEqualTo(USUARIOS);
+    }
+
+    @Test
+    @DisplayName("✅ Las estadísticas combinan los agregados de cada partición")
+    void combinaEstadisticas() {
+        RepositorioParticionado repositorio = new RepositorioParticionado(3, RepositorioMapa::new);
+        EstadisticasPoblacion unica = new EstadisticasPoblacion();
+        for (long id = 1; id <= 10_000; id++) {
+            double peso = 40.0 + (id * 7919 % 900) / 10.0;
+            repositorio.insertar(id, "U" + id, peso);
+            unica.agregar(peso);
+        }
+        for (long id = 1; id <= 10_000; id += 3) {
+            double anterior = repositorio.actualizarPeso(id, 0);
+            unica.cambiar(anterior, Usuario.calcularPesoActualizado(anterior, 0));
+        }
+        repositorio.insertar(20_000, "Fuera de rango", 1500.0);
+        unica.agregar(1500.0);
+
+        EstadisticasPoblacion.Resumen combinado = repositorio.resumir();
+        EstadisticasPoblacion.Resumen esperado = unica.resumir();
+        assertThat(combinado.getCantidad()).isEqualTo(esperado.getCantidad());
+        assertThat(combinado.getMedia()).isCloseTo(esperado.getMedia(), within(1e-9));
+        assertThat(combinado.getDesviacion()).isCloseTo(esperado.getDesviacion(), within(1e-9));
+        assertThat(combinado.getP50()).isEqualTo(esperado.getP50());
+        assertThat(combinado.getP99()).isEqualTo(esperado.getP99());
+        assertThat(combinado.getMaximo()).isEqualTo(1500.0);
+
+        UsuarioController.configurarRepositorio(new RepositorioParticionado(2, RepositorioMapa::new));
+        try {
+            UsuarioController.crearUsuarioTipado("Ana", 60.0);
+            UsuarioController.crearUsuarioTipado("Luis", 80.0);
+            int trasladados = UsuarioController.agregarParticion();
+            RespuestaEstadisticas estadisticas = UsuarioController.obtenerEstadisticasTipado();
+            assertThat(estadisticas.getTotalUsuarios()).isEqualTo(2);
+            assertThat(estadisticas.getPoblacion().getMedia()).isCloseTo(70.0, within(1e-9));
+            assertThat(estadisticas.getParticiones()).hasSize(3);
+            assertThat(estadisticas.getParticiones().get(2).getUsuarios()).isEqualTo(trasladados);
+            @SuppressWarnings("unchecked")
+            List<Map<String, Object>> particiones = (List<Map<String, Object>>) estadisticas.aMapa().get("particiones");
+            assertThat(particiones).extracting(p -> p.get("nombre"))
+                .containsExactly("particion-0", "particion-1", "particion-2");
+        } finally {
+            UsuarioController.configurarRepositorio(new RepositorioMapa());
+        }
+        assertThat(UsuarioController.obtenerEstadisticasTipado().getParticiones()).isEmpty();
+        assertThatThrownBy(UsuarioController::agregarParticion).isInstanceOf(IllegalStateException.class);
+    }
+
+    @Test
+    @DisplayName("✅ Las actualizaciones concurrentes con un traslado no se pierden ni reinician su versión")
+    void trasladoConEscriturasEnCurso() throws Exception {
+        List<String> ids = new ArrayList<>();
+        ExecutorService escritores = Executors.newFixedThreadPool(4);
+        CountDownLatch arrancaron = new CountDownLatch(4);
+        try {
+            UsuarioController.configurarLatenciaSimulada(false);
+            UsuarioController.configurarRepositorio(new RepositorioParticionado(2, RepositorioMapa::new));
+            for (int i = 0; i < 64; i++) {
+                ids.add(UsuarioController.crearUsuarioTipado("Trasladado", 10_000).getId());
+            }
+            // Usuarios quietos para que cada traslado dure lo bastante para cruzarse con las escrituras
+            for (int i = 0; i < USUARIOS; i++) {
+                UsuarioController.crearUsuarioTipado("Quieto", 70.0);
+            }
+            List<Future<?>> tareas = new ArrayList<>();
+            for (int t = 0; t < 4; t++) {
+                tareas.add(escritores.submit(() -> {
+                    arrancaron.countDown();
+                    for (int i = 0; i < 1_920; i++) {
+                        assertThat(UsuarioController.actualizarPesoTipado(ids.get(i % ids.size()), 1).getStatus())
+                            .isEqualTo(200);
+                    }
+                }));
+            }
+            arrancaron.await();
+            for (int i = 0; i < 3; i++) {
+                UsuarioController.agregarParticion();
+            }
+            for (Future<?> tarea : tareas) {
+                tarea.get();
+            }
+
+            // Cada usuario recibió 4 × 1920 / 64 = 120 actualizaciones
+            for (String id : ids) {
+                RespuestaUsuario usuario = UsuarioController.obtenerUsuarioTipado(id);
+                assertThat(usuario.getPeso()).isEqualTo(9_880.0);
+            }
+            RespuestaActualizacion siguiente = UsuarioController.actualizarPesoTipado(ids.get(0), 1);
+            assertThat(siguiente.getVersion()).isEqualTo(121);
+            assertThat(UsuarioController.actualizarPesoSiVersionTipado(ids.get(1), 0, 1).getStatus()).isEqualTo(409);
+        } finally {
+            escritores.shutdownNow();
+            UsuarioController.configurarLatenciaSimulada(true);
+            UsuarioController.configurarRepositorio(new RepositorioMapa());
+        }
+    }
+
+    @Test
+    @DisplayName("✅ Tamaño, agregados y recorridos no cuentan dos veces a los usuarios en traslado")
+    void recorridosDuranteTraslado() throws Exception {
+        RepositorioParticionado repositorio = new RepositorioParticionado(2, RepositorioMapa::new);
+        for (long id = 1; id <= USUARIOS; id++) {
+            repositorio.insertar(id, "Usuario", 70.0);
+        }
+        AtomicBoolean terminado = new AtomicBoolean();
+        ExecutorService lector = Executors.newSingleThreadExecutor();
+        try {
+            Future<Integer> lecturas = lector.submit(() -> {
+                int vueltas = 0;
+                do {
+                    assertThat(repositorio.tamano()).isEqualTo(USUARIOS);
+                    assertThat(repositorio.resumir().getCantidad()).isEqualTo(USUARIOS);
+                    int[] visitados = {0};
+                    repositorio.recorrer((id, nombre, peso) -> visitados[0]++);
+                    assertThat(visitados[0]).isEqualTo(USUARIOS);
+                    vueltas++;
+                } while (!terminado.get());
+                return vueltas;
+            });
+            for (int i = 0; i < 6; i++) {
+                repositorio.agregarParticion();
+            }
+            terminado.set(true);
+            assertThat(lecturas.get()).isPositive();
+        } finally {
+            lector.shutdownNow();
+        }
+        assertThat(repositorio.resumirParticiones()).hasSize(8);
+        assertThat(repositorio.tamano()).isEqualTo(USUARIOS);
+    }
+
+    @Test
+    @EnabledIfSystemProperty(named = "healthtrack.benchmark", matches = "true")
+    @DisplayName("📊 Escalado: altas y actualizaciones concurrentes con 1, 2, 4 y 8 particiones")
+    void escalado() throws InterruptedException {
+        int hilos = 8;
+        int porHilo = 50_000;
+        System.out.println("\n📊 ESCALADO POR PARTICIONES (" + hilos + " hilos, " + hilos * porHilo
+            + " altas + " + hilos * porHilo + " actualizaciones por el controlador, "
+            + Runtime.getRuntime().availableProcessors() + " CPU):");
+        System.out.println("==================================");
+        double base = 0;
+        UsuarioController.configurarLatenciaSimulada(false);
+        try {
+            for (int particiones = 1; particiones <= 8; particiones *= 2) {
+                UsuarioController.configurarRepositorio(
+                    new RepositorioParticionado(particiones, RepositorioColumnar::new));
+                CountDownLatch salida = new CountDownLatch(1);
+                ExecutorService executor = Executors.newFixedThreadPool(hilos);
+                for (int h = 0; h < hilos; h++) {
+                    executor.submit(() -> {
+                        String[] propios = new String[porHilo];
+                        try {
+                            salida.await();
+                        } catch (InterruptedException e) {
+                            return;
+                        }
+                        for (int i = 0; i < porHilo; i++) {
+                            propios[i] = UsuarioController.crearUsuarioTipado("Usuario", 70.0).getId();
+                        }
+                        for (String id : propios) {
+                            UsuarioController.actualizarPesoTipado(id, 75.0);
+                        }
+                    });
+                }
+                long inicio = System.nanoTime();
+                salida.countDown();
+                executor.shutdown();
+                assertThat(executor.awaitTermination(120, TimeUnit.SECONDS)).isTrue();
+                double segundos = (System.nanoTime() - inicio) / 1e9;
+                double operaciones = 2.0 * hilos * porHilo / segundos;
+                if (particiones == 1) {
+                    base = operaciones;
+                }
+                System.out.printf("🧩 %d partición(es): %,.0f op/s (%.2fx)%n", particiones, operaciones,
+                    operaciones / base);
+
+                RespuestaEstadisticas estadisticas = UsuarioController.obtenerEstadisticasTipado();
+                assertThat(estadisticas.getTotalUsuarios()).isEqualTo(hilos * porHilo);
+                assertThat(estadisticas.getPoblacion().getMedia()).isCloseTo(69.0, within(1e-9));
+            }
+        } finally {
+            UsuarioController.configurarLatenciaSimulada(true);
+            UsuarioController.configurarRepositorio(new RepositorioMapa());
+        }
+    }
+}
@@ -0,0 +1,176 @@
+package com.ejemplo;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.DisplayName;
+import static org.assertj.core.api.Assertions.*;
+import java.lang.management.ManagementFactory;
+import java.util.Map;
+
+/**
+ * Pruebas de las respuestas tipadas y de su tasa de asignación de memoria
+ */
+public class RespuestasTest {
+
+    @Test
+    @DisplayName("✅ El adaptador de mapa conserva la forma original de la API")
+    void adaptadorConservaFormaDeMapa() {
+        RespuestaUsuario creado = UsuarioController.crearUsuarioTipado("Lucía", 68.0);
+        Map<String, Object> consulta = UsuarioController.obtenerUsuarioTipado(creado.getId()).aMapa();
+
+        assertThat(creado.getStatus()).isEqualTo(201);
+        assertThat(creado.aMapa()).containsKeys("id", "usuario", "status", "timestamp");
+        assertThat(consulta).containsOnlyKeys("usuario", "status", "timestamp");
+        assertThat(consulta.get("usuario")).isEqualTo(Map.of("nombre", "Lucía", "peso", 68.0));
+        assertThat(UsuarioController.obtenerUsuario("user_x"))
+            .isEqualTo(Map.of("error", "Usuario no encontrado", "status", 404));
+        assertThat(UsuarioController.crearUsuarioTipado("", 70.0).getError()).isEqualTo("Nombre requerido");
+        assertThat(UsuarioController.obtenerEstadisticasTipado().getTotalUsuarios()).isPositive();
+    }
+
+    @Test
+    @DisplayName("✅ La actualización tipada expone pesos primitivos")
+    void actualizacionTipada() {
+        String id = UsuarioController.crearUsuarioTipado("Mateo", 90.0).getId();
+
+        RespuestaActualizacion respuesta = UsuarioController.actualizarPesoTipado(id, 85.0);
+
+        assertThat(respuesta.getStatus()).isEqualTo(200);
+        assertThat(respuesta.getPesoAnterior()).isEqualTo(90.0);
+        assertThat(respuesta.getEsperado()).isEqualTo(85.0);
+        assertThat(respuesta.getPesoActual()).isEqualTo(89.0); // el error original se conserva
+        assertThat(respuesta.getVersion()).isEqualTo(1);
+    }
+
+    @Test
+    @DisplayName("✅ El contenedor reutilizable lee usuarios de ambos repositorios")
+    void contenedorReutilizable() {
+        LecturaUsuario lectura = new LecturaUsuario();
+        String id = UsuarioController.crearUsuarioTipado("Íñigo 🏃", 75.5).getId();
+
+        assertThat(UsuarioController.obtenerUsuario(id, lectura)).isEqualTo(200);
+        assertThat(lectura.getNombre().toString()).isEqualTo("Íñigo 🏃");
+        assertThat(lectura.getPeso()).isEqualTo(75.5);
+        assertThat(UsuarioController.obtenerUsuario("user_0", lectura)).isEqualTo(404);
+        assertThat(lectura.getNombre()).isEmpty();
+
+        RepositorioColumnar columnar = new RepositorioColumnar(true);
+        columnar.insertar(7, "Íñigo 🏃", 75.5);
+        StringBuilder nombre = new StringBuilder();
+        assertThat(columnar.leer(7, nombre)).isEqualTo(75.5);
+        assertThat(nombre.toString()).isEqualTo("Íñigo 🏃");
+        assertThat(columnar.leer(8, nombre)).isNaN();
+    }
+
+    @Test
+    @DisplayName("📊 Benchmark: bytes asignados por consulta (mapa vs tipada vs contenedor)")
+    void benchmarkAsignacionPorConsulta() {
+        // Ninguno de los dos repositorios reserva memoria en la lectura con contenedor
+        medirAsignacion("RepositorioMapa", new RepositorioMapa(), 1.0);
+        medirAsignacion("RepositorioColumnar", new RepositorioColumnar(), 1.0);
+    }
+
+    @Test
+    @DisplayName("📊 La consulta pública con contenedor no reserva memoria por operación")
+    void consultaPublicaSinAsignacion() {
+        // Configuración por defecto: mapa concurrente con la caché delante
+        double conCache = medirConsultaPublica(new RepositorioMapa(), new CacheUsuarios(10_000));
+        // Sin caché ninguno de los dos repositorios crea objetos intermedios
+        double mapaSinCache = medirConsultaPublica(new RepositorioMapa(), null);
+        double sinCache = medirConsultaPublica(new RepositorioColumnar(), null);
+
+        System.out.println("\n📊 ASIGNACIÓN POR CONSULTA PÚBLICA (UsuarioController.obtenerUsuario con contenedor):");
+        System.out.println("==================================");
+        System.out.println("🗺️  RepositorioMapa + caché: " + String.format("%.2f", conCache) + " bytes");
+        System.out.println("🗺️  RepositorioMapa sin caché: " + String.format("%.2f", mapaSinCache) + " bytes");
+        System.out.println("📦 RepositorioColumnar sin caché: " + String.format("%.2f", sinCache) + " bytes");
+
+        assertThat(conCache).isLessThan(1.0);
+        assertThat(mapaSinCache).isLessThan(1.0);
+        assertThat(sinCache).isLessThan(1.0);
+    }
+
+    private double medirConsultaPublica(RepositorioUsuarios repositorio, CacheUsuarios cache) {
+        com.sun.management.ThreadMXBean hilos = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        long hilo = Thread.currentThread().getId();
+        int iteraciones = 200_000;
+        LecturaUsuario lectura = new LecturaUsuario();
+        double bytesPorConsulta = 0;
+        long sumidero = 0;
+
+        try {
+            UsuarioController.configurarRepositorio(repositorio);
+            UsuarioController.configurarCache(cache);
+            UsuarioController.configurarLatenciaSimulada(false);
+            // Ids fuera del rango de Long.valueOf que la JVM tiene en caché
+            long[] numeros = {1_000L, 2_000_000L, 3_000_000_000L};
+            String[] ids = new String[numeros.length];
+            for (int i = 0; i < ids.length; i++) {
+                repositorio.insertar(numeros[i], "Usuario " + i, 70.0 + i);
+                ids[i] = "user_" + numeros[i];
+            }
+            for (int pasada = 0; pasada < 4; pasada++) {
+                long antes = hilos.getThreadAllocatedBytes(hilo);
+                for (int i = 0; i < iteraciones; i++) {
+                    sumidero += UsuarioController.obtenerUsuario(ids[i % ids.length], lectura);
+                }
+                bytesPorConsulta = (double) (hilos.getThreadAllocatedBytes(hilo) - antes) / iteraciones;
+            }
+        } finally {
+            UsuarioController.configurarLatenciaSimulada(true);
+            UsuarioController.configurarRepositorio(new RepositorioMapa());
+            UsuarioController.configurarCache(new CacheUsuarios(10_000));
+        }
+
+        assertThat(sumidero).isEqualTo(200L * iteraciones * 4);
+        assertThat(lectura.getNombre().toString()).startsWith("Usuario ");
+        return bytesPorConsulta;
+    }
+
+    private void medirAsignacion(String etiqueta, RepositorioUsuarios repositorio, double maximoContenedor) {
+        com.sun.management.ThreadMXBean hilos = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        long hilo = Thread.currentThread().getId();
+        int iteraciones = 200_000;
+        long[] ids = {1_000L, 2_000_000L, 3_000_000_000L};
+        LecturaUsuario lectura = new LecturaUsuario();
+        double[] bytesPorConsulta = new double[3];
+        long sumidero = 0;
+
+        try {
+            UsuarioController.configurarRepositorio(repositorio);
+            UsuarioController.configurarCache(null);
+            for (long id : ids) {
+                repositorio.insertar(id, "Usuario " + id, 70.0);
+            }
+            // Varias pasadas: las primeras calientan el JIT, la última se mide
+            for (int pasada = 0; pasada < 4; pasada++) {
+                for (int forma = 0; forma < 3; forma++) {
+                    long antes = hilos.getThreadAllocatedBytes(hilo);
+                    for (int i = 0; i < iteraciones; i++) {
+                        long numero = ids[i % ids.length];
+                        if (forma == 0) {
+                            sumidero += UsuarioController.procesarConsulta(numero).aMapa().size();
+                        } else if (forma == 1) {
+                            sumidero += UsuarioController.procesarConsulta(numero).getStatus();
+                        } else {
+                            sumidero += UsuarioController.procesarConsulta(numero, lectura);
+                        }
+                    }
+                    bytesPorConsulta[forma] = (double) (hilos.getThreadAllocatedBytes(hilo) - antes) / iteraciones;
+                }
+            }
+        } finally {
+            UsuarioController.configurarRepositorio(new RepositorioMapa());
+            UsuarioController.configurarCache(new CacheUsuarios(10_000));
+        }
+
+        System.out.println("\n📊 ASIGNACIÓN POR CONSULTA (" + etiqueta + "):");
+        System.out.println("==================================");
+        System.out.println("🗺️  Mapa (adaptador): " + String.format("%.1f", bytesPorConsulta[0]) + " bytes");
+        System.out.println("📦 Respuesta tipada: " + String.format("%.1f", bytesPorConsulta[1]) + " bytes");
+        System.out.println("✅ Contenedor reutilizable: " + String.format("%.1f", bytesPorConsulta[2]) + " bytes");
+
+        assertThat(sumidero).isPositive();
+        assertThat(bytesPorConsulta[1]).isLessThan(bytesPorConsulta[0] / 3);
+        assertThat(bytesPorConsulta[2]).isLessThanOrEqualTo(maximoContenedor);
+    }
+}
@@ -0,0 +1,141 @@
+package com.ejemplo;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.DisplayName;
+import static org.assertj.core.api.Assertions.*;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+/**
+ * Pruebas y benchmark de la serie comprimida de pesos
+ */
+public class SeriePesosTest {
+
+    private static final long DIA_MS = 24L * 60 * 60 * 1000;
+    private static final long INICIO_MS = 1_700_000_000_000L;
+
+    @Test
+    @DisplayName("✅ Debe recuperar exactamente las lecturas agregadas")
+    void debeRecuperarLecturasExactas() {
+        SeriePesos serie = new SeriePesos();
+        Random random = new Random(42);
+        List<long[]> esperadas = new ArrayList<>();
+        long timestamp = INICIO_MS;
+        double peso = 80.0;
+
+        for (int i = 0; i < 1_000; i++) {
+            // Lecturas diarias con variación de hora y algún hueco largo
+            timestamp += DIA_MS + (random.nextInt(7200) - 3600) * 1000L;
+            if (i % 200 == 199) {
+                timestamp += 30 * DIA_MS;
+            }
+            peso = Math.round((peso + random.nextGaussian() * 0.3) * 10) / 10.0;
+            serie.agregar(timestamp, peso);
+            esperadas.add(new long[] { timestamp, Double.doubleToLongBits(peso) });
+        }
+
+        List<long[]> leidas = new ArrayList<>();
+        serie.recorrer(Long.MIN_VALUE, Long.MAX_VALUE,
+            (ts, valor) -> leidas.add(new long[] { ts, Double.doubleToLongBits(valor) }));
+
+        assertThat(leidas).hasSize(esperadas.size());
+        for (int i = 0; i < esperadas.size(); i++) {
+            assertThat(leidas.get(i)).containsExactly(esperadas.get(i));
+        }
+    }
+
+    @Test
+    @DisplayName("✅ Debe filtrar por rango y promediar por semanas")
+    void debePromediarPorSemanas() {
+        SeriePesos serie = new SeriePesos();
+        for (int dia = 0; dia < 365; dia++) {
+            serie.agregar(INICIO_MS + dia * DIA_MS, 70.0 + dia / 7);
+        }
+
+        long hasta = INICIO_MS + 365 * DIA_MS;
+        long desde = INICIO_MS + 21 * 7 * DIA_MS;
+        List<Double> enRango = new ArrayList<>();
+        serie.recorrer(desde, desde + 3 * DIA_MS, (ts, peso) -> enRango.add(peso));
+        assertThat(enRango).containsExactly(91.0, 91.0, 91.0);
+
+        double[] semanas = serie.promediarPorVentana(desde, desde + 13 * 7 * DIA_MS, 7 * DIA_MS);
+        assertThat(semanas).hasSize(13);
+        for (int s = 0; s < semanas.length; s++) {
+            assertThat(semanas[s]).isEqualTo(91.0 + s);
+        }
+
+        double[] sinDatos = serie.promediarPorVentana(hasta, hasta + 14 * DIA_MS, 7 * DIA_MS);
+        assertThat(sinDatos).containsOnly(Double.NaN);
+    }
+
+    @Test
+    @DisplayName("❌ Debe rechazar lecturas fuera de orden")
+    void debeRechazarLecturasFueraDeOrden() {
+        SeriePesos serie = new SeriePesos();
+        serie.agregar(INICIO_MS, 70.0);
+
+        assertThatThrownBy(() -> serie.agregar(INICIO_MS - DIA_MS, 71.0))
+            .isInstanceOf(IllegalArgumentException.class);
+    }
+
+    @Test
+    @DisplayName("✅ El controlador expone la tendencia de peso")
+    void controladorExponeTendencia() {
+        String id = (String) UsuarioController.crearUsuario("Tendencia", 80.0).get("id");
+        long ahora = System.currentTimeMillis();
+
+        Map<String, Object> tendencia = UsuarioController.obtenerTendencia(
+            id, ahora - 90 * DIA_MS, ahora + DIA_MS, 7 * DIA_MS);
+
+        assertThat(tendencia.get("status")).isEqualTo(200);
+        @SuppressWarnings("unchecked")
+        List<Double> promedios = (List<Double>) tendencia.get("promedios");
+        assertThat(promedios).hasSize(13).contains(80.0);
+        assertThat(UsuarioController.obtenerTendencia("user_0", 0, 1, 1).get("status")).isEqualTo(404);
+    }
+
+    @Test
+    @DisplayName("📊 Benchmark: throughput de inserción y bytes por muestra")
+    void benchmarkInsercionYCompresion() {
+        int usuarios = 2_000;
+        int dias = 3 * 365;
+        HistorialPesos historial = new HistorialPesos();
+        Random random = new Random(7);
+        double[] pesos = new double[usuarios];
+        for (int u = 0; u < usuarios; u++) {
+            pesos[u] = 60.0 + random.nextInt(50);
+        }
+
+        long inicio = System.nanoTime();
+        for (int dia = 0; dia < dias; dia++) {
+            for (int u = 0; u < usuarios; u++) {
+                pesos[u] = Math.round((pesos[u] + random.nextGaussian() * 0.2) * 10) / 10.0;
+                long timestamp = INICIO_MS + dia * DIA_MS + (u % 3600) * 1000L;
+                historial.registrar(u, timestamp, pesos[u]);
+            }
+        }
+        long duracionNs = System.nanoTime() - inicio;
+
+        long muestras = (long) usuarios * dias;
+        double throughput = (double) muestras / duracionNs * 1_000_000_000L;
+        double bytesPorMuestra = (double) historial.bytesComprimidos() / muestras;
+
+        long inicioConsulta = System.nanoTime();
+        long finRango = INICIO_MS + dias * DIA_MS;
+        for (int u = 0; u < usuarios; u++) {
+            historial.serie(u).promediarPorVentana(finRango - 90 * DIA_MS, finRango, 7 * DIA_MS);
+        }
+        double microsPorConsulta = (System.nanoTime() - inicioConsulta) / 1_000.0 / usuarios;
+
+        System.out.println("\n📊 RESULTADOS HISTORIAL DE PESOS:");
+        System.out.println("===================================");
+        System.out.println("📝 Muestras: " + muestras + " (" + usuarios + " usuarios x " + dias + " días)");
+        System.out.println("📈 Throughput inserción: " + String.format("%.0f", throughput) + " muestras/seg");
+        System.out.println("📦 Bytes por muestra: " + String.format("%.2f", bytesPorMuestra) + " (sin comprimir: 16)");
+        System.out.println("⚡ Consulta 90 días semanal: " + String.format("%.1f", microsPorConsulta) + " µs");
+
+        assertThat(bytesPorMuestra).isLessThan(8.0);
+    }
+}
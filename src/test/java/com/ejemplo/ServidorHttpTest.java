@@ -0,0 +1,200 @@
+package com.ejemplo;
+
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+import static org.assertj.core.api.Assertions.*;
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Pruebas del servidor HTTP embebido sobre el controlador real
+ */
+public class ServidorHttpTest {
+
+    private static final Pattern ID = Pattern.compile("\"id\":\"(user_\\d+)\"");
+
+    private static ServidorHttp servidor;
+    private static long arranqueMs;
+    private static HttpClient cliente;
+
+    @BeforeAll
+    static void iniciar() throws IOException {
+        long inicio = System.nanoTime();
+        servidor = ServidorHttp.iniciar(0);
+        arranqueMs = (System.nanoTime() - inicio) / 1_000_000;
+        cliente = HttpClient.newBuilder().version(HttpClient.Version.HTTP_1_1).build();
+    }
+
+    @AfterAll
+    static void detener() {
+        servidor.close();
+    }
+
+    @Test
+    @DisplayName("✅ El servidor arranca y escucha en un puerto libre")
+    void arranque() {
+        assertThat(servidor.getPuerto()).isPositive();
+    }
+
+    @Test
+    @EnabledIfSystemProperty(named = "healthtrack.benchmark", matches = "true")
+    @DisplayName("📊 El servidor arranca en menos de un segundo")
+    void arranqueRapido() {
+        System.out.println("\n📊 Arranque del servidor HTTP: " + arranqueMs + " ms");
+        assertThat(arranqueMs).isLessThan(1_000);
+    }
+
+    @Test
+    @DisplayName("✅ Crear, actualizar y consultar por HTTP")
+    void rutasDelControlador() throws Exception {
+        HttpResponse<String> creado = enviar("POST", "/usuarios", "nombre=Sof%C3%ADa&peso=64.5");
+        assertThat(creado.statusCode()).isEqualTo(201);
+        assertThat(creado.headers().firstValue("Content-Type")).hasValue("application/json; charset=utf-8");
+        Matcher matcher = ID.matcher(creado.body());
+        assertThat(matcher.find()).isTrue();
+        String id = matcher.group(1);
+
+        HttpResponse<String> actualizado = enviar("PUT", "/usuarios/" + id + "/peso", "peso=66.0");
+        assertThat(actualizado.statusCode()).isEqualTo(200);
+        assertThat(actualizado.body()).contains("\"pesoAnterior\":64.5");
+
+        HttpResponse<String> consulta = enviar("GET", "/usuarios/" + id, null);
+        assertThat(consulta.statusCode()).isEqualTo(200);
+        assertThat(consulta.body()).contains("\"nombre\":\"Sofía\"");
+        // El mismo usuario con ceros a la izquierda no es un id válido
+        assertThat(enviar("GET", "/usuarios/" + id.replace("user_", "user_00"), null).statusCode()).isEqualTo(404);
+
+        assertThat(enviar("GET", "/estadisticas", null).body()).contains("\"totalUsuarios\":");
+        assertThat(enviar("GET", "/metricas", null).body()).contains("healthtrack_latencia_segundos_count");
+
+        HttpResponse<String> exportado = enviar("GET", "/usuarios/exportar?formato=ndjson&nombre=sof%C3%AD", null);
+        assertThat(exportado.statusCode()).isEqualTo(200);
+        assertThat(exportado.headers().firstValue("Content-Type")).hasValue("application/x-ndjson; charset=utf-8");
+        assertThat(exportado.body()).contains("{\"id\":\"" + id + "\",\"nombre\":\"Sofía\",");
+
+        HttpResponse<String> buscado = enviar("GET", "/usuarios?prefijo=sof%C3%AD&limite=1000", null);
+        assertThat(buscado.statusCode()).isEqualTo(200);
+        assertThat(buscado.body()).contains("{\"id\":\"" + id + "\",\"nombre\":\"Sofía\",\"peso\":63.5}");
+        assertThat(enviar("GET", "/usuarios?pesoMin=70&pesoMax=60", null).statusCode()).isEqualTo(400);
+    }
+
+    @Test
+    @DisplayName("✅ Acepta cuerpos JSON en alta y actualización")
+    void cuerposJson() throws Exception {
+        HttpResponse<String> creado = enviarJson("POST", "/usuarios", "{\"nombre\":\"Iñaki\",\"peso\":81.5}");
+        assertThat(creado.statusCode()).isEqualTo(201);
+        Matcher matcher = ID.matcher(creado.body());
+        assertThat(matcher.find()).isTrue();
+
+        HttpResponse<String> actualizado = enviarJson("PUT", "/usuarios/" + matcher.group(1) + "/peso", "{\"peso\":80}");
+        assertThat(actualizado.statusCode()).isEqualTo(200);
+        assertThat(actualizado.body()).contains("\"nombre\":\"Iñaki\"", "\"esperado\":80.0");
+        // Alta en la versión 0 y una actualización: If-Match "1" gana, repetirla choca
+        String ruta = "/usuarios/" + matcher.group(1) + "/peso";
+        HttpResponse<String> condicional = enviarJson("PUT", ruta, "{\"peso\":79}", "\"1\"");
+        assertThat(condicional.statusCode()).isEqualTo(200);
+        assertThat(condicional.body()).contains("\"pesoAnterior\":80.5", "\"version\":2");
+        HttpResponse<String> conflicto = enviarJson("PUT", ruta, "{\"peso\":78}", "\"1\"");
+        assertThat(conflicto.statusCode()).isEqualTo(409);
+        assertThat(conflicto.body()).contains("\"error\":\"Versión desactualizada\"", "\"version\":2");
+        assertThat(enviarJson("PUT", ruta, "{\"peso\":78}", "\"dos\"").statusCode()).isEqualTo(400);
+        assertThat(enviarJson("POST", "/usuarios", "{\"nombre\":\"Ana\"").statusCode()).isEqualTo(400);
+        assertThat(enviarJson("POST", "/usuarios", "{\"nombre\":\"Ana\"}").statusCode()).isEqualTo(400);
+    }
+
+    @Test
+    @DisplayName("❌ Errores de ruta, método y parámetros")
+    void errores() throws Exception {
+        assertThat(enviar("GET", "/usuarios/user_0", null).statusCode()).isEqualTo(404);
+        assertThat(enviar("GET", "/otra", null).statusCode()).isEqualTo(404);
+        assertThat(enviar("DELETE", "/usuarios/user_1", null).statusCode()).isEqualTo(405);
+        assertThat(enviar("POST", "/usuarios/exportar", null).statusCode()).isEqualTo(405);
+        assertThat(enviar("POST", "/usuarios", "nombre=Ana&peso=abc").statusCode()).isEqualTo(400);
+        assertThat(enviar("POST", "/usuarios", "nombre=&peso=70").statusCode()).isEqualTo(400);
+    }
+
+    @Test
+    @DisplayName("📊 Clientes concurrentes sobre conexiones reutilizadas")
+    void clientesConcurrentes() throws InterruptedException {
+        UsuarioController.configurarLatenciaSimulada(false);
+        int clientes = 16;
+        int porCliente = 250;
+        ExecutorService executor = Executors.newFixedThreadPool(clientes);
+        AtomicInteger exitosas = new AtomicInteger();
+        HistogramaLatencias latencias = new HistogramaLatencias();
+        try {
+            long inicio = System.nanoTime();
+            for (int c = 0; c < clientes; c++) {
+                executor.submit(() -> {
+                    for (int i = 0; i < porCliente; i++) {
+                        long t0 = System.nanoTime();
+                        try {
+                            if (enviar("POST", "/usuarios", "nombre=Carga&peso=70").statusCode() == 201) {
+                                exitosas.incrementAndGet();
+                            }
+                        } catch (Exception e) {
+                            // cuenta como fallida
+                        }
+                        latencias.registrar(System.nanoTime() - t0);
+                    }
+                });
+            }
+            executor.shutdown();
+            assertThat(executor.awaitTermination(60, TimeUnit.SECONDS)).isTrue();
+            long duracionMs = Math.max(1, (System.nanoTime() - inicio) / 1_000_000);
+            HistogramaLatencias.Instantanea instantanea = latencias.instantanea();
+
+            System.out.println("\n📊 SERVIDOR HTTP (sin latencia simulada):");
+            System.out.println("==================================");
+            System.out.println("🚀 Arranque: " + arranqueMs + " ms");
+            System.out.println("✅ Exitosas: " + exitosas.get() + " / " + clientes * porCliente);
+            System.out.println("📈 Throughput: " + clientes * porCliente * 1000L / duracionMs + " req/seg");
+            System.out.println("⚡ p50 / p99: " + instantanea.percentil(50) / 1_000 + " / "
+                + instantanea.percentil(99) / 1_000 + " µs");
+
+            assertThat(exitosas.get()).isEqualTo(clientes * porCliente);
+        } finally {
+            UsuarioController.configurarLatenciaSimulada(true);
+        }
+    }
+
+    private static HttpResponse<String> enviar(String metodo, String ruta, String cuerpo) throws Exception {
+        return cliente.send(solicitud(metodo, ruta, cuerpo), HttpResponse.BodyHandlers.ofString());
+    }
+
+    private static HttpResponse<String> enviarJson(String metodo, String ruta, String cuerpo) throws Exception {
+        return enviarJson(metodo, ruta, cuerpo, null);
+    }
+
+    private static HttpResponse<String> enviarJson(String metodo, String ruta, String cuerpo, String siVersion)
+            throws Exception {
+        HttpRequest.Builder solicitud = HttpRequest.newBuilder(
+                URI.create("http://localhost:" + servidor.getPuerto() + ruta))
+            .header("Content-Type", "application/json")
+            .method(metodo, HttpRequest.BodyPublishers.ofString(cuerpo));
+        if (siVersion != null) {
+            solicitud.header("If-Match", siVersion);
+        }
+        return cliente.send(solicitud.build(), HttpResponse.BodyHandlers.ofString());
+    }
+
+    private static HttpRequest solicitud(String metodo, String ruta, String cuerpo) {
+        return HttpRequest.newBuilder(URI.create("http://localhost:" + servidor.getPuerto() + ruta))
+            .header("Content-Type", "application/x-www-form-urlencoded")
+            .method(metodo, cuerpo == null
+                ? HttpRequest.BodyPublishers.noBody() : HttpRequest.BodyPublishers.ofString(cuerpo))
+            .build();
+    }
+}
@@ -2,14 +2,17 @@ package com.ejemplo;
 
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
 import static org.assertj.core.api.Assertions.*;
 import java.util.Map;
+import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.CountDownLatch;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
 import java.util.concurrent.atomic.AtomicInteger;
 import java.util.List;
 import java.util.ArrayList;
+import java.util.Collections;
 
 /**
  * Pruebas de rendimiento para el sistema HealthTrack
@@ -25,7 +28,7 @@ public class UsuarioPerformanceTest {
         
         AtomicInteger exitos = new AtomicInteger(0);
         AtomicInteger errores = new AtomicInteger(0);
-        List<Long> tiemposRespuesta = new ArrayList<>();
+        HistogramaLatencias tiemposRespuesta = new HistogramaLatencias();
         
         long inicio = System.currentTimeMillis();
         
@@ -41,12 +44,7 @@ public class UsuarioPerformanceTest {
                         60.0 + (userId % 40)
                     );
                     
-                    long tiempoFin = System.nanoTime();
-                    long duracion = (tiempoFin - tiempoInicio) / 1_000_000; // ms
-                    
-                    synchronized (tiemposRespuesta) {
-                        tiemposRespuesta.add(duracion);
-                    }
+                    tiemposRespuesta.registrar(System.nanoTime() - tiempoInicio);
                     
                     if ((Integer) resultado.get("status") == 201) {
                         exitos.incrementAndGet();
@@ -69,15 +67,9 @@ public class UsuarioPerformanceTest {
         long duracionTotal = fin - inicio;
         
         // Calcular estadísticas
-        double promedioTiempo = tiemposRespuesta.stream()
-            .mapToLong(Long::longValue)
-            .average()
-            .orElse(0.0);
-        
-        long maxTiempo = tiemposRespuesta.stream()
-            .mapToLong(Long::longValue)
-            .max()
-            .orElse(0L);
+        HistogramaLatencias.Instantanea tiempos = tiemposRespuesta.instantanea();
+        double promedioTiempo = tiempos.getMediaNs() / 1_000_000; // ms
+        long maxTiempo = tiempos.getMaximoNs() / 1_000_000;
         
         double throughput = (double) numeroUsuarios / duracionTotal * 1000; // req/seg
         
@@ -90,6 +82,8 @@ public class UsuarioPerformanceTest {
         System.out.println("⏱️  Tiempo total: " + duracionTotal + " ms");
         System.out.println("📈 Throughput: " + String.format("%.2f", throughput) + " req/seg");
         System.out.println("⚡ Tiempo promedio: " + String.format("%.2f", promedioTiempo) + " ms");
+        System.out.println("📉 p50 / p99 / p99.9: " + tiempos.percentil(50) / 1_000_000 + " / "
+            + tiempos.percentil(99) / 1_000_000 + " / " + tiempos.percentil(99.9) / 1_000_000 + " ms");
         System.out.println("🔥 Tiempo máximo: " + maxTiempo + " ms");
         
         // Assertions
@@ -101,9 +95,10 @@ public class UsuarioPerformanceTest {
     @Test
     @DisplayName("🔄 Prueba de stress: Actualización masiva de peso")
     void pruebaStressActualizacionPeso() throws InterruptedException {
-        // Crear usuarios primero
+        // Crear usuarios primero (los ids se asignan por bloques, no son consecutivos)
+        List<String> ids = new ArrayList<>();
         for (int i = 0; i < 50; i++) {
-            UsuarioController.crearUsuario("TestUser" + i, 70.0);
+            ids.add((String) UsuarioController.crearUsuario("TestUser" + i, 70.0).get("id"));
         }
         
         int numeroActualizaciones = 200;
@@ -119,7 +114,7 @@ public class UsuarioPerformanceTest {
             final int updateId = i;
             executor.submit(() -> {
                 try {
-                    String userId = "user_" + (updateId % 50 + 1);
+                    String userId = ids.get(updateId % 50);
                     double nuevoPeso = 60.0 + (updateId % 50);
                     
                     Map<String, Object> resultado = UsuarioController.actualizarPeso(userId, nuevoPeso);
@@ -157,4 +152,266 @@ public class UsuarioPerformanceTest {
 
         assertThat(exitos.get()).isGreaterThan((int)(numeroActualizaciones * 0.90)); // 90% éxito
     }
-}
\ No newline at end of file
+    
+    @Test
+    @DisplayName("✅ Los lotes devuelven un resultado por elemento")
+    void lotesRespondenPorElemento() {
+        List<SolicitudCreacion> creaciones = new ArrayList<>();
+        for (int i = 0; i < 200; i++) {
+            creaciones.add(new SolicitudCreacion("Lote" + i, 70.0));
+        }
+        Map<String, Object> resultadoCreacion = UsuarioController.crearUsuarios(creaciones);
+        
+        List<SolicitudActualizacion> actualizaciones = new ArrayList<>();
+        for (Object resultado : (List<?>) resultadoCreacion.get("resultados")) {
+            actualizaciones.add(new SolicitudActualizacion((String) ((Map<?, ?>) resultado).get("id"), 75.0));
+        }
+        actualizaciones.add(new SolicitudActualizacion("user_desconocido", 75.0));
+        Map<String, Object> resultadoActualizacion = UsuarioController.actualizarPesos(actualizaciones);
+        
+        assertThat(resultadoCreacion.get("status")).isEqualTo(200);
+        assertThat(resultadoCreacion.get("exitosos")).isEqualTo(200);
+        assertThat(resultadoActualizacion.get("exitosos")).isEqualTo(200);
+        assertThat(resultadoActualizacion.get("fallidos")).isEqualTo(1);
+    }
+    
+    @Test
+    @EnabledIfSystemProperty(named = "healthtrack.benchmark", matches = "true")
+    @DisplayName("📦 Comparación: lote vs llamadas individuales")
+    void comparacionLoteVsIndividual() throws InterruptedException {
+        int cantidad = 200;
+        
+        // Camino individual: una llamada (y un viaje simulado) por usuario
+        ExecutorService executor = Executors.newFixedThreadPool(10);
+        CountDownLatch latch = new CountDownLatch(cantidad);
+        List<String> ids = Collections.synchronizedList(new ArrayList<>());
+        long inicioIndividual = System.nanoTime();
+        for (int i = 0; i < cantidad; i++) {
+            final int userId = i;
+            executor.submit(() -> {
+                try {
+                    ids.add((String) UsuarioController.crearUsuario("Individual" + userId, 70.0).get("id"));
+                } finally {
+                    latch.countDown();
+                }
+            });
+        }
+        latch.await();
+        executor.shutdown();
+        long duracionIndividual = (System.nanoTime() - inicioIndividual) / 1_000_000;
+        
+        // Camino por lotes: un único viaje simulado por tramo
+        List<SolicitudCreacion> creaciones = new ArrayList<>();
+        for (int i = 0; i < cantidad; i++) {
+            creaciones.add(new SolicitudCreacion("Lote" + i, 70.0));
+        }
+        long inicioLote = System.nanoTime();
+        Map<String, Object> resultadoCreacion = UsuarioController.crearUsuarios(creaciones);
+        long duracionLote = Math.max(1, (System.nanoTime() - inicioLote) / 1_000_000);
+        
+        List<SolicitudActualizacion> actualizaciones = new ArrayList<>();
+        for (String id : ids) {
+            actualizaciones.add(new SolicitudActualizacion(id, 75.0));
+        }
+        actualizaciones.add(new SolicitudActualizacion("user_desconocido", 75.0));
+        long inicioActualizacion = System.nanoTime();
+        Map<String, Object> resultadoActualizacion = UsuarioController.actualizarPesos(actualizaciones);
+        long duracionActualizacion = Math.max(1, (System.nanoTime() - inicioActualizacion) / 1_000_000);
+        
+        double throughputIndividual = (double) cantidad / duracionIndividual * 1000;
+        double throughputLote = (double) cantidad / duracionLote * 1000;
+        double throughputActualizacion = (double) actualizaciones.size() / duracionActualizacion * 1000;
+        
+        System.out.println("\n📦 COMPARACIÓN LOTE VS INDIVIDUAL:");
+        System.out.println("===================================");
+        System.out.println("👤 Creación individual (10 hilos): " + String.format("%.2f", throughputIndividual) + " req/seg");
+        System.out.println("📦 Creación en lote: " + String.format("%.2f", throughputLote) + " usuarios/seg");
+        System.out.println("🔄 Actualización en lote: " + String.format("%.2f", throughputActualizacion) + " actualizaciones/seg");
+        
+        assertThat(resultadoCreacion.get("status")).isEqualTo(200);
+        assertThat(resultadoCreacion.get("exitosos")).isEqualTo(cantidad);
+        assertThat(resultadoActualizacion.get("exitosos")).isEqualTo(cantidad);
+        assertThat(resultadoActualizacion.get("fallidos")).isEqualTo(1);
+        assertThat(throughputLote).isGreaterThan(throughputIndividual * 5);
+    }
+    
+    @Test
+    @DisplayName("❌ Un lote cortado por un error interno indica qué elementos se aplicaron")
+    void loteInterrumpido() {
+        // Repositorio que falla en el alta 1201 y en la actualización 301
+        RepositorioMapa fragil = new RepositorioMapa() {
+            private int altas;
+            private int actualizaciones;
+            
+            @Override
+            public boolean insertar(long id, String nombre, double peso) {
+                if (++altas > 1_200) {
+                    throw new IllegalStateException("disco lleno");
+                }
+                return super.insertar(id, nombre, peso);
+            }
+            
+            @Override
+            public Usuario.EstadoPeso actualizarPesoSiVersion(long id, long versionEsperada, double nuevoPeso) {
+                if (++actualizaciones > 300) {
+                    throw new IllegalStateException("disco lleno");
+                }
+                return super.actualizarPesoSiVersion(id, versionEsperada, nuevoPeso);
+            }
+        };
+        UsuarioController.configurarRepositorio(fragil);
+        UsuarioController.configurarLatenciaSimulada(false);
+        try {
+            Map<String, Object> creacion = UsuarioController.crearUsuarios(
+                Collections.nCopies(1_500, new SolicitudCreacion("Lote", 70.0)));
+            
+            assertThat(creacion.get("status")).isEqualTo(500);
+            assertThat(creacion.get("exitosos")).isEqualTo(1_200);
+            assertThat(creacion.get("fallidos")).isEqualTo(300);
+            List<?> resultados = (List<?>) creacion.get("resultados");
+            assertThat(resultados).hasSize(1_500);
+            assertThat(((Map<?, ?>) resultados.get(1_199)).get("status")).isEqualTo(201);
+            assertThat(((Map<?, ?>) resultados.get(1_200)).get("status")).isEqualTo(500);
+            
+            List<SolicitudActualizacion> actualizaciones = new ArrayList<>();
+            for (int i = 0; i < 500; i++) {
+                actualizaciones.add(new SolicitudActualizacion(
+                    (String) ((Map<?, ?>) resultados.get(i)).get("id"), 75.0));
+            }
+            actualizaciones.set(10, new SolicitudActualizacion("user_desconocido", 75.0));
+            Map<String, Object> actualizacion = UsuarioController.actualizarPesos(actualizaciones);
+            
+            assertThat(actualizacion.get("status")).isEqualTo(500);
+            assertThat(actualizacion.get("exitosos")).isEqualTo(300);
+            List<?> porElemento = (List<?>) actualizacion.get("resultados");
+            assertThat(((Map<?, ?>) porElemento.get(10)).get("status")).isEqualTo(404);
+            assertThat(((Map<?, ?>) porElemento.get(300)).get("status")).isEqualTo(200);
+            assertThat(((Map<?, ?>) porElemento.get(301)).get("status")).isEqualTo(500);
+        } finally {
+            UsuarioController.configurarLatenciaSimulada(true);
+            UsuarioController.configurarRepositorio(new RepositorioMapa());
+        }
+    }
+    
+    @Test
+    @DisplayName("✅ La API asíncrona responde todas las solicitudes emitidas sin esperar")
+    void cargaAsincronaRespondeTodas() {
+        Map<String, Object> lote = UsuarioController.crearUsuarios(Collections.nCopies(10, new SolicitudCreacion("Asincrono", 70.0)));
+        List<String> ids = new ArrayList<>();
+        for (Object resultado : (List<?>) lote.get("resultados")) {
+            ids.add((String) ((Map<?, ?>) resultado).get("id"));
+        }
+        
+        List<CompletableFuture<Map<String, Object>>> pendientes = new ArrayList<>();
+        for (int i = 0; i < 2_000; i++) {
+            String id = ids.get(i % ids.size());
+            pendientes.add(i % 2 == 0
+                ? UsuarioController.actualizarPesoAsincrono(id, 70.0)
+                : UsuarioController.obtenerUsuarioAsincrono(id));
+        }
+        CompletableFuture.allOf(pendientes.toArray(new CompletableFuture<?>[0])).join();
+        
+        assertThat(pendientes).allSatisfy(futuro -> assertThat(futuro.join().get("status")).isEqualTo(200));
+    }
+    
+    @Test
+    @EnabledIfSystemProperty(named = "healthtrack.benchmark", matches = "true")
+    @DisplayName("⚡ Prueba de carga asíncrona: 30.000 solicitudes, más de 10.000 en vuelo")
+    void pruebaCargaAsincrona() {
+        Map<String, Object> lote = UsuarioController.crearUsuarios(Collections.nCopies(100, new SolicitudCreacion("Asincrono", 70.0)));
+        List<String> ids = new ArrayList<>();
+        for (Object resultado : (List<?>) lote.get("resultados")) {
+            ids.add((String) ((Map<?, ?>) resultado).get("id"));
+        }
+        
+        // Sin caché: cada consulta paga la latencia simulada y queda en vuelo
+        UsuarioController.configurarCache(null);
+        int numeroSolicitudes = 30_000;
+        AtomicInteger picoEnVuelo = new AtomicInteger(0);
+        AtomicInteger exitos = new AtomicInteger(0);
+        long duracionTotal;
+        try {
+            // Ronda de calentamiento para que el JIT compile el camino de emisión
+            List<CompletableFuture<Map<String, Object>>> calentamiento = new ArrayList<>();
+            for (int i = 0; i < 10_000; i++) {
+                calentamiento.add(UsuarioController.obtenerUsuarioAsincrono(ids.get(i % ids.size())));
+            }
+            CompletableFuture.allOf(calentamiento.toArray(new CompletableFuture<?>[0])).join();
+            
+            AtomicInteger enVuelo = new AtomicInteger(0);
+            List<CompletableFuture<Map<String, Object>>> pendientes = new ArrayList<>(numeroSolicitudes);
+            
+            // Un solo hilo emite todas las solicitudes sin esperar respuestas
+            long inicio = System.nanoTime();
+            for (int i = 0; i < numeroSolicitudes; i++) {
+                String id = ids.get(i % ids.size());
+                CompletableFuture<Map<String, Object>> futuro = i % 2 == 0
+                    ? UsuarioController.actualizarPesoAsincrono(id, 70.0)
+                    : UsuarioController.obtenerUsuarioAsincrono(id);
+                picoEnVuelo.accumulateAndGet(enVuelo.incrementAndGet(), Math::max);
+                pendientes.add(futuro.whenComplete((resultado, error) -> {
+                    enVuelo.decrementAndGet();
+                    if (error == null && (Integer) resultado.get("status") == 200) {
+                        exitos.incrementAndGet();
+                    }
+                }));
+            }
+            CompletableFuture.allOf(pendientes.toArray(new CompletableFuture<?>[0])).join();
+            duracionTotal = Math.max(1, (System.nanoTime() - inicio) / 1_000_000);
+        } finally {
+            UsuarioController.configurarCache(new CacheUsuarios(10_000));
+        }
+        
+        double throughput = (double) numeroSolicitudes / duracionTotal * 1000;
+        int hilosVivos = Thread.activeCount();
+        
+        System.out.println("\n⚡ RESULTADOS DE CARGA ASÍNCRONA:");
+        System.out.println("==================================");
+        System.out.println("📨 Solicitudes: " + numeroSolicitudes);
+        System.out.println("✅ Exitosas: " + exitos.get());
+        System.out.println("🔥 Pico en vuelo: " + picoEnVuelo.get());
+        System.out.println("🧵 Hilos vivos en la JVM: " + hilosVivos);
+        System.out.println("⏱️  Duración: " + duracionTotal + " ms");
+        System.out.println("📈 Throughput: " + String.format("%.2f", throughput) + " req/seg");
+        
+        assertThat(exitos.get()).isEqualTo(numeroSolicitudes);
+        assertThat(picoEnVuelo.get()).isGreaterThanOrEqualTo(10_000);
+        assertThat(hilosVivos).isLessThan(100);
+        assertThat(throughput).isGreaterThan(1_000.0);
+    }
+    
+    @Test
+    @DisplayName("✅ La API asíncrona responde igual que la síncrona")
+    void apiAsincronaEquivalente() {
+        Map<String, Object> creado = UsuarioController.crearUsuarioAsincrono("Ana", 80.0).join();
+        String id = (String) creado.get("id");
+        
+        assertThat(creado.get("status")).isEqualTo(201);
+        assertThat(UsuarioController.obtenerUsuarioAsincrono(id).join().get("usuario"))
+            .isEqualTo(UsuarioController.obtenerUsuario(id).get("usuario"));
+        assertThat(UsuarioController.actualizarPesoAsincrono("user_desconocido", 70.0).join().get("status"))
+            .isEqualTo(404);
+        assertThat(UsuarioController.crearUsuarioAsincrono("", 70.0).join().get("status")).isEqualTo(400);
+        assertThat(UsuarioController.obtenerEstadisticasAsincrono().join().get("status")).isEqualTo(200);
+    }
+
+    @Test
+    @DisplayName("✅ Sin latencia simulada las operaciones no esperan")
+    void sinLatenciaSimulada() {
+        UsuarioController.configurarLatenciaSimulada(false);
+        try {
+            long inicio = System.nanoTime();
+            for (int i = 0; i < 100; i++) {
+                String id = (String) UsuarioController.crearUsuario("Rápido", 70.0).get("id");
+                assertThat(UsuarioController.obtenerUsuario(id).get("status")).isEqualTo(200);
+                assertThat(UsuarioController.obtenerUsuarioAsincrono(id).join().get("status")).isEqualTo(200);
+            }
+            long duracionMs = (System.nanoTime() - inicio) / 1_000_000;
+
+            // Con latencia serían al menos 100 x (100 + 30 + 30) ms
+            assertThat(duracionMs).isLessThan(5_000);
+        } finally {
+            UsuarioController.configurarLatenciaSimulada(true);
+        }
+    }
+}
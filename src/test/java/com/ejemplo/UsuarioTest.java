@@ -4,6 +4,11 @@ import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.DisplayName;
 import static org.assertj.core.api.Assertions.*;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
 
 /**
  * Pruebas unitarias para la clase Usuario
@@ -57,4 +62,109 @@ public class UsuarioTest {
             .as("El sistema erróneamente resta 1kg al peso inicial")
             .isEqualTo(pesoInicial - 1);
     }
-}
\ No newline at end of file
+    
+    @Test
+    @DisplayName("✅ La actualización condicional solo se aplica con la versión vigente")
+    void actualizacionCondicional() {
+        Usuario.EstadoPeso anterior = usuario.actualizarPeso(75.0);
+        assertThat(anterior.getPeso()).isEqualTo(70.0);
+        assertThat(anterior.getVersion()).isZero();
+        assertThat(usuario.getVersion()).isEqualTo(1);
+
+        Usuario.EstadoPeso rechazado = usuario.actualizarPesoSiVersion(0, 80.0);
+        assertThat(rechazado.getVersion()).as("versión vigente que impidió el cambio").isEqualTo(1);
+        assertThat(usuario.getPeso()).isEqualTo(69.0);
+
+        Usuario.EstadoPeso aplicado = usuario.actualizarPesoSiVersion(1, 80.0);
+        assertThat(aplicado.getVersion()).isEqualTo(1);
+        assertThat(aplicado.getPeso()).isEqualTo(69.0);
+        assertThat(usuario.getEstado().getVersion()).isEqualTo(2);
+        assertThat(usuario.getEstado().getPeso()).isEqualTo(68.0);
+    }
+    
+    @Test
+    @DisplayName("🔄 Alta contención: ninguna actualización se pierde ni se lee a medias")
+    void sinActualizacionesPerdidas() throws InterruptedException {
+        Usuario compartido = new Usuario("Compartido", 1_000_000.0);
+        int hilos = 8;
+        int porHilo = 50_000;
+        CountDownLatch salida = new CountDownLatch(1);
+        AtomicLong incoherentes = new AtomicLong();
+        ExecutorService executor = Executors.newFixedThreadPool(hilos + 1);
+        for (int h = 0; h < hilos; h++) {
+            executor.submit(() -> {
+                esperar(salida);
+                for (int i = 0; i < porHilo; i++) {
+                    compartido.actualizarPeso(0);
+                }
+            });
+        }
+        // Cada cambio resta 1 kg y suma una versión: peso + versión es invariante
+        executor.submit(() -> {
+            esperar(salida);
+            for (int i = 0; i < porHilo; i++) {
+                Usuario.EstadoPeso estado = compartido.getEstado();
+                if (estado.getPeso() + estado.getVersion() != 1_000_000.0) {
+                    incoherentes.incrementAndGet();
+                }
+            }
+        });
+        salida.countDown();
+        executor.shutdown();
+        assertThat(executor.awaitTermination(60, TimeUnit.SECONDS)).isTrue();
+
+        assertThat(compartido.getVersion()).isEqualTo((long) hilos * porHilo);
+        assertThat(compartido.getPeso()).isEqualTo(1_000_000.0 - hilos * porHilo);
+        assertThat(incoherentes.get()).isZero();
+    }
+    
+    @Test
+    @DisplayName("🔄 Alta contención: cada versión tiene exactamente un ganador condicional")
+    void unGanadorPorVersion() throws InterruptedException {
+        Usuario compartido = new Usuario("Compartido", 1_000_000.0);
+        int hilos = 8;
+        int porHilo = 20_000;
+        CountDownLatch salida = new CountDownLatch(1);
+        AtomicLong ganadas = new AtomicLong();
+        AtomicLong duplicadas = new AtomicLong();
+        long[] ganadores = new long[hilos * porHilo];
+        ExecutorService executor = Executors.newFixedThreadPool(hilos);
+        for (int h = 0; h < hilos; h++) {
+            final int hilo = h + 1;
+            executor.submit(() -> {
+                esperar(salida);
+                int propias = 0;
+                while (propias < porHilo) {
+                    long leida = compartido.getVersion();
+                    if (compartido.actualizarPesoSiVersion(leida, 0).getVersion() == leida) {
+                        // Leer-comparar-escribir: si dos hilos ganaran la misma versión se vería aquí
+                        synchronized (ganadores) {
+                            if (ganadores[(int) leida] != 0) {
+                                duplicadas.incrementAndGet();
+                            }
+                            ganadores[(int) leida] = hilo;
+                        }
+                        ganadas.incrementAndGet();
+                        propias++;
+                    }
+                }
+            });
+        }
+        salida.countDown();
+        executor.shutdown();
+        assertThat(executor.awaitTermination(60, TimeUnit.SECONDS)).isTrue();
+
+        assertThat(duplicadas.get()).isZero();
+        assertThat(ganadas.get()).isEqualTo((long) hilos * porHilo);
+        assertThat(compartido.getVersion()).isEqualTo((long) hilos * porHilo);
+        assertThat(compartido.getPeso()).isEqualTo(1_000_000.0 - hilos * porHilo);
+    }
+    
+    private static void esperar(CountDownLatch latch) {
+        try {
+            latch.await();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
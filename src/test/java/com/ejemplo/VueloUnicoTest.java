@@ -0,0 +1,186 @@
+package com.ejemplo;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.DisplayName;
+import static org.assertj.core.api.Assertions.*;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Pruebas de la agrupación de consultas concurrentes y benchmark con una clave caliente
+ */
+public class VueloUnicoTest {
+
+    @Test
+    @DisplayName("✅ Las llamadas concurrentes de una clave comparten una sola carga")
+    void compartenUnaCarga() throws Exception {
+        VueloUnico<String> vuelo = new VueloUnico<>();
+        CountDownLatch enCarga = new CountDownLatch(1);
+        CountDownLatch liberar = new CountDownLatch(1);
+        AtomicInteger cargas = new AtomicInteger();
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+        try {
+            Future<String> lider = executor.submit(() -> vuelo.ejecutar(7, () -> {
+                enCarga.countDown();
+                esperar(liberar);
+                return "valor-" + cargas.incrementAndGet();
+            }));
+            assertThat(enCarga.await(5, TimeUnit.SECONDS)).isTrue();
+            List<Future<String>> seguidores = new ArrayList<>();
+            for (int i = 0; i < 7; i++) {
+                seguidores.add(executor.submit(() -> vuelo.ejecutar(7, () -> "valor-" + cargas.incrementAndGet())));
+            }
+            while (vuelo.getAgrupadas() < 7) {
+                Thread.sleep(1);
+            }
+            // Otra clave no espera a la carga en curso
+            assertThat(vuelo.ejecutar(8, () -> "otra")).isEqualTo("otra");
+            liberar.countDown();
+
+            assertThat(lider.get()).isEqualTo("valor-1");
+            for (Future<String> seguidor : seguidores) {
+                assertThat(seguidor.get()).isEqualTo("valor-1");
+            }
+            assertThat(cargas.get()).isEqualTo(1);
+            assertThat(vuelo.getEjecutadas()).isEqualTo(2);
+            assertThat(vuelo.enCurso()).isZero();
+            // Terminada la carga, la siguiente llamada vuelve a cargar
+            assertThat(vuelo.ejecutar(7, () -> "nuevo")).isEqualTo("nuevo");
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    @DisplayName("❌ Un error de la carga llega a todas las llamadas agrupadas")
+    void propagaErrores() {
+        VueloUnico<String> vuelo = new VueloUnico<>();
+        CompletableFuture<String> pendiente = new CompletableFuture<>();
+
+        CompletableFuture<String> lider = vuelo.ejecutarAsincrono(1, () -> pendiente);
+        CompletableFuture<String> seguidor = vuelo.ejecutarAsincrono(1, () -> CompletableFuture.completedFuture("x"));
+        pendiente.completeExceptionally(new IllegalStateException("sin conexión"));
+
+        assertThatThrownBy(lider::join).isInstanceOf(CompletionException.class).hasRootCauseMessage("sin conexión");
+        assertThatThrownBy(seguidor::join).isInstanceOf(CompletionException.class).hasRootCauseMessage("sin conexión");
+        assertThat(vuelo.getAgrupadas()).isEqualTo(1);
+        assertThat(vuelo.enCurso()).isZero();
+        assertThatThrownBy(() -> vuelo.ejecutar(1, () -> {
+            throw new IllegalArgumentException("inválido");
+        })).isInstanceOf(IllegalArgumentException.class);
+        assertThat(vuelo.enCurso()).isZero();
+    }
+
+    @Test
+    @DisplayName("📊 Clave caliente: los viajes al repositorio bajan un orden de magnitud")
+    void claveCaliente() throws InterruptedException {
+        RepositorioContador repositorio = new RepositorioContador();
+        UsuarioController.configurarRepositorio(repositorio);
+        UsuarioController.configurarCache(null);
+        int hilos = 64;
+        int porHilo = 20;
+        try {
+            String id = UsuarioController.crearUsuarioTipado("Popular", 70).getId();
+            long agrupadasAntes = UsuarioController.consultasEnCurso().getAgrupadas();
+            repositorio.lecturas.reset();
+
+            ExecutorService executor = Executors.newFixedThreadPool(hilos);
+            AtomicInteger exitosas = new AtomicInteger();
+            long inicio = System.nanoTime();
+            for (int h = 0; h < hilos; h++) {
+                executor.submit(() -> {
+                    for (int i = 0; i < porHilo; i++) {
+                        if (UsuarioController.obtenerUsuarioTipado(id).getNombre().equals("Popular")) {
+                            exitosas.incrementAndGet();
+                        }
+                    }
+                });
+            }
+            executor.shutdown();
+            assertThat(executor.awaitTermination(60, TimeUnit.SECONDS)).isTrue();
+            long duracionMs = (System.nanoTime() - inicio) / 1_000_000;
+            long lecturas = repositorio.lecturas.sum();
+            Map<String, Object> estadisticas = UsuarioController.obtenerEstadisticas();
+
+            System.out.println("\n📊 AGRUPACIÓN DE CONSULTAS (clave caliente, " + hilos + " hilos):");
+            System.out.println("==================================");
+            System.out.println("🔎 Consultas: " + hilos * porHilo);
+            System.out.println("💾 Viajes al repositorio: " + lecturas);
+            System.out.println("🤝 Agrupadas: " + (UsuarioController.consultasEnCurso().getAgrupadas() - agrupadasAntes));
+            System.out.println("⏱️  Duración: " + duracionMs + " ms");
+
+            assertThat(exitosas.get()).isEqualTo(hilos * porHilo);
+            assertThat(lecturas * 10).isLessThanOrEqualTo(hilos * porHilo);
+            assertThat((Long) estadisticas.get("consultasAgrupadas")).isGreaterThan(agrupadasAntes);
+        } finally {
+            UsuarioController.configurarCache(new CacheUsuarios(10_000));
+            UsuarioController.configurarRepositorio(new RepositorioMapa());
+        }
+    }
+
+    @Test
+    @DisplayName("✅ La consulta con contenedor también agrupa los viajes concurrentes")
+    void contenedorAgrupaViajes() throws Exception {
+        RepositorioContador repositorio = new RepositorioContador();
+        UsuarioController.configurarRepositorio(repositorio);
+        UsuarioController.configurarCache(null);
+        int hilos = 16;
+        ExecutorService executor = Executors.newFixedThreadPool(hilos);
+        try {
+            String id = UsuarioController.crearUsuarioTipado("Contenedor", 64.5).getId();
+            long agrupadasAntes = UsuarioController.consultasEnCurso().getAgrupadas();
+            repositorio.lecturas.reset();
+            CountDownLatch salida = new CountDownLatch(1);
+            List<Future<String>> lecturas = new ArrayList<>();
+            for (int h = 0; h < hilos; h++) {
+                lecturas.add(executor.submit(() -> {
+                    esperar(salida);
+                    LecturaUsuario lectura = new LecturaUsuario();
+                    int status = UsuarioController.obtenerUsuario(id, lectura);
+                    return status + " " + lectura.getNombre() + " " + lectura.getPeso();
+                }));
+            }
+            salida.countDown();
+            for (Future<String> lectura : lecturas) {
+                assertThat(lectura.get(10, TimeUnit.SECONDS)).isEqualTo("200 Contenedor 64.5");
+            }
+            assertThat(UsuarioController.consultasEnCurso().getAgrupadas()).isGreaterThan(agrupadasAntes);
+            assertThat(repositorio.lecturas.sum()).isLessThan(hilos);
+        } finally {
+            executor.shutdownNow();
+            UsuarioController.configurarCache(new CacheUsuarios(10_000));
+            UsuarioController.configurarRepositorio(new RepositorioMapa());
+        }
+    }
+
+    /**
+     * Repositorio que cuenta las lecturas de peso (una por viaje de consulta sin caché)
+     */
+    private static final class RepositorioContador extends RepositorioMapa {
+        final LongAdder lecturas = new LongAdder();
+
+        @Override
+        public double obtenerPeso(long id) {
+            lecturas.increment();
+            return super.obtenerPeso(id);
+        }
+    }
+
+    private static void esperar(CountDownLatch latch) {
+        try {
+            latch.await();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}